@@ -20,7 +20,9 @@ import org.junit.runners.Suite;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
-    CpuUsageStateProviderTest.class
+    CpuUsageStateProviderTest.class,
+    CpuUsageFusedAnalysisTest.class,
+    CpuUsageIndexTest.class
 })
 public class AllTests {
 
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.analysis.os.linux.core.tests.cpuusage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.tracecompass.analysis.os.linux.core.cpuusage.KernelCpuUsageAnalysis;
+import org.eclipse.tracecompass.analysis.os.linux.core.kernelanalysis.Attributes;
+import org.eclipse.tracecompass.analysis.os.linux.core.kernelanalysis.KernelAnalysis;
+import org.eclipse.tracecompass.analysis.os.linux.core.tests.Activator;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceOpenedSignal;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.xml.TmfXmlTraceStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link KernelCpuUsageAnalysis} when the CPU usage is computed by
+ * the kernel analysis, in the same pass as the kernel state system
+ */
+public class CpuUsageFusedAnalysisTest {
+
+    private static final String CPU_USAGE_FILE = "testfiles/cpu_analysis.xml";
+
+    private ITmfTrace fTrace;
+    private KernelAnalysis fKernelModule;
+    private KernelCpuUsageAnalysis fModule;
+
+    private static void deleteSuppFiles(ITmfTrace trace) {
+        /* Remove supplementary files */
+        File suppDir = new File(TmfTraceManager.getSupplementaryFileDir(trace));
+        for (File file : suppDir.listFiles()) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Setup the trace for the tests, with the CPU usage in the kernel
+     * analysis
+     */
+    @Before
+    public void setUp() {
+        fTrace = new TmfXmlTraceStub();
+        IPath filePath = Activator.getAbsoluteFilePath(CPU_USAGE_FILE);
+        IStatus status = fTrace.validate(null, filePath.toOSString());
+        if (!status.isOK()) {
+            fail(status.getException().getMessage());
+        }
+        try {
+            fTrace.initTrace(null, filePath.toOSString(), TmfEvent.class);
+        } catch (TmfTraceException e) {
+            fail(e.getMessage());
+        }
+        deleteSuppFiles(fTrace);
+        ((TmfTrace) fTrace).traceOpened(new TmfTraceOpenedSignal(this, fTrace, null));
+
+        fKernelModule = TmfTraceUtils.getAnalysisModuleOfClass(fTrace, KernelAnalysis.class, KernelAnalysis.ID);
+        assertNotNull(fKernelModule);
+        fKernelModule.addParameter(KernelAnalysis.PARAM_CPU_USAGE);
+        fKernelModule.setParameter(KernelAnalysis.PARAM_CPU_USAGE, Boolean.TRUE.toString());
+        assertTrue(fKernelModule.hasCpuUsage());
+
+        fModule = TmfTraceUtils.getAnalysisModuleOfClass(fTrace, KernelCpuUsageAnalysis.class, KernelCpuUsageAnalysis.ID);
+        assertNotNull(fModule);
+    }
+
+    /**
+     * Clean up
+     */
+    @After
+    public void tearDown() {
+        deleteSuppFiles(fTrace);
+        fTrace.dispose();
+    }
+
+    /**
+     * Test that the CPU usage is stored in the kernel state system
+     */
+    @Test
+    public void testReturnedStateSystem() {
+        fModule.schedule();
+        fModule.waitForCompletion();
+        ITmfStateSystem ss = fModule.getStateSystem();
+        assertNotNull(ss);
+        assertSame(fKernelModule.getStateSystem(), ss);
+
+        try {
+            int quark = ss.getQuarkAbsolute(Attributes.CPUS, "0", Attributes.CPU_USAGE, "2");
+            assertEquals(19L, ss.querySingleState(25L, quark).getStateValue().unboxLong());
+
+            quark = ss.getQuarkAbsolute(Attributes.CPUS, "1", Attributes.CPU_USAGE, "4");
+            assertEquals(8L, ss.querySingleState(25L, quark).getStateValue().unboxLong());
+        } catch (AttributeNotFoundException | StateSystemDisposedException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    /**
+     * Test the {@link KernelCpuUsageAnalysis#getCpuUsageInRange(long, long)}
+     * method gives the same results as the stand-alone analysis
+     */
+    @Test
+    public void testUsageInRange() {
+        fModule.schedule();
+        fModule.waitForCompletion();
+
+        /* This range should query the total range */
+        Map<String, Long> expected = new HashMap<>();
+        expected.put("0/1", 0L);
+        expected.put("0/2", 19L);
+        expected.put("0/3", 5L);
+        expected.put("1/1", 5L);
+        expected.put("1/3", 6L);
+        expected.put("1/4", 13L);
+        expected.put("total", 48L);
+        expected.put("total/1", 5L);
+        expected.put("total/2", 19L);
+        expected.put("total/3", 11L);
+        expected.put("total/4", 13L);
+        expected.put("0", 24L);
+        expected.put("1", 24L);
+        assertEquals(expected, fModule.getCpuUsageInRange(0L, 30L));
+
+        /* Verify a range when a process runs at start and at the end */
+        expected.clear();
+        expected.put("0/1", 0L);
+        expected.put("0/2", 9L);
+        expected.put("0/3", 0L);
+        expected.put("1/1", 0L);
+        expected.put("1/3", 5L);
+        expected.put("1/4", 4L);
+        expected.put("total", 18L);
+        expected.put("total/1", 0L);
+        expected.put("total/2", 9L);
+        expected.put("total/3", 5L);
+        expected.put("total/4", 4L);
+        expected.put("0", 9L);
+        expected.put("1", 9L);
+        assertEquals(expected, fModule.getCpuUsageInRange(4L, 13L));
+    }
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.analysis.os.linux.core.tests.cpuusage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.eclipse.tracecompass.internal.analysis.os.linux.core.cpuusage.CpuUsageIndex;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link CpuUsageIndex} class
+ */
+public class CpuUsageIndexTest {
+
+    private static final int ANY = CpuUsageIndex.ANY;
+
+    private CpuUsageIndex fIndex;
+
+    /**
+     * Build an index for two CPUs. The runs are added out of order.
+     */
+    @Before
+    public void setUp() {
+        CpuUsageIndex.Builder builder = new CpuUsageIndex.Builder();
+        /* CPU 0: 1 [0, 10], 0 [10, 15], 2 [15, 20], 1 [20, 30] */
+        builder.addRun(0, 1, 20, 30);
+        builder.addRun(0, 0, 10, 15);
+        builder.addRun(0, 1, 0, 10);
+        builder.addRun(0, 2, 15, 20);
+        /* CPU 1: 2 [5, 12], 3 [12, 25] */
+        builder.addRun(1, 2, 5, 12);
+        builder.addRun(1, 3, 12, 25);
+        /* Empty runs are ignored */
+        builder.addRun(1, 4, 25, 25);
+        fIndex = builder.build();
+    }
+
+    /**
+     * Test the usage of threads and CPUs in a range
+     */
+    @Test
+    public void testUsageInRange() {
+        assertArrayEquals(new int[] { 0, 1 }, fIndex.getCpus());
+
+        assertEquals(20, fIndex.getUsage(0, 1, 0, 30));
+        assertEquals(7, fIndex.getUsage(0, 1, 5, 22));
+        assertEquals(0, fIndex.getUsage(0, 1, 10, 20));
+        assertEquals(5, fIndex.getUsage(0, 0, 0, 30));
+        assertEquals(0, fIndex.getUsage(1, 4, 0, 30));
+        assertEquals(0, fIndex.getUsage(5, 1, 0, 30));
+
+        /* Threads on all CPUs */
+        assertEquals(12, fIndex.getUsage(ANY, 2, 0, 30));
+        assertEquals(7, fIndex.getUsage(ANY, 2, 8, 18));
+
+        /* All threads except the idle one */
+        assertEquals(25, fIndex.getUsage(0, ANY, 0, 30));
+        assertEquals(45, fIndex.getUsage(ANY, ANY, 0, 30));
+        assertEquals(10, fIndex.getUsage(ANY, ANY, 11, 18));
+
+        /* Empty and reversed ranges */
+        assertEquals(0, fIndex.getUsage(ANY, ANY, 12, 12));
+        assertEquals(0, fIndex.getUsage(ANY, ANY, 20, 10));
+        /* Ranges outside of the runs */
+        assertEquals(0, fIndex.getUsage(ANY, ANY, -10, 0));
+        assertEquals(0, fIndex.getUsage(ANY, ANY, 30, 40));
+    }
+
+    /**
+     * Test the usage in consecutive ranges gives the same results as the
+     * usage in each range
+     */
+    @Test
+    public void testUsageInBuckets() {
+        long[] times = { 0, 3, 7, 10, 11, 16, 22, 30, 35 };
+        int[] cpus = { 0, 1, ANY };
+        int[] tids = { 0, 1, 2, 3, ANY };
+        for (int cpu : cpus) {
+            for (int tid : tids) {
+                long[] usage = fIndex.getUsage(cpu, tid, times);
+                assertEquals(times.length - 1, usage.length);
+                for (int i = 0; i < usage.length; i++) {
+                    assertEquals(fIndex.getUsage(cpu, tid, times[i], times[i + 1]), usage[i]);
+                }
+            }
+        }
+        assertEquals(0, fIndex.getUsage(ANY, ANY, new long[] { 10 }).length);
+        assertEquals(0, fIndex.getUsage(ANY, ANY, new long[0]).length);
+    }
+}
@@ -21,6 +21,7 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
     KernelThreadInformationProviderTest.class,
+    KernelEventDispatcherTest.class,
     KernelTidAspectTest.class
 })
 public class AllTests {
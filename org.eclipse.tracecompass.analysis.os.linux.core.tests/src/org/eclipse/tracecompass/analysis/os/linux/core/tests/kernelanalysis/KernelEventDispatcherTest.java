@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.analysis.os.linux.core.tests.kernelanalysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
+import org.eclipse.tracecompass.internal.analysis.os.linux.core.kernelanalysis.KernelEventDispatcher;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventType;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfCpuAspect;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.Test;
+
+/**
+ * Test the {@link KernelEventDispatcher} class
+ */
+public class KernelEventDispatcherTest {
+
+    private static final IKernelAnalysisEventLayout LAYOUT = IKernelAnalysisEventLayout.DEFAULT_LAYOUT;
+
+    private static ITmfEvent createEvent(String name) {
+        return createEvent(null, name);
+    }
+
+    private static ITmfEvent createEvent(@Nullable ITmfTrace trace, String name) {
+        return new TmfEvent(trace, 0, new TmfTimestamp(1), new TmfEventType(name, null), null);
+    }
+
+    /**
+     * Trace whose events are all on one CPU, counting the lookups of its
+     * aspects
+     */
+    private static class CpuTraceStub extends TmfTraceStub {
+        private final @Nullable Integer fCpu;
+        private int fNbLookups = 0;
+
+        public CpuTraceStub(@Nullable Integer cpu) {
+            fCpu = cpu;
+        }
+
+        @Override
+        public Iterable<ITmfEventAspect> getEventAspects() {
+            fNbLookups++;
+            return Collections.<ITmfEventAspect> singletonList(new TmfCpuAspect() {
+                @Override
+                public @Nullable Integer resolve(ITmfEvent event) {
+                    return fCpu;
+                }
+            });
+        }
+    }
+
+    /**
+     * Test the kinds of the events named in the layout
+     */
+    @Test
+    public void testLayoutEvents() {
+        KernelEventDispatcher dispatcher = new KernelEventDispatcher(LAYOUT);
+        assertEquals(KernelEventDispatcher.SCHED_SWITCH, dispatcher.getEventType(createEvent(LAYOUT.eventSchedSwitch())));
+        assertEquals(KernelEventDispatcher.IRQ_HANDLER_ENTRY, dispatcher.getEventType(createEvent(LAYOUT.eventIrqHandlerEntry())));
+        assertEquals(KernelEventDispatcher.SOFT_IRQ_RAISE, dispatcher.getEventType(createEvent(LAYOUT.eventSoftIrqRaise())));
+        assertEquals(KernelEventDispatcher.SCHED_PROCESS_FREE, dispatcher.getEventType(createEvent(LAYOUT.eventSchedProcessFree())));
+        for (String wakeup : LAYOUT.eventsSchedWakeup()) {
+            assertEquals(KernelEventDispatcher.SCHED_WAKEUP, dispatcher.getEventType(createEvent(wakeup)));
+        }
+    }
+
+    /**
+     * Test the system call events, identified by their prefix, and the other
+     * events. Each name is resolved twice, the second time from the cache.
+     */
+    @Test
+    public void testOtherEvents() {
+        KernelEventDispatcher dispatcher = new KernelEventDispatcher(LAYOUT);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(KernelEventDispatcher.SYSCALL_ENTRY, dispatcher.getEventType(createEvent(LAYOUT.eventSyscallEntryPrefix() + "open")));
+            assertEquals(KernelEventDispatcher.SYSCALL_ENTRY, dispatcher.getEventType(createEvent(LAYOUT.eventCompatSyscallEntryPrefix() + "open")));
+            assertEquals(KernelEventDispatcher.SYSCALL_EXIT, dispatcher.getEventType(createEvent(LAYOUT.eventSyscallExitPrefix())));
+            assertEquals(KernelEventDispatcher.UNKNOWN, dispatcher.getEventType(createEvent("block_rq_issue")));
+        }
+    }
+
+    /**
+     * Test the CPU of the events of an experiment, which alternate between
+     * its traces. The aspects of each trace are only looked up once.
+     */
+    @Test
+    public void testCpuOfSeveralTraces() {
+        CpuTraceStub trace1 = new CpuTraceStub(1);
+        CpuTraceStub trace2 = new CpuTraceStub(2);
+        CpuTraceStub trace3 = new CpuTraceStub(null);
+        try {
+            KernelEventDispatcher dispatcher = new KernelEventDispatcher(LAYOUT);
+            for (int i = 0; i < 10; i++) {
+                assertEquals(Integer.valueOf(1), dispatcher.getCpu(createEvent(trace1, LAYOUT.eventSchedSwitch())));
+                assertEquals(Integer.valueOf(2), dispatcher.getCpu(createEvent(trace2, LAYOUT.eventSchedSwitch())));
+                assertNull(dispatcher.getCpu(createEvent(trace3, LAYOUT.eventSchedSwitch())));
+            }
+            assertEquals(1, trace1.fNbLookups);
+            assertEquals(1, trace2.fNbLookups);
+            assertEquals(1, trace3.fNbLookups);
+        } finally {
+            trace1.dispose();
+            trace2.dispose();
+            trace3.dispose();
+        }
+    }
+}
@@ -14,6 +14,8 @@ package org.eclipse.tracecompass.analysis.os.linux.core.cpuusage;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -21,12 +23,16 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.kernelanalysis.Attributes;
 import org.eclipse.tracecompass.analysis.os.linux.core.kernelanalysis.KernelAnalysis;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelTrace;
 import org.eclipse.tracecompass.internal.analysis.os.linux.core.Activator;
+import org.eclipse.tracecompass.internal.analysis.os.linux.core.cpuusage.CpuUsageIndex;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.StateSystemUtils;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
@@ -42,6 +48,11 @@ import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
  * This analysis module computes the CPU usage of a system from a kernel trace.
  * It requires the LTTng Kernel analysis module to have accurate CPU usage data.
  *
+ * If the kernel analysis module already computes the CPU usage (see
+ * {@link KernelAnalysis#PARAM_CPU_USAGE}), this module does not read the trace
+ * and its state system is the kernel one, where the cumulative times of each
+ * CPU are under the {@link Attributes#CPU_USAGE} attribute.
+ *
  * @author Geneviève Bastien
  */
 public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
@@ -56,6 +67,12 @@ public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
     /** Idle process thread ID */
     public static final String TID_ZERO = "0"; //$NON-NLS-1$
 
+    /** Value of the CPU or thread parameters to include them all */
+    public static final int ANY = CpuUsageIndex.ANY;
+
+    /* Built once the state system is complete */
+    private volatile @Nullable CpuUsageIndex fUsageIndex = null;
+
     @Override
     protected ITmfStateProvider createStateProvider() {
         ITmfTrace trace = checkNotNull(getTrace());
@@ -98,162 +115,78 @@ public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
     }
 
     /**
-     * Get a map of time spent on CPU by various threads during a time range.
-     *
-     * @param start
-     *            Start time of requested range
-     * @param end
-     *            End time of requested range
-     * @return A map of TID -> time spent on CPU in the [start, end] interval
+     * Get the kernel analysis module of the trace, if it also computes the
+     * CPU usage. In that case, this analysis does not read the trace and uses
+     * the kernel state system instead of its own.
      */
-    public Map<String, Long> getCpuUsageInRange(long start, long end) {
-        Map<String, Long> map = new HashMap<>();
-        Map<String, Long> totalMap = new HashMap<>();
-
+    private @Nullable KernelAnalysis getFusedKernelModule() {
         ITmfTrace trace = getTrace();
-        ITmfStateSystem cpuSs = getStateSystem();
-        if (trace == null || cpuSs == null) {
-            return map;
+        if (trace == null) {
+            return null;
         }
-        ITmfStateSystem kernelSs = TmfStateSystemAnalysisModule.getStateSystem(trace, KernelAnalysis.ID);
-        if (kernelSs == null) {
-            return map;
+        KernelAnalysis kernelModule = TmfTraceUtils.getAnalysisModuleOfClass(trace, KernelAnalysis.class, KernelAnalysis.ID);
+        if (kernelModule != null && kernelModule.hasCpuUsage()) {
+            return kernelModule;
         }
+        return null;
+    }
 
-        /*
-         * Make sure the start/end times are within the state history, so we
-         * don't get TimeRange exceptions.
-         */
-        long startTime = Math.max(start, cpuSs.getStartTime());
-        startTime = Math.max(startTime, kernelSs.getStartTime());
-        long endTime = Math.min(end, cpuSs.getCurrentEndTime());
-        endTime = Math.min(endTime, kernelSs.getCurrentEndTime());
-        long totalTime = 0;
-        if (endTime < startTime) {
-            return map;
+    @Override
+    protected boolean executeAnalysis(@Nullable IProgressMonitor monitor) {
+        KernelAnalysis kernelModule = getFusedKernelModule();
+        if (kernelModule == null) {
+            return super.executeAnalysis(monitor);
         }
+        /* The kernel analysis was scheduled as a dependent analysis */
+        kernelModule.waitForInitialization();
+        return (monitor == null || !monitor.isCanceled());
+    }
 
-        try {
-            /* Get the list of quarks for each CPU and CPU's TIDs */
-            int cpusNode = cpuSs.getQuarkAbsolute(Attributes.CPUS);
-            Map<Integer, List<Integer>> tidsPerCpu = new HashMap<>();
-            for (int cpuNode : cpuSs.getSubAttributes(cpusNode, false)) {
-                tidsPerCpu.put(cpuNode, cpuSs.getSubAttributes(cpuNode, false));
-            }
-
-            /* Query full states at start and end times */
-            List<ITmfStateInterval> kernelEndState = kernelSs.queryFullState(endTime);
-            List<ITmfStateInterval> endState = cpuSs.queryFullState(endTime);
-            List<ITmfStateInterval> kernelStartState = kernelSs.queryFullState(startTime);
-            List<ITmfStateInterval> startState = cpuSs.queryFullState(startTime);
-
-            long countAtStart, countAtEnd;
-
-            for (Entry<Integer, List<Integer>> entry : tidsPerCpu.entrySet()) {
-                int cpuNode = entry.getKey();
-                List<Integer> tidNodes = entry.getValue();
-
-                String curCpuName = cpuSs.getAttributeName(cpuNode);
-                long cpuTotal = 0;
-
-                /* Get the quark of the thread running on this CPU */
-                int currentThreadQuark = kernelSs.getQuarkAbsolute(Attributes.CPUS, curCpuName, Attributes.CURRENT_THREAD);
-                /* Get the currently running thread on this CPU */
-                int startThread = kernelStartState.get(currentThreadQuark).getStateValue().unboxInt();
-                int endThread = kernelEndState.get(currentThreadQuark).getStateValue().unboxInt();
-
-                for (int tidNode : tidNodes) {
-                    String curTidName = cpuSs.getAttributeName(tidNode);
-                    if (curTidName == null) {
-                        continue;
-                    }
-                    int tid = Integer.parseInt(curTidName);
-
-                    countAtEnd = endState.get(tidNode).getStateValue().unboxLong();
-                    countAtStart = startState.get(tidNode).getStateValue().unboxLong();
-                    if (countAtStart == -1) {
-                        countAtStart = 0;
-                    }
-                    if (countAtEnd == -1) {
-                        countAtEnd = 0;
-                    }
-
-                    /*
-                     * Interpolate start and end time of threads running at
-                     * those times
-                     */
-                    if (tid == startThread || startThread == -1) {
-                        long runningTime = kernelStartState.get(currentThreadQuark).getEndTime() - kernelStartState.get(currentThreadQuark).getStartTime();
-                        long runningEnd = kernelStartState.get(currentThreadQuark).getEndTime();
-
-                        countAtStart = interpolateCount(countAtStart, startTime, runningEnd, runningTime);
-                    }
-                    if (tid == endThread) {
-                        long runningTime = kernelEndState.get(currentThreadQuark).getEndTime() - kernelEndState.get(currentThreadQuark).getStartTime();
-                        long runningEnd = kernelEndState.get(currentThreadQuark).getEndTime();
-
-                        countAtEnd = interpolateCount(countAtEnd, endTime, runningEnd, runningTime);
-                    }
-                    /*
-                     * If startThread is -1, we made the hypothesis that the
-                     * process running at start was the current one. If the
-                     * count is negative, we were wrong in this hypothesis. Also
-                     * if the time at end is 0, it either means the process
-                     * hasn't been on the CPU or that we still don't know who is
-                     * running. In both cases, that invalidates the hypothesis.
-                     */
-                    if ((startThread == -1) && ((countAtEnd - countAtStart < 0) || (countAtEnd == 0))) {
-                        countAtStart = 0;
-                    }
-
-                    long currentCount = countAtEnd - countAtStart;
-                    if (currentCount < 0) {
-                        Activator.getDefault().logWarning(checkNotNull(String.format("Negative count: start %d, end %d", countAtStart, countAtEnd))); //$NON-NLS-1$
-                        currentCount = 0;
-                    } else if (currentCount > endTime - startTime) {
-                        Activator.getDefault().logWarning(checkNotNull(String.format("CPU Usage: Spent more time on CPU than allowed: %s spent %d when max should be %d", curTidName, currentCount, endTime - startTime))); //$NON-NLS-1$
-                        currentCount = 0;
-                    }
-                    cpuTotal += currentCount;
-                    map.put(curCpuName + SPLIT_STRING + curTidName, currentCount);
-                    addToMap(totalMap, curTidName, currentCount);
-                    totalTime += (currentCount);
-                }
-                map.put(curCpuName, cpuTotal);
-            }
-
-            /* Add the totals to the map */
-            for (Entry<String, Long> entry : totalMap.entrySet()) {
-                map.put(TOTAL + SPLIT_STRING + entry.getKey(), entry.getValue());
-            }
-            map.put(TOTAL, totalTime);
+    @Override
+    public @Nullable ITmfStateSystem getStateSystem() {
+        KernelAnalysis kernelModule = getFusedKernelModule();
+        if (kernelModule != null) {
+            return kernelModule.getStateSystem();
+        }
+        return super.getStateSystem();
+    }
 
-        } catch (TimeRangeException | AttributeNotFoundException e) {
-            /*
-             * Assume there is no events or the attribute does not exist yet,
-             * nothing will be put in the map.
-             */
-        } catch (StateValueTypeException | StateSystemDisposedException e) {
-            /*
-             * These other exception types would show a logic problem, so they
-             * should not happen.
-             */
-            Activator.getDefault().logError("Error getting CPU usage in a time range", e); //$NON-NLS-1$
+    @Override
+    public void waitForInitialization() {
+        KernelAnalysis kernelModule = getFusedKernelModule();
+        if (kernelModule != null) {
+            kernelModule.waitForInitialization();
+            return;
         }
+        super.waitForInitialization();
+    }
 
-        return map;
+    /**
+     * Get a map of time spent on CPU by various threads during a time range.
+     *
+     * @param start
+     *            Start time of requested range
+     * @param end
+     *            End time of requested range
+     * @return A map of TID -> time spent on CPU in the [start, end] interval
+     */
+    public Map<String, Long> getCpuUsageInRange(long start, long end) {
+        return getCpuUsageInRange(null, start, end);
     }
 
     /**
      * Get a map of time spent on the given CPU by various threads during a time range.
      *
+     * @param dCpuNode
+     *            The quarks of the requested CPUs, in the state system of
+     *            this analysis
      * @param start
      *            Start time of requested range
      * @param end
      *            End time of requested range
      * @return A map of TID -> time spent on the given CPU in the [start, end] interval
      */
-    public Map<String, Long> getCpuUsageInRange(Integer[] dCpuNode, long start, long end) {
+    public Map<String, Long> getCpuUsageInRange(@Nullable Integer[] dCpuNode, long start, long end) {
         Map<String, Long> map = new HashMap<>();
         Map<String, Long> totalMap = new HashMap<>();
 
@@ -266,13 +199,20 @@ public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
         try {
             int cpusNode = cpuSs.getQuarkAbsolute(Attributes.CPUS);
             List<Integer> cpuNodes = cpuSs.getSubAttributes(cpusNode, false);
-
-            if (!validNodes(dCpuNode, cpuNodes)) {
-                Activator.getDefault().logError("Error getting CPU usage, at least one of the requested cpu's is invalid"); //$NON-NLS-1$
-                return map;
+            if (dCpuNode != null) {
+                if (!validNodes(dCpuNode, cpuNodes)) {
+                    Activator.getDefault().logError("Error getting CPU usage, at least one of the requested cpu's is invalid"); //$NON-NLS-1$
+                    return map;
+                }
+                cpuNodes = Arrays.asList(dCpuNode);
             }
 
-            ITmfStateSystem kernelSs = TmfStateSystemAnalysisModule.getStateSystem(trace, KernelAnalysis.ID);
+            /*
+             * When the kernel analysis computes the CPU usage, both are in the
+             * same state system.
+             */
+            boolean fused = (getFusedKernelModule() != null);
+            ITmfStateSystem kernelSs = (fused ? cpuSs : TmfStateSystemAnalysisModule.getStateSystem(trace, KernelAnalysis.ID));
             if (kernelSs == null) {
                 return map;
             }
@@ -292,15 +232,15 @@ public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
 
             /* Get the list of quarks for each CPU and CPU's TIDs */
             Map<Integer, List<Integer>> tidsPerCpu = new HashMap<>();
-            for (int cpuNode : dCpuNode) {
-                tidsPerCpu.put(cpuNode, cpuSs.getSubAttributes(cpuNode, false));
+            for (int cpuNode : cpuNodes) {
+                tidsPerCpu.put(cpuNode, getThreadNodes(cpuSs, cpuNode, fused));
             }
 
             /* Query full states at start and end times */
-            List<ITmfStateInterval> kernelEndState = kernelSs.queryFullState(endTime);
             List<ITmfStateInterval> endState = cpuSs.queryFullState(endTime);
-            List<ITmfStateInterval> kernelStartState = kernelSs.queryFullState(startTime);
             List<ITmfStateInterval> startState = cpuSs.queryFullState(startTime);
+            List<ITmfStateInterval> kernelEndState = (fused ? endState : kernelSs.queryFullState(endTime));
+            List<ITmfStateInterval> kernelStartState = (fused ? startState : kernelSs.queryFullState(startTime));
 
             long countAtStart, countAtEnd;
 
@@ -360,10 +300,10 @@ public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
 
                     long currentCount = countAtEnd - countAtStart;
                     if (currentCount < 0) {
-                        Activator.getDefault().logWarning(String.format("Negative count: start %d, end %d", countAtStart, countAtEnd)); //$NON-NLS-1$
+                        Activator.getDefault().logWarning(checkNotNull(String.format("Negative count: start %d, end %d", countAtStart, countAtEnd))); //$NON-NLS-1$
                         currentCount = 0;
                     } else if (currentCount > endTime - startTime) {
-                        Activator.getDefault().logWarning(String.format("CPU Usage: Spent more time on CPU than allowed: %s spent %d when max should be %d", curTidName, currentCount, endTime - startTime)); //$NON-NLS-1$
+                        Activator.getDefault().logWarning(checkNotNull(String.format("CPU Usage: Spent more time on CPU than allowed: %s spent %d when max should be %d", curTidName, currentCount, endTime - startTime))); //$NON-NLS-1$
                         currentCount = 0;
                     }
                     cpuTotal += currentCount;
@@ -396,6 +336,159 @@ public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
         return map;
     }
 
+    /**
+     * Get the time spent on CPU during consecutive time ranges, like the
+     * points of a chart. Once the analysis is complete, each range only costs
+     * a few lookups.
+     *
+     * @param cpu
+     *            The CPU number, or {@link #ANY} for all of them
+     * @param tid
+     *            The thread ID, or {@link #ANY} for all the threads except the
+     *            idle one
+     * @param times
+     *            The bounds of the time ranges, in ascending order. The range
+     *            i goes from times[i] to times[i + 1].
+     * @return The time spent on CPU in each range, one less than the number
+     *         of bounds
+     */
+    public long[] getCpuUsageInBuckets(int cpu, int tid, long[] times) {
+        CpuUsageIndex index = getUsageIndex();
+        if (index != null) {
+            return index.getUsage(cpu, tid, times);
+        }
+
+        /* The state system is still being built, query each range */
+        long[] usage = new long[Math.max(0, times.length - 1)];
+        ITmfStateSystem ss = getStateSystem();
+        if (ss == null) {
+            return usage;
+        }
+        Integer[] cpuNodes = null;
+        String prefix = TOTAL;
+        if (cpu != ANY) {
+            prefix = String.valueOf(cpu);
+            try {
+                cpuNodes = new Integer[] { ss.getQuarkAbsolute(Attributes.CPUS, prefix) };
+            } catch (AttributeNotFoundException e) {
+                /* Nothing ran on this CPU yet */
+                return usage;
+            }
+        }
+        for (int i = 0; i < usage.length; i++) {
+            Map<String, Long> map = getCpuUsageInRange(cpuNodes, times[i], times[i + 1]);
+            if (tid == ANY) {
+                usage[i] = getValue(map, prefix) - getValue(map, prefix + SPLIT_STRING + TID_ZERO);
+            } else {
+                usage[i] = getValue(map, prefix + SPLIT_STRING + tid);
+            }
+        }
+        return usage;
+    }
+
+    private static long getValue(Map<String, Long> map, String key) {
+        Long value = map.get(key);
+        return (value == null ? 0 : value);
+    }
+
+    /*
+     * Get the index of the time spent on CPU by the threads, or null if the
+     * state system is not complete yet.
+     */
+    private @Nullable CpuUsageIndex getUsageIndex() {
+        CpuUsageIndex index = fUsageIndex;
+        if (index != null) {
+            return index;
+        }
+        ITmfTrace trace = getTrace();
+        ITmfStateSystem cpuSs = getStateSystem();
+        if (trace == null || cpuSs == null) {
+            return null;
+        }
+        boolean fused = (getFusedKernelModule() != null);
+        ITmfStateSystem kernelSs = (fused ? cpuSs : TmfStateSystemAnalysisModule.getStateSystem(trace, KernelAnalysis.ID));
+        if (kernelSs == null || !cpuSs.waitUntilBuilt(0) || !kernelSs.waitUntilBuilt(0)) {
+            return null;
+        }
+        synchronized (this) {
+            index = fUsageIndex;
+            if (index == null) {
+                index = buildUsageIndex(cpuSs, kernelSs, fused);
+                fUsageIndex = index;
+            }
+            return index;
+        }
+    }
+
+    /*
+     * Find when each thread ran on each CPU. A cumulative time changes when
+     * the thread is scheduled out, and the difference with its previous value
+     * is how long it ran until then. The threads running at the end of the
+     * trace are found in the kernel state system.
+     */
+    private static @Nullable CpuUsageIndex buildUsageIndex(ITmfStateSystem cpuSs, ITmfStateSystem kernelSs, boolean fused) {
+        CpuUsageIndex.Builder builder = new CpuUsageIndex.Builder();
+        long startTime = Math.max(cpuSs.getStartTime(), kernelSs.getStartTime());
+        long endTime = Math.min(cpuSs.getCurrentEndTime(), kernelSs.getCurrentEndTime());
+        try {
+            if (endTime < startTime) {
+                return builder.build();
+            }
+            int cpusNode = cpuSs.getQuarkAbsolute(Attributes.CPUS);
+            for (int cpuNode : cpuSs.getSubAttributes(cpusNode, false)) {
+                String cpuName = cpuSs.getAttributeName(cpuNode);
+                int cpu = Integer.parseInt(cpuName);
+                for (int tidNode : getThreadNodes(cpuSs, cpuNode, fused)) {
+                    int tid = Integer.parseInt(cpuSs.getAttributeName(tidNode));
+                    long previous = 0;
+                    for (ITmfStateInterval interval : StateSystemUtils.queryHistoryRange(cpuSs, tidNode, startTime, endTime)) {
+                        if (interval.getStateValue().isNull()) {
+                            continue;
+                        }
+                        long cumulativeTime = interval.getStateValue().unboxLong();
+                        long scheduledOut = interval.getStartTime();
+                        builder.addRun(cpu, tid, scheduledOut - (cumulativeTime - previous), scheduledOut);
+                        previous = cumulativeTime;
+                    }
+                }
+
+                try {
+                    int currentThreadQuark = kernelSs.getQuarkAbsolute(Attributes.CPUS, cpuName, Attributes.CURRENT_THREAD);
+                    ITmfStateInterval current = kernelSs.querySingleState(endTime, currentThreadQuark);
+                    if (!current.getStateValue().isNull()) {
+                        builder.addRun(cpu, current.getStateValue().unboxInt(), current.getStartTime(), endTime);
+                    }
+                } catch (AttributeNotFoundException e) {
+                    /* The running thread of this CPU is not known */
+                }
+            }
+        } catch (AttributeNotFoundException e) {
+            /* No thread ran yet */
+        } catch (NumberFormatException | StateValueTypeException | StateSystemDisposedException e) {
+            Activator.getDefault().logError("Error building the CPU usage index", e); //$NON-NLS-1$
+            return null;
+        }
+        return builder.build();
+    }
+
+    /*
+     * Get the quarks of the cumulative times of the threads on a CPU. In the
+     * kernel state system, they are under the CPU usage attribute of the CPU.
+     */
+    private static List<Integer> getThreadNodes(ITmfStateSystem ss, int cpuNode, boolean fused)
+            throws AttributeNotFoundException {
+        if (!fused) {
+            return ss.getSubAttributes(cpuNode, false);
+        }
+        try {
+            int cpuUsageNode = ss.getQuarkRelative(cpuNode, Attributes.CPU_USAGE);
+            return ss.getSubAttributes(cpuUsageNode, false);
+        } catch (AttributeNotFoundException e) {
+            /* No thread was scheduled out of this CPU yet */
+            return checkNotNull(Collections.<Integer> emptyList());
+        }
+    }
+
     private static boolean validNodes(Integer[] nodesSubset, List<Integer> nodes) {
         // Validate that all nodes in the subset are contained in the full list of nodes
         for (Integer node : nodesSubset) {
@@ -35,6 +35,7 @@ public interface Attributes {
     /* Sub-attributes of the CPU nodes */
     static final String CURRENT_THREAD = "Current_thread";
     static final String STATUS = "Status";
+    static final String CPU_USAGE = "CPU_usage";
 
     /* Sub-attributes of the Thread nodes */
     static final String PPID = "PPID";
@@ -42,6 +42,13 @@ public class KernelAnalysis extends TmfStateSystemAnalysisModule {
     /** The ID of this analysis module */
     public static final String ID = "org.eclipse.tracecompass.analysis.os.linux.kernel"; //$NON-NLS-1$
 
+    /**
+     * Name of the parameter to also compute the CPU usage while building the
+     * kernel state system ("true" or "false"). The CPU usage analysis then
+     * uses it instead of reading the trace again.
+     */
+    public static final String PARAM_CPU_USAGE = "cpu_usage"; //$NON-NLS-1$
+
     /*
      * TODO: Decide which events should be mandatory for the analysis, once the
      * appropriate error messages and session setup are in place.
@@ -96,7 +103,17 @@ public class KernelAnalysis extends TmfStateSystemAnalysisModule {
             layout = IKernelAnalysisEventLayout.DEFAULT_LAYOUT;
         }
 
-        return new KernelStateProvider(trace, layout);
+        return new KernelStateProvider(trace, layout, hasCpuUsage());
+    }
+
+    /**
+     * Check if the CPU usage is computed along with the kernel state system,
+     * as set by the {@link #PARAM_CPU_USAGE} parameter
+     *
+     * @return True if the state system contains the CPU usage
+     */
+    public boolean hasCpuUsage() {
+        return Boolean.parseBoolean(String.valueOf(getParameter(PARAM_CPU_USAGE)));
     }
 
     @Override
@@ -105,6 +122,15 @@ public class KernelAnalysis extends TmfStateSystemAnalysisModule {
         return HISTORY_TREE_FILE_NAME;
     }
 
+    /**
+     * The views show the history of each thread and CPU, so the kernel
+     * history is also indexed by attribute.
+     */
+    @Override
+    protected boolean useAttributeIndex() {
+        return true;
+    }
+
     @Override
     protected String getFullHelpText() {
         return NonNullUtils.nullToEmptyString(Messages.LttngKernelAnalysisModule_Help);
@@ -14,10 +14,10 @@ package org.eclipse.tracecompass.analysis.os.linux.core.kernelanalysis;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
-import java.util.Map;
-
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
+import org.eclipse.tracecompass.internal.analysis.os.linux.core.cpuusage.CpuUsageAccumulator;
+import org.eclipse.tracecompass.internal.analysis.os.linux.core.kernelanalysis.KernelEventDispatcher;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
@@ -26,12 +26,8 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
-import org.eclipse.tracecompass.tmf.core.event.aspect.TmfCpuAspect;
 import org.eclipse.tracecompass.tmf.core.statesystem.AbstractTmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
-import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
-
-import com.google.common.collect.ImmutableMap;
 
 /**
  * This is the state change input plugin for TMF's state system which handles
@@ -54,25 +50,19 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
      */
     private static final int VERSION = 5;
 
-    private static final int IRQ_HANDLER_ENTRY_INDEX = 1;
-    private static final int IRQ_HANDLER_EXIT_INDEX = 2;
-    private static final int SOFT_IRQ_ENTRY_INDEX = 3;
-    private static final int SOFT_IRQ_EXIT_INDEX = 4;
-    private static final int SOFT_IRQ_RAISE_INDEX = 5;
-    private static final int SCHED_SWITCH_INDEX = 6;
-    private static final int SCHED_PROCESS_FORK_INDEX = 7;
-    private static final int SCHED_PROCESS_EXIT_INDEX = 8;
-    private static final int SCHED_PROCESS_FREE_INDEX = 9;
-    private static final int STATEDUMP_PROCESS_STATE_INDEX = 10;
-    private static final int SCHED_WAKEUP_INDEX = 11;
-
+    /**
+     * Added to the version when the CPU usage is stored in the history, so
+     * that histories built with and without it are not mixed up.
+     */
+    private static final int CPU_USAGE_VERSION_FLAG = 0x10000;
 
     // ------------------------------------------------------------------------
     // Fields
     // ------------------------------------------------------------------------
 
-    private final Map<String, Integer> fEventNames;
+    private final KernelEventDispatcher fDispatcher;
     private final IKernelAnalysisEventLayout fLayout;
+    private final @Nullable CpuUsageAccumulator fCpuUsage;
 
     // ------------------------------------------------------------------------
     // Constructor
@@ -88,38 +78,31 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
      *            depending on the tracer implementation.
      */
     public KernelStateProvider(ITmfTrace trace, IKernelAnalysisEventLayout layout) {
-        super(trace, "Kernel"); //$NON-NLS-1$
-        fLayout = layout;
-        fEventNames = buildEventNames(layout);
+        this(trace, layout, false);
     }
 
-    // ------------------------------------------------------------------------
-    // Event names management
-    // ------------------------------------------------------------------------
-
-    private static Map<String, Integer> buildEventNames(IKernelAnalysisEventLayout layout) {
-        ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
-
-        builder.put(layout.eventIrqHandlerEntry(), IRQ_HANDLER_ENTRY_INDEX);
-        builder.put(layout.eventIrqHandlerExit(), IRQ_HANDLER_EXIT_INDEX);
-        builder.put(layout.eventSoftIrqEntry(), SOFT_IRQ_ENTRY_INDEX);
-        builder.put(layout.eventSoftIrqExit(), SOFT_IRQ_EXIT_INDEX);
-        builder.put(layout.eventSoftIrqRaise(), SOFT_IRQ_RAISE_INDEX);
-        builder.put(layout.eventSchedSwitch(), SCHED_SWITCH_INDEX);
-        builder.put(layout.eventSchedProcessFork(), SCHED_PROCESS_FORK_INDEX);
-        builder.put(layout.eventSchedProcessExit(), SCHED_PROCESS_EXIT_INDEX);
-        builder.put(layout.eventSchedProcessFree(), SCHED_PROCESS_FREE_INDEX);
-
-        final String eventStatedumpProcessState = layout.eventStatedumpProcessState();
-        if (eventStatedumpProcessState != null) {
-            builder.put(eventStatedumpProcessState, STATEDUMP_PROCESS_STATE_INDEX);
-        }
-
-        for (String eventSchedWakeup : layout.eventsSchedWakeup()) {
-            builder.put(eventSchedWakeup, SCHED_WAKEUP_INDEX);
-        }
-
-        return checkNotNull(builder.build());
+    /**
+     * Instantiate a new state provider plugin, which can also compute the CPU
+     * usage in the same pass on the trace.
+     *
+     * The cumulative time spent on each CPU by a thread is then stored under
+     * the {@link Attributes#CPU_USAGE} attribute of the CPU, the same way the
+     * {@link org.eclipse.tracecompass.analysis.os.linux.core.cpuusage.KernelCpuUsageStateProvider}
+     * stores it under the CPU itself.
+     *
+     * @param trace
+     *            The LTTng 2.0 kernel trace directory
+     * @param layout
+     *            The event layout to use for this state provider. Usually
+     *            depending on the tracer implementation.
+     * @param cpuUsage
+     *            Whether to store the CPU usage in the state system
+     */
+    public KernelStateProvider(ITmfTrace trace, IKernelAnalysisEventLayout layout, boolean cpuUsage) {
+        super(trace, "Kernel"); //$NON-NLS-1$
+        fLayout = layout;
+        fDispatcher = new KernelEventDispatcher(layout);
+        fCpuUsage = (cpuUsage ? new CpuUsageAccumulator(trace.getStartTime().getValue()) : null);
     }
 
     // ------------------------------------------------------------------------
@@ -128,7 +111,7 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
 
     @Override
     public int getVersion() {
-        return VERSION;
+        return (fCpuUsage == null ? VERSION : VERSION + CPU_USAGE_VERSION_FLAG);
     }
 
     @Override
@@ -139,7 +122,7 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
 
     @Override
     public KernelStateProvider getNewInstance() {
-        return new KernelStateProvider(this.getTrace(), fLayout);
+        return new KernelStateProvider(this.getTrace(), fLayout, fCpuUsage != null);
     }
 
     @Override
@@ -148,15 +131,13 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
             return;
         }
 
-        Object cpuObj = TmfTraceUtils.resolveEventAspectOfClassForEvent(event.getTrace(), TmfCpuAspect.class, event);
-        if (cpuObj == null) {
+        Integer cpu = fDispatcher.getCpu(event);
+        if (cpu == null) {
             /* We couldn't find any CPU information, ignore this event */
             return;
         }
-        Integer cpu = (Integer) cpuObj;
 
-        final String eventName = event.getType().getName();
-        final long ts = event.getTimestamp().getValue();
+        final long ts = event.getTimestampNanos();
 
         try {
             final ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
@@ -177,11 +158,9 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
              * Feed event to the history system if it's known to cause a state
              * transition.
              */
-            Integer idx = fEventNames.get(eventName);
-            int intval = (idx == null ? -1 : idx.intValue());
-            switch (intval) {
+            switch (fDispatcher.getEventType(event)) {
 
-            case IRQ_HANDLER_ENTRY_INDEX:
+            case KernelEventDispatcher.IRQ_HANDLER_ENTRY:
             {
                 Integer irqId = ((Long) event.getContent().getField(fLayout.fieldIrq()).getValue()).intValue();
 
@@ -203,7 +182,7 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
             }
                 break;
 
-            case IRQ_HANDLER_EXIT_INDEX:
+            case KernelEventDispatcher.IRQ_HANDLER_EXIT:
             {
                 Integer irqId = ((Long) event.getContent().getField(fLayout.fieldIrq()).getValue()).intValue();
 
@@ -220,7 +199,7 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
             }
                 break;
 
-            case SOFT_IRQ_ENTRY_INDEX:
+            case KernelEventDispatcher.SOFT_IRQ_ENTRY:
             {
                 Integer softIrqId = ((Long) event.getContent().getField(fLayout.fieldVec()).getValue()).intValue();
 
@@ -242,7 +221,7 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
             }
                 break;
 
-            case SOFT_IRQ_EXIT_INDEX:
+            case KernelEventDispatcher.SOFT_IRQ_EXIT:
             {
                 Integer softIrqId = ((Long) event.getContent().getField(fLayout.fieldVec()).getValue()).intValue();
 
@@ -259,7 +238,7 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
             }
                 break;
 
-            case SOFT_IRQ_RAISE_INDEX:
+            case KernelEventDispatcher.SOFT_IRQ_RAISE:
             /* Fields: int32 vec */
             {
                 Integer softIrqId = ((Long) event.getContent().getField(fLayout.fieldVec()).getValue()).intValue();
@@ -272,7 +251,7 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
             }
                 break;
 
-            case SCHED_SWITCH_INDEX:
+            case KernelEventDispatcher.SCHED_SWITCH:
             {
                 ITmfEventField content = event.getContent();
                 Integer prevTid = ((Long) content.getField(fLayout.fieldPrevTid()).getValue()).intValue();
@@ -323,10 +302,17 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
                 }
                 quark = ss.getQuarkRelativeAndAdd(currentCPUNode, Attributes.STATUS);
                 ss.modifyAttribute(ts, value, quark);
+
+                /* Account the time the previous process spent on this CPU */
+                CpuUsageAccumulator cpuUsage = fCpuUsage;
+                if (cpuUsage != null) {
+                    quark = ss.getQuarkRelativeAndAdd(currentCPUNode, Attributes.CPU_USAGE);
+                    cpuUsage.schedSwitch(ss, ts, cpu, quark, prevTid);
+                }
             }
                 break;
 
-            case SCHED_PROCESS_FORK_INDEX:
+            case KernelEventDispatcher.SCHED_PROCESS_FORK:
             {
                 ITmfEventField content = event.getContent();
                 // String parentProcessName = (String) event.getFieldValue("parent_comm");
@@ -369,10 +355,10 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
             }
                 break;
 
-            case SCHED_PROCESS_EXIT_INDEX:
+            case KernelEventDispatcher.SCHED_PROCESS_EXIT:
                 break;
 
-            case SCHED_PROCESS_FREE_INDEX:
+            case KernelEventDispatcher.SCHED_PROCESS_FREE:
             {
                 Integer tid = ((Long) event.getContent().getField(fLayout.fieldTid()).getValue()).intValue();
                 /*
@@ -384,7 +370,7 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
             }
                 break;
 
-            case STATEDUMP_PROCESS_STATE_INDEX:
+            case KernelEventDispatcher.STATEDUMP_PROCESS_STATE:
                 /* LTTng-specific */
             {
                 ITmfEventField content = event.getContent();
@@ -437,7 +423,7 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
             }
                 break;
 
-            case SCHED_WAKEUP_INDEX:
+            case KernelEventDispatcher.SCHED_WAKEUP:
             {
                 final int tid = ((Long) event.getContent().getField(fLayout.fieldTid()).getValue()).intValue();
                 final int threadNode = ss.getQuarkRelativeAndAdd(getNodeThreads(ss), String.valueOf(tid));
@@ -458,47 +444,47 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
             }
                 break;
 
-            default:
-            /* Other event types not covered by the main switch */
+            case KernelEventDispatcher.SYSCALL_ENTRY:
             {
-                if (eventName.startsWith(fLayout.eventSyscallEntryPrefix())
-                        || eventName.startsWith(fLayout.eventCompatSyscallEntryPrefix())) {
-
-                    /* Assign the new system call to the process */
-                    quark = ss.getQuarkRelativeAndAdd(currentThreadNode, Attributes.SYSTEM_CALL);
-                    value = TmfStateValue.newValueString(eventName);
-                    ss.modifyAttribute(ts, value, quark);
-
-                    /* Put the process in system call mode */
-                    quark = ss.getQuarkRelativeAndAdd(currentThreadNode, Attributes.STATUS);
-                    value = StateValues.PROCESS_STATUS_RUN_SYSCALL_VALUE;
-                    ss.modifyAttribute(ts, value, quark);
-
-                    /* Put the CPU in system call (kernel) mode */
-                    quark = ss.getQuarkRelativeAndAdd(currentCPUNode, Attributes.STATUS);
-                    value = StateValues.CPU_STATUS_RUN_SYSCALL_VALUE;
-                    ss.modifyAttribute(ts, value, quark);
+                /* Assign the new system call to the process */
+                quark = ss.getQuarkRelativeAndAdd(currentThreadNode, Attributes.SYSTEM_CALL);
+                value = TmfStateValue.newValueString(event.getType().getName());
+                ss.modifyAttribute(ts, value, quark);
 
-                } else if (eventName.startsWith(fLayout.eventSyscallExitPrefix())) {
+                /* Put the process in system call mode */
+                quark = ss.getQuarkRelativeAndAdd(currentThreadNode, Attributes.STATUS);
+                value = StateValues.PROCESS_STATUS_RUN_SYSCALL_VALUE;
+                ss.modifyAttribute(ts, value, quark);
 
-                    /* Clear the current system call on the process */
-                    quark = ss.getQuarkRelativeAndAdd(currentThreadNode, Attributes.SYSTEM_CALL);
-                    value = TmfStateValue.nullValue();
-                    ss.modifyAttribute(ts, value, quark);
+                /* Put the CPU in system call (kernel) mode */
+                quark = ss.getQuarkRelativeAndAdd(currentCPUNode, Attributes.STATUS);
+                value = StateValues.CPU_STATUS_RUN_SYSCALL_VALUE;
+                ss.modifyAttribute(ts, value, quark);
+            }
+                break;
 
-                    /* Put the process' status back to user mode */
-                    quark = ss.getQuarkRelativeAndAdd(currentThreadNode, Attributes.STATUS);
-                    value = StateValues.PROCESS_STATUS_RUN_USERMODE_VALUE;
-                    ss.modifyAttribute(ts, value, quark);
+            case KernelEventDispatcher.SYSCALL_EXIT:
+            {
+                /* Clear the current system call on the process */
+                quark = ss.getQuarkRelativeAndAdd(currentThreadNode, Attributes.SYSTEM_CALL);
+                value = TmfStateValue.nullValue();
+                ss.modifyAttribute(ts, value, quark);
 
-                    /* Put the CPU's status back to user mode */
-                    quark = ss.getQuarkRelativeAndAdd(currentCPUNode, Attributes.STATUS);
-                    value = StateValues.CPU_STATUS_RUN_USERMODE_VALUE;
-                    ss.modifyAttribute(ts, value, quark);
-                }
+                /* Put the process' status back to user mode */
+                quark = ss.getQuarkRelativeAndAdd(currentThreadNode, Attributes.STATUS);
+                value = StateValues.PROCESS_STATUS_RUN_USERMODE_VALUE;
+                ss.modifyAttribute(ts, value, quark);
 
+                /* Put the CPU's status back to user mode */
+                quark = ss.getQuarkRelativeAndAdd(currentCPUNode, Attributes.STATUS);
+                value = StateValues.CPU_STATUS_RUN_USERMODE_VALUE;
+                ss.modifyAttribute(ts, value, quark);
             }
                 break;
+
+            default:
+                /* Other event types do not cause state changes */
+                break;
             } // End of big switch
 
         } catch (AttributeNotFoundException ae) {
@@ -12,9 +12,13 @@
 
 package org.eclipse.tracecompass.analysis.os.linux.core.kernelanalysis;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -27,6 +31,7 @@ import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundExc
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.TmfStateIntervalList;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 
 /**
@@ -223,4 +228,58 @@ public final class KernelThreadInformationProvider {
         return NonNullUtils.checkNotNull(Collections.EMPTY_LIST);
     }
 
+    /**
+     * Get the status intervals of several threads with a resolution. The
+     * threads are queried together, which is faster than getting the
+     * intervals of each thread with
+     * {@link #getStatusIntervalsForThread(KernelAnalysis, Integer, long, long, long, IProgressMonitor)}.
+     *
+     * @param module
+     *            The lttng kernel analysis instance to run this method on
+     * @param threadIds
+     *            The IDs of the threads to get the intervals for
+     * @param start
+     *            The start time of the requested range
+     * @param end
+     *            The end time of the requested range
+     * @param resolution
+     *            The resolution or the minimal time between the requested
+     *            intervals. If interval times are smaller than resolution, only
+     *            the first interval is returned, the others are ignored.
+     * @param monitor
+     *            A progress monitor for this task
+     * @return The lists of status intervals of the threads, by thread ID. The
+     *         threads which are not found are not in the map, and it is empty
+     *         if the state system is {@code null}.
+     */
+    public static Map<Integer, TmfStateIntervalList> getStatusIntervalsForThreads(KernelAnalysis module, Collection<Integer> threadIds, long start, long end, long resolution, IProgressMonitor monitor) {
+        Map<Integer, TmfStateIntervalList> map = new LinkedHashMap<>();
+        ITmfStateSystem ss = module.getStateSystem();
+        if (ss == null) {
+            return map;
+        }
+
+        List<Integer> foundIds = new ArrayList<>();
+        int[] statusQuarks = new int[threadIds.size()];
+        for (Integer threadId : threadIds) {
+            try {
+                int threadQuark = ss.getQuarkAbsolute(Attributes.THREADS, threadId.toString());
+                statusQuarks[foundIds.size()] = ss.getQuarkRelative(threadQuark, Attributes.STATUS);
+                foundIds.add(threadId);
+            } catch (AttributeNotFoundException e) {
+                /* This thread is not in this analysis */
+            }
+        }
+
+        try {
+            TmfStateIntervalList[] intervals = StateSystemUtils.queryHistoryRange(ss,
+                    Arrays.copyOf(statusQuarks, foundIds.size()),
+                    Math.max(start, ss.getStartTime()), Math.min(end - 1, ss.getCurrentEndTime()), resolution, monitor);
+            for (int i = 0; i < intervals.length; i++) {
+                map.put(foundIds.get(i), intervals[i]);
+            }
+        } catch (AttributeNotFoundException | StateSystemDisposedException | TimeRangeException e) {
+        }
+        return map;
+    }
 }
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.analysis.os.linux.core.cpuusage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+
+/**
+ * Keeps the total time spent on CPU by each thread, from the already decoded
+ * 'sched_switch' events. It is shared by the stand-alone CPU usage state
+ * provider and by the kernel state provider, which can store these values in
+ * the kernel state system while it reads the trace.
+ *
+ * For each CPU, the cumulative time of a thread is stored in an attribute
+ * named after its TID, under a node given by the caller. The value only
+ * changes when the thread is scheduled out.
+ */
+public class CpuUsageAccumulator {
+
+    /* For each CPU, maps the last time a thread was scheduled in */
+    private final Map<Integer, Long> fLastStartTimes = new HashMap<>();
+    private final long fTraceStart;
+
+    /**
+     * Constructor
+     *
+     * @param traceStart
+     *            The start time of the trace, used as the schedule in time of
+     *            the threads that were running when the trace started
+     */
+    public CpuUsageAccumulator(long traceStart) {
+        fTraceStart = traceStart;
+    }
+
+    /**
+     * Add the time spent on a CPU by the thread that is scheduled out
+     *
+     * @param ss
+     *            The state system to write to
+     * @param ts
+     *            The time stamp of the 'sched_switch' event
+     * @param cpu
+     *            The CPU of the event
+     * @param cpuNode
+     *            The quark of the node holding the cumulative times of the
+     *            threads on this CPU
+     * @param prevTid
+     *            The TID of the thread scheduled out
+     * @throws AttributeNotFoundException
+     *             If the CPU node is invalid
+     */
+    public void schedSwitch(ITmfStateSystemBuilder ss, long ts, int cpu, int cpuNode, int prevTid)
+            throws AttributeNotFoundException {
+        /*
+         * This quark contains the value of the cumulative time spent on the
+         * source CPU by the currently running thread
+         */
+        int cumulativeTimeQuark = ss.getQuarkRelativeAndAdd(cpuNode, String.valueOf(prevTid));
+        Long startTime = fLastStartTimes.get(cpu);
+        /*
+         * If start time is null, we haven't seen the start of the process, so
+         * we assume beginning of the trace
+         */
+        if (startTime == null) {
+            startTime = fTraceStart;
+        }
+
+        /*
+         * Modify cumulative time for this CPU/TID combo: The total time
+         * changes when the process is scheduled out. Nothing happens when the
+         * process is scheduled in.
+         */
+        ITmfStateValue value = ss.queryOngoingState(cumulativeTimeQuark);
+        long prevCumulativeTime = Math.max(0, value.unboxLong());
+        long newCumulativeTime = prevCumulativeTime + (ts - startTime);
+
+        value = TmfStateValue.newValueLong(newCumulativeTime);
+        ss.modifyAttribute(ts, value, cumulativeTimeQuark);
+        fLastStartTimes.put(cpu, ts);
+    }
+}
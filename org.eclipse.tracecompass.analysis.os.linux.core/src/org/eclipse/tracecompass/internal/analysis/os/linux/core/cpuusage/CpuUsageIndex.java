@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.analysis.os.linux.core.cpuusage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Time spent on CPU by the threads of a trace, arranged to get the usage in
+ * any time range with a few binary searches.
+ *
+ * For each CPU and thread, the times when the thread ran on the CPU are kept
+ * in sorted arrays, along with the cumulative running time before each of
+ * them. The time spent in a range is then the difference of the cumulative
+ * times at its bounds. The same is kept for each CPU, for all the threads
+ * except the idle one.
+ *
+ * An index is immutable once built, and can be queried from any thread.
+ */
+public final class CpuUsageIndex {
+
+    /** Value of the CPU or thread parameters to include them all */
+    public static final int ANY = -1;
+
+    /** TID of the idle thread, which is not counted for all the threads */
+    private static final int IDLE_TID = 0;
+
+    /** Keys of the series, sorted */
+    private final long[] fKeys;
+    private final long[][] fStarts;
+    private final long[][] fEnds;
+    /** Running time before each run, plus the total at the end */
+    private final long[][] fPrefixSums;
+    /** The CPUs, sorted */
+    private final int[] fCpus;
+
+    private CpuUsageIndex(long[] keys, long[][] starts, long[][] ends, long[][] prefixSums, int[] cpus) {
+        fKeys = keys;
+        fStarts = starts;
+        fEnds = ends;
+        fPrefixSums = prefixSums;
+        fCpus = cpus;
+    }
+
+    private static long getKey(int cpu, int tid) {
+        return ((long) cpu << 32) | (tid & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Builds a {@link CpuUsageIndex} from the times when each thread ran on
+     * each CPU
+     */
+    public static class Builder {
+
+        private final Map<Long, RunList> fRuns = new HashMap<>();
+
+        /**
+         * Add a time range when a thread ran on a CPU. The ranges of a CPU
+         * must not overlap, but can be added in any order.
+         *
+         * @param cpu
+         *            The CPU
+         * @param tid
+         *            The thread
+         * @param start
+         *            The time when the thread was scheduled in
+         * @param end
+         *            The time when the thread was scheduled out
+         */
+        public void addRun(int cpu, int tid, long start, long end) {
+            if (end <= start || cpu < 0) {
+                return;
+            }
+            getRunList(getKey(cpu, tid)).add(start, end);
+            if (tid != IDLE_TID) {
+                getRunList(getKey(cpu, ANY)).add(start, end);
+            }
+        }
+
+        private RunList getRunList(long key) {
+            RunList runs = fRuns.get(key);
+            if (runs == null) {
+                runs = new RunList();
+                fRuns.put(key, runs);
+            }
+            return runs;
+        }
+
+        /**
+         * Build the index
+         *
+         * @return The index of the runs added so far
+         */
+        public CpuUsageIndex build() {
+            long[] keys = new long[fRuns.size()];
+            int i = 0;
+            for (Long key : fRuns.keySet()) {
+                keys[i++] = key;
+            }
+            Arrays.sort(keys);
+
+            long[][] starts = new long[keys.length][];
+            long[][] ends = new long[keys.length][];
+            long[][] prefixSums = new long[keys.length][];
+            int[] cpus = new int[keys.length];
+            int nbCpus = 0;
+            for (i = 0; i < keys.length; i++) {
+                RunList runs = fRuns.get(keys[i]);
+                int size = runs.fSize;
+                starts[i] = Arrays.copyOf(runs.fStarts, size);
+                ends[i] = Arrays.copyOf(runs.fEnds, size);
+                /*
+                 * The runs of a series do not overlap, so sorting the start
+                 * and end times separately keeps them paired.
+                 */
+                Arrays.sort(starts[i]);
+                Arrays.sort(ends[i]);
+                long[] prefixSum = new long[size + 1];
+                for (int j = 0; j < size; j++) {
+                    prefixSum[j + 1] = prefixSum[j] + ends[i][j] - starts[i][j];
+                }
+                prefixSums[i] = prefixSum;
+
+                int cpu = (int) (keys[i] >> 32);
+                if (nbCpus == 0 || cpus[nbCpus - 1] != cpu) {
+                    cpus[nbCpus++] = cpu;
+                }
+            }
+            return new CpuUsageIndex(keys, starts, ends, prefixSums, Arrays.copyOf(cpus, nbCpus));
+        }
+
+        private static class RunList {
+            private long[] fStarts = new long[16];
+            private long[] fEnds = new long[16];
+            private int fSize = 0;
+
+            public void add(long start, long end) {
+                if (fSize == fStarts.length) {
+                    fStarts = Arrays.copyOf(fStarts, fSize * 2);
+                    fEnds = Arrays.copyOf(fEnds, fSize * 2);
+                }
+                fStarts[fSize] = start;
+                fEnds[fSize] = end;
+                fSize++;
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Queries
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the CPUs which ran at least one thread
+     *
+     * @return The CPUs, in ascending order
+     */
+    public int[] getCpus() {
+        return Arrays.copyOf(fCpus, fCpus.length);
+    }
+
+    /**
+     * Get the time spent on CPU during a time range
+     *
+     * @param cpu
+     *            The CPU, or {@link #ANY} for all of them
+     * @param tid
+     *            The thread, or {@link #ANY} for all the threads except the
+     *            idle one
+     * @param start
+     *            The start of the time range
+     * @param end
+     *            The end of the time range
+     * @return The time spent on CPU in the range
+     */
+    public long getUsage(int cpu, int tid, long start, long end) {
+        if (end <= start) {
+            return 0;
+        }
+        if (cpu != ANY) {
+            int series = Arrays.binarySearch(fKeys, getKey(cpu, tid));
+            return (series < 0 ? 0 : getCumulativeTime(series, end) - getCumulativeTime(series, start));
+        }
+        long usage = 0;
+        for (int i : fCpus) {
+            usage += getUsage(i, tid, start, end);
+        }
+        return usage;
+    }
+
+    /**
+     * Get the time spent on CPU during consecutive time ranges, like the
+     * points of a chart
+     *
+     * @param cpu
+     *            The CPU, or {@link #ANY} for all of them
+     * @param tid
+     *            The thread, or {@link #ANY} for all the threads except the
+     *            idle one
+     * @param times
+     *            The bounds of the time ranges, in ascending order. The range
+     *            i goes from times[i] to times[i + 1].
+     * @return The time spent on CPU in each range, one less than the number
+     *         of bounds
+     */
+    public long[] getUsage(int cpu, int tid, long[] times) {
+        long[] usage = new long[Math.max(0, times.length - 1)];
+        if (usage.length == 0) {
+            return usage;
+        }
+        int[] cpus = (cpu == ANY ? fCpus : new int[] { cpu });
+        for (int c : cpus) {
+            int series = Arrays.binarySearch(fKeys, getKey(c, tid));
+            if (series < 0) {
+                continue;
+            }
+            long previous = getCumulativeTime(series, times[0]);
+            for (int i = 0; i < usage.length; i++) {
+                long current = getCumulativeTime(series, times[i + 1]);
+                usage[i] += Math.max(0, current - previous);
+                previous = current;
+            }
+        }
+        return usage;
+    }
+
+    /*
+     * Get the time spent running in a series, from the start of the trace to
+     * the given time.
+     */
+    private long getCumulativeTime(int series, long time) {
+        long[] starts = fStarts[series];
+        int index = Arrays.binarySearch(starts, time);
+        if (index < 0) {
+            /* The last run starting before the time */
+            index = -index - 2;
+            if (index < 0) {
+                return 0;
+            }
+        }
+        return fPrefixSums[series][index] + Math.min(time, fEnds[series][index]) - starts[index];
+    }
+}
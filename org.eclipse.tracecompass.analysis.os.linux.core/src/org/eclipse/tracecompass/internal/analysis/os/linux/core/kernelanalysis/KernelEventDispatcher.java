@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.analysis.os.linux.core.kernelanalysis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfCpuAspect;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+/**
+ * Binds a kernel event layout to the events of a trace, so that the kernel
+ * state providers can dispatch the events with an integer switch.
+ *
+ * The kind of event is resolved once per event name, including the system
+ * call prefixes of the layout, and the CPU aspects are looked up once per
+ * trace instead of being searched for every event.
+ *
+ * An instance is not thread-safe, each state provider should have its own.
+ */
+public class KernelEventDispatcher {
+
+    /** An event not handled by the kernel analyses */
+    public static final int UNKNOWN = 0;
+    /** irq_handler_entry */
+    public static final int IRQ_HANDLER_ENTRY = 1;
+    /** irq_handler_exit */
+    public static final int IRQ_HANDLER_EXIT = 2;
+    /** softirq_entry */
+    public static final int SOFT_IRQ_ENTRY = 3;
+    /** softirq_exit */
+    public static final int SOFT_IRQ_EXIT = 4;
+    /** softirq_raise */
+    public static final int SOFT_IRQ_RAISE = 5;
+    /** sched_switch */
+    public static final int SCHED_SWITCH = 6;
+    /** sched_process_fork */
+    public static final int SCHED_PROCESS_FORK = 7;
+    /** sched_process_exit */
+    public static final int SCHED_PROCESS_EXIT = 8;
+    /** sched_process_free */
+    public static final int SCHED_PROCESS_FREE = 9;
+    /** lttng_statedump_process_state */
+    public static final int STATEDUMP_PROCESS_STATE = 10;
+    /** sched_wakeup and sched_wakeup_new */
+    public static final int SCHED_WAKEUP = 11;
+    /** Any system call entry, including the compat ones */
+    public static final int SYSCALL_ENTRY = 12;
+    /** Any system call exit */
+    public static final int SYSCALL_EXIT = 13;
+
+    private final IKernelAnalysisEventLayout fLayout;
+
+    /** Kind of event of every event name seen so far */
+    private final Map<String, Integer> fEventTypes = new HashMap<>();
+
+    /** CPU aspects of every trace seen so far */
+    private final Map<ITmfTrace, List<ITmfEventAspect>> fCpuAspects = new HashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param layout
+     *            The event layout of the trace
+     */
+    public KernelEventDispatcher(IKernelAnalysisEventLayout layout) {
+        fLayout = layout;
+
+        fEventTypes.put(layout.eventIrqHandlerEntry(), IRQ_HANDLER_ENTRY);
+        fEventTypes.put(layout.eventIrqHandlerExit(), IRQ_HANDLER_EXIT);
+        fEventTypes.put(layout.eventSoftIrqEntry(), SOFT_IRQ_ENTRY);
+        fEventTypes.put(layout.eventSoftIrqExit(), SOFT_IRQ_EXIT);
+        fEventTypes.put(layout.eventSoftIrqRaise(), SOFT_IRQ_RAISE);
+        fEventTypes.put(layout.eventSchedSwitch(), SCHED_SWITCH);
+        fEventTypes.put(layout.eventSchedProcessFork(), SCHED_PROCESS_FORK);
+        fEventTypes.put(layout.eventSchedProcessExit(), SCHED_PROCESS_EXIT);
+        fEventTypes.put(layout.eventSchedProcessFree(), SCHED_PROCESS_FREE);
+
+        final String eventStatedumpProcessState = layout.eventStatedumpProcessState();
+        if (eventStatedumpProcessState != null) {
+            fEventTypes.put(eventStatedumpProcessState, STATEDUMP_PROCESS_STATE);
+        }
+
+        for (String eventSchedWakeup : layout.eventsSchedWakeup()) {
+            fEventTypes.put(eventSchedWakeup, SCHED_WAKEUP);
+        }
+    }
+
+    /**
+     * Get the kind of a kernel event
+     *
+     * @param event
+     *            The event
+     * @return One of the constants of this class, {@link #UNKNOWN} if the
+     *         event is not handled by the kernel analyses
+     */
+    public int getEventType(ITmfEvent event) {
+        String eventName = event.getType().getName();
+        Integer type = fEventTypes.get(eventName);
+        if (type == null) {
+            /* First time we see this event name */
+            type = resolveEventType(eventName);
+            fEventTypes.put(eventName, type);
+        }
+        return type.intValue();
+    }
+
+    private int resolveEventType(String eventName) {
+        if (eventName.startsWith(fLayout.eventSyscallEntryPrefix())
+                || eventName.startsWith(fLayout.eventCompatSyscallEntryPrefix())) {
+            return SYSCALL_ENTRY;
+        }
+        if (eventName.startsWith(fLayout.eventSyscallExitPrefix())) {
+            return SYSCALL_EXIT;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Get the CPU of an event, using the CPU aspects of its trace
+     *
+     * @param event
+     *            The event
+     * @return The CPU, or null if the trace has no CPU information for this
+     *         event
+     */
+    public @Nullable Integer getCpu(ITmfEvent event) {
+        /* The events of an experiment come from different traces */
+        ITmfTrace trace = event.getTrace();
+        List<ITmfEventAspect> cpuAspects = fCpuAspects.get(trace);
+        if (cpuAspects == null) {
+            /* First event of this trace */
+            cpuAspects = new ArrayList<>();
+            for (ITmfEventAspect aspect : trace.getEventAspects()) {
+                if (aspect instanceof TmfCpuAspect) {
+                    cpuAspects.add(aspect);
+                }
+            }
+            fCpuAspects.put(trace, cpuAspects);
+        }
+        for (ITmfEventAspect aspect : cpuAspects) {
+            Object cpu = aspect.resolve(event);
+            if (cpu != null) {
+                return (Integer) cpu;
+            }
+        }
+        return null;
+    }
+}
@@ -13,7 +13,6 @@
 package org.eclipse.tracecompass.analysis.os.linux.ui.views.cpuusage;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -113,73 +112,38 @@ public class CpuUsageXYViewer extends TmfCommonXLineChartViewer {
                 currentEnd = ss.getCurrentEndTime();
 
                 /* Initialize the data */
-                Map<String, Long> cpuUsageMap = fModule.getCpuUsageInRange(Math.max(start, traceStart), Math.min(end, traceEnd));
-                Map<String, String> totalEntries = new HashMap<>();
                 fYValues.clear();
-                fYValues.put(Messages.CpuUsageXYViewer_Total, zeroFill(xvalues.length));
-                String stringSelectedThread = Long.toString(selectedThread);
+                double[] totalValues = zeroFill(xvalues.length);
+                fYValues.put(Messages.CpuUsageXYViewer_Total, totalValues);
+                double[] threadValues = null;
                 if (selectedThread != -1) {
-                    fYValues.put(stringSelectedThread, zeroFill(xvalues.length));
+                    threadValues = zeroFill(xvalues.length);
+                    fYValues.put(Long.toString(selectedThread), threadValues);
                 }
 
-                for (Entry<String, Long> entry : cpuUsageMap.entrySet()) {
-                    /*
-                     * Process only entries representing the total of all CPUs
-                     * and that have time on CPU
-                     */
-                    if (entry.getValue() == 0) {
-                        continue;
-                    }
-                    if (!entry.getKey().startsWith(KernelCpuUsageAnalysis.TOTAL)) {
-                        continue;
-                    }
-                    String[] strings = entry.getKey().split(KernelCpuUsageAnalysis.SPLIT_STRING, 2);
-
-                    if ((strings.length > 1) && !(strings[1].equals(KernelCpuUsageAnalysis.TID_ZERO))) {
-                        /* This is the total cpu usage for a thread */
-                        totalEntries.put(strings[1], entry.getKey());
-                    }
-                }
-
-                double prevX = xvalues[0];
-                long prevTime = (long) prevX + offset;
                 /*
-                 * make sure that time is in the trace range after double to
-                 * long conversion
+                 * Get the CPU usage between each x value in one call, make
+                 * sure that times are in the trace range after double to long
+                 * conversion
                  */
-                prevTime = Math.max(traceStart, prevTime);
-                prevTime = Math.min(traceEnd, prevTime);
-                /* Get CPU usage statistics for each x value */
-                for (int i = 1; i < xvalues.length; i++) {
-                    if (monitor.isCanceled()) {
-                        return;
-                    }
-                    long totalCpu = 0;
-                    double x = xvalues[i];
-                    long time = (long) x + offset;
+                long[] times = new long[xvalues.length];
+                for (int i = 0; i < xvalues.length; i++) {
+                    long time = (long) xvalues[i] + offset;
                     time = Math.max(traceStart, time);
-                    time = Math.min(traceEnd, time);
-
-                    cpuUsageMap = fModule.getCpuUsageInRange(prevTime, time);
-
-                    /*
-                     * Calculate the sum of all total entries, and add a data
-                     * point to the selected one
-                     */
-                    for (Entry<String, String> entry : totalEntries.entrySet()) {
-                        Long cpuEntry = cpuUsageMap.get(entry.getValue());
-                        cpuEntry = cpuEntry != null ? cpuEntry : 0L;
-
-                        totalCpu += cpuEntry;
-
-                        if (entry.getKey().equals(stringSelectedThread)) {
-                            /* This is the total cpu usage for a thread */
-                            fYValues.get(entry.getKey())[i] = (double) cpuEntry / (double) (time - prevTime) * 100;
-                        }
-
+                    times[i] = Math.min(traceEnd, time);
+                }
+                long[] totalUsage = fModule.getCpuUsageInBuckets(KernelCpuUsageAnalysis.ANY, KernelCpuUsageAnalysis.ANY, times);
+                long[] threadUsage = (threadValues == null ? null :
+                        fModule.getCpuUsageInBuckets(KernelCpuUsageAnalysis.ANY, (int) selectedThread, times));
+                if (monitor.isCanceled()) {
+                    return;
+                }
+                for (int i = 1; i < xvalues.length; i++) {
+                    double duration = times[i] - times[i - 1];
+                    totalValues[i] = totalUsage[i - 1] / duration * 100;
+                    if (threadValues != null && threadUsage != null) {
+                        threadValues[i] = threadUsage[i - 1] / duration * 100;
                     }
-                    fYValues.get(Messages.CpuUsageXYViewer_Total)[i] = (double) totalCpu / (double) (time - prevTime) * 100;
-                    prevTime = time;
                 }
                 for (Entry<String, double[]> entry : fYValues.entrySet()) {
                     setSeries(entry.getKey(), entry.getValue());
@@ -20,6 +20,7 @@ import org.junit.runners.Suite;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+    org.eclipse.tracecompass.btf.core.tests.trace.BtfLineReaderTest.class,
     org.eclipse.tracecompass.btf.core.tests.trace.BtfTraceTest.class
 })
 public class AllTests {
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.btf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import org.eclipse.tracecompass.internal.btf.core.trace.BtfLineReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link BtfLineReader} class
+ */
+@SuppressWarnings("restriction")
+public class BtfLineReaderTest {
+
+    private static final int MAX_FIELDS = 8;
+
+    private File fFile;
+
+    /**
+     * Create the file
+     *
+     * @throws IOException
+     *             If the file cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        fFile = File.createTempFile("test-btf", ".btf");
+    }
+
+    /**
+     * Delete the file
+     */
+    @After
+    public void tearDown() {
+        fFile.delete();
+    }
+
+    private BtfLineReader createReader(String content) throws IOException {
+        Files.write(fFile.toPath(), content.getBytes(Charset.forName("ISO-8859-1")));
+        return new BtfLineReader(fFile, MAX_FIELDS);
+    }
+
+    /**
+     * Test the parsing of the numbers, like {@link Long#parseLong(String)}
+     *
+     * @throws IOException
+     *             Fails the test
+     */
+    @Test
+    public void testGetLong() throws IOException {
+        try (BtfLineReader reader = createReader("0,123,-456,+7,9223372036854775807,-9223372036854775808\n")) {
+            assertTrue(reader.nextLine());
+            assertEquals(6, reader.split());
+            assertEquals(0, reader.getLong(0));
+            assertEquals(123, reader.getLong(1));
+            assertEquals(-456, reader.getLong(2));
+            assertEquals(7, reader.getLong(3));
+            assertEquals(Long.MAX_VALUE, reader.getLong(4));
+            assertEquals(Long.MIN_VALUE, reader.getLong(5));
+        }
+    }
+
+    /**
+     * Test the fields which are not numbers, or out of the range of a long
+     *
+     * @throws IOException
+     *             Fails the test
+     */
+    @Test
+    public void testGetLongInvalid() throws IOException {
+        String line = ",9223372036854775808,-9223372036854775809,-,+,12a,1 2,99999999999999999999";
+        try (BtfLineReader reader = createReader(line + "\n")) {
+            assertTrue(reader.nextLine());
+            assertEquals(MAX_FIELDS, reader.split());
+            for (int i = 0; i < MAX_FIELDS; i++) {
+                try {
+                    long value = reader.getLong(i);
+                    fail("Field " + i + " parsed as " + value);
+                } catch (NumberFormatException e) {
+                    /* Same as Long.parseLong */
+                    try {
+                        Long.parseLong(reader.getString(i));
+                        fail("Field " + i + " is a long");
+                    } catch (NumberFormatException e2) {
+                        /* Expected */
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test the splitting of a line, whose last field holds the rest of the
+     * line
+     *
+     * @throws IOException
+     *             Fails the test
+     */
+    @Test
+    public void testSplit() throws IOException {
+        try (BtfLineReader reader = createReader("1,2,,4\r\n1,2,3,4,5,6,7,8,9,10\n")) {
+            assertTrue(reader.nextLine());
+            assertEquals(4, reader.split());
+            assertEquals("", reader.getString(2));
+            assertEquals("4", reader.getString(3));
+            assertTrue(reader.nextLine());
+            assertEquals(MAX_FIELDS, reader.split());
+            assertEquals("8,9,10", reader.getString(MAX_FIELDS - 1));
+            assertFalse(reader.nextLine());
+        }
+    }
+
+    /**
+     * Test that only the interned fields return the same strings on every
+     * line
+     *
+     * @throws IOException
+     *             Fails the test
+     */
+    @Test
+    public void testInternedStrings() throws IOException {
+        try (BtfLineReader reader = createReader("0,Core_1,T,note\n1,Core_1,T,note\n")) {
+            assertTrue(reader.nextLine());
+            reader.split();
+            String entity = reader.getInternedString(1);
+            String note = reader.getString(3);
+            assertTrue(reader.nextLine());
+            reader.split();
+            assertEquals("Core_1", entity);
+            assertSame(entity, reader.getInternedString(1));
+            assertEquals(note, reader.getString(3));
+            assertNotSame(note, reader.getString(3));
+        }
+    }
+
+    /**
+     * Test that the strings which repeat are still pooled after the pool was
+     * filled with unique strings
+     *
+     * @throws IOException
+     *             Fails the test
+     */
+    @Test
+    public void testPoolSaturation() throws IOException {
+        try (BtfLineReader reader = createReader("0,Core_1\n")) {
+            for (int i = 0; i < BtfLineReader.MAX_POOL_SIZE * 2; i++) {
+                String unique = "unique" + i;
+                assertSame(unique, reader.intern(unique));
+            }
+            String entity = new String("entity");
+            assertSame(entity, reader.intern(entity));
+            assertSame(entity, reader.intern(new String("entity")));
+
+            assertTrue(reader.nextLine());
+            reader.split();
+            String core = reader.getInternedString(1);
+            assertSame(core, reader.getInternedString(1));
+            assertSame(core, reader.intern(new String("Core_1")));
+        }
+    }
+}
@@ -14,6 +14,8 @@ package org.eclipse.tracecompass.btf.core.tests.trace;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.tracecompass.btf.core.tests.utils.BtfTestTrace;
@@ -21,6 +23,7 @@ import org.eclipse.tracecompass.btf.core.trace.BtfTrace;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.TraceValidationStatus;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -141,4 +144,52 @@ public class BtfTraceTest {
         assertNotNull(event1);
         assertEquals(event, event1);
     }
+
+    /**
+     * Seek by ratio, at the first event, the middle and the end of the trace
+     */
+    @Test
+    public void testSeekRatio() {
+        ITmfContext ctx = fixture.seekEvent(0.0);
+        assertEquals(499L, ctx.getLocation().getLocationInfo());
+        ITmfEvent event = fixture.getNext(ctx);
+        assertNotNull(event);
+        assertEquals(START_TIME, event.getTimestamp().getValue());
+
+        ctx = fixture.seekEvent(0.5);
+        assertEquals(0.5, fixture.getLocationRatio(ctx.getLocation()), 0.01);
+        event = fixture.getNext(ctx);
+        assertNotNull(event);
+        assertTrue(event.getTimestamp().getValue() > START_TIME);
+
+        ctx = fixture.seekEvent(1.0);
+        assertNull(fixture.getNext(ctx));
+    }
+
+    /**
+     * Seek the locations of events read in sequence
+     */
+    @Test
+    public void testSeekLocation() {
+        ITmfContext ctx = fixture.seekEvent(0);
+        List<ITmfLocation> locations = new ArrayList<>();
+        List<ITmfEvent> events = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            ITmfLocation location = ctx.getLocation();
+            ITmfEvent event = fixture.getNext(ctx);
+            assertNotNull(event);
+            if (i % 100 == 0) {
+                locations.add(location);
+                events.add(event);
+            }
+        }
+        for (int i = locations.size() - 1; i >= 0; i--) {
+            ITmfEvent event = fixture.getNext(fixture.seekEvent(locations.get(i)));
+            assertNotNull(event);
+            ITmfEvent expected = events.get(i);
+            assertEquals(expected.getTimestamp(), event.getTimestamp());
+            assertEquals(expected.getType(), event.getType());
+            assertEquals(expected.getContent(), event.getContent());
+        }
+    }
 }
@@ -14,9 +14,7 @@
 package org.eclipse.tracecompass.btf.core.trace;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -32,12 +30,11 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.tracecompass.btf.core.Activator;
 import org.eclipse.tracecompass.btf.core.event.BtfEvent;
 import org.eclipse.tracecompass.btf.core.event.BtfEventType;
+import org.eclipse.tracecompass.internal.btf.core.trace.BtfLineReader;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
-import org.eclipse.tracecompass.tmf.core.io.BufferedRandomAccessFile;
-import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTxtTraceContext;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceProperties;
@@ -104,7 +101,7 @@ public class BtfTrace extends TmfTrace implements ITmfPersistentlyIndexable, ITm
     private BtfTimstampFormat fTsFormat = BtfTimstampFormat.NS;
 
     private File fFile;
-    private RandomAccessFile fFileInput;
+    private BtfLineReader fReader;
     private long fDataOffset;
     private long fTsOffset = 0;
 
@@ -117,11 +114,10 @@ public class BtfTrace extends TmfTrace implements ITmfPersistentlyIndexable, ITm
         fProperties.put(TIMESCALE, fTsFormat.toString());
     }
 
-    private void parseHeader(RandomAccessFile input) throws IOException {
-        String line = input.readLine();
-        long pos = 0;
-        while (line != null && line.startsWith("#")) { //$NON-NLS-1$
-            String[] tokens = line.split(" ", 2); //$NON-NLS-1$
+    private void parseHeader(BtfLineReader reader) throws IOException {
+        while (reader.nextLine() && reader.startsWith('#')) {
+            String[] tokens = reader.getLine().split(" ", 2); //$NON-NLS-1$
+            String[] elements;
             /*
              * please note that the examples we were given and the spec are NOT
              * consistent, so we are ignoring the case to avoid issues
@@ -157,51 +153,55 @@ public class BtfTrace extends TmfTrace implements ITmfPersistentlyIndexable, ITm
                 fProperties.put(TIMESCALE, fTsFormat.toString());
                 break;
             case lENTITYTYPE:
-                pos = fFileInput.getFilePointer();
-                line = fFileInput.readLine();
-                while (line.startsWith("#-")) { //$NON-NLS-1$
-                    String tempLine = line.substring(1);
-                    String[] elements = tempLine.split(" ", 2); //$NON-NLS-1$
+                while ((elements = readTableEntry(reader)) != null) {
                     fEntityTypes.put(Integer.parseInt(elements[0]), BtfEventTypeFactory.parse(elements[1]));
-                    pos = fFileInput.getFilePointer();
-                    line = fFileInput.readLine();
                 }
-                fFileInput.seek(pos);
                 fProperties.put(ENTITYTYPE, fEntityTypes.toString());
                 break;
             case lENTITYTABLE:
-                pos = fFileInput.getFilePointer();
-                line = fFileInput.readLine();
-                while (line.startsWith("#-")) { //$NON-NLS-1$
-                    String tempLine = line.substring(1);
-                    String[] elements = tempLine.split(" ", 2); //$NON-NLS-1$
+                while ((elements = readTableEntry(reader)) != null) {
                     fEntityTable.put(Integer.parseInt(elements[0]), elements[1]);
-                    pos = fFileInput.getFilePointer();
-                    line = fFileInput.readLine();
                 }
                 fProperties.put(ENTITYTABLE, fEntityTable.toString());
-                fFileInput.seek(pos);
                 break;
             case lENTITYTYPETABLE:
-                pos = fFileInput.getFilePointer();
-                line = fFileInput.readLine();
-                while (line.startsWith("#-")) { //$NON-NLS-1$
-                    String tempLine = line.substring(1);
-                    String[] elements = tempLine.split(" ", 2); //$NON-NLS-1$
+                while ((elements = readTableEntry(reader)) != null) {
                     fEntityTypeTable.put(BtfEventTypeFactory.parse(elements[0]), elements[1]);
-                    pos = fFileInput.getFilePointer();
-                    line = fFileInput.readLine();
                 }
-                fFileInput.seek(pos);
                 fProperties.put(ENTITYTYPETABLE, fEntityTypeTable.toString());
                 break;
             default:
                 break;
             }
-            fDataOffset = input.getFilePointer();
-            line = input.readLine();
+            fDataOffset = reader.getPosition();
         }
         fTsOffset = (long) (fTsOffset * fTsFormat.getScaleFactor());
+
+        /* The events refer to the entities by name */
+        for (String entity : fEntityTable.values()) {
+            reader.intern(entity);
+        }
+        reader.seek(fDataOffset);
+    }
+
+    /**
+     * Read the next entry of a table of the header, of the form "#-key value".
+     * The reader is left at the line after the table.
+     *
+     * @param reader
+     *            the reader of the header
+     * @return The key and the value, or null at the end of the table
+     */
+    private static String[] readTableEntry(BtfLineReader reader) throws IOException {
+        long pos = reader.getPosition();
+        if (reader.nextLine()) {
+            String line = reader.getLine();
+            if (line.startsWith("#-")) { //$NON-NLS-1$
+                return line.substring(1).split(" ", 2); //$NON-NLS-1$
+            }
+        }
+        reader.seek(pos);
+        return null;
     }
 
     @Override
@@ -209,8 +209,8 @@ public class BtfTrace extends TmfTrace implements ITmfPersistentlyIndexable, ITm
         super.initTrace(resource, path, type);
         fFile = new File(path);
         try {
-            fFileInput = new RandomAccessFile(fFile, "r"); //$NON-NLS-1$
-            parseHeader(fFileInput);
+            fReader = new BtfLineReader(fFile, MAX_FIELDS);
+            parseHeader(fReader);
         } catch (IOException e) {
             throw new TmfTraceException(e.getMessage(), e);
         }
@@ -227,16 +227,16 @@ public class BtfTrace extends TmfTrace implements ITmfPersistentlyIndexable, ITm
             return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Not a file. It's a directory: " + path); //$NON-NLS-1$
         }
         int confidence = 0;
-        try (BufferedRandomAccessFile rafile = new BufferedRandomAccessFile(path, "r")) { //$NON-NLS-1$
+        try (BtfLineReader reader = new BtfLineReader(file, MAX_FIELDS)) {
             int lineCount = 0;
             int matches = 0;
-            String line = rafile.getNextLine();
-            while ((line != null) && line.startsWith("#")) { //$NON-NLS-1$
-                line = rafile.getNextLine();
+            boolean hasLine = reader.nextLine();
+            while (hasLine && reader.startsWith('#')) {
+                hasLine = reader.nextLine();
             }
-            while ((line != null) && (lineCount++ < MAX_LINES)) {
+            while (hasLine && (lineCount++ < MAX_LINES)) {
                 try {
-                    ITmfEvent event = parseLine(0, line);
+                    ITmfEvent event = parseLine(reader, 0);
                     if (event != null) {
                         matches++;
                     }
@@ -245,7 +245,7 @@ public class BtfTrace extends TmfTrace implements ITmfPersistentlyIndexable, ITm
                 }
 
                 confidence = MAX_CONFIDENCE * matches / lineCount;
-                line = rafile.getNextLine();
+                hasLine = reader.nextLine();
             }
         } catch (IOException e) {
             Activator.logError("Error validating file: " + path, e); //$NON-NLS-1$
@@ -257,23 +257,16 @@ public class BtfTrace extends TmfTrace implements ITmfPersistentlyIndexable, ITm
 
     @Override
     public ITmfLocation getCurrentLocation() {
-        long temp = -1;
-        try {
-            temp = fFileInput.getFilePointer();
-        } catch (IOException e) {
-        }
-        return new TmfLongLocation(temp);
+        return new TmfLongLocation(fReader.getPosition());
     }
 
     @Override
     public double getLocationRatio(ITmfLocation location) {
         long size = fFile.length() - fDataOffset;
-        long pos;
-        try {
-            pos = fFileInput.getFilePointer() - fDataOffset;
-        } catch (IOException e) {
-            pos = 0;
+        if (size <= 0 || !(location.getLocationInfo() instanceof Long)) {
+            return 0;
         }
+        long pos = (Long) location.getLocationInfo() - fDataOffset;
         return 1.0 / size * pos;
     }
 
@@ -283,21 +276,14 @@ public class BtfTrace extends TmfTrace implements ITmfPersistentlyIndexable, ITm
         if (NULL_LOCATION.equals(location) || fFile == null) {
             return context;
         }
-        try {
-            if (location == null) {
-                fFileInput.seek(fDataOffset);
-            } else if (location.getLocationInfo() instanceof Long) {
-                fFileInput.seek((Long) location.getLocationInfo());
-            }
-            context.setLocation(new TmfLongLocation(fFileInput.getFilePointer()));
-            return context;
-        } catch (final FileNotFoundException e) {
-            Activator.logError("Error seeking event. File not found: " + getPath(), e); //$NON-NLS-1$
-            return context;
-        } catch (final IOException e) {
-            Activator.logError("Error seeking event. File: " + getPath(), e); //$NON-NLS-1$
-            return context;
+        /* The locations are file offsets, the reader keeps its buffer if it holds them */
+        if (location == null) {
+            fReader.seek(fDataOffset);
+        } else if (location.getLocationInfo() instanceof Long) {
+            fReader.seek((Long) location.getLocationInfo());
         }
+        context.setLocation(new TmfLongLocation(fReader.getPosition()));
+        return context;
     }
 
     @Override
@@ -306,21 +292,15 @@ public class BtfTrace extends TmfTrace implements ITmfPersistentlyIndexable, ITm
             return new TmfContext(NULL_LOCATION, ITmfContext.UNKNOWN_RANK);
         }
         try {
-            long pos = Math.round(ratio * fFile.length()) - fDataOffset;
-            while (pos > 0) {
-                fFileInput.seek(pos - 1);
-                if (fFileInput.read() == '\n') {
-                    break;
-                }
-                pos--;
-            }
+            long size = fReader.size() - fDataOffset;
+            long pos = fReader.findLineStart(fDataOffset + Math.round(ratio * size), fDataOffset);
             final ITmfLocation location = new TmfLongLocation(pos);
             final ITmfContext context = seekEvent(location);
             context.setRank(ITmfContext.UNKNOWN_RANK);
             return context;
         } catch (final IOException e) {
             Activator.logError("Error seeking event. File: " + getPath(), e); //$NON-NLS-1$
-            return new CustomTxtTraceContext(NULL_LOCATION, ITmfContext.UNKNOWN_RANK);
+            return new TmfContext(NULL_LOCATION, ITmfContext.UNKNOWN_RANK);
         }
     }
 
@@ -349,18 +329,11 @@ public class BtfTrace extends TmfTrace implements ITmfPersistentlyIndexable, ITm
      * @return the event from a given line
      */
     private ITmfEvent parseLine(TmfContext context) {
+        fReader.seek((Long) context.getLocation().getLocationInfo());
         try {
-            if (!context.getLocation().getLocationInfo().equals(fFileInput.getFilePointer())) {
-                seekEvent(context.getLocation());
+            if (fReader.nextLine()) {
+                return parseLine(fReader, context.getRank());
             }
-        } catch (IOException e1) {
-            seekEvent(context.getLocation());
-        }
-        String line;
-        try {
-            line = fFileInput.readLine();
-            return parseLine(context.getRank(), line);
-
         } catch (IOException e) {
         }
 
@@ -368,40 +341,36 @@ public class BtfTrace extends TmfTrace implements ITmfPersistentlyIndexable, ITm
     }
 
     /**
-     * Parse a line of text and make an event using it.
+     * Parse the current line of a reader and make an event using it.
      *
+     * @param reader
+     *            the reader, positioned on the line of the event
      * @param rank
      *            the rank of the event
-     * @param line
-     *            the raw string of the event
      * @return the event
      */
-    private ITmfEvent parseLine(long rank, String line) {
-        if (line == null) {
-            return null;
-        }
-        String[] tokens = line.split(",", MAX_FIELDS); //$NON-NLS-1$
-        if (tokens.length < MAX_FIELDS) {
+    private ITmfEvent parseLine(BtfLineReader reader, long rank) {
+        if (reader.split() < MAX_FIELDS) {
             return null;
         }
         int i = 0;
-        long timestamp = Long.parseLong(tokens[i++]);
-        String source = tokens[i++];
+        long timestamp = reader.getLong(i++);
+        String source = reader.getInternedString(i++);
         long sourceInstance = -1;
         try {
-            sourceInstance = Long.parseLong(tokens[i++]);
+            sourceInstance = reader.getLong(i++);
         } catch (NumberFormatException e) {
             // this field can be empty
         }
-        BtfEventType type = BtfEventTypeFactory.parse(tokens[i++]);
-        String target = tokens[i++];
+        BtfEventType type = BtfEventTypeFactory.parse(reader.getInternedString(i++));
+        String target = reader.getInternedString(i++);
         long targetInstance = -1;
         try {
-            targetInstance = Long.parseLong(tokens[i++]);
+            targetInstance = reader.getLong(i++);
         } catch (NumberFormatException e) {
             // this field can be empty
         }
-        String event = tokens[i++];
+        String event = reader.getString(i++);
 
         ITmfEventField content = type.generateContent(event, sourceInstance, targetInstance);
 
@@ -451,8 +420,8 @@ public class BtfTrace extends TmfTrace implements ITmfPersistentlyIndexable, ITm
 
     @Override
     public void close() throws IOException {
-        if (fFileInput != null) {
-            fFileInput.close();
+        if (fReader != null) {
+            fReader.close();
         }
     }
 
@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.btf.core.trace;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+
+import org.eclipse.tracecompass.internal.tmf.core.io.TextLineReader;
+
+/**
+ * Line reader of a BTF file. The current line is split in comma-separated
+ * fields in place, without copying it. The bytes are read as ISO-8859-1
+ * characters.
+ *
+ * The fields which repeat on many lines, like the names of the entities and
+ * the event types, can be read as strings interned in a pool, so that they are
+ * only created once. When the pool is full, it is cleared, so that it keeps
+ * the strings of the current part of the trace.
+ *
+ * This class is not thread-safe.
+ */
+public final class BtfLineReader extends TextLineReader implements Closeable {
+
+    private static final int MIN_POOL_CAPACITY = 256;
+    /** Maximum number of strings in the pool, after which it is cleared */
+    public static final int MAX_POOL_SIZE = 1 << 16;
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1"); //$NON-NLS-1$
+
+    /* Fields of the current line */
+    private final int[] fFieldStarts;
+    private final int[] fFieldEnds;
+    private int fNbFields = 0;
+
+    /* Interned strings, by hash of their characters */
+    private String[] fPool = new String[MIN_POOL_CAPACITY];
+    private int fPoolSize = 0;
+
+    /**
+     * Constructor
+     *
+     * @param file
+     *            The file to read
+     * @param maxFields
+     *            The maximum number of fields of a line. The last field holds
+     *            the rest of the line.
+     * @throws IOException
+     *             Thrown when the file cannot be opened
+     */
+    public BtfLineReader(File file, int maxFields) throws IOException {
+        super(FileChannel.open(file.toPath(), StandardOpenOption.READ), CHARSET, DEFAULT_BUFFER_SIZE);
+        fFieldStarts = new int[maxFields];
+        fFieldEnds = new int[maxFields];
+    }
+
+    @Override
+    public void close() throws IOException {
+        getChannel().close();
+    }
+
+    @Override
+    public void seek(long position) {
+        super.seek(position);
+        fNbFields = 0;
+    }
+
+    @Override
+    public boolean nextLine() throws IOException {
+        fNbFields = 0;
+        return super.nextLine();
+    }
+
+    /**
+     * @param c
+     *            A character
+     * @return True if the current line starts with the character
+     */
+    public boolean startsWith(char c) {
+        return (getLineEnd() > getLineStart() && getBuffer()[getLineStart()] == c);
+    }
+
+    /**
+     * Split the current line in comma-separated fields, like
+     * {@link String#split(String, int)} with the maximum number of fields as
+     * limit.
+     *
+     * @return The number of fields
+     */
+    public int split() {
+        byte[] buffer = getBuffer();
+        int lineEnd = getLineEnd();
+        int max = fFieldStarts.length;
+        int n = 0;
+        int start = getLineStart();
+        for (int i = start; i < lineEnd && n < max - 1; i++) {
+            if (buffer[i] == ',') {
+                fFieldStarts[n] = start;
+                fFieldEnds[n] = i;
+                n++;
+                start = i + 1;
+            }
+        }
+        fFieldStarts[n] = start;
+        fFieldEnds[n] = lineEnd;
+        fNbFields = n + 1;
+        return fNbFields;
+    }
+
+    /**
+     * Get a field of the current line
+     *
+     * @param field
+     *            The index of the field
+     * @return The string of the field
+     */
+    public String getString(int field) {
+        checkField(field);
+        return new String(getBuffer(), fFieldStarts[field], fFieldEnds[field] - fFieldStarts[field], CHARSET);
+    }
+
+    /**
+     * Get a field of the current line, as an interned string. This is meant
+     * for the fields whose values repeat on many lines.
+     *
+     * @param field
+     *            The index of the field
+     * @return The string of the field
+     */
+    public String getInternedString(int field) {
+        checkField(field);
+        return intern(fFieldStarts[field], fFieldEnds[field]);
+    }
+
+    /**
+     * Parse a field of the current line as a decimal number, like
+     * {@link Long#parseLong(String)}
+     *
+     * @param field
+     *            The index of the field
+     * @return The value of the field
+     * @throws NumberFormatException
+     *             If the field is not a number
+     */
+    public long getLong(int field) {
+        checkField(field);
+        byte[] buffer = getBuffer();
+        int i = fFieldStarts[field];
+        int end = fFieldEnds[field];
+        if (i == end) {
+            throw new NumberFormatException("Empty field"); //$NON-NLS-1$
+        }
+        /* Accumulate negatively, like Long.parseLong, to reach MIN_VALUE */
+        boolean negative = false;
+        long limit = -Long.MAX_VALUE;
+        byte first = buffer[i];
+        if (first == '-' || first == '+') {
+            if (first == '-') {
+                negative = true;
+                limit = Long.MIN_VALUE;
+            }
+            if (++i == end) {
+                throw newNumberFormatException(field);
+            }
+        }
+        long multiplyLimit = limit / 10;
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9 || result < multiplyLimit) {
+                throw newNumberFormatException(field);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw newNumberFormatException(field);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Add a string to the pool, so that the fields equal to it return the same
+     * instance
+     *
+     * @param string
+     *            The string
+     * @return The interned string
+     */
+    public String intern(String string) {
+        int length = string.length();
+        for (int i = 0; i < length; i++) {
+            if (string.charAt(i) > 0xff) {
+                /* Never read from a field */
+                return string;
+            }
+        }
+        int hash = string.hashCode();
+        int mask = fPool.length - 1;
+        int slot = mix(hash) & mask;
+        String pooled;
+        while ((pooled = fPool[slot]) != null) {
+            if (pooled.equals(string)) {
+                return pooled;
+            }
+            slot = (slot + 1) & mask;
+        }
+        add(slot, string);
+        return string;
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    private void checkField(int field) {
+        if (field < 0 || field >= fNbFields) {
+            throw new IndexOutOfBoundsException("Field " + field + " of " + fNbFields); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    private NumberFormatException newNumberFormatException(int field) {
+        return new NumberFormatException("For input string: \"" + getString(field) + '"'); //$NON-NLS-1$
+    }
+
+    /*
+     * Get the pooled string of a range of the buffer. The hash of the bytes is
+     * the one of String, as each byte is one character.
+     */
+    private String intern(int start, int end) {
+        byte[] buffer = getBuffer();
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + (buffer[i] & 0xff);
+        }
+        int mask = fPool.length - 1;
+        int slot = mix(hash) & mask;
+        String pooled;
+        while ((pooled = fPool[slot]) != null) {
+            if (pooled.hashCode() == hash && matches(pooled, buffer, start, end)) {
+                return pooled;
+            }
+            slot = (slot + 1) & mask;
+        }
+        String string = new String(buffer, start, end - start, CHARSET);
+        add(slot, string);
+        return string;
+    }
+
+    private static boolean matches(String string, byte[] buffer, int start, int end) {
+        if (string.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (string.charAt(i - start) != (buffer[i] & 0xff)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Add a string in a free slot. Past the maximum size, the pool is cleared
+     * first, to bound the memory used by unique fields while still pooling
+     * the strings that repeat from then on.
+     */
+    private void add(int slot, String string) {
+        int s = slot;
+        if (fPoolSize >= MAX_POOL_SIZE) {
+            fPool = new String[MIN_POOL_CAPACITY];
+            fPoolSize = 0;
+            s = mix(string.hashCode()) & (fPool.length - 1);
+        }
+        fPool[s] = string;
+        fPoolSize++;
+
+        /* Keep the load factor under 1/2 */
+        if (fPoolSize * 2 > fPool.length) {
+            String[] pool = fPool;
+            fPool = new String[pool.length * 2];
+            int mask = fPool.length - 1;
+            for (String pooled : pool) {
+                if (pooled != null) {
+                    int i = mix(pooled.hashCode()) & mask;
+                    while (fPool[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    fPool[i] = pooled;
+                }
+            }
+        }
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -207,7 +207,7 @@ public class CTFStreamInput implements IDefinitionScope {
      * @throws CTFReaderException
      *             If there was a problem reading the packed header
      */
-    public boolean addPacketHeaderIndex() throws CTFReaderException {
+    public synchronized boolean addPacketHeaderIndex() throws CTFReaderException {
         long currentPos = 0L;
         if (!fIndex.isEmpty()) {
             StreamInputPacketIndexEntry pos = fIndex.lastElement();
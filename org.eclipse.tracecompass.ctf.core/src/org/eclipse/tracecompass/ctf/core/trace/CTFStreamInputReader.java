@@ -98,9 +98,11 @@ public class CTFStreamInputReader implements AutoCloseable {
         }
         fPacketReader = new CTFStreamInputPacketReader(this);
         /*
-         * Get the iterator on the packet index.
+         * Get the iterator on the packet index. The packets can already be
+         * indexed by another reader of the stream input, so start before the
+         * first one.
          */
-        fPacketIndex = 0;
+        fPacketIndex = -1;
         /*
          * Make first packet the current one.
          */
@@ -272,12 +274,21 @@ public class CTFStreamInputReader implements AutoCloseable {
         if (getPacketSize() >= (fPacketIndex + 1)) {
             fPacketReader.setCurrentPacket(getPacket());
         } else {
-            // go to the next packet if there is one, index it at the same time
-            if (fStreamInput.addPacketHeaderIndex()) {
-                fPacketIndex = getPacketSize() - 1;
+            /*
+             * Go to the next packet if there is one, index it at the same
+             * time. The stream input can be indexed by another reader
+             * meanwhile, so check the size again instead of assuming the new
+             * packet is the last one.
+             */
+            fStreamInput.addPacketHeaderIndex();
+            if (getPacketSize() >= (fPacketIndex + 1)) {
                 fPacketReader.setCurrentPacket(getPacket());
             } else {
-                // out of packets
+                /*
+                 * Out of packets, stay on the last one so that a growing
+                 * stream resumes with the next packet.
+                 */
+                fPacketIndex--;
                 fPacketReader.setCurrentPacket(null);
             }
         }
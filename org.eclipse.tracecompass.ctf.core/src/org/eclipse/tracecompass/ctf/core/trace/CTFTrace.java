@@ -780,6 +780,38 @@ public class CTFTrace implements IDefinitionScope {
         return timestampCyclesToNanos(currentEnd);
     }
 
+    /**
+     * Get the begin time of every packet of the trace, in nanoseconds, in
+     * increasing order. The packets that are not indexed yet are indexed
+     * first, which only reads the packet headers and contexts, not the events.
+     *
+     * @return the packet begin times
+     * @throws CTFReaderException
+     *             if a packet header cannot be read
+     */
+    public long[] getPacketBeginTimes() throws CTFReaderException {
+        int nbPackets = 0;
+        for (CTFStream stream : fStreams.values()) {
+            for (CTFStreamInput si : stream.getStreamInputs()) {
+                while (si.addPacketHeaderIndex()) {
+                    /* Index the whole stream input */
+                }
+                nbPackets += si.getIndex().size();
+            }
+        }
+        long[] beginTimes = new long[nbPackets];
+        int i = 0;
+        for (CTFStream stream : fStreams.values()) {
+            for (CTFStreamInput si : stream.getStreamInputs()) {
+                for (int j = 0; j < si.getIndex().size() && i < nbPackets; j++) {
+                    beginTimes[i++] = timestampCyclesToNanos(si.getIndex().getElement(j).getTimestampBegin());
+                }
+            }
+        }
+        Arrays.sort(beginTimes, 0, i);
+        return (i == nbPackets) ? beginTimes : Arrays.copyOf(beginTimes, i);
+    }
+
     /**
      * Does the trace need to time scale?
      *
@@ -32,7 +32,8 @@ import org.eclipse.tracecompass.ctf.core.trace.CTFReaderException;
  * <b><u>StreamInputPacketIndex</u></b>
  * <p>
  * This is a data structure containing entries, you may append to this and read
- * it. It is not thread safe.
+ * it. It is thread safe: the packets of a stream input can be indexed by one
+ * reader while others read the index.
  */
 public class StreamInputPacketIndex {
 
@@ -57,7 +58,7 @@ public class StreamInputPacketIndex {
      *
      * @return the number of elements in this data structure
      */
-    public int size() {
+    public synchronized int size() {
         return fEntries.size();
     }
 
@@ -66,7 +67,7 @@ public class StreamInputPacketIndex {
      *
      * @return {@code true} if this data structure contains no elements
      */
-    public boolean isEmpty() {
+    public synchronized boolean isEmpty() {
         return fEntries.isEmpty();
     }
 
@@ -79,7 +80,7 @@ public class StreamInputPacketIndex {
      * @throws CTFReaderException
      *             If there was a problem reading the entry
      */
-    public void appendAll(Collection<StreamInputPacketIndexEntry> preParsedIndex)
+    public synchronized void appendAll(Collection<StreamInputPacketIndexEntry> preParsedIndex)
             throws CTFReaderException {
         for (StreamInputPacketIndexEntry sipie : preParsedIndex) {
             append(checkNotNull(sipie));
@@ -95,7 +96,7 @@ public class StreamInputPacketIndex {
      * @throws CTFReaderException
      *             If there was a problem reading the entry
      */
-    public boolean append(@NonNull StreamInputPacketIndexEntry entry)
+    public synchronized boolean append(@NonNull StreamInputPacketIndexEntry entry)
             throws CTFReaderException {
 
         /* Validate consistent entry. */
@@ -125,7 +126,7 @@ public class StreamInputPacketIndex {
      * @return The StreamInputPacketEntry that corresponds to the packet that
      *         includes the given timestamp.
      */
-    public ListIterator<StreamInputPacketIndexEntry> search(final long timestamp) {
+    public synchronized ListIterator<StreamInputPacketIndexEntry> search(final long timestamp) {
         /*
          * Start with min and max covering all the elements.
          */
@@ -186,7 +187,7 @@ public class StreamInputPacketIndex {
      *
      * @return the last element in the index
      */
-    public StreamInputPacketIndexEntry lastElement() {
+    public synchronized StreamInputPacketIndexEntry lastElement() {
         return fEntries.get(fEntries.size() - 1);
     }
 
@@ -200,7 +201,7 @@ public class StreamInputPacketIndex {
      *             if the index is out of range (
      *             {@code index < 0 || index >= size()})
      */
-    public StreamInputPacketIndexEntry getElement(int index) {
+    public synchronized StreamInputPacketIndexEntry getElement(int index) {
         return fEntries.get(index);
     }
 
@@ -227,7 +228,7 @@ public class StreamInputPacketIndex {
      *             not permit null elements (<a
      *             href="Collection.html#optional-restrictions">optional</a>)
      */
-    public int indexOf(StreamInputPacketIndexEntry element) {
+    public synchronized int indexOf(StreamInputPacketIndexEntry element) {
         int indexOf = -1;
         if (element != null) {
             indexOf = Collections.binarySearch(fEntries, element, new MonotonicComparator());
@@ -129,7 +129,7 @@ public class QemuKvmVmModel implements IVirtualMachineModel {
             return null;
         }
 
-        Integer ppid = KernelThreadInformationProvider.getParentPid(module, ht.getTid(), event.getTimestamp().getValue());
+        Integer ppid = KernelThreadInformationProvider.getParentPid(module, ht.getTid(), event.getTimestampNanos());
         if (ppid == null) {
             return null;
         }
@@ -206,7 +206,7 @@ public class QemuKvmVmModel implements IVirtualMachineModel {
         }
 
         final ITmfEventField content = event.getContent();
-        final long ts = event.getTimestamp().getValue();
+        final long ts = event.getTimestampNanos();
         final String hostId = event.getTrace().getHostId();
 
         Object cpuObj = TmfTraceUtils.resolveEventAspectOfClassForEvent(event.getTrace(), TmfCpuAspect.class, event);
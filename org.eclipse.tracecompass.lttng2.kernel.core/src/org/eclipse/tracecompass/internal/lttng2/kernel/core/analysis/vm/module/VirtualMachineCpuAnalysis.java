@@ -15,9 +15,13 @@ package org.eclipse.tracecompass.internal.lttng2.kernel.core.analysis.vm.module;
 
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.analysis.os.linux.core.kernelanalysis.KernelAnalysis;
@@ -31,6 +35,7 @@ import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundExc
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
 import org.eclipse.tracecompass.statesystem.core.interval.TmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.TmfStateIntervalList;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 import org.eclipse.tracecompass.tmf.core.analysis.IAnalysisModule;
@@ -63,6 +68,21 @@ public class VirtualMachineCpuAnalysis extends TmfStateSystemAnalysisModule {
     /* State value for a preempted virtual CPU */
     private static final ITmfStateValue VCPU_PREEMPT_VALUE = TmfStateValue.newValueInt(VcpuStateValues.VCPU_PREEMPT);
 
+    /**
+     * Parameter for the maximum number of kernel analyses of the traces
+     * running at the same time. The default is the number of processors.
+     */
+    public static final String PARAM_MAX_PARALLEL_ANALYSES = "max_parallel_analyses"; //$NON-NLS-1$
+
+    /**
+     * Parameter for the memory, in megabytes, above which no more kernel
+     * analysis of the traces is started until one completes. 0 means no
+     * budget.
+     */
+    public static final String PARAM_MEMORY_BUDGET = "memory_budget"; //$NON-NLS-1$
+
+    private static final long MEGABYTE = 1024 * 1024;
+
     /**
      * Constructor
      */
@@ -101,6 +121,47 @@ public class VirtualMachineCpuAnalysis extends TmfStateSystemAnalysisModule {
         return modules;
     }
 
+    @Override
+    protected int getDependentAnalysesParallelism() {
+        long parallelism = getLongParameter(PARAM_MAX_PARALLEL_ANALYSES);
+        if (parallelism <= 0) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        return (int) Math.min(parallelism, Integer.MAX_VALUE);
+    }
+
+    @Override
+    protected long getDependentAnalysesMemoryBudget() {
+        return Math.max(0, getLongParameter(PARAM_MEMORY_BUDGET)) * MEGABYTE;
+    }
+
+    private long getLongParameter(String name) {
+        Object value = getParameter(name);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.toString());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    protected boolean executeAnalysis(@Nullable IProgressMonitor monitor) {
+        /*
+         * The state provider queries the kernel analyses of the traces at the
+         * time of each event, they have to be complete.
+         */
+        IProgressMonitor mon = (monitor == null ? new NullProgressMonitor() : monitor);
+        for (IAnalysisModule module : getDependentAnalyses()) {
+            if (!module.waitForCompletion(mon)) {
+                return false;
+            }
+        }
+        return super.executeAnalysis(monitor);
+    }
+
     private static Multimap<Integer, ITmfStateInterval> createThreadMultimap() {
 
         /*
@@ -189,26 +250,33 @@ public class VirtualMachineCpuAnalysis extends TmfStateSystemAnalysisModule {
 
         /*
          * Initialize the map with the original status intervals from the kernel
-         * module
+         * module, querying all the threads together
          */
-        for (Integer tid : KernelThreadInformationProvider.getThreadIds(kernelModule)) {
-            if (tid == null) {
-                throw new IllegalStateException();
-            }
-            map.putAll(tid, KernelThreadInformationProvider.getStatusIntervalsForThread(kernelModule, tid, start, end, resolution, monitor));
-            if (monitor.isCanceled()) {
-                return map;
-            }
+        Map<Integer, TmfStateIntervalList> threadIntervals = KernelThreadInformationProvider.getStatusIntervalsForThreads(kernelModule,
+                KernelThreadInformationProvider.getThreadIds(kernelModule), start, end, resolution, monitor);
+        if (monitor.isCanceled()) {
+            return map;
+        }
+        for (Entry<Integer, TmfStateIntervalList> entry : threadIntervals.entrySet()) {
+            map.putAll(entry.getKey(), entry.getValue());
         }
 
         try {
+            /* Get the status of all the virtual CPUs together */
+            List<Integer> vcpuQuarks = ss.getSubAttributes(vmQuark, false);
+            int[] statusQuarks = new int[vcpuQuarks.size()];
+            for (int i = 0; i < statusQuarks.length; i++) {
+                statusQuarks[i] = ss.getQuarkRelative(vcpuQuarks.get(i), VmAttributes.STATUS);
+            }
+            TmfStateIntervalList[] cpuIntervals = StateSystemUtils.queryHistoryRange(ss, statusQuarks, start, end - 1, resolution, monitor);
+
             /* Correlate thread information with virtual CPU information */
-            for (Integer vcpuQuark : ss.getSubAttributes(vmQuark, false)) {
-                Long virtualCPU = Long.parseLong(ss.getAttributeName(vcpuQuark));
-                Integer statusQuark = ss.getQuarkRelative(vcpuQuark, VmAttributes.STATUS);
+            for (int i = 0; i < statusQuarks.length; i++) {
+                Long virtualCPU = Long.parseLong(ss.getAttributeName(vcpuQuarks.get(i)));
+                TmfStateIntervalList intervals = cpuIntervals[i];
 
-                for (ITmfStateInterval cpuInterval : StateSystemUtils.queryHistoryRange(ss, statusQuark, start, end - 1, resolution, monitor)) {
-                    ITmfStateValue stateValue = cpuInterval.getStateValue();
+                for (int j = 0; j < intervals.size(); j++) {
+                    ITmfStateValue stateValue = intervals.getStateValue(j);
                     switch (stateValue.getType()) {
                     case INTEGER:
                         int value = stateValue.unboxInt();
@@ -220,9 +288,10 @@ public class VirtualMachineCpuAnalysis extends TmfStateSystemAnalysisModule {
                         if ((value & (VcpuStateValues.VCPU_PREEMPT | VcpuStateValues.VCPU_VMM)) == 0) {
                             break;
                         }
-                        Integer threadOnCpu = KernelThreadInformationProvider.getThreadOnCpu(kernelModule, virtualCPU, cpuInterval.getStartTime());
+                        long intervalStart = intervals.getStartTime(j);
+                        Integer threadOnCpu = KernelThreadInformationProvider.getThreadOnCpu(kernelModule, virtualCPU, intervalStart);
                         if (threadOnCpu != null) {
-                            map.put(threadOnCpu, new TmfStateInterval(cpuInterval.getStartTime(), cpuInterval.getEndTime(), threadOnCpu, VCPU_PREEMPT_VALUE));
+                            map.put(threadOnCpu, new TmfStateInterval(intervalStart, intervals.getEndTime(j), threadOnCpu, VCPU_PREEMPT_VALUE));
                         }
                         break;
                     case DOUBLE:
@@ -146,25 +146,31 @@ public class VirtualMachineStateProvider extends AbstractTmfStateProvider {
     }
 
     @Override
-    protected void eventHandle(@Nullable ITmfEvent event) {
+    protected boolean isEventHandled(@Nullable ITmfEvent event) {
         if (event == null) {
-            return;
+            return false;
         }
-
         /* Is the event managed by this analysis */
         final String eventName = event.getType().getName();
 
         /* TODO When requirements work again, don't hardcode this */
-        if (!eventName.equals("sched_switch") && //$NON-NLS-1$
-                !fModel.getRequiredEvents().contains(eventName)) {
+        return (eventName.equals("sched_switch") || //$NON-NLS-1$
+                fModel.getRequiredEvents().contains(eventName));
+    }
+
+    @Override
+    protected void eventHandle(@Nullable ITmfEvent event) {
+        if (event == null) {
             return;
         }
 
+        final String eventName = event.getType().getName();
+
         ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
         ITmfStateValue value;
 
         final ITmfEventField content = event.getContent();
-        final long ts = event.getTimestamp().getValue();
+        final long ts = event.getTimestampNanos();
         final String hostId = event.getTrace().getHostId();
         try {
             /* Do we know this trace's role yet? */
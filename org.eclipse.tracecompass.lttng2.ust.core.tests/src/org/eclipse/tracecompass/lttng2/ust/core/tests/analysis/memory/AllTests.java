@@ -20,6 +20,8 @@ import org.junit.runners.Suite;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+    LongToLongMapTest.class,
+    MemoryUsageStateProviderTest.class,
     UstMemoryAnalysisModuleTest.class
 })
 public class AllTests {
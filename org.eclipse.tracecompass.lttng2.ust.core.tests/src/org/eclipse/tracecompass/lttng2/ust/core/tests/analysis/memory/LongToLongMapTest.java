@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.lttng2.ust.core.tests.analysis.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.tracecompass.internal.lttng2.ust.core.memoryusage.LongToLongMap;
+import org.junit.Test;
+
+/**
+ * Test the {@link LongToLongMap} class
+ */
+public class LongToLongMapTest {
+
+    private static final long NO_ENTRY = -1;
+
+    /**
+     * Test the basic operations, including the key 0
+     */
+    @Test
+    public void testOperations() {
+        LongToLongMap map = new LongToLongMap(NO_ENTRY, false);
+        assertEquals(0, map.size());
+        assertEquals(NO_ENTRY, map.get(42));
+        assertEquals(NO_ENTRY, map.put(42, 10));
+        assertEquals(10, map.put(42, 20));
+        assertEquals(20, map.get(42));
+
+        assertEquals(NO_ENTRY, map.put(0, 5));
+        assertEquals(5, map.get(0));
+        assertEquals(2, map.size());
+
+        assertEquals(5, map.remove(0));
+        assertEquals(NO_ENTRY, map.remove(0));
+        assertEquals(20, map.remove(42));
+        assertEquals(NO_ENTRY, map.get(42));
+        assertEquals(0, map.size());
+    }
+
+    /**
+     * Test that new keys are not added once the map is full, while the
+     * existing ones can still be updated and removed
+     */
+    @Test
+    public void testFull() {
+        final int maxSize = 100;
+        LongToLongMap map = new LongToLongMap(NO_ENTRY, false, maxSize);
+        for (int i = 1; i <= maxSize; i++) {
+            assertFalse(map.isFull());
+            assertEquals(NO_ENTRY, map.put(i * 16L, i));
+        }
+        assertTrue(map.isFull());
+        assertEquals(NO_ENTRY, map.put(4242 * 16L, 1));
+        assertEquals(NO_ENTRY, map.get(4242 * 16L));
+        assertEquals(NO_ENTRY, map.put(0, 1));
+        assertEquals(NO_ENTRY, map.get(0));
+        assertEquals(maxSize, map.size());
+
+        assertEquals(1, map.put(16L, 10));
+        assertEquals(10, map.get(16L));
+        assertEquals(10, map.remove(16L));
+        assertFalse(map.isFull());
+        assertEquals(NO_ENTRY, map.put(4242 * 16L, 1));
+        assertEquals(1, map.get(4242 * 16L));
+        assertTrue(map.isFull());
+    }
+
+    /**
+     * Compare random operations with a {@link HashMap}, on heap
+     */
+    @Test
+    public void testRandomOnHeap() {
+        compareRandomOperations(new LongToLongMap(NO_ENTRY, false));
+    }
+
+    /**
+     * Compare random operations with a {@link HashMap}, off heap
+     */
+    @Test
+    public void testRandomOffHeap() {
+        compareRandomOperations(new LongToLongMap(NO_ENTRY, true));
+    }
+
+    private static void compareRandomOperations(LongToLongMap map) {
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(1234);
+        for (int i = 0; i < 200000; i++) {
+            /* Aligned pointers, in a small range to have many collisions */
+            long key = (random.nextInt(20000) + 1) * 16L;
+            Long expectedValue = expected.get(key);
+            long expectedResult = (expectedValue == null ? NO_ENTRY : expectedValue);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                assertEquals(expectedResult, map.remove(key));
+            } else {
+                long value = random.nextInt(1000000);
+                expected.put(key, value);
+                assertEquals(expectedResult, map.put(key, value));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key = 0; key <= 20001 * 16L; key += 8) {
+            Long expectedValue = expected.get(key);
+            assertEquals(expectedValue == null ? NO_ENTRY : expectedValue.longValue(), map.get(key));
+        }
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(NO_ENTRY, map.get(16));
+    }
+}
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.lttng2.ust.core.tests.analysis.memory;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.eclipse.tracecompass.internal.lttng2.ust.core.memoryusage.MemoryUsageStateProvider;
+import org.eclipse.tracecompass.internal.lttng2.ust.core.memoryusage.UstMemoryStrings;
+import org.eclipse.tracecompass.lttng2.ust.core.trace.LttngUstTrace;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.StateSystemUtils;
+import org.eclipse.tracecompass.statesystem.core.backend.InMemoryBackend;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventType;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.junit.Test;
+
+/**
+ * Test the {@link MemoryUsageStateProvider} class with a time quantum, which
+ * coalesces the changes of the memory of a thread
+ */
+public class MemoryUsageStateProviderTest {
+
+    private static final long START_TIME = 0;
+    private static final long TIME_QUANTUM = 1000;
+    private static final Long VTID = Long.valueOf(42);
+    private static final String PROCNAME = "proc";
+
+    /**
+     * Test that the changes of the memory of a thread within one quantum are
+     * written as one state change, at the time and with the value of the last
+     * one
+     *
+     * @throws AttributeNotFoundException
+     *             Fails the test
+     * @throws StateSystemDisposedException
+     *             Fails the test
+     */
+    @Test
+    public void testCoalescedChanges() throws AttributeNotFoundException, StateSystemDisposedException {
+        ITmfStateSystemBuilder ss = buildStateSystem(TIME_QUANTUM);
+        try {
+            int quark = ss.getQuarkAbsolute(VTID.toString(), UstMemoryStrings.UST_MEMORY_MEMORY_ATTRIBUTE);
+            List<ITmfStateInterval> intervals = StateSystemUtils.queryHistoryRange(ss, quark, 100, 1500);
+            assertEquals(3, intervals.size());
+            /* The first value is written right away */
+            checkInterval(intervals.get(0), 100, 399, 10);
+            /* The changes at 200, 300 and 400 are written once, at 400 */
+            checkInterval(intervals.get(1), 400, 1499, 50);
+            /* The last quantum is written when the provider is done */
+            checkInterval(intervals.get(2), 1500, 1500, 55);
+        } finally {
+            ss.dispose();
+        }
+    }
+
+    /**
+     * Test that without a time quantum, every change of the memory of a
+     * thread is written
+     *
+     * @throws AttributeNotFoundException
+     *             Fails the test
+     * @throws StateSystemDisposedException
+     *             Fails the test
+     */
+    @Test
+    public void testEveryChange() throws AttributeNotFoundException, StateSystemDisposedException {
+        ITmfStateSystemBuilder ss = buildStateSystem(0);
+        try {
+            int quark = ss.getQuarkAbsolute(VTID.toString(), UstMemoryStrings.UST_MEMORY_MEMORY_ATTRIBUTE);
+            List<ITmfStateInterval> intervals = StateSystemUtils.queryHistoryRange(ss, quark, 100, 1500);
+            assertEquals(5, intervals.size());
+            checkInterval(intervals.get(0), 100, 199, 10);
+            checkInterval(intervals.get(1), 200, 299, 30);
+            checkInterval(intervals.get(2), 300, 399, 60);
+            checkInterval(intervals.get(3), 400, 1499, 50);
+            checkInterval(intervals.get(4), 1500, 1500, 55);
+        } finally {
+            ss.dispose();
+        }
+    }
+
+    private static ITmfStateSystemBuilder buildStateSystem(long timeQuantum) {
+        ITmfStateSystemBuilder ss = StateSystemFactory.newStateSystem("test", new InMemoryBackend(START_TIME));
+        MemoryUsageStateProvider provider = new MemoryUsageStateProvider(new LttngUstTrace(), timeQuantum, false);
+        provider.assignTargetStateSystem(ss);
+        provider.processEvent(createEvent(100, UstMemoryStrings.MALLOC, 0x10, 10));
+        provider.processEvent(createEvent(200, UstMemoryStrings.MALLOC, 0x20, 20));
+        provider.processEvent(createEvent(300, UstMemoryStrings.MALLOC, 0x30, 30));
+        provider.processEvent(createEvent(400, UstMemoryStrings.FREE, 0x10, 0));
+        provider.processEvent(createEvent(1500, UstMemoryStrings.MALLOC, 0x40, 5));
+        provider.dispose();
+        ss.waitUntilBuilt();
+        return ss;
+    }
+
+    private static ITmfEvent createEvent(long time, String name, long ptr, long size) {
+        ITmfEventField[] fields = new ITmfEventField[] {
+                new TmfEventField(UstMemoryStrings.FIELD_PTR, Long.valueOf(ptr), null),
+                new TmfEventField(UstMemoryStrings.FIELD_SIZE, Long.valueOf(size), null),
+                new TmfEventField(UstMemoryStrings.CONTEXT_VTID, VTID, null),
+                new TmfEventField(UstMemoryStrings.CONTEXT_PROCNAME, PROCNAME, null)
+        };
+        return new TmfEvent(null, ITmfContext.UNKNOWN_RANK,
+                new TmfTimestamp(time, ITmfTimestamp.NANOSECOND_SCALE),
+                new TmfEventType(name, null),
+                new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, fields));
+    }
+
+    private static void checkInterval(ITmfStateInterval interval, long start, long end, long memory) {
+        assertEquals(start, interval.getStartTime());
+        assertEquals(end, interval.getEndTime());
+        assertEquals(memory, interval.getStateValue().unboxLong());
+    }
+}
@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.lttng2.ust.core.memoryusage;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * Map of primitive long keys to primitive long values, using open addressing
+ * with linear probing, so no object is created per entry.
+ *
+ * The entries can be kept in a direct buffer, outside of the Java heap, for
+ * maps holding millions of entries. The number of entries is bounded: once the
+ * map is full, new keys are not added anymore, while the existing ones can
+ * still be updated and removed.
+ *
+ * This class is not thread-safe.
+ */
+public class LongToLongMap {
+
+    private static final int MIN_CAPACITY = 16;
+    /** Maximum number of slots, so that the buffer size fits in an int */
+    private static final int MAX_CAPACITY = 1 << 26;
+    /** Maximum number of entries, so that the load factor stays under 3/4 */
+    private static final int MAX_SIZE = MAX_CAPACITY / 4 * 3;
+    /** Key of the empty slots */
+    private static final long FREE = 0;
+
+    private final boolean fOffHeap;
+    private final long fNoEntryValue;
+    private final int fMaxSize;
+
+    /** Interleaved keys and values: slot i is at 2 * i and 2 * i + 1 */
+    private LongBuffer fTable;
+    private int fMask;
+    private int fSize = 0;
+
+    /* The key 0 is the marker of the empty slots, so it is kept apart */
+    private boolean fHasFreeKey = false;
+    private long fFreeKeyValue;
+
+    /**
+     * Constructor
+     *
+     * @param noEntryValue
+     *            The value returned for the keys not in the map
+     * @param offHeap
+     *            Whether the entries are kept outside of the Java heap
+     */
+    public LongToLongMap(long noEntryValue, boolean offHeap) {
+        this(noEntryValue, offHeap, MAX_SIZE);
+    }
+
+    /**
+     * Constructor with a maximum number of entries
+     *
+     * @param noEntryValue
+     *            The value returned for the keys not in the map
+     * @param offHeap
+     *            Whether the entries are kept outside of the Java heap
+     * @param maxSize
+     *            The maximum number of entries, which is capped to the
+     *            maximum supported by the map
+     */
+    public LongToLongMap(long noEntryValue, boolean offHeap, int maxSize) {
+        fNoEntryValue = noEntryValue;
+        fOffHeap = offHeap;
+        fMaxSize = Math.max(1, Math.min(maxSize, MAX_SIZE));
+        fTable = allocate(MIN_CAPACITY);
+        fMask = MIN_CAPACITY - 1;
+    }
+
+    /**
+     * Get the number of entries of the map
+     *
+     * @return The number of entries
+     */
+    public int size() {
+        return fSize;
+    }
+
+    /**
+     * Check if the map is full, in which case new keys are not added anymore
+     *
+     * @return True if the map is full
+     */
+    public boolean isFull() {
+        return fSize >= fMaxSize;
+    }
+
+    /**
+     * Get the value of a key
+     *
+     * @param key
+     *            The key
+     * @return The value, or the no entry value if the key is not in the map
+     */
+    public long get(long key) {
+        if (key == FREE) {
+            return (fHasFreeKey ? fFreeKeyValue : fNoEntryValue);
+        }
+        int slot = findSlot(key);
+        return (fTable.get(slot << 1) == FREE ? fNoEntryValue : fTable.get((slot << 1) + 1));
+    }
+
+    /**
+     * Set the value of a key. If the key is not in the map and the map is
+     * full, it is not added.
+     *
+     * @param key
+     *            The key
+     * @param value
+     *            The value
+     * @return The previous value, or the no entry value if the key was not in
+     *         the map
+     */
+    public long put(long key, long value) {
+        if (key == FREE) {
+            long previous = (fHasFreeKey ? fFreeKeyValue : fNoEntryValue);
+            if (!fHasFreeKey) {
+                if (isFull()) {
+                    return fNoEntryValue;
+                }
+                fHasFreeKey = true;
+                fSize++;
+            }
+            fFreeKeyValue = value;
+            return previous;
+        }
+        int slot = findSlot(key);
+        int index = slot << 1;
+        if (fTable.get(index) != FREE) {
+            long previous = fTable.get(index + 1);
+            fTable.put(index + 1, value);
+            return previous;
+        }
+        if (isFull()) {
+            return fNoEntryValue;
+        }
+        fTable.put(index, key);
+        fTable.put(index + 1, value);
+        fSize++;
+        /* Keep the load factor under 1/2, until the maximum capacity */
+        if (fSize * 2 > fMask + 1 && fMask + 1 < MAX_CAPACITY) {
+            rehash((fMask + 1) * 2);
+        }
+        return fNoEntryValue;
+    }
+
+    /**
+     * Remove a key from the map
+     *
+     * @param key
+     *            The key
+     * @return The value of the key, or the no entry value if the key was not
+     *         in the map
+     */
+    public long remove(long key) {
+        if (key == FREE) {
+            if (!fHasFreeKey) {
+                return fNoEntryValue;
+            }
+            fHasFreeKey = false;
+            fSize--;
+            return fFreeKeyValue;
+        }
+        int slot = findSlot(key);
+        if (fTable.get(slot << 1) == FREE) {
+            return fNoEntryValue;
+        }
+        long previous = fTable.get((slot << 1) + 1);
+        fSize--;
+
+        /*
+         * Shift back the following entries of the probe sequence which would
+         * not be found anymore, instead of leaving a tombstone.
+         */
+        int free = slot;
+        int current = (slot + 1) & fMask;
+        long currentKey;
+        while ((currentKey = fTable.get(current << 1)) != FREE) {
+            int home = hash(currentKey) & fMask;
+            boolean movable = (free <= current) ?
+                    (home <= free || home > current) :
+                    (home <= free && home > current);
+            if (movable) {
+                fTable.put(free << 1, currentKey);
+                fTable.put((free << 1) + 1, fTable.get((current << 1) + 1));
+                free = current;
+            }
+            current = (current + 1) & fMask;
+        }
+        fTable.put(free << 1, FREE);
+        return previous;
+    }
+
+    /**
+     * Remove all the entries of the map
+     */
+    public void clear() {
+        fTable = allocate(MIN_CAPACITY);
+        fMask = MIN_CAPACITY - 1;
+        fSize = 0;
+        fHasFreeKey = false;
+    }
+
+    /*
+     * Get the slot of a key, or the free slot where it would be inserted
+     */
+    private int findSlot(long key) {
+        int slot = hash(key) & fMask;
+        long current;
+        while ((current = fTable.get(slot << 1)) != FREE && current != key) {
+            slot = (slot + 1) & fMask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        LongBuffer oldTable = fTable;
+        int oldCapacity = fMask + 1;
+        fTable = allocate(capacity);
+        fMask = capacity - 1;
+        for (int i = 0; i < oldCapacity; i++) {
+            long key = oldTable.get(i << 1);
+            if (key != FREE) {
+                int index = findSlot(key) << 1;
+                fTable.put(index, key);
+                fTable.put(index + 1, oldTable.get((i << 1) + 1));
+            }
+        }
+    }
+
+    private LongBuffer allocate(int capacity) {
+        if (fOffHeap) {
+            return ByteBuffer.allocateDirect(capacity * 2 * (Long.SIZE / Byte.SIZE))
+                    .order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+        return LongBuffer.allocate(capacity * 2);
+    }
+
+    /*
+     * Pointers are aligned, so the bits of the key are mixed to spread them
+     * over the slots.
+     */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
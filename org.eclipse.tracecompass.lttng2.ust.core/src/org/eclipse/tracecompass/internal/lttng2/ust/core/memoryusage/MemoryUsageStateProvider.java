@@ -15,16 +15,18 @@ package org.eclipse.tracecompass.internal.lttng2.ust.core.memoryusage;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.lttng2.ust.core.Activator;
 import org.eclipse.tracecompass.lttng2.ust.core.trace.LttngUstTrace;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
-import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
@@ -35,6 +37,11 @@ import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
  * State provider to track the memory of the threads using the UST libc wrapper
  * memory events.
  *
+ * The size of each allocated pointer is kept in a primitive map, optionally
+ * off-heap. When the map is full, the new pointers are not tracked. With a
+ * time quantum, the memory of a thread is written at most once per quantum,
+ * with its value after the last change of the quantum.
+ *
  * @author Matthew Khouzam
  * @author Geneviève Bastien
  */
@@ -43,13 +50,34 @@ public class MemoryUsageStateProvider extends AbstractTmfStateProvider {
     /* Version of this state provider */
     private static final int VERSION = 1;
 
-    /* Maps a pointer to a memory zone to the size of the memory */
-    private final Map<Long, Long> fMemory = new HashMap<>();
+    /* Added to the version when the changes are coalesced */
+    private static final int COALESCED_VERSION_FLAG = 0x10000;
+
+    /* Value of the pointers not in the memory map */
+    private static final long NO_POINTER = -1;
 
     private static final Long MINUS_ONE = Long.valueOf(-1);
     private static final Long ZERO = Long.valueOf(0);
     private static final String EMPTY_STRING = ""; //$NON-NLS-1$
 
+    private final long fTimeQuantum;
+    private final boolean fOffHeap;
+
+    /* Maps a pointer to a memory zone to the size of the memory */
+    private final LongToLongMap fMemory;
+
+    /* Whether the memory map was full, and new pointers were ignored */
+    private boolean fMemoryFull = false;
+
+    /* The memory of each thread */
+    private final Map<Long, ThreadMemory> fThreads = new HashMap<>();
+
+    /* The threads whose memory changed since it was last written */
+    private final List<ThreadMemory> fPendingThreads = new ArrayList<>();
+
+    /* End of the current time quantum */
+    private long fQuantumEnd = Long.MIN_VALUE;
+
     /**
      * Constructor
      *
@@ -57,7 +85,26 @@ public class MemoryUsageStateProvider extends AbstractTmfStateProvider {
      *            trace
      */
     public MemoryUsageStateProvider(@NonNull LttngUstTrace trace) {
+        this(trace, 0, false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param trace
+     *            trace
+     * @param timeQuantum
+     *            The minimum time between two values of the memory of a
+     *            thread, or 0 to write every change
+     * @param offHeap
+     *            Whether the sizes of the allocated pointers are kept outside
+     *            of the Java heap
+     */
+    public MemoryUsageStateProvider(@NonNull LttngUstTrace trace, long timeQuantum, boolean offHeap) {
         super(trace, "Ust:Memory"); //$NON-NLS-1$
+        fTimeQuantum = Math.max(0, timeQuantum);
+        fOffHeap = offHeap;
+        fMemory = new LongToLongMap(NO_POINTER, offHeap);
     }
 
     @Override
@@ -78,7 +125,7 @@ public class MemoryUsageStateProvider extends AbstractTmfStateProvider {
             if (ZERO.equals(ptr)) {
                 return;
             }
-            setMem(event, ptr, ZERO);
+            setMem(event, ptr, 0);
         }
             break;
         case UstMemoryStrings.CALLOC: {
@@ -98,7 +145,7 @@ public class MemoryUsageStateProvider extends AbstractTmfStateProvider {
             }
             Long newPtr = (Long) event.getContent().getField(UstMemoryStrings.FIELD_INPTR).getValue();
             Long size = (Long) event.getContent().getField(UstMemoryStrings.FIELD_SIZE).getValue();
-            setMem(event, ptr, ZERO);
+            setMem(event, ptr, 0);
             setMem(event, newPtr, size);
         }
             break;
@@ -126,9 +173,16 @@ public class MemoryUsageStateProvider extends AbstractTmfStateProvider {
 
     }
 
+    @Override
+    protected void done() {
+        writePendingThreads();
+        /* Release the memory map, which may be off-heap */
+        fMemory.clear();
+    }
+
     @Override
     public ITmfStateProvider getNewInstance() {
-        return new MemoryUsageStateProvider(getTrace());
+        return new MemoryUsageStateProvider(getTrace(), fTimeQuantum, fOffHeap);
     }
 
     @Override
@@ -138,7 +192,7 @@ public class MemoryUsageStateProvider extends AbstractTmfStateProvider {
 
     @Override
     public int getVersion() {
-        return VERSION;
+        return (fTimeQuantum == 0 ? VERSION : VERSION + COALESCED_VERSION_FLAG);
     }
 
     private static Long getVtid(ITmfEvent event) {
@@ -157,29 +211,44 @@ public class MemoryUsageStateProvider extends AbstractTmfStateProvider {
         return (String) field.getValue();
     }
 
-    private void setMem(ITmfEvent event, Long ptr, Long size) {
+    private void setMem(ITmfEvent event, long ptr, long size) {
         ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
-        long ts = event.getTimestamp().getValue();
-        Long tid = getVtid(event);
+        long ts = event.getTimestampNanos();
 
-        Long memoryDiff = size;
+        long memoryDiff = size;
         /* Size is 0, it means it was deleted */
-        if (ZERO.equals(size)) {
-            Long memSize = fMemory.remove(ptr);
-            if (memSize == null) {
+        if (size == 0) {
+            long memSize = fMemory.remove(ptr);
+            if (memSize == NO_POINTER) {
                 return;
             }
             memoryDiff = -memSize;
+        } else if (fMemory.isFull() && fMemory.get(ptr) == NO_POINTER) {
+            /*
+             * Stop tracking the new pointers instead of failing the analysis,
+             * the memory of the threads does not include them
+             */
+            if (!fMemoryFull) {
+                fMemoryFull = true;
+                Activator.getDefault().logWarning("Too many allocated pointers in " + getTrace().getName() + //$NON-NLS-1$
+                        ", the new ones are not tracked anymore"); //$NON-NLS-1$
+            }
+            return;
         } else {
             fMemory.put(ptr, size);
         }
         try {
-            int tidQuark = ss.getQuarkAbsoluteAndAdd(tid.toString());
-            int tidMemQuark = ss.getQuarkRelativeAndAdd(tidQuark, UstMemoryStrings.UST_MEMORY_MEMORY_ATTRIBUTE);
+            if (fTimeQuantum > 0 && ts >= fQuantumEnd) {
+                /* The previous quantum is over, write its last values */
+                writePendingThreads();
+                fQuantumEnd = (ts / fTimeQuantum + 1) * fTimeQuantum;
+            }
 
-            ITmfStateValue prevMem = ss.queryOngoingState(tidMemQuark);
-            /* First time we set this value */
-            if (prevMem.isNull()) {
+            Long tid = getVtid(event);
+            ThreadMemory thread = fThreads.get(tid);
+            boolean first = (thread == null);
+            if (thread == null) {
+                int tidQuark = ss.getQuarkAbsoluteAndAdd(tid.toString());
                 int procNameQuark = ss.getQuarkRelativeAndAdd(tidQuark, UstMemoryStrings.UST_MEMORY_PROCNAME_ATTRIBUTE);
                 String procName = getProcname(event);
                 /*
@@ -190,15 +259,49 @@ public class MemoryUsageStateProvider extends AbstractTmfStateProvider {
                     procName = UstMemoryStrings.OTHERS;
                 }
                 ss.modifyAttribute(ts, TmfStateValue.newValueString(procName), procNameQuark);
-                prevMem = TmfStateValue.newValueLong(0);
+                thread = new ThreadMemory(ss.getQuarkRelativeAndAdd(tidQuark, UstMemoryStrings.UST_MEMORY_MEMORY_ATTRIBUTE));
+                fThreads.put(tid, thread);
             }
 
-            long prevMemValue = prevMem.unboxLong();
-            prevMemValue += memoryDiff.longValue();
-            ss.modifyAttribute(ts, TmfStateValue.newValueLong(prevMemValue), tidMemQuark);
+            thread.fMemory += memoryDiff;
+            if (fTimeQuantum == 0 || first) {
+                /* The first value is written right away, to start with it */
+                ss.modifyAttribute(ts, TmfStateValue.newValueLong(thread.fMemory), thread.fQuark);
+            } else {
+                thread.fChangeTime = ts;
+                if (!thread.fPending) {
+                    thread.fPending = true;
+                    fPendingThreads.add(thread);
+                }
+            }
+        } catch (AttributeNotFoundException | TimeRangeException | StateValueTypeException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void writePendingThreads() {
+        ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
+        try {
+            for (ThreadMemory thread : fPendingThreads) {
+                ss.modifyAttribute(thread.fChangeTime, TmfStateValue.newValueLong(thread.fMemory), thread.fQuark);
+                thread.fPending = false;
+            }
         } catch (AttributeNotFoundException | TimeRangeException | StateValueTypeException e) {
             throw new IllegalStateException(e);
         }
+        fPendingThreads.clear();
+    }
+
+    private static class ThreadMemory {
+        private final int fQuark;
+        private long fMemory = 0;
+        /* Time of the last change not written yet */
+        private long fChangeTime;
+        private boolean fPending = false;
+
+        public ThreadMemory(int quark) {
+            fQuark = quark;
+        }
     }
 
 }
@@ -17,6 +17,9 @@ import java.util.HashSet;
 import java.util.Set;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 import org.eclipse.tracecompass.tmf.core.callstack.CallStackStateProvider;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
@@ -70,7 +73,7 @@ public class LttngUstCallStackProvider extends CallStackStateProvider {
      * Version number of this state provider. Please bump this if you modify
      * the contents of the generated state history in some way.
      */
-    private static final int VERSION = 2;
+    private static final int VERSION = 3;
 
     // ------------------------------------------------------------------------
     // Constructor
@@ -150,6 +153,34 @@ public class LttngUstCallStackProvider extends CallStackStateProvider {
         return Long.toHexString(address);
     }
 
+    /**
+     * The addresses are pushed as long values, which take much less space in
+     * the history than their strings. They are resolved to names by the views.
+     */
+    @Override
+    protected @Nullable ITmfStateValue functionEntryValue(ITmfEvent event) {
+        String eventName = event.getType().getName();
+        if (!FUNC_ENTRY_EVENTS.contains(eventName)) {
+            return null;
+        }
+        Long address = (Long) event.getContent().getField(FIELD_ADDR).getValue();
+        return TmfStateValue.newValueLong(address);
+    }
+
+    @Override
+    protected @Nullable ITmfStateValue functionExitValue(ITmfEvent event) {
+        String eventName = event.getType().getName();
+        if (!FUNC_EXIT_EVENTS.contains(eventName)) {
+            return null;
+        }
+        ITmfEventField field = event.getContent().getField(FIELD_ADDR);
+        if (field == null) {
+            return TmfStateValue.nullValue();
+        }
+        Long address = (Long) field.getValue();
+        return TmfStateValue.newValueLong(address);
+    }
+
     @Override
     public String getThreadName(ITmfEvent event) {
         /* Class type and content was already checked if we get called here */
@@ -45,6 +45,20 @@ public class UstMemoryAnalysisModule extends TmfStateSystemAnalysisModule {
      */
     public static String ID = "org.eclipse.linuxtools.lttng2.ust.analysis.memory"; //$NON-NLS-1$
 
+    /**
+     * Name of the parameter for the minimum time, in nanoseconds, between two
+     * values of the memory of a thread. The changes in between are coalesced.
+     * 0 writes every change.
+     */
+    public static final String PARAM_TIME_QUANTUM = "time_quantum"; //$NON-NLS-1$
+
+    /**
+     * Name of the parameter to keep the sizes of the allocated pointers
+     * outside of the Java heap while building the state system ("true" or
+     * "false")
+     */
+    public static final String PARAM_OFF_HEAP = "off_heap"; //$NON-NLS-1$
+
     private static final ImmutableSet<String> REQUIRED_EVENTS = ImmutableSet.of(
             UstMemoryStrings.MALLOC,
             UstMemoryStrings.FREE,
@@ -76,7 +90,20 @@ public class UstMemoryAnalysisModule extends TmfStateSystemAnalysisModule {
 
     @Override
     protected ITmfStateProvider createStateProvider() {
-        return new MemoryUsageStateProvider(checkNotNull(getTrace()));
+        boolean offHeap = Boolean.parseBoolean(String.valueOf(getParameter(PARAM_OFF_HEAP)));
+        return new MemoryUsageStateProvider(checkNotNull(getTrace()), getTimeQuantum(), offHeap);
+    }
+
+    private long getTimeQuantum() {
+        Object value = getParameter(PARAM_TIME_QUANTUM);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.toString()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
     }
 
     @Override
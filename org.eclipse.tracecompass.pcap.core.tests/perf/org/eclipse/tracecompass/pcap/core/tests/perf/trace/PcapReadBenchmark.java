@@ -46,10 +46,18 @@ public class PcapReadBenchmark {
      */
     @Test
     public void testPcapTrace() {
-        readTrace(PcapTestTrace.BENCHMARK_TRACE, "trace-pcap", true);
+        readTrace(PcapTestTrace.BENCHMARK_TRACE, "trace-pcap", true, false);
     }
 
-    private static void readTrace(PcapTestTrace testTrace, String testName, boolean inGlobalSummary) {
+    /**
+     * Benchmark reading the pcap trace through memory-mapped regions
+     */
+    @Test
+    public void testPcapTraceMapped() {
+        readTrace(PcapTestTrace.BENCHMARK_TRACE, "trace-pcap-mapped", false, true);
+    }
+
+    private static void readTrace(PcapTestTrace testTrace, String testName, boolean inGlobalSummary, boolean memoryMapped) {
         assumeTrue(testTrace.exists());
 
         Performance perf = Performance.getDefault();
@@ -62,7 +70,7 @@ public class PcapReadBenchmark {
 
         for (int loop = 0; loop < LOOP_COUNT; loop++) {
             pm.start();
-            try (PcapFile trace = testTrace.getTrace();) {
+            try (PcapFile trace = new PcapFile(testTrace.getPath(), memoryMapped);) {
                 for (int i = 0; i < RUN_BETWEEN_COMMIT_COUNT; i++) {
                     trace.seekPacket(0);
                     while (trace.hasNextPacket()) {
@@ -58,10 +58,19 @@ public class PcapSeekBenchmark {
      */
     @Test
     public void testPcapTrace() {
-        readAndSeekTrace(PcapTestTrace.BENCHMARK_TRACE, "trace-pcap", true);
+        readAndSeekTrace(PcapTestTrace.BENCHMARK_TRACE, "trace-pcap", true, false);
     }
 
-    private static void readAndSeekTrace(PcapTestTrace testTrace, String testName, boolean inGlobalSummary) {
+    /**
+     * Run the benchmark scenario for the pcap trace, read through memory-mapped
+     * regions.
+     */
+    @Test
+    public void testPcapTraceMapped() {
+        readAndSeekTrace(PcapTestTrace.BENCHMARK_TRACE, "trace-pcap-mapped", false, true);
+    }
+
+    private static void readAndSeekTrace(PcapTestTrace testTrace, String testName, boolean inGlobalSummary, boolean memoryMapped) {
         assumeTrue(testTrace.exists());
 
         Performance perf = Performance.getDefault();
@@ -73,7 +82,7 @@ public class PcapSeekBenchmark {
         }
 
         for (int loop = 0; loop < LOOP_COUNT; loop++) {
-            try (PcapFile trace = testTrace.getTrace()) {
+            try (PcapFile trace = new PcapFile(testTrace.getPath(), memoryMapped)) {
                 trace.seekPacket(0);
 
                 /* Read the whole trace to find out the number of packets */
@@ -23,7 +23,9 @@ import org.junit.runners.Suite;
         PcapFileOpenTest.class,
         PcapFileOpenFailTest.class,
         PcapFileReadTest.class,
-        PcapFileEndiannessTest.class
+        PcapFileEndiannessTest.class,
+        PcapFileIndexTest.class,
+        PcapNgFileTest.class
 })
 public class AllTests {
 
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.pcap.core.tests.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.pcap.core.packet.BadPacketException;
+import org.eclipse.tracecompass.internal.pcap.core.protocol.pcap.PcapPacket;
+import org.eclipse.tracecompass.internal.pcap.core.trace.BadPcapFileException;
+import org.eclipse.tracecompass.internal.pcap.core.trace.PcapFile;
+import org.eclipse.tracecompass.internal.pcap.core.trace.PcapFileValues;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit Class that tests the rank index of the pcap files, in both reading
+ * modes, on a generated file.
+ */
+public class PcapFileIndexTest {
+
+    /* Number of packets of the generated file, over a few index entries */
+    private static final int NB_PACKETS = 3 * PcapFile.INDEX_INTERVAL + 100;
+
+    /** Folder of the generated files */
+    @Rule
+    public TemporaryFolder fFolder = new TemporaryFolder();
+
+    /**
+     * Test that seeking anywhere in the file gives the same packets in both
+     * reading modes.
+     *
+     * @throws BadPcapFileException
+     *             Thrown when the file is erroneous. Fails the test.
+     * @throws IOException
+     *             Thrown when an IO error occurs. Fails the test.
+     * @throws BadPacketException
+     *             Thrown when a packet is erroneous. Fails the test.
+     */
+    @Test
+    public void testSeek() throws IOException, BadPcapFileException, BadPacketException {
+        Path path = createFile("seek.pcap", NB_PACKETS);
+        try (PcapFile file = new PcapFile(path, false);
+                PcapFile mappedFile = new PcapFile(path, true);) {
+            assertFalse(file.isMemoryMapped());
+            assertTrue(mappedFile.isMemoryMapped());
+
+            for (PcapFile pcap : new PcapFile[] { file, mappedFile }) {
+                /* Read the whole file, which builds the index */
+                for (int i = 0; i < NB_PACKETS; i++) {
+                    verifyPacket(pcap.parseNextPacket(), i);
+                }
+                assertNull(pcap.parseNextPacket());
+                assertEquals(NB_PACKETS, pcap.getCurrentRank());
+
+                /* Seek backwards, on and around the index entries */
+                long[] ranks = { 2 * PcapFile.INDEX_INTERVAL, 2 * PcapFile.INDEX_INTERVAL - 1,
+                        PcapFile.INDEX_INTERVAL + 1, 0, NB_PACKETS - 1, 5, 6, 3 };
+                for (long rank : ranks) {
+                    pcap.seekPacket(rank);
+                    assertEquals(rank, pcap.getCurrentRank());
+                    verifyPacket(pcap.parseNextPacket(), rank);
+                }
+
+                /* Seek outside of the file */
+                pcap.seekPacket(NB_PACKETS + 10);
+                assertEquals(NB_PACKETS, pcap.getCurrentRank());
+                assertFalse(pcap.hasNextPacket());
+            }
+        }
+    }
+
+    /**
+     * Test that counting the packets indexes the file without moving the
+     * current position.
+     *
+     * @throws BadPcapFileException
+     *             Thrown when the file is erroneous. Fails the test.
+     * @throws IOException
+     *             Thrown when an IO error occurs. Fails the test.
+     * @throws BadPacketException
+     *             Thrown when a packet is erroneous. Fails the test.
+     */
+    @Test
+    public void testTotalNbPackets() throws IOException, BadPcapFileException, BadPacketException {
+        Path path = createFile("count.pcap", NB_PACKETS);
+        try (PcapFile file = new PcapFile(path, true);) {
+            verifyPacket(file.parseNextPacket(), 0);
+            assertEquals(NB_PACKETS, file.getTotalNbPackets());
+            assertEquals(1, file.getCurrentRank());
+            verifyPacket(file.parseNextPacket(), 1);
+
+            file.seekPacket(NB_PACKETS - 2);
+            verifyPacket(file.parseNextPacket(), NB_PACKETS - 2);
+        }
+    }
+
+    /**
+     * Test writing the index to a file and reading it back.
+     *
+     * @throws BadPcapFileException
+     *             Thrown when the file is erroneous. Fails the test.
+     * @throws IOException
+     *             Thrown when an IO error occurs. Fails the test.
+     * @throws BadPacketException
+     *             Thrown when a packet is erroneous. Fails the test.
+     */
+    @Test
+    public void testIndexFile() throws IOException, BadPcapFileException, BadPacketException {
+        Path path = createFile("index.pcap", NB_PACKETS);
+        Path otherPath = createFile("other.pcap", NB_PACKETS - 1);
+        Path indexFile = checkPath(fFolder.getRoot().toPath().resolve("index.idx"));
+
+        try (PcapFile file = new PcapFile(path, true);) {
+            /* Nothing to read yet */
+            assertFalse(file.readIndex(indexFile));
+            assertFalse(file.isIndexModified());
+            assertEquals(NB_PACKETS, file.getTotalNbPackets());
+            assertTrue(file.isIndexModified());
+            file.writeIndex(indexFile);
+            assertFalse(file.isIndexModified());
+        }
+
+        try (PcapFile file = new PcapFile(path, false);) {
+            assertTrue(file.readIndex(indexFile));
+            assertEquals(NB_PACKETS, file.getTotalNbPackets());
+            /* Nothing new to save */
+            assertFalse(file.isIndexModified());
+            file.seekPacket(2 * PcapFile.INDEX_INTERVAL + 7);
+            verifyPacket(file.parseNextPacket(), 2 * PcapFile.INDEX_INTERVAL + 7);
+            /* The index does not know more packets than the file now */
+            assertFalse(file.readIndex(indexFile));
+        }
+
+        /* The index of another file is not used */
+        try (PcapFile otherFile = new PcapFile(otherPath, true);) {
+            assertFalse(otherFile.readIndex(indexFile));
+            assertEquals(NB_PACKETS - 1, otherFile.getTotalNbPackets());
+        }
+    }
+
+    private static void verifyPacket(PcapPacket packet, long rank) {
+        assertNotNull(packet);
+        assertEquals(rank, packet.getIndex());
+        assertEquals(rank * 1000000 + rank % 1000, packet.getTimestamp());
+        assertEquals(getLength(rank), packet.getIncludedLength());
+        ByteBuffer payload = packet.getPayload();
+        assertNotNull(payload);
+        assertEquals(getLength(rank), payload.limit());
+        assertEquals((byte) rank, payload.get(0));
+        assertEquals((byte) rank, payload.get(payload.limit() - 1));
+    }
+
+    private static int getLength(long rank) {
+        return 60 + (int) (rank % 100);
+    }
+
+    /*
+     * Create a little-endian pcap file with a given number of packets
+     */
+    private Path createFile(String name, int nbPackets) throws IOException {
+        int size = PcapFileValues.GLOBAL_HEADER_SIZE;
+        for (int i = 0; i < nbPackets; i++) {
+            size += PcapFileValues.PACKET_HEADER_SIZE + getLength(i);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(PcapFileValues.MAGIC_BIG_ENDIAN_MICRO);
+        buffer.putShort((short) 2);
+        buffer.putShort((short) 4);
+        buffer.putInt(0);
+        buffer.putInt(0);
+        buffer.putInt(65535);
+        buffer.putInt(1);
+        for (int i = 0; i < nbPackets; i++) {
+            int length = getLength(i);
+            buffer.putInt(i);
+            buffer.putInt(i % 1000);
+            buffer.putInt(length);
+            buffer.putInt(length);
+            for (int j = 0; j < length; j++) {
+                buffer.put((byte) i);
+            }
+        }
+        Path path = checkPath(fFolder.getRoot().toPath().resolve(name));
+        Files.write(path, buffer.array());
+        return path;
+    }
+
+    private static @NonNull Path checkPath(Path path) {
+        assertNotNull(path);
+        return path;
+    }
+}
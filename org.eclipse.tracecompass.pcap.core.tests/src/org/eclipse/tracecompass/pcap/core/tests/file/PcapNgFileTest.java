@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.pcap.core.tests.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.pcap.core.packet.BadPacketException;
+import org.eclipse.tracecompass.internal.pcap.core.protocol.PcapProtocol;
+import org.eclipse.tracecompass.internal.pcap.core.protocol.pcap.PcapPacket;
+import org.eclipse.tracecompass.internal.pcap.core.trace.BadPcapFileException;
+import org.eclipse.tracecompass.internal.pcap.core.trace.PcapFile;
+import org.eclipse.tracecompass.internal.pcap.core.trace.PcapNgFileValues;
+import org.eclipse.tracecompass.internal.pcap.core.util.LinkTypeHelper;
+import org.eclipse.tracecompass.internal.pcap.core.util.PcapTimestampScale;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit Class that tests the reading of a generated pcapng file, with two
+ * sections of different endianness and interfaces of different timestamp
+ * resolutions.
+ */
+public class PcapNgFileTest {
+
+    private static final int LINKTYPE_RAW = 101;
+    private static final int NAME_RESOLUTION_BLOCK = 4;
+    private static final int INTERFACE_STATISTICS_BLOCK = 5;
+
+    /* Packets of the second section, over a few index entries */
+    private static final int NB_SECOND_SECTION = 3 * PcapFile.INDEX_INTERVAL + 10;
+    private static final int NB_PACKETS = 3 + NB_SECOND_SECTION;
+
+    /** Folder of the generated file */
+    @Rule
+    public TemporaryFolder fFolder = new TemporaryFolder();
+
+    private Path fPath;
+
+    /**
+     * Generate the file
+     *
+     * @throws IOException
+     *             Thrown when an IO error occurs. Fails the test.
+     */
+    @Before
+    public void setUp() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        /* First section, little endian */
+        ByteOrder order = ByteOrder.LITTLE_ENDIAN;
+        writeSectionHeader(out, order);
+        /* Interface 0: Ethernet, microseconds */
+        writeBlock(out, order, PcapNgFileValues.INTERFACE_DESCRIPTION_BLOCK,
+                buffer(order, 8).putShort((short) LinkTypeHelper.LINKTYPE_ETHERNET).putShort((short) 0).putInt(65535));
+        /* Interface 1: Ethernet, nanoseconds with an offset of 10 s */
+        writeBlock(out, order, PcapNgFileValues.INTERFACE_DESCRIPTION_BLOCK,
+                buffer(order, 36).putShort((short) LinkTypeHelper.LINKTYPE_ETHERNET).putShort((short) 0).putInt(0)
+                        .putShort((short) 9).putShort((short) 1).putInt(9)
+                        .putShort((short) 14).putShort((short) 8).putLong(10)
+                        .putShort((short) 0).putShort((short) 0));
+        writeEnhancedPacket(out, order, 0, 1000000L * 5 + 3, getEthernetFrame(0));
+        writeBlock(out, order, NAME_RESOLUTION_BLOCK, buffer(order, 4).putInt(0));
+        writeEnhancedPacket(out, order, 1, 7, getEthernetFrame(1));
+        byte[] frame = getEthernetFrame(2);
+        writeBlock(out, order, PcapNgFileValues.SIMPLE_PACKET_BLOCK,
+                buffer(order, 4 + pad(frame.length)).putInt(frame.length).put(frame));
+        writeBlock(out, order, INTERFACE_STATISTICS_BLOCK, buffer(order, 12).putInt(0).putLong(0));
+
+        /* Second section, big endian */
+        order = ByteOrder.BIG_ENDIAN;
+        writeSectionHeader(out, order);
+        /* Interface 0: raw IP, 2^-10 seconds */
+        writeBlock(out, order, PcapNgFileValues.INTERFACE_DESCRIPTION_BLOCK,
+                buffer(order, 16).putShort((short) LINKTYPE_RAW).putShort((short) 0).putInt(0)
+                        .putShort((short) 9).putShort((short) 1).putInt(0x8a000000));
+        for (int i = 3; i < NB_PACKETS; i++) {
+            writeEnhancedPacket(out, order, 0, i * 1024L + 512, getEthernetFrame(i));
+        }
+        writeBlock(out, order, INTERFACE_STATISTICS_BLOCK, buffer(order, 12).putInt(0).putLong(0));
+
+        Path path = fFolder.getRoot().toPath().resolve("test.pcapng");
+        assertNotNull(path);
+        Files.write(path, out.toByteArray());
+        fPath = path;
+    }
+
+    /**
+     * Test the reading of the packets of the file, in both reading modes
+     *
+     * @throws BadPcapFileException
+     *             Thrown when the file is erroneous. Fails the test.
+     * @throws IOException
+     *             Thrown when an IO error occurs. Fails the test.
+     * @throws BadPacketException
+     *             Thrown when a packet is erroneous. Fails the test.
+     */
+    @Test
+    public void testRead() throws IOException, BadPcapFileException, BadPacketException {
+        for (boolean memoryMapped : new boolean[] { false, true }) {
+            try (PcapFile file = new PcapFile(getPath(), memoryMapped);) {
+                assertTrue(file.isPcapNg());
+                assertEquals(ByteOrder.LITTLE_ENDIAN, file.getByteOrder());
+                assertEquals(PcapTimestampScale.NANOSECOND, file.getTimestampPrecision());
+                assertEquals(1, file.getMajorVersion());
+                assertEquals(0, file.getMinorVersion());
+                assertEquals(LinkTypeHelper.LINKTYPE_ETHERNET, file.getDataLinkType());
+                assertEquals(65535, file.getSnapLength());
+
+                for (int i = 0; i < NB_PACKETS; i++) {
+                    assertTrue(file.hasNextPacket());
+                    verifyPacket(file.parseNextPacket(), i);
+                }
+                /* The trailing statistics are not a packet */
+                assertFalse(file.hasNextPacket());
+                assertNull(file.parseNextPacket());
+                assertEquals(NB_PACKETS, file.getTotalNbPackets());
+            }
+        }
+    }
+
+    /**
+     * Test seeking in the file, in both reading modes
+     *
+     * @throws BadPcapFileException
+     *             Thrown when the file is erroneous. Fails the test.
+     * @throws IOException
+     *             Thrown when an IO error occurs. Fails the test.
+     * @throws BadPacketException
+     *             Thrown when a packet is erroneous. Fails the test.
+     */
+    @Test
+    public void testSeek() throws IOException, BadPcapFileException, BadPacketException {
+        for (boolean memoryMapped : new boolean[] { false, true }) {
+            try (PcapFile file = new PcapFile(getPath(), memoryMapped);) {
+                assertEquals(NB_PACKETS, file.getTotalNbPackets());
+                assertEquals(0, file.getCurrentRank());
+
+                long[] ranks = { NB_PACKETS - 1, 2, 1, 2 * PcapFile.INDEX_INTERVAL + 3, 0, 3, PcapFile.INDEX_INTERVAL };
+                for (long rank : ranks) {
+                    file.seekPacket(rank);
+                    assertEquals(rank, file.getCurrentRank());
+                    verifyPacket(file.parseNextPacket(), rank);
+                }
+
+                file.seekPacket(NB_PACKETS + 5);
+                assertEquals(NB_PACKETS, file.getCurrentRank());
+                assertFalse(file.hasNextPacket());
+            }
+        }
+    }
+
+    /**
+     * Test that the index of pcapng files is not persisted
+     *
+     * @throws BadPcapFileException
+     *             Thrown when the file is erroneous. Fails the test.
+     * @throws IOException
+     *             Thrown when an IO error occurs. Fails the test.
+     */
+    @Test
+    public void testIndexFile() throws IOException, BadPcapFileException {
+        Path indexFile = fFolder.getRoot().toPath().resolve("test.idx");
+        assertNotNull(indexFile);
+        try (PcapFile file = new PcapFile(getPath());) {
+            assertEquals(NB_PACKETS, file.getTotalNbPackets());
+            file.writeIndex(indexFile);
+            assertFalse(Files.exists(indexFile));
+            assertFalse(file.readIndex(indexFile));
+        }
+    }
+
+    private static void verifyPacket(PcapPacket packet, long rank) {
+        assertNotNull(packet);
+        assertEquals(rank, packet.getIndex());
+        byte[] frame = getEthernetFrame(rank);
+        assertEquals(frame.length, packet.getIncludedLength());
+        assertEquals(frame.length, packet.getOriginalLength());
+        assertEquals(ByteBuffer.wrap(frame), packet.getPayload());
+
+        if (rank == 0) {
+            assertEquals(5000003000L, packet.getTimestamp());
+        } else if (rank == 1) {
+            assertEquals(10000000007L, packet.getTimestamp());
+        } else if (rank == 2) {
+            /* Simple packets have the timestamp of the previous packet */
+            assertEquals(10000000007L, packet.getTimestamp());
+        } else {
+            assertEquals(rank * 1000000000L + 500000000L, packet.getTimestamp());
+        }
+
+        if (rank < 3) {
+            assertEquals(LinkTypeHelper.LINKTYPE_ETHERNET, packet.getDataLinkType());
+            assertTrue(packet.hasProtocol(PcapProtocol.ETHERNET_II));
+        } else {
+            assertEquals(LINKTYPE_RAW, packet.getDataLinkType());
+            assertFalse(packet.hasProtocol(PcapProtocol.ETHERNET_II));
+        }
+    }
+
+    /*
+     * An Ethernet frame of an unknown type, with a length which is not a
+     * multiple of 4
+     */
+    private static byte[] getEthernetFrame(long rank) {
+        byte[] frame = new byte[14 + 3 + (int) (rank % 7)];
+        for (int i = 0; i < frame.length; i++) {
+            frame[i] = (byte) (rank + i);
+        }
+        frame[12] = (byte) 0x88;
+        frame[13] = (byte) 0xb5;
+        return frame;
+    }
+
+    private @NonNull Path getPath() {
+        Path path = fPath;
+        assertNotNull(path);
+        return path;
+    }
+
+    private static int pad(int length) {
+        return (length + 3) & ~3;
+    }
+
+    private static ByteBuffer buffer(ByteOrder order, int size) {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.order(order);
+        return buffer;
+    }
+
+    private static void writeSectionHeader(ByteArrayOutputStream out, ByteOrder order) {
+        writeBlock(out, order, PcapNgFileValues.SECTION_HEADER_BLOCK,
+                buffer(order, 16).putInt(PcapNgFileValues.BYTE_ORDER_MAGIC).putShort((short) 1).putShort((short) 0).putLong(-1));
+    }
+
+    private static void writeEnhancedPacket(ByteArrayOutputStream out, ByteOrder order, int interfaceId, long timestamp, byte[] data) {
+        writeBlock(out, order, PcapNgFileValues.ENHANCED_PACKET_BLOCK,
+                buffer(order, 20 + pad(data.length))
+                        .putInt(interfaceId)
+                        .putInt((int) (timestamp >>> 32))
+                        .putInt((int) timestamp)
+                        .putInt(data.length)
+                        .putInt(data.length)
+                        .put(data));
+    }
+
+    private static void writeBlock(ByteArrayOutputStream out, ByteOrder order, int type, ByteBuffer body) {
+        int length = PcapNgFileValues.BLOCK_OVERHEAD + body.capacity();
+        ByteBuffer block = buffer(order, length);
+        block.putInt(type).putInt(length).put(body.array()).putInt(length);
+        out.write(block.array(), 0, length);
+    }
+}
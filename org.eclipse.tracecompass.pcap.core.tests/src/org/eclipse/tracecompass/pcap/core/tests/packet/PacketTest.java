@@ -121,4 +121,50 @@ public class PacketTest {
 
         }
     }
+
+    /**
+     * Test that the payload of a packet shares the content of the packet, and
+     * that a child packet which cannot be decoded is an unknown packet.
+     *
+     * @throws BadPcapFileException
+     *             Thrown when the file is erroneous. Fails the test.
+     * @throws IOException
+     *             Thrown when an IO error occurs. Fails the test.
+     * @throws BadPacketException
+     *             Thrown when a packet is erroneous. Fails the test.
+     */
+    @Test
+    public void LazyChildPacketTest() throws BadPacketException, IOException, BadPcapFileException {
+        PcapTestTrace trace = PcapTestTrace.MOSTLY_TCP;
+        assumeTrue(trace.exists());
+        try (PcapFile dummy = new PcapFile(trace.getPath())) {
+            ByteBuffer byteBuffer = fEthernetPacket;
+            if (byteBuffer == null) {
+                fail("LazyChildPacketTest has failed!");
+                return;
+            }
+            // Ethertype IPv4, with a payload too small for an IPv4 header
+            byteBuffer.put(12, (byte) 0x08);
+            byteBuffer.put(13, (byte) 0x00);
+
+            Packet packet = new EthernetIIPacket(dummy, null, byteBuffer);
+            ByteBuffer payload = packet.getPayload();
+            if (payload == null) {
+                fail("LazyChildPacketTest has failed!");
+                return;
+            }
+            assertEquals(1, payload.remaining());
+            byteBuffer.put(14, (byte) 0x42);
+            assertEquals((byte) 0x42, payload.get(0));
+
+            Packet child = packet.getChildPacket();
+            if (child == null) {
+                fail("LazyChildPacketTest has failed!");
+                return;
+            }
+            assertEquals(PcapProtocol.UNKNOWN, child.getProtocol());
+            assertEquals(payload, child.getPayload());
+            assertTrue(child == packet.getChildPacket());
+        }
+    }
 }
@@ -20,7 +20,8 @@ import org.junit.runners.Suite;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
-        StreamBuildTest.class
+        StreamBuildTest.class,
+        PacketStreamBuilderTest.class
 })
 public class AllTests {
 
@@ -0,0 +1,389 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.pcap.core.tests.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.pcap.core.packet.BadPacketException;
+import org.eclipse.tracecompass.internal.pcap.core.packet.Packet;
+import org.eclipse.tracecompass.internal.pcap.core.protocol.PcapProtocol;
+import org.eclipse.tracecompass.internal.pcap.core.protocol.pcap.PcapPacket;
+import org.eclipse.tracecompass.internal.pcap.core.stream.PacketStream;
+import org.eclipse.tracecompass.internal.pcap.core.stream.PacketStreamBuilder;
+import org.eclipse.tracecompass.internal.pcap.core.trace.BadPcapFileException;
+import org.eclipse.tracecompass.internal.pcap.core.trace.PcapFile;
+import org.eclipse.tracecompass.internal.pcap.core.trace.PcapFileValues;
+import org.eclipse.tracecompass.internal.pcap.core.util.EthertypeHelper;
+import org.eclipse.tracecompass.internal.pcap.core.util.IPProtocolNumberHelper;
+import org.eclipse.tracecompass.internal.pcap.core.util.LinkTypeHelper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * JUnit Class that tests the stream table of the {@link PacketStreamBuilder}
+ * on a generated file, with a TCP conversation followed by many short UDP
+ * flows.
+ */
+public class PacketStreamBuilderTest {
+
+    /* Number of UDP flows, enough to grow the table a few times */
+    private static final int NB_UDP_FLOWS = 300;
+    private static final int NB_TCP_PACKETS = 3;
+    private static final int TCP_PAYLOAD_SIZE = 10;
+    private static final int UDP_PAYLOAD_SIZE = 4;
+
+    private static final byte[] MAC_A = { 0x02, 0x00, 0x00, 0x00, 0x00, 0x0a };
+    private static final byte[] MAC_B = { 0x02, 0x00, 0x00, 0x00, (byte) 0xff, 0x0b };
+    private static final int IP_A = 0x0a000001;
+    private static final int IP_B = 0xc0a80102;
+
+    /** Folder of the generated files */
+    @Rule
+    public TemporaryFolder fFolder = new TemporaryFolder();
+
+    /**
+     * Test the streams of each protocol, and that their endpoints are the
+     * same as the endpoints of their packets.
+     *
+     * @throws BadPcapFileException
+     *             Thrown when the file is erroneous. Fails the test.
+     * @throws IOException
+     *             Thrown when an IO error occurs. Fails the test.
+     * @throws BadPacketException
+     *             Thrown when a packet is erroneous. Fails the test.
+     */
+    @Test
+    public void testStreams() throws IOException, BadPcapFileException, BadPacketException {
+        Path path = createFile("streams.pcap", NB_UDP_FLOWS);
+        int nbPackets = NB_TCP_PACKETS + NB_UDP_FLOWS + NB_UDP_FLOWS / 2;
+
+        /* All the packets are between the same MAC addresses */
+        PacketStreamBuilder builder = new PacketStreamBuilder(PcapProtocol.ETHERNET_II);
+        builder.parsePcapFile(path);
+        assertEquals(1, builder.getNbStreams());
+        PacketStream stream = builder.getStream(0);
+        assertNotNull(stream);
+        assertEquals(nbPackets, stream.getNbPackets());
+        assertEquals(2 + NB_UDP_FLOWS, stream.getNbPacketsAtoB());
+        assertEquals("02:00:00:00:00:0a", stream.getFirstEndpoint());
+        assertEquals("02:00:00:00:ff:0b", stream.getSecondEndpoint());
+        assertEquals(getTimestamp(0), stream.getStartTime());
+        assertEquals(getTimestamp(nbPackets - 1), stream.getStopTime());
+
+        /*
+         * The UDP requests have a different source IP address each, the first
+         * one being the address of the TCP packets
+         */
+        builder = new PacketStreamBuilder(PcapProtocol.IPV4);
+        builder.parsePcapFile(path);
+        assertEquals(NB_UDP_FLOWS, builder.getNbStreams());
+        stream = builder.getStream(0);
+        assertNotNull(stream);
+        assertEquals(NB_TCP_PACKETS + 2, stream.getNbPackets());
+        assertEquals("02:00:00:00:00:0a/10.0.0.1", stream.getFirstEndpoint());
+        assertEquals("02:00:00:00:ff:0b/192.168.1.2", stream.getSecondEndpoint());
+
+        builder = new PacketStreamBuilder(PcapProtocol.TCP);
+        builder.parsePcapFile(path);
+        assertEquals(1, builder.getNbStreams());
+        stream = builder.getStream(0);
+        assertNotNull(stream);
+        assertEquals(PcapProtocol.TCP, stream.getProtocol());
+        assertEquals("tcp.0", stream.getUniqueID());
+        assertEquals(2, stream.getNbPacketsAtoB());
+        assertEquals(1, stream.getNbPacketsBtoA());
+        assertEquals(2 * getTcpLength(), stream.getNbBytesAtoB());
+        assertEquals(getTcpLength(), stream.getNbBytesBtoA());
+        assertEquals(getTimestamp(0), stream.getStartTime());
+        assertEquals(getTimestamp(2), stream.getStopTime());
+        assertNull(builder.getStream(1));
+
+        builder = new PacketStreamBuilder(PcapProtocol.UDP);
+        builder.parsePcapFile(path);
+        assertEquals(NB_UDP_FLOWS, builder.getNbStreams());
+        int id = 0;
+        for (PacketStream udpStream : builder.getStreams()) {
+            assertEquals(id, udpStream.getID());
+            assertEquals(1, udpStream.getNbPacketsAtoB());
+            assertEquals(id % 2 == 0 ? 1 : 0, udpStream.getNbPacketsBtoA());
+            assertEquals(getUdpLength(), udpStream.getNbBytesAtoB());
+            id++;
+        }
+        assertEquals(NB_UDP_FLOWS, id);
+
+        /* The endpoints are formatted like those of the packets */
+        try (PcapFile file = new PcapFile(path);) {
+            for (PcapProtocol protocol : new PcapProtocol[] { PcapProtocol.ETHERNET_II, PcapProtocol.IPV4, PcapProtocol.TCP, PcapProtocol.UDP }) {
+                builder = new PacketStreamBuilder(protocol);
+                file.seekPacket(0);
+                for (int i = 0; i < nbPackets; i++) {
+                    PcapPacket packet = file.parseNextPacket();
+                    assertNotNull(packet);
+                    Packet protocolPacket = packet.getPacket(protocol);
+                    if (protocolPacket == null) {
+                        continue;
+                    }
+                    builder.addPacketToStream(packet);
+                    stream = builder.getStream(protocolPacket.getSourceEndpoint(), protocolPacket.getDestinationEndpoint());
+                    assertNotNull(stream);
+                    String source = protocolPacket.getSourceEndpoint().toString();
+                    String destination = protocolPacket.getDestinationEndpoint().toString();
+                    assertTrue(source.equals(stream.getFirstEndpoint()) || source.equals(stream.getSecondEndpoint()));
+                    assertTrue(destination.equals(stream.getFirstEndpoint()) || destination.equals(stream.getSecondEndpoint()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test getting only the streams modified since a version of the builder.
+     *
+     * @throws BadPcapFileException
+     *             Thrown when the file is erroneous. Fails the test.
+     * @throws IOException
+     *             Thrown when an IO error occurs. Fails the test.
+     * @throws BadPacketException
+     *             Thrown when a packet is erroneous. Fails the test.
+     */
+    @Test
+    public void testVersions() throws IOException, BadPcapFileException, BadPacketException {
+        Path path = createFile("versions.pcap", NB_UDP_FLOWS);
+        PacketStreamBuilder builder = new PacketStreamBuilder(PcapProtocol.UDP);
+        assertEquals(0, builder.getVersion());
+
+        try (PcapFile file = new PcapFile(path);) {
+            /* The requests of the first 10 flows, after the TCP packets */
+            file.seekPacket(NB_TCP_PACKETS);
+            for (int i = 0; i < 10; i++) {
+                builder.addPacketToStream(checkPacket(file.parseNextPacket()));
+            }
+            assertEquals(10, builder.getVersion());
+            assertEquals(10, count(builder.getStreams(0)));
+            assertEquals(0, count(builder.getStreams(builder.getVersion())));
+            PacketStream stream = builder.getStream(5);
+            assertSame(stream, builder.getStream(5));
+
+            /* The request of flow 10, then the reply of flow 0 */
+            long version = builder.getVersion();
+            builder.addPacketToStream(checkPacket(file.parseNextPacket()));
+            file.seekPacket(NB_TCP_PACKETS + NB_UDP_FLOWS);
+            builder.addPacketToStream(checkPacket(file.parseNextPacket()));
+            List<PacketStream> modified = list(builder.getStreams(version));
+            assertEquals(2, modified.size());
+            assertEquals(0, modified.get(0).getID());
+            assertEquals(1, modified.get(0).getNbPacketsBtoA());
+            assertEquals(version + 2, modified.get(0).getVersion());
+            assertEquals(10, modified.get(1).getID());
+            assertEquals(version + 1, modified.get(1).getVersion());
+
+            /* The stream objects are snapshots */
+            assertSame(stream, builder.getStream(5));
+            PacketStream first = builder.getStream(0);
+            assertNotNull(first);
+            assertEquals(1, first.getNbPacketsBtoA());
+        }
+
+        builder.clear();
+        assertEquals(0, builder.getNbStreams());
+        assertEquals(0, builder.getVersion());
+        assertEquals(0, count(builder.getStreams()));
+    }
+
+    /**
+     * Test writing the streams to an index file and reading them back.
+     *
+     * @throws BadPcapFileException
+     *             Thrown when the file is erroneous. Fails the test.
+     * @throws IOException
+     *             Thrown when an IO error occurs. Fails the test.
+     */
+    @Test
+    public void testIndexFile() throws IOException, BadPcapFileException {
+        Path path = createFile("index.pcap", NB_UDP_FLOWS);
+        Path otherPath = createFile("other.pcap", NB_UDP_FLOWS - 1);
+        Path indexFile = checkPath(fFolder.getRoot().toPath().resolve("streams.idx"));
+
+        PacketStreamBuilder builder = new PacketStreamBuilder(PcapProtocol.UDP);
+        assertFalse(builder.readIndex(indexFile, path));
+        builder.parsePcapFile(path);
+        builder.writeIndex(indexFile, path);
+
+        PacketStreamBuilder readBuilder = new PacketStreamBuilder(PcapProtocol.UDP);
+        assertTrue(readBuilder.readIndex(indexFile, path));
+        assertEquals(builder.getNbStreams(), readBuilder.getNbStreams());
+        assertEquals(builder.getVersion(), readBuilder.getVersion());
+        List<PacketStream> streams = list(builder.getStreams());
+        List<PacketStream> readStreams = list(readBuilder.getStreams());
+        assertEquals(streams.size(), readStreams.size());
+        for (int i = 0; i < streams.size(); i++) {
+            PacketStream stream = streams.get(i);
+            PacketStream readStream = readStreams.get(i);
+            assertEquals(stream.toString(), readStream.toString());
+            assertEquals(stream.getFirstEndpoint(), readStream.getFirstEndpoint());
+            assertEquals(stream.getSecondEndpoint(), readStream.getSecondEndpoint());
+            assertEquals(stream.getNbPacketsAtoB(), readStream.getNbPacketsAtoB());
+            assertEquals(stream.getNbPacketsBtoA(), readStream.getNbPacketsBtoA());
+            assertEquals(stream.getNbBytesAtoB(), readStream.getNbBytesAtoB());
+            assertEquals(stream.getNbBytesBtoA(), readStream.getNbBytesBtoA());
+            assertEquals(stream.getStartTime(), readStream.getStartTime());
+            assertEquals(stream.getStopTime(), readStream.getStopTime());
+            assertEquals(stream.getVersion(), readStream.getVersion());
+        }
+
+        /* The streams read are still looked up by endpoints */
+        readBuilder.parsePcapFile(path);
+        assertEquals(builder.getNbStreams(), readBuilder.getNbStreams());
+        PacketStream stream = readBuilder.getStream(0);
+        assertNotNull(stream);
+        assertEquals(2, stream.getNbPacketsAtoB());
+
+        /* A builder with streams already does not read the index */
+        assertFalse(readBuilder.readIndex(indexFile, path));
+
+        /* The index of another protocol or another file is not used */
+        assertFalse(new PacketStreamBuilder(PcapProtocol.TCP).readIndex(indexFile, path));
+        assertFalse(new PacketStreamBuilder(PcapProtocol.UDP).readIndex(indexFile, otherPath));
+    }
+
+    private static int count(Iterable<PacketStream> streams) {
+        return list(streams).size();
+    }
+
+    private static List<PacketStream> list(Iterable<PacketStream> streams) {
+        List<PacketStream> list = new ArrayList<>();
+        for (PacketStream stream : streams) {
+            list.add(stream);
+        }
+        return list;
+    }
+
+    private static @NonNull PcapPacket checkPacket(PcapPacket packet) {
+        assertNotNull(packet);
+        return packet;
+    }
+
+    private static @NonNull Path checkPath(Path path) {
+        assertNotNull(path);
+        return path;
+    }
+
+    private static long getTimestamp(long rank) {
+        return rank * 1000000000L + rank * 1000L;
+    }
+
+    private static int getTcpLength() {
+        return 14 + 20 + 20 + TCP_PAYLOAD_SIZE;
+    }
+
+    private static int getUdpLength() {
+        return 14 + 20 + 8 + UDP_PAYLOAD_SIZE;
+    }
+
+    /*
+     * Create a little-endian pcap file with the TCP packets, a request for
+     * each UDP flow, and a reply for the even flows.
+     */
+    private Path createFile(String name, int nbUdpFlows) throws IOException {
+        List<ByteBuffer> frames = new ArrayList<>();
+        frames.add(createFrame(MAC_A, MAC_B, IP_A, IP_B, IPProtocolNumberHelper.PROTOCOL_NUMBER_TCP, 40000, 80));
+        frames.add(createFrame(MAC_B, MAC_A, IP_B, IP_A, IPProtocolNumberHelper.PROTOCOL_NUMBER_TCP, 80, 40000));
+        frames.add(createFrame(MAC_A, MAC_B, IP_A, IP_B, IPProtocolNumberHelper.PROTOCOL_NUMBER_TCP, 40000, 80));
+        for (int i = 0; i < nbUdpFlows; i++) {
+            frames.add(createFrame(MAC_A, MAC_B, IP_A + i, IP_B, IPProtocolNumberHelper.PROTOCOL_NUMBER_UDP, 1024 + i, 53));
+        }
+        for (int i = 0; i < nbUdpFlows; i += 2) {
+            frames.add(createFrame(MAC_B, MAC_A, IP_B, IP_A + i, IPProtocolNumberHelper.PROTOCOL_NUMBER_UDP, 53, 1024 + i));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer header = ByteBuffer.allocate(PcapFileValues.GLOBAL_HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(PcapFileValues.MAGIC_BIG_ENDIAN_MICRO);
+        header.putShort((short) 2);
+        header.putShort((short) 4);
+        header.putInt(0);
+        header.putInt(0);
+        header.putInt(65535);
+        header.putInt(LinkTypeHelper.LINKTYPE_ETHERNET);
+        out.write(header.array());
+        for (int rank = 0; rank < frames.size(); rank++) {
+            byte[] frame = frames.get(rank).array();
+            ByteBuffer packetHeader = ByteBuffer.allocate(PcapFileValues.PACKET_HEADER_SIZE);
+            packetHeader.order(ByteOrder.LITTLE_ENDIAN);
+            packetHeader.putInt(rank);
+            packetHeader.putInt(rank);
+            packetHeader.putInt(frame.length);
+            packetHeader.putInt(frame.length);
+            out.write(packetHeader.array());
+            out.write(frame);
+        }
+        Path path = checkPath(fFolder.getRoot().toPath().resolve(name));
+        Files.write(path, out.toByteArray());
+        return path;
+    }
+
+    private static ByteBuffer createFrame(byte[] sourceMac, byte[] destinationMac, int sourceIp, int destinationIp,
+            int protocol, int sourcePort, int destinationPort) {
+        boolean tcp = (protocol == IPProtocolNumberHelper.PROTOCOL_NUMBER_TCP);
+        int length = tcp ? getTcpLength() : getUdpLength();
+        ByteBuffer frame = ByteBuffer.allocate(length);
+        frame.order(ByteOrder.BIG_ENDIAN);
+
+        /* Ethernet II */
+        frame.put(destinationMac);
+        frame.put(sourceMac);
+        frame.putShort((short) EthertypeHelper.ETHERTYPE_IPV4);
+
+        /* IPv4, without options */
+        frame.put((byte) 0x45);
+        frame.put((byte) 0);
+        frame.putShort((short) (length - 14));
+        frame.putShort((short) 0);
+        frame.putShort((short) 0);
+        frame.put((byte) 64);
+        frame.put((byte) protocol);
+        frame.putShort((short) 0);
+        frame.putInt(sourceIp);
+        frame.putInt(destinationIp);
+
+        frame.putShort((short) sourcePort);
+        frame.putShort((short) destinationPort);
+        if (tcp) {
+            frame.putInt(1);
+            frame.putInt(0);
+            frame.put((byte) 0x50);
+            frame.put((byte) 0x18);
+            frame.putShort((short) 1024);
+            frame.putShort((short) 0);
+            frame.putShort((short) 0);
+        } else {
+            frame.putShort((short) (8 + UDP_PAYLOAD_SIZE));
+            frame.putShort((short) 0);
+        }
+        /* The payload is left to zeroes */
+        return frame;
+    }
+}
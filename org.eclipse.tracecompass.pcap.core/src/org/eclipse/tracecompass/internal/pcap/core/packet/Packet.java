@@ -12,6 +12,9 @@
 
 package org.eclipse.tracecompass.internal.pcap.core.packet;
 
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.util.Map;
 
@@ -45,6 +48,16 @@ public abstract class Packet {
     /** The protocol that this packet uses */
     private final PcapProtocol fProtocol;
 
+    /** Value of the child packet before it is decoded */
+    private static final Object NOT_DECODED = new Object();
+
+    /**
+     * The child packet, decoded the first time it is needed. It is one
+     * volatile field so that another thread sees either the sentinel or the
+     * decoded child.
+     */
+    private volatile @Nullable Object fChildPacket = NOT_DECODED;
+
     /**
      * Constructor of the Packet Class.
      *
@@ -86,9 +99,29 @@ public abstract class Packet {
      * method returns null if the packet is at the lowest level of
      * encapsulation.
      *
+     * The child packet is decoded from the payload the first time this method
+     * is called. If the payload cannot be decoded as the expected protocol,
+     * the child packet is an {@link UnknownPacket}.
+     *
      * @return The child packet.
      */
-    public abstract @Nullable Packet getChildPacket();
+    public final @Nullable Packet getChildPacket() {
+        Object decoded = fChildPacket;
+        if (decoded == NOT_DECODED) {
+            Packet child;
+            try {
+                child = findChildPacket();
+            } catch (BadPacketException | BufferUnderflowException e) {
+                /* The payload is too short or invalid for the protocol */
+                ByteBuffer payload = getPayload();
+                child = (payload == null ? null : new UnknownPacket(fPcapFile, this, checkNotNull(payload.duplicate())));
+            }
+            /* Decoding the payload twice concurrently is harmless */
+            fChildPacket = child;
+            return child;
+        }
+        return (Packet) decoded;
+    }
 
     /**
      * Getter method for the protocol of the packet.
@@ -202,7 +235,8 @@ public abstract class Packet {
 
     /**
      * Internal method that is used to find the child packet. This is protocol
-     * dependent and must be implemented by each packet class.
+     * dependent and must be implemented by each packet class. It is called at
+     * most once, by {@link #getChildPacket()}.
      *
      * @return The child packet.
      * @throws BadPacketException
@@ -273,6 +307,34 @@ public abstract class Packet {
         return packet.getSignificationString();
     }
 
+    /**
+     * Method that is used by child packet classes to compare their child
+     * packets in {@link #equals}.
+     *
+     * @param other
+     *            The other packet.
+     * @return Whether the child packets of the two packets are equal.
+     */
+    protected final boolean childPacketEquals(Packet other) {
+        Packet child = getChildPacket();
+        Packet otherChild = other.getChildPacket();
+        if (child == null) {
+            return otherChild == null;
+        }
+        return child.equals(otherChild);
+    }
+
+    /**
+     * Method that is used by child packet classes to get the hash code of
+     * their child packet in {@link #hashCode}.
+     *
+     * @return The hash code of the child packet, or 0 if there is none.
+     */
+    protected final int childPacketHashCode() {
+        Packet child = getChildPacket();
+        return (child == null ? 0 : child.hashCode());
+    }
+
     @Override
     public abstract boolean equals(@Nullable Object obj);
 
@@ -40,7 +40,6 @@ import com.google.common.collect.ImmutableMap;
  */
 public class EthernetIIPacket extends Packet {
 
-    private final @Nullable Packet fChildPacket;
     private final @Nullable ByteBuffer fPayload;
 
     /* We store MAC addresses as byte arrays since
@@ -70,7 +69,7 @@ public class EthernetIIPacket extends Packet {
     public EthernetIIPacket(PcapFile file, @Nullable Packet parent, ByteBuffer packet) throws BadPacketException {
         super(file, parent, PcapProtocol.ETHERNET_II);
 
-        if (packet.array().length <= EthernetIIValues.ETHERNET_II_MIN_SIZE) {
+        if (packet.limit() <= EthernetIIValues.ETHERNET_II_MIN_SIZE) {
             throw new BadPacketException("An Ethernet II packet can't be smaller than 14 bytes."); //$NON-NLS-1$
         }
 
@@ -90,28 +89,14 @@ public class EthernetIIPacket extends Packet {
         fType = ConversionHelper.unsignedShortToInt(packet.getShort());
 
         // Get payload if it exists.
-        if (packet.array().length - packet.position() > 0) {
-            byte[] array = new byte[packet.array().length - packet.position()];
-            packet.get(array);
-            ByteBuffer payload = ByteBuffer.wrap(array);
-            if (payload != null) {
-                payload.order(ByteOrder.BIG_ENDIAN);
-                payload.position(0);
-            }
+        if (packet.hasRemaining()) {
+            /* The payload shares the content of the packet */
+            ByteBuffer payload = packet.slice();
+            payload.order(ByteOrder.BIG_ENDIAN);
             fPayload = payload;
-
         } else {
             fPayload = null;
         }
-
-        // Find child
-        fChildPacket = findChildPacket();
-
-    }
-
-    @Override
-    public @Nullable Packet getChildPacket() {
-        return fChildPacket;
     }
 
     @Override
@@ -137,6 +122,36 @@ public class EthernetIIPacket extends Packet {
         return checkNotNull(Arrays.copyOf(fDestinationMacAddress, fDestinationMacAddress.length));
     }
 
+    /**
+     * Getter method for the source MAC Address packed in the 48 lower bits of
+     * a long, without copying it.
+     *
+     * @return The source MAC address, the first byte being the most
+     *         significant.
+     */
+    public long getPackedSourceMacAddress() {
+        return packMacAddress(fSourceMacAddress);
+    }
+
+    /**
+     * Getter method for the destination MAC Address packed in the 48 lower
+     * bits of a long, without copying it.
+     *
+     * @return The destination MAC address, the first byte being the most
+     *         significant.
+     */
+    public long getPackedDestinationMacAddress() {
+        return packMacAddress(fDestinationMacAddress);
+    }
+
+    private static long packMacAddress(byte[] address) {
+        long packed = 0;
+        for (byte b : address) {
+            packed = (packed << 8) | (b & 0xFF);
+        }
+        return packed;
+    }
+
     /**
      * Getter method for Ethertype. See
      * http://standards.ieee.org/develop/regauth/ethertype/eth.txt
@@ -156,9 +171,9 @@ public class EthernetIIPacket extends Packet {
         }
         switch (fType) {
         case EthertypeHelper.ETHERTYPE_IPV4:
-            return new IPv4Packet(getPcapFile(), this, payload);
+            return new IPv4Packet(getPcapFile(), this, checkNotNull(payload.duplicate()));
         default:
-            return new UnknownPacket(getPcapFile(), this, payload);
+            return new UnknownPacket(getPcapFile(), this, checkNotNull(payload.duplicate()));
         }
     }
 
@@ -167,7 +182,7 @@ public class EthernetIIPacket extends Packet {
         String string = getProtocol().getName() + ", Source: " + ConversionHelper.toMacAddress(fSourceMacAddress) + //$NON-NLS-1$
                 ", Destination: " + ConversionHelper.toMacAddress(fDestinationMacAddress) + ", Type: " + //$NON-NLS-1$ //$NON-NLS-2$
                 EthertypeHelper.toEtherType(fType) + "\n"; //$NON-NLS-1$
-        final Packet child = fChildPacket;
+        final Packet child = getChildPacket();
         if (child != null) {
             return string + child.toString();
         }
@@ -232,12 +247,7 @@ public class EthernetIIPacket extends Packet {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        final Packet child = fChildPacket;
-        if (child != null) {
-            result = prime * result + child.hashCode();
-        } else {
-            result = prime * result;
-        }
+        result = prime * result + childPacketHashCode();
         result = prime * result + Arrays.hashCode(fDestinationMacAddress);
         final ByteBuffer payload = fPayload;
         if (payload != null) {
@@ -262,21 +272,8 @@ public class EthernetIIPacket extends Packet {
             return false;
         }
         EthernetIIPacket other = (EthernetIIPacket) obj;
-        if (fChildPacket == null) {
-            if (other.fChildPacket != null) {
-                return false;
-            }
-        } else {
-            final Packet child = fChildPacket;
-            if (child != null) {
-                if (!child.equals(other.fChildPacket)) {
-                    return false;
-                }
-            } else {
-                if (other.fChildPacket != null) {
-                    return false;
-                }
-            }
+        if (!childPacketEquals(other)) {
+            return false;
         }
         if (!Arrays.equals(fDestinationMacAddress, other.fDestinationMacAddress)) {
             return false;
@@ -43,7 +43,6 @@ import com.google.common.collect.ImmutableMap.Builder;
  */
 public class IPv4Packet extends Packet {
 
-    private final @Nullable Packet fChildPacket;
     private final @Nullable ByteBuffer fPayload;
 
     private final int fVersion;
@@ -61,6 +60,8 @@ public class IPv4Packet extends Packet {
     private final int fHeaderChecksum;
     private final Inet4Address fSourceIpAddress;
     private final Inet4Address fDestinationIpAddress;
+    private final int fPackedSourceIpAddress;
+    private final int fPackedDestinationIpAddress;
     private final @Nullable byte[] fOptions;
 
     private @Nullable IPv4Endpoint fSourceEndpoint;
@@ -119,6 +120,8 @@ public class IPv4Packet extends Packet {
         fIpDatagramProtocol = ConversionHelper.unsignedByteToInt(packet.get());
         fHeaderChecksum = ConversionHelper.unsignedShortToInt(packet.getShort());
 
+        fPackedSourceIpAddress = packet.getInt(packet.position());
+        fPackedDestinationIpAddress = packet.getInt(packet.position() + IPv4Values.IP_ADDRESS_SIZE);
         byte[] source = new byte[IPv4Values.IP_ADDRESS_SIZE];
         byte[] destination = new byte[IPv4Values.IP_ADDRESS_SIZE];
         packet.get(source);
@@ -140,25 +143,14 @@ public class IPv4Packet extends Packet {
         }
 
         // Get payload if any.
-        if (packet.array().length - packet.position() > 0) {
-            byte[] array = new byte[packet.array().length - packet.position()];
-            packet.get(array);
-            ByteBuffer payload = ByteBuffer.wrap(array);
+        if (packet.hasRemaining()) {
+            /* The payload shares the content of the packet */
+            ByteBuffer payload = packet.slice();
             payload.order(ByteOrder.BIG_ENDIAN);
-            payload.position(0);
             fPayload = payload;
         } else {
             fPayload = null;
         }
-
-        // Find child
-        fChildPacket = findChildPacket();
-
-    }
-
-    @Override
-    public @Nullable Packet getChildPacket() {
-        return fChildPacket;
     }
 
     @Override
@@ -181,11 +173,11 @@ public class IPv4Packet extends Packet {
 
         switch (fIpDatagramProtocol) {
         case IPProtocolNumberHelper.PROTOCOL_NUMBER_TCP:
-            return new TCPPacket(getPcapFile(), this, payload);
+            return new TCPPacket(getPcapFile(), this, checkNotNull(payload.duplicate()));
         case IPProtocolNumberHelper.PROTOCOL_NUMBER_UDP:
-            return new UDPPacket(getPcapFile(), this, payload);
+            return new UDPPacket(getPcapFile(), this, checkNotNull(payload.duplicate()));
         default:
-            return new UnknownPacket(getPcapFile(), this, payload);
+            return new UnknownPacket(getPcapFile(), this, checkNotNull(payload.duplicate()));
         }
 
     }
@@ -226,7 +218,7 @@ public class IPv4Packet extends Packet {
                 + "\n" + flagString + "\nTime to live: " + fTimeToLive + //$NON-NLS-1$ //$NON-NLS-2$
                 "\nProtocol: " + fIpDatagramProtocol + "\n" //$NON-NLS-1$ //$NON-NLS-2$
                 + checksumString + "\n"; //$NON-NLS-1$
-        final Packet child = fChildPacket;
+        final Packet child = getChildPacket();
         if (child != null) {
             return string + child.toString();
         }
@@ -385,6 +377,28 @@ public class IPv4Packet extends Packet {
         return fDestinationIpAddress;
     }
 
+    /**
+     * Getter method that returns the source IP address packed in an integer,
+     * without creating any object.
+     *
+     * @return The source IP address, the first byte being the most
+     *         significant.
+     */
+    public int getPackedSourceIpAddress() {
+        return fPackedSourceIpAddress;
+    }
+
+    /**
+     * Getter method that returns the destination IP address packed in an
+     * integer, without creating any object.
+     *
+     * @return The destination IP address, the first byte being the most
+     *         significant.
+     */
+    public int getPackedDestinationIpAddress() {
+        return fPackedDestinationIpAddress;
+    }
+
     /**
      * Getter method that returns the options. This method returns null if no
      * options are present.
@@ -487,7 +501,7 @@ public class IPv4Packet extends Packet {
         final ByteBuffer payload = fPayload;
         if (payload != null) {
             sb.append(" Len=") //$NON-NLS-1$
-            .append(payload.array().length);
+            .append(payload.limit());
         } else {
             sb.append(" Len=0"); //$NON-NLS-1$
         }
@@ -527,12 +541,7 @@ public class IPv4Packet extends Packet {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        final Packet child = fChildPacket;
-        if (child != null) {
-            result = prime * result + child.hashCode();
-        } else {
-            result = prime * result;
-        }
+        result = prime * result + childPacketHashCode();
         result = prime * result + fDSCP;
         result = prime * result + fDestinationIpAddress.hashCode();
         result = prime * result + (fDontFragmentFlag ? 1231 : 1237);
@@ -570,15 +579,8 @@ public class IPv4Packet extends Packet {
             return false;
         }
         IPv4Packet other = (IPv4Packet) obj;
-        final Packet child = fChildPacket;
-        if (child != null) {
-            if (!child.equals(other.fChildPacket)) {
-                return false;
-            }
-        } else {
-            if (other.fChildPacket != null) {
-                return false;
-            }
+        if (!childPacketEquals(other)) {
+            return false;
         }
 
         if (fDSCP != other.fDSCP) {
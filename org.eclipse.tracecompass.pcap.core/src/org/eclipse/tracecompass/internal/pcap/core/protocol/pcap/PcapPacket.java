@@ -42,13 +42,13 @@ public class PcapPacket extends Packet {
     private static final int TIMESTAMP_MICROSECOND_MAX = 1000000;
     private static final int TIMESTAMP_NANOSECOND_MAX = 1000000000;
 
-    private final @Nullable Packet fChildPacket;
     private final @Nullable ByteBuffer fPayload;
 
     private final long fTimestamp; // In microseconds
     private final long fIncludedLength;
     private final long fOriginalLength;
     private final long fPacketIndex;
+    private final long fDataLinkType;
 
     private @Nullable PcapEndpoint fSourceEndpoint;
     private @Nullable PcapEndpoint fDestinationEndpoint;
@@ -74,8 +74,7 @@ public class PcapPacket extends Packet {
     public PcapPacket(PcapFile file, @Nullable Packet parent, ByteBuffer header, @Nullable ByteBuffer payload, long index) throws BadPacketException {
         super(file, parent, PcapProtocol.PCAP);
 
-        if (header.array().length < PcapFileValues.PACKET_HEADER_SIZE) {
-            fChildPacket = null;
+        if (header.limit() < PcapFileValues.PACKET_HEADER_SIZE) {
             throw new BadPacketException("The Pcap packet header is too small."); //$NON-NLS-1$
         }
 
@@ -87,6 +86,7 @@ public class PcapPacket extends Packet {
         fFields = null;
 
         fPacketIndex = index;
+        fDataLinkType = file.getDataLinkType();
 
         // PcapPacket header in File endian
         header.order(getPcapFile().getByteOrder());
@@ -97,14 +97,12 @@ public class PcapPacket extends Packet {
         switch (getTimestampScale()) {
         case MICROSECOND:
             if (timestampLeastSignificant > TIMESTAMP_MICROSECOND_MAX) {
-                fChildPacket = null;
                 throw new BadPacketException("The timestamp is erroneous."); //$NON-NLS-1$
             }
             fTimestamp = TIMESTAMP_MICROSECOND_MAX * timestampMostSignificant + timestampLeastSignificant;
             break;
         case NANOSECOND:
             if (timestampLeastSignificant > TIMESTAMP_NANOSECOND_MAX) {
-                fChildPacket = null;
                 throw new BadPacketException("The timestamp is erroneous."); //$NON-NLS-1$
             }
             fTimestamp = TIMESTAMP_NANOSECOND_MAX * timestampMostSignificant + timestampLeastSignificant;
@@ -119,7 +117,6 @@ public class PcapPacket extends Packet {
         // Set up payload
         final ByteBuffer pcapPacket = payload;
         if (pcapPacket == null) {
-            fChildPacket = null;
             fPayload = null;
             return;
         }
@@ -127,15 +124,51 @@ public class PcapPacket extends Packet {
         pcapPacket.order(ByteOrder.BIG_ENDIAN);
         pcapPacket.position(0);
         fPayload = pcapPacket;
+    }
+
+    /**
+     * Constructor of the Pcap Packet class, for the packets whose header was
+     * already decoded, like the packet blocks of pcapng files.
+     *
+     * @param file
+     *            The file that contains this packet.
+     * @param parent
+     *            The parent packet of this packet (the encapsulating packet).
+     * @param timestamp
+     *            The timestamp of the packet, in the timestamp precision of the
+     *            file.
+     * @param includedLength
+     *            The length in bytes of the packet included in the file.
+     * @param originalLength
+     *            The original length in bytes of the packet.
+     * @param dataLinkType
+     *            The datalink type of the interface of the packet.
+     * @param payload
+     *            The payload of this packet.
+     * @param index
+     *            The index of the packet in the file.
+     */
+    public PcapPacket(PcapFile file, @Nullable Packet parent, long timestamp, long includedLength, long originalLength,
+            long dataLinkType, @Nullable ByteBuffer payload, long index) {
+        super(file, parent, PcapProtocol.PCAP);
 
-        // Find Child Packet
-        fChildPacket = findChildPacket();
+        fSourceEndpoint = null;
+        fDestinationEndpoint = null;
+        fFields = null;
 
-    }
+        fPacketIndex = index;
+        fTimestamp = timestamp;
+        fIncludedLength = includedLength;
+        fOriginalLength = originalLength;
+        fDataLinkType = dataLinkType;
 
-    @Override
-    public @Nullable Packet getChildPacket() {
-        return fChildPacket;
+        if (payload == null) {
+            fPayload = null;
+            return;
+        }
+        payload.order(ByteOrder.BIG_ENDIAN);
+        payload.position(0);
+        fPayload = payload;
     }
 
     @Override
@@ -172,6 +205,17 @@ public class PcapPacket extends Packet {
         return fOriginalLength;
     }
 
+    /**
+     * Getter method that returns the datalink type of the packet. This
+     * parameter is used to determine higher-level protocols (Ethernet, WLAN,
+     * SLL).
+     *
+     * @return The datalink type of the packet.
+     */
+    public long getDataLinkType() {
+        return fDataLinkType;
+    }
+
     /**
      * Method that indicates if this packet was truncated at capture time.
      *
@@ -198,7 +242,7 @@ public class PcapPacket extends Packet {
                 fIncludedLength + " bytes captured.\nArrival time: " +  //$NON-NLS-1$
                 ConversionHelper.toGMTTime(fTimestamp, getTimestampScale()) + "\n"; //$NON-NLS-1$
 
-        final Packet child = fChildPacket;
+        final Packet child = getChildPacket();
         if (child != null) {
             return string + child.toString();
         }
@@ -218,11 +262,11 @@ public class PcapPacket extends Packet {
             return null;
         }
 
-        switch ((int) getPcapFile().getDataLinkType()) {
+        switch ((int) fDataLinkType) {
         case LinkTypeHelper.LINKTYPE_ETHERNET:
-            return new EthernetIIPacket(getPcapFile(), this, payload);
+            return new EthernetIIPacket(getPcapFile(), this, NonNullUtils.checkNotNull(payload.duplicate()));
         default: // TODO add more protocols
-            return new UnknownPacket(getPcapFile(), this, payload);
+            return new UnknownPacket(getPcapFile(), this, NonNullUtils.checkNotNull(payload.duplicate()));
         }
     }
 
@@ -289,12 +333,7 @@ public class PcapPacket extends Packet {
         final int prime = 31;
         int result = 1;
 
-        Packet child = fChildPacket;
-        if (child == null) {
-            result = prime * result;
-        } else {
-            result = prime * result + child.hashCode();
-        }
+        result = prime * result + childPacketHashCode();
 
         result = prime * result + (int) (fIncludedLength ^ (fIncludedLength >>> 32));
         result = prime * result + (int) (fOriginalLength ^ (fOriginalLength >>> 32));
@@ -323,15 +362,8 @@ public class PcapPacket extends Packet {
             return false;
         }
         PcapPacket other = (PcapPacket) obj;
-        final Packet child = fChildPacket;
-        if (child != null) {
-            if (!child.equals(other.fChildPacket)) {
-                return false;
-            }
-        } else {
-            if (other.fChildPacket != null) {
-                return false;
-            }
+        if (!childPacketEquals(other)) {
+            return false;
         }
 
         if (fIncludedLength != other.fIncludedLength) {
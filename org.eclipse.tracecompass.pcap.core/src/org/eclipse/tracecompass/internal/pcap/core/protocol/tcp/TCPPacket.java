@@ -37,7 +37,6 @@ import com.google.common.collect.ImmutableMap.Builder;
  */
 public class TCPPacket extends Packet {
 
-    private final @Nullable Packet fChildPacket;
     private final @Nullable ByteBuffer fPayload;
 
     private final int fSourcePort;
@@ -123,25 +122,14 @@ public class TCPPacket extends Packet {
         }
 
         // Get payload if any.
-        if (packet.array().length - packet.position() > 0) {
-            byte[] array = new byte[packet.array().length - packet.position()];
-            packet.get(array);
-            ByteBuffer payload = ByteBuffer.wrap(array);
+        if (packet.hasRemaining()) {
+            /* The payload shares the content of the packet */
+            ByteBuffer payload = packet.slice();
             payload.order(ByteOrder.BIG_ENDIAN);
-            payload.position(0);
             fPayload = payload;
         } else {
             fPayload = null;
         }
-
-        // find child packet
-        fChildPacket = findChildPacket();
-
-    }
-
-    @Override
-    public @Nullable Packet getChildPacket() {
-        return fChildPacket;
     }
 
     @Override
@@ -164,7 +152,7 @@ public class TCPPacket extends Packet {
             return null;
         }
 
-        return new UnknownPacket(getPcapFile(), this, payload);
+        return new UnknownPacket(getPcapFile(), this, checkNotNull(payload.duplicate()));
     }
 
     @Override
@@ -172,7 +160,7 @@ public class TCPPacket extends Packet {
         final ByteBuffer payload = fPayload;
         int length = 0;
         if (payload != null) {
-            length = payload.array().length;
+            length = payload.limit();
         }
 
         String flagString = ""; // TODO Finish it. Im just too lazy. //$NON-NLS-1$
@@ -181,7 +169,7 @@ public class TCPPacket extends Packet {
                 "\nHeader length: " + fDataOffset * TCPValues.BLOCK_SIZE + " bytes, Data length: " + length + //$NON-NLS-1$ //$NON-NLS-2$
                 "\n" + flagString + "Window size value: " + fWindowSize + ", Urgent Pointer: " + String.format("%s%04x", "0x", fUrgentPointer) + //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
                 "\nChecksum: " + String.format("%s%04x", "0x", fChecksum) + "\n"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
-        final Packet child = fChildPacket;
+        final Packet child = getChildPacket();
         if (child != null) {
             return string + child.toString();
         }
@@ -575,12 +563,7 @@ public class TCPPacket extends Packet {
         result = prime * result + (int) (fAcknowledgmentNumber ^ (fAcknowledgmentNumber >>> 32));
         result = prime * result + (fCWRFlag ? 1231 : 1237);
         result = prime * result + fChecksum;
-        final Packet child = fChildPacket;
-        if (child != null) {
-            result = prime * result + child.hashCode();
-        } else {
-            result = prime * result;
-        }
+        result = prime * result + childPacketHashCode();
         result = prime * result + fDataOffset;
         result = prime * result + fDestinationPort;
         result = prime * result + (fECEFlag ? 1231 : 1237);
@@ -629,15 +612,8 @@ public class TCPPacket extends Packet {
         if (fChecksum != other.fChecksum) {
             return false;
         }
-        final Packet child = fChildPacket;
-        if (child != null) {
-            if (!child.equals(other.fChildPacket)) {
-                return false;
-            }
-        } else {
-            if (other.fChildPacket != null) {
-                return false;
-            }
+        if (!childPacketEquals(other)) {
+            return false;
         }
 
         if (fDataOffset != other.fDataOffset) {
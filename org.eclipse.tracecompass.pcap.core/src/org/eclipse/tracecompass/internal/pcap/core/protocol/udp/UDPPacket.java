@@ -34,7 +34,6 @@ import com.google.common.collect.ImmutableMap;
  */
 public class UDPPacket extends Packet {
 
-    private final @Nullable Packet fChildPacket;
     private final @Nullable ByteBuffer fPayload;
 
     private final int fSourcePort;
@@ -77,26 +76,14 @@ public class UDPPacket extends Packet {
         fTotalLength = ConversionHelper.unsignedShortToInt(packet.getShort());
         fChecksum = ConversionHelper.unsignedShortToInt(packet.getShort());
 
-        if (packet.array().length - packet.position() > 0) {
-            byte[] array = new byte[packet.array().length - packet.position()];
-            packet.get(array);
-
-            ByteBuffer payload = ByteBuffer.wrap(array);
+        if (packet.hasRemaining()) {
+            /* The payload shares the content of the packet */
+            ByteBuffer payload = packet.slice();
             payload.order(ByteOrder.BIG_ENDIAN);
-            payload.position(0);
             fPayload = payload;
         } else {
             fPayload = null;
         }
-
-        // Find child
-        fChildPacket = findChildPacket();
-
-    }
-
-    @Override
-    public @Nullable Packet getChildPacket() {
-        return fChildPacket;
     }
 
     @Override
@@ -119,14 +106,14 @@ public class UDPPacket extends Packet {
             return null;
         }
 
-        return new UnknownPacket(getPcapFile(), this, payload);
+        return new UnknownPacket(getPcapFile(), this, NonNullUtils.checkNotNull(payload.duplicate()));
     }
 
     @Override
     public String toString() {
         String string = getProtocol().getName() + ", Source Port: " + fSourcePort + ", Destination Port: " + fDestinationPort + //$NON-NLS-1$ //$NON-NLS-2$
                 ", Length: " + fTotalLength + ", Checksum: " + fChecksum + "\n"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-        final Packet child = fChildPacket;
+        final Packet child = getChildPacket();
         if (child != null) {
             return string + child.toString();
         }
@@ -232,12 +219,7 @@ public class UDPPacket extends Packet {
         final int prime = 31;
         int result = 1;
         result = prime * result + fChecksum;
-        final Packet child = fChildPacket;
-        if (child != null) {
-            result = prime * result + child.hashCode();
-        } else {
-            result = prime * result;
-        }
+        result = prime * result + childPacketHashCode();
         result = prime * result + fDestinationPort;
         final ByteBuffer payload = fPayload;
         if (payload != null) {
@@ -265,15 +247,8 @@ public class UDPPacket extends Packet {
         if (fChecksum != other.fChecksum) {
             return false;
         }
-        final Packet child = fChildPacket;
-        if (child != null) {
-            if (!child.equals(other.fChildPacket)) {
-                return false;
-            }
-        } else {
-            if (other.fChildPacket != null) {
-                return false;
-            }
+        if (!childPacketEquals(other)) {
+            return false;
         }
         if (fDestinationPort != other.fDestinationPort) {
             return false;
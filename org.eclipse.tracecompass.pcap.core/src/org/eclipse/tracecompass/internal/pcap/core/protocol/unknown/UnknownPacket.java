@@ -37,7 +37,6 @@ import com.google.common.collect.ImmutableMap.Builder;
  */
 public class UnknownPacket extends Packet {
 
-    private final @Nullable Packet fChildPacket;
     private final ByteBuffer fPayload;
 
     private @Nullable UnknownEndpoint fSourceEndpoint;
@@ -67,13 +66,6 @@ public class UnknownPacket extends Packet {
 
         // Header is not used. All data go into payload.
         fPayload = packet;
-
-        fChildPacket = findChildPacket();
-    }
-
-    @Override
-    public @Nullable Packet getChildPacket() {
-        return fChildPacket;
     }
 
     @Override
@@ -88,9 +80,9 @@ public class UnknownPacket extends Packet {
 
     @Override
     public String toString() {
-        byte[] array = checkNotNull(fPayload.array());
+        byte[] array = getPayloadBytes();
         String string = "Payload: " + ConversionHelper.bytesToHex(array, true); //$NON-NLS-1$
-        final Packet child = fChildPacket;
+        final Packet child = getChildPacket();
         if (child != null) {
             return string + child.toString();
         }
@@ -129,7 +121,7 @@ public class UnknownPacket extends Packet {
     public Map<String, String> getFields() {
         Map<String, String> map = fFields;
         if (map == null) {
-            byte[] array = checkNotNull(fPayload.array());
+            byte[] array = getPayloadBytes();
 
             Builder<String, String> builder = ImmutableMap.<String, String> builder()
                     .put("Binary", ConversionHelper.bytesToHex(array, true)); //$NON-NLS-1$
@@ -147,12 +139,24 @@ public class UnknownPacket extends Packet {
 
     @Override
     public String getLocalSummaryString() {
-        return "Len: " + fPayload.array().length + " bytes"; //$NON-NLS-1$ //$NON-NLS-2$
+        return "Len: " + fPayload.limit() + " bytes"; //$NON-NLS-1$ //$NON-NLS-2$
     }
 
     @Override
     protected String getSignificationString() {
-        return "Data: " + fPayload.array().length + " bytes"; //$NON-NLS-1$ //$NON-NLS-2$
+        return "Data: " + fPayload.limit() + " bytes"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /*
+     * Get a copy of the content of the payload, which may be a part of the
+     * buffer of the parent packet.
+     */
+    private byte[] getPayloadBytes() {
+        ByteBuffer payload = fPayload.duplicate();
+        payload.position(0);
+        byte[] array = new byte[payload.limit()];
+        payload.get(array);
+        return array;
     }
 
     @Override
@@ -168,12 +172,7 @@ public class UnknownPacket extends Packet {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        final Packet child = fChildPacket;
-        if (child != null) {
-            result = prime * result + ((fChildPacket == null) ? 0 : child.hashCode());
-        } else {
-            result = prime * result;
-        }
+        result = prime * result + childPacketHashCode();
         result = prime * result + fPayload.hashCode();
         return result;
     }
@@ -190,15 +189,8 @@ public class UnknownPacket extends Packet {
             return false;
         }
         UnknownPacket other = (UnknownPacket) obj;
-        final Packet child = fChildPacket;
-        if (child != null) {
-            if (!child.equals(other.fChildPacket)) {
-                return false;
-            }
-        } else {
-            if (other.fChildPacket != null) {
-                return false;
-            }
+        if (!childPacketEquals(other)) {
+            return false;
         }
 
         if (!fPayload.equals(other.fPayload)) {
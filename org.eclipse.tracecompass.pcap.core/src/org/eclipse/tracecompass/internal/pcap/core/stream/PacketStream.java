@@ -14,23 +14,20 @@ package org.eclipse.tracecompass.internal.pcap.core.stream;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
-import org.eclipse.tracecompass.internal.pcap.core.endpoint.ProtocolEndpointPair;
-import org.eclipse.tracecompass.internal.pcap.core.packet.Packet;
 import org.eclipse.tracecompass.internal.pcap.core.protocol.PcapProtocol;
-import org.eclipse.tracecompass.internal.pcap.core.protocol.pcap.PcapPacket;
 
 import com.google.common.math.DoubleMath;
 
-// TODO decide if default modifier a good idea. This allows only the
-// stream builder to call that method (and any class that is added to this
-// package). This effectively makes the stream read-only.
-
 /**
  * Class that represents a packet stream, which is a collection of packets that
  * share the same endpoints. The endpoints of a packet are protocol-dependent.
  * For example, a TCP stream is a collection of packets that share the same MAC
  * address, IP address, and Port couple.
  *
+ * A packet stream is a snapshot of the stream, as built by the
+ * {@link PacketStreamBuilder} at the time it was returned. It is not modified
+ * by the packets added afterwards.
+ *
  * @author Vincent Perot
  */
 public class PacketStream {
@@ -39,79 +36,45 @@ public class PacketStream {
     private static final double DELTA = 0.000000001;
     private final PcapProtocol fProtocol;
     private final int fId;
-    private final ProtocolEndpointPair fEndpointPair;
+    private final String fFirstEndpoint;
+    private final String fSecondEndpoint;
 
-    private long fNbPacketsAtoB;
-    private long fNbPacketsBtoA;
-    private long fNbBytesAtoB;
-    private long fNbBytesBtoA;
-    private long fStartTime;
-    private long fEndTime;
+    private final long fNbPacketsAtoB;
+    private final long fNbPacketsBtoA;
+    private final long fNbBytesAtoB;
+    private final long fNbBytesBtoA;
+    private final long fStartTime;
+    private final long fEndTime;
+    private final long fVersion;
 
     /**
-     * Constructor of a packet stream.
+     * Constructor of a packet stream, from the current state of a stream of a
+     * table.
      *
      * @param protocol
      *            The protocol of the packets of the stream. This is needed
      *            because the definition of a stream is protocol-dependent.
      * @param id
      *            The id of this stream.
-     * @param endpointPair
-     *            The common endpoints of the packets in this stream.
-     */
-    PacketStream(PcapProtocol protocol, int id, ProtocolEndpointPair endpointPair) {
+     * @param firstEndpoint
+     *            The first endpoint of the stream, as a string.
+     * @param secondEndpoint
+     *            The second endpoint of the stream, as a string.
+     * @param table
+     *            The table that contains the stream.
+     */
+    PacketStream(PcapProtocol protocol, int id, String firstEndpoint, String secondEndpoint, PacketStreamTable table) {
         fProtocol = protocol;
         fId = id;
-        fEndpointPair = endpointPair;
-        fNbPacketsAtoB = 0;
-        fNbPacketsBtoA = 0;
-        fNbBytesAtoB = 0;
-        fNbBytesBtoA = 0;
-        fStartTime = Long.MAX_VALUE;
-        fEndTime = Long.MIN_VALUE;
-    }
-
-    /**
-     * Add a packet to the stream.
-     *
-     * @param packet
-     *            The packet that must be added.
-     */
-    synchronized void add(PcapPacket packet) {
-
-        Packet newPacket = packet.getPacket(fProtocol);
-        if (newPacket == null) {
-            return;
-        }
-
-        // Update packet and byte number
-        if (fEndpointPair.getFirstEndpoint().equals(newPacket.getSourceEndpoint()) &&
-                fEndpointPair.getSecondEndpoint().equals(newPacket.getDestinationEndpoint())) {
-            fNbPacketsAtoB++;
-            fNbBytesAtoB += packet.getOriginalLength();
-        } else if (fEndpointPair.getFirstEndpoint().equals(newPacket.getDestinationEndpoint()) &&
-                fEndpointPair.getSecondEndpoint().equals(newPacket.getSourceEndpoint())) {
-            fNbPacketsBtoA++;
-            fNbBytesBtoA += packet.getOriginalLength();
-        } else {
-            throw new IllegalStateException();
-        }
-
-        // Update start and stop time
-        // Stream timestamp is ALWAYS in nanoseconds.
-        long timestamp;
-        switch (packet.getTimestampScale()) {
-        case MICROSECOND:
-            timestamp = packet.getTimestamp() * 1000;
-            break;
-        case NANOSECOND:
-            timestamp = packet.getTimestamp();
-            break;
-        default:
-            throw new IllegalArgumentException("The timestamp precision is not valid!"); //$NON-NLS-1$
-        }
-        fStartTime = Math.min(fStartTime, timestamp);
-        fEndTime = Math.max(fEndTime, timestamp);
+        fFirstEndpoint = firstEndpoint;
+        fSecondEndpoint = secondEndpoint;
+        fNbPacketsAtoB = table.getNbPacketsAtoB(id);
+        fNbPacketsBtoA = table.getNbPacketsBtoA(id);
+        fNbBytesAtoB = table.getNbBytesAtoB(id);
+        fNbBytesBtoA = table.getNbBytesBtoA(id);
+        fStartTime = table.getStartTime(id);
+        fEndTime = table.getEndTime(id);
+        fVersion = table.getVersion(id);
     }
 
     /**
@@ -142,17 +105,38 @@ public class PacketStream {
     }
 
     /**
-     * Method that returns the endpoint pair of the stream.
+     * Method that returns the first endpoint of the stream, which is the
+     * source of its first packet.
+     *
+     * @return The first endpoint of the stream, as a string.
+     */
+    public String getFirstEndpoint() {
+        return fFirstEndpoint;
+    }
+
+    /**
+     * Method that returns the second endpoint of the stream.
+     *
+     * @return The second endpoint of the stream, as a string.
+     */
+    public String getSecondEndpoint() {
+        return fSecondEndpoint;
+    }
+
+    /**
+     * Method that returns the version of the builder when the last packet of
+     * this stream was added.
      *
-     * @return The endpoint pair of the stream.
+     * @return The version of this stream.
+     * @see PacketStreamBuilder#getStreams(long)
      */
-    public ProtocolEndpointPair getEndpointPair() {
-        return fEndpointPair;
+    public long getVersion() {
+        return fVersion;
     }
 
     // TODO return also the endpoint set.
     @Override
-    public synchronized String toString() {
+    public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("Stream " + getUniqueID() + ", Number of Packets: " + getNbPackets() + "\n"); //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
 
@@ -165,7 +149,7 @@ public class PacketStream {
      *
      * @return The number of packets from A to B.
      */
-    public synchronized long getNbPacketsAtoB() {
+    public long getNbPacketsAtoB() {
         return fNbPacketsAtoB;
     }
 
@@ -174,7 +158,7 @@ public class PacketStream {
      *
      * @return The number of packets from B to A.
      */
-    public synchronized long getNbPacketsBtoA() {
+    public long getNbPacketsBtoA() {
         return fNbPacketsBtoA;
     }
 
@@ -183,7 +167,7 @@ public class PacketStream {
      *
      * @return The total number of packets.
      */
-    public synchronized long getNbPackets() {
+    public long getNbPackets() {
         return fNbPacketsAtoB + fNbPacketsBtoA;
     }
 
@@ -192,7 +176,7 @@ public class PacketStream {
      *
      * @return The number of bytes from A to B.
      */
-    public synchronized long getNbBytesAtoB() {
+    public long getNbBytesAtoB() {
         return fNbBytesAtoB;
     }
 
@@ -201,7 +185,7 @@ public class PacketStream {
      *
      * @return The number of bytes from B to A.
      */
-    public synchronized long getNbBytesBtoA() {
+    public long getNbBytesBtoA() {
         return fNbBytesBtoA;
     }
 
@@ -210,7 +194,7 @@ public class PacketStream {
      *
      * @return The total number of bytes.
      */
-    public synchronized long getNbBytes() {
+    public long getNbBytes() {
         return fNbBytesAtoB + fNbBytesBtoA;
     }
 
@@ -219,7 +203,7 @@ public class PacketStream {
      *
      * @return The start time.
      */
-    public synchronized long getStartTime() {
+    public long getStartTime() {
         return fStartTime;
     }
 
@@ -228,7 +212,7 @@ public class PacketStream {
      *
      * @return The stop time.
      */
-    public synchronized long getStopTime() {
+    public long getStopTime() {
         return fEndTime;
     }
 
@@ -237,7 +221,7 @@ public class PacketStream {
      *
      * @return The duration of this stream.
      */
-    public synchronized double getDuration() {
+    public double getDuration() {
         return (fEndTime - fStartTime) / SECOND_TO_NANOSECOND;
     }
 
@@ -246,7 +230,7 @@ public class PacketStream {
      *
      * @return the average byte per second from A to B.
      */
-    public synchronized double getBPSAtoB() {
+    public double getBPSAtoB() {
         if (DoubleMath.fuzzyEquals(getDuration(), 0, DELTA)) {
             return 0;
         }
@@ -258,7 +242,7 @@ public class PacketStream {
      *
      * @return the average byte per second from B to A.
      */
-    public synchronized double getBPSBtoA() {
+    public double getBPSBtoA() {
         if (DoubleMath.fuzzyEquals(getDuration(), 0, DELTA)) {
             return 0;
         }
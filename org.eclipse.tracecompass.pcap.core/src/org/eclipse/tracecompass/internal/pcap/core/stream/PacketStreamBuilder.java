@@ -12,37 +12,69 @@
 
 package org.eclipse.tracecompass.internal.pcap.core.stream;
 
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.pcap.core.endpoint.ProtocolEndpoint;
-import org.eclipse.tracecompass.internal.pcap.core.endpoint.ProtocolEndpointPair;
 import org.eclipse.tracecompass.internal.pcap.core.filter.IPacketFilter;
 import org.eclipse.tracecompass.internal.pcap.core.filter.PacketFilterByProtocol;
 import org.eclipse.tracecompass.internal.pcap.core.packet.BadPacketException;
 import org.eclipse.tracecompass.internal.pcap.core.packet.Packet;
 import org.eclipse.tracecompass.internal.pcap.core.protocol.PcapProtocol;
+import org.eclipse.tracecompass.internal.pcap.core.protocol.ethernet2.EthernetIIPacket;
+import org.eclipse.tracecompass.internal.pcap.core.protocol.ethernet2.EthernetIIValues;
+import org.eclipse.tracecompass.internal.pcap.core.protocol.ipv4.IPv4Packet;
 import org.eclipse.tracecompass.internal.pcap.core.protocol.pcap.PcapPacket;
+import org.eclipse.tracecompass.internal.pcap.core.protocol.tcp.TCPPacket;
+import org.eclipse.tracecompass.internal.pcap.core.protocol.udp.UDPPacket;
 import org.eclipse.tracecompass.internal.pcap.core.trace.BadPcapFileException;
 import org.eclipse.tracecompass.internal.pcap.core.trace.PcapFile;
 
 /**
  * Class that parse an entire pcap file to build the different streams.
  *
+ * The endpoints of each packet are packed in primitive values: the first long
+ * of an endpoint holds the MAC address and the port, the second one the IP
+ * address and the layers present in the endpoint. The streams are kept in a
+ * table of such keys, and the {@link PacketStream} objects are only created
+ * when the streams are requested.
+ *
  * @author Vincent Perot
  */
 public class PacketStreamBuilder {
 
+    private static final int INDEX_MAGIC = 0x50435358;
+    private static final int INDEX_VERSION = 1;
+
+    /* Layers present in an endpoint, in the high bits of its second long */
+    private static final long HAS_MAC_ADDRESS = 1L << 32;
+    private static final long HAS_IP_ADDRESS = 1L << 33;
+    private static final long HAS_PORT = 1L << 34;
+    private static final long IP_ADDRESS_MASK = 0xFFFFFFFFL;
+    private static final long PORT_MASK = 0xFFFFL;
+    private static final int MAC_ADDRESS_SHIFT = 16;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
     private final IPacketFilter fPacketFilter;
     private final PcapProtocol fProtocol;
 
-    private final Map<Integer, PacketStream> fStreams;
-    private final Map<ProtocolEndpointPair, Integer> fIDs;
-    private int fCurrentId;
+    private final PacketStreamTable fTable;
+    /* Last snapshot of each stream, indexed by ID */
+    private PacketStream[] fSnapshots;
+    /* The packed endpoints of the current packet: source, then destination */
+    private final long[] fEndpoints;
 
     /**
      * Main constructor.
@@ -51,11 +83,11 @@ public class PacketStreamBuilder {
      *            The protocol of the builder.
      */
     public PacketStreamBuilder(PcapProtocol protocol) {
-        fCurrentId = 0;
         fProtocol = protocol;
         fPacketFilter = new PacketFilterByProtocol(protocol);
-        fStreams = new HashMap<>();
-        fIDs = new HashMap<>();
+        fTable = new PacketStreamTable();
+        fSnapshots = new PacketStream[0];
+        fEndpoints = new long[4];
     }
 
     /**
@@ -66,12 +98,17 @@ public class PacketStreamBuilder {
      * @return The stream that has the specified ID.
      */
     public synchronized @Nullable PacketStream getStream(int id) {
-        return fStreams.get(id);
+        if (id < 0 || id >= fTable.size()) {
+            return null;
+        }
+        return getSnapshot(id);
     }
 
     /**
      * Method that returns a particular stream based on its endpoints. It
-     * returns null if no corresponding stream is found.
+     * returns null if no corresponding stream is found. The streams are
+     * compared through the string of their endpoints, so this method is
+     * linear in the number of streams.
      *
      * @param endpointA
      *            The first endpoint of the stream.
@@ -82,19 +119,56 @@ public class PacketStreamBuilder {
      *         stream is found between the two endpoints.
      */
     public synchronized @Nullable PacketStream getStream(ProtocolEndpoint endpointA, ProtocolEndpoint endpointB) {
-        ProtocolEndpointPair set = new ProtocolEndpointPair(endpointA, endpointB);
-        int id = fIDs.get(set);
-        return fStreams.get(id);
+        String stringA = endpointA.toString();
+        String stringB = endpointB.toString();
+        for (int id = 0; id < fTable.size(); id++) {
+            PacketStream stream = getSnapshot(id);
+            if ((stream.getFirstEndpoint().equals(stringA) && stream.getSecondEndpoint().equals(stringB)) ||
+                    (stream.getFirstEndpoint().equals(stringB) && stream.getSecondEndpoint().equals(stringA))) {
+                return stream;
+            }
+        }
+        return null;
     }
 
     /**
      * Method that returns all the streams at the specified protocol level.
      *
-     * @return The streams as a list.
+     * @return The streams as a list, ordered by ID.
      */
     public synchronized Iterable<PacketStream> getStreams() {
-        Iterable<PacketStream> iterable = new LinkedList<>(fStreams.values());
-        return iterable;
+        return getStreams(0);
+    }
+
+    /**
+     * Method that returns the streams modified since a version of the
+     * builder, for instance the highest version of the streams returned by a
+     * previous call. The new streams are always returned, and since they are
+     * ordered by ID, the streams can be kept in a list indexed by ID.
+     *
+     * @param version
+     *            The version of the builder, 0 to get all the streams.
+     * @return The streams whose version is greater than the specified
+     *         version, ordered by ID.
+     */
+    public synchronized Iterable<PacketStream> getStreams(long version) {
+        List<PacketStream> streams = new ArrayList<>();
+        for (int id = 0; id < fTable.size(); id++) {
+            if (fTable.getVersion(id) > version) {
+                streams.add(getSnapshot(id));
+            }
+        }
+        return streams;
+    }
+
+    /**
+     * Method that returns the current version of the builder, which is
+     * incremented at each packet added to a stream.
+     *
+     * @return The version of the builder.
+     */
+    public synchronized long getVersion() {
+        return fTable.getVersion();
     }
 
     /**
@@ -107,19 +181,25 @@ public class PacketStreamBuilder {
     public synchronized void addPacketToStream(PcapPacket packet) {
         if (fPacketFilter.accepts(packet)) {
             @Nullable Packet newPacket = packet.getPacket(fProtocol);
-            if (newPacket == null) {
+            if (newPacket == null || !packEndpoints(newPacket)) {
                 return;
             }
-            ProtocolEndpointPair endpointSet = new ProtocolEndpointPair(newPacket);
-            if (!fIDs.containsKey(endpointSet)) {
-                fIDs.put(endpointSet, fCurrentId);
-                fStreams.put(fCurrentId, new PacketStream(fProtocol, fCurrentId, endpointSet));
-                fStreams.get(fCurrentId).add(packet);
-                fCurrentId++;
-            } else {
-                Integer id = fIDs.get(endpointSet);
-                fStreams.get(id).add(packet);
+
+            // Stream timestamp is ALWAYS in nanoseconds.
+            long timestamp;
+            switch (packet.getTimestampScale()) {
+            case MICROSECOND:
+                timestamp = packet.getTimestamp() * 1000;
+                break;
+            case NANOSECOND:
+                timestamp = packet.getTimestamp();
+                break;
+            default:
+                throw new IllegalArgumentException("The timestamp precision is not valid!"); //$NON-NLS-1$
             }
+
+            long[] endpoints = fEndpoints;
+            fTable.add(endpoints[0], endpoints[1], endpoints[2], endpoints[3], packet.getOriginalLength(), timestamp);
         }
         return;
     }
@@ -136,10 +216,9 @@ public class PacketStreamBuilder {
     /**
      * Method that clears the builder.
      */
-    public void clear() {
-        fStreams.clear();
-        fIDs.clear();
-        fCurrentId = 0;
+    public synchronized void clear() {
+        fTable.clear();
+        fSnapshots = new PacketStream[0];
     }
 
     /**
@@ -148,7 +227,7 @@ public class PacketStreamBuilder {
      * @return The number of streams built.
      */
     public synchronized int getNbStreams() {
-        return fStreams.size();
+        return fTable.size();
     }
 
     /**
@@ -179,4 +258,167 @@ public class PacketStreamBuilder {
         }
 
     }
+
+    /**
+     * Save the streams built from a pcap file, so that they can be read back
+     * with {@link #readIndex(Path, Path)} instead of parsing the file again.
+     *
+     * @param indexFile
+     *            The path of the index file to write.
+     * @param pcapFile
+     *            The path of the pcap file the streams were built from.
+     * @throws IOException
+     *             Thrown when the index file cannot be written.
+     */
+    public synchronized void writeIndex(Path indexFile, Path pcapFile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)));) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeUTF(fProtocol.getShortName());
+            out.writeLong(Files.size(pcapFile));
+            out.writeLong(Files.getLastModifiedTime(pcapFile).toMillis());
+            fTable.write(out);
+        }
+    }
+
+    /**
+     * Read the streams saved by {@link #writeIndex(Path, Path)}. They are only
+     * used if the builder is empty, and if the index was written for the
+     * protocol of this builder and for the pcap file, as it is now.
+     *
+     * @param indexFile
+     *            The path of the index file to read.
+     * @param pcapFile
+     *            The path of the pcap file the streams are built from.
+     * @return Whether the streams were read.
+     * @throws IOException
+     *             Thrown when the index file cannot be read.
+     */
+    public synchronized boolean readIndex(Path indexFile, Path pcapFile) throws IOException {
+        if (fTable.size() != 0 || !Files.isRegularFile(indexFile)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)));) {
+            if (in.readInt() != INDEX_MAGIC ||
+                    in.readInt() != INDEX_VERSION ||
+                    !in.readUTF().equals(fProtocol.getShortName()) ||
+                    in.readLong() != Files.size(pcapFile) ||
+                    in.readLong() != Files.getLastModifiedTime(pcapFile).toMillis()) {
+                return false;
+            }
+            fTable.read(in);
+            return true;
+        } catch (EOFException e) {
+            /* Truncated index file */
+            return false;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    /*
+     * Get the snapshot of a stream, reusing the previous one if the stream
+     * was not modified since.
+     */
+    private PacketStream getSnapshot(int id) {
+        PacketStream[] snapshots = fSnapshots;
+        if (id >= snapshots.length) {
+            snapshots = Arrays.copyOf(snapshots, Math.max(id + 1, fTable.size()));
+            fSnapshots = snapshots;
+        }
+        PacketStream stream = snapshots[id];
+        if (stream != null && stream.getVersion() == fTable.getVersion(id)) {
+            return stream;
+        }
+        String firstEndpoint;
+        String secondEndpoint;
+        if (stream != null) {
+            firstEndpoint = stream.getFirstEndpoint();
+            secondEndpoint = stream.getSecondEndpoint();
+        } else {
+            firstEndpoint = toEndpointString(fTable.getEndpoint(id, true, 0), fTable.getEndpoint(id, true, 1));
+            secondEndpoint = toEndpointString(fTable.getEndpoint(id, false, 0), fTable.getEndpoint(id, false, 1));
+        }
+        stream = new PacketStream(fProtocol, id, firstEndpoint, secondEndpoint, fTable);
+        snapshots[id] = stream;
+        return stream;
+    }
+
+    /*
+     * Pack the source and destination endpoints of a packet in fEndpoints,
+     * walking up its encapsulating packets. Returns false if a layer cannot be
+     * packed.
+     */
+    private boolean packEndpoints(Packet packet) {
+        long source0 = 0;
+        long source1 = 0;
+        long destination0 = 0;
+        long destination1 = 0;
+        @Nullable Packet current = packet;
+        while (current != null) {
+            if (current instanceof TCPPacket) {
+                TCPPacket tcpPacket = (TCPPacket) current;
+                source0 |= tcpPacket.getSourcePort() & PORT_MASK;
+                destination0 |= tcpPacket.getDestinationPort() & PORT_MASK;
+                source1 |= HAS_PORT;
+                destination1 |= HAS_PORT;
+            } else if (current instanceof UDPPacket) {
+                UDPPacket udpPacket = (UDPPacket) current;
+                source0 |= udpPacket.getSourcePort() & PORT_MASK;
+                destination0 |= udpPacket.getDestinationPort() & PORT_MASK;
+                source1 |= HAS_PORT;
+                destination1 |= HAS_PORT;
+            } else if (current instanceof IPv4Packet) {
+                IPv4Packet ipPacket = (IPv4Packet) current;
+                source1 |= HAS_IP_ADDRESS | (ipPacket.getPackedSourceIpAddress() & IP_ADDRESS_MASK);
+                destination1 |= HAS_IP_ADDRESS | (ipPacket.getPackedDestinationIpAddress() & IP_ADDRESS_MASK);
+            } else if (current instanceof EthernetIIPacket) {
+                EthernetIIPacket ethernetPacket = (EthernetIIPacket) current;
+                source0 |= ethernetPacket.getPackedSourceMacAddress() << MAC_ADDRESS_SHIFT;
+                destination0 |= ethernetPacket.getPackedDestinationMacAddress() << MAC_ADDRESS_SHIFT;
+                source1 |= HAS_MAC_ADDRESS;
+                destination1 |= HAS_MAC_ADDRESS;
+            } else if (!(current instanceof PcapPacket)) {
+                return false;
+            }
+            current = current.getParentPacket();
+        }
+        long[] endpoints = fEndpoints;
+        endpoints[0] = source0;
+        endpoints[1] = source1;
+        endpoints[2] = destination0;
+        endpoints[3] = destination1;
+        return true;
+    }
+
+    /*
+     * Format a packed endpoint like the toString() of the ProtocolEndpoint it
+     * was packed from.
+     */
+    private static String toEndpointString(long endpoint0, long endpoint1) {
+        StringBuilder sb = new StringBuilder();
+        if ((endpoint1 & HAS_MAC_ADDRESS) != 0) {
+            /* Same format as ConversionHelper.toMacAddress(), without String.format() */
+            for (int i = EthernetIIValues.MAC_ADDRESS_SIZE - 1; i >= 0; i--) {
+                int b = (int) (endpoint0 >>> (MAC_ADDRESS_SHIFT + 8 * i)) & 0xFF;
+                sb.append(HEX_DIGITS[b >>> 4]).append(HEX_DIGITS[b & 0x0F]);
+                if (i > 0) {
+                    sb.append(':');
+                }
+            }
+        }
+        if ((endpoint1 & HAS_IP_ADDRESS) != 0) {
+            sb.append('/')
+                    .append((endpoint1 >>> 24) & 0xFF).append('.')
+                    .append((endpoint1 >>> 16) & 0xFF).append('.')
+                    .append((endpoint1 >>> 8) & 0xFF).append('.')
+                    .append(endpoint1 & 0xFF);
+        }
+        if ((endpoint1 & HAS_PORT) != 0) {
+            sb.append('/').append(endpoint0 & PORT_MASK);
+        }
+        return checkNotNull(sb.toString());
+    }
 }
@@ -0,0 +1,404 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.pcap.core.stream;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Table of the packet streams of a protocol. A stream is identified by the
+ * endpoints of its packets, each packed by the builder in a pair of longs. The
+ * key of a stream holds its two endpoints in ascending order, so that the
+ * packets of both directions find the same stream.
+ *
+ * The streams are numbered in the order they are found, and their counters are
+ * kept in arrays indexed by stream ID. The IDs are found through an array of
+ * slots using open addressing with linear probing.
+ *
+ * Every packet added increments the version of the table, and the version of a
+ * stream is the version of its last packet, so that the streams modified since
+ * a version can be found.
+ *
+ * This class is not thread-safe.
+ */
+final class PacketStreamTable {
+
+    private static final int MIN_CAPACITY = 16;
+    /** Number of longs of the key of a stream */
+    private static final int KEY_SIZE = 4;
+    /** Stream ID of the free slots */
+    private static final int FREE = -1;
+
+    /* Stream IDs, indexed by slot */
+    private int[] fSlots;
+    private int fMask;
+
+    /* Streams, indexed by stream ID */
+    private long[] fKeys;
+    /* Whether the first endpoint (A) is the second half of the key */
+    private boolean[] fReversed;
+    private long[] fNbPacketsAtoB;
+    private long[] fNbPacketsBtoA;
+    private long[] fNbBytesAtoB;
+    private long[] fNbBytesBtoA;
+    private long[] fStartTimes;
+    private long[] fEndTimes;
+    private long[] fVersions;
+    private int fSize;
+
+    private long fVersion;
+
+    /**
+     * Constructor
+     */
+    public PacketStreamTable() {
+        clear();
+    }
+
+    /**
+     * Remove all the streams of the table
+     */
+    public void clear() {
+        allocateSlots(MIN_CAPACITY);
+        allocateStreams(MIN_CAPACITY / 2);
+        fSize = 0;
+        fVersion = 0;
+    }
+
+    /**
+     * Get the number of streams
+     *
+     * @return The number of streams
+     */
+    public int size() {
+        return fSize;
+    }
+
+    /**
+     * Get the current version of the table
+     *
+     * @return The number of packets added so far
+     */
+    public long getVersion() {
+        return fVersion;
+    }
+
+    /**
+     * Add a packet to its stream, creating the stream if needed. The source
+     * endpoint of the first packet of a stream becomes its first endpoint.
+     *
+     * @param source0
+     *            The first half of the source endpoint
+     * @param source1
+     *            The second half of the source endpoint
+     * @param destination0
+     *            The first half of the destination endpoint
+     * @param destination1
+     *            The second half of the destination endpoint
+     * @param nbBytes
+     *            The size of the packet
+     * @param timestamp
+     *            The timestamp of the packet, in nanoseconds
+     * @return The ID of the stream
+     */
+    public int add(long source0, long source1, long destination0, long destination1, long nbBytes, long timestamp) {
+        boolean forward = compare(source0, source1, destination0, destination1) <= 0;
+        int slot = forward ?
+                findSlot(source0, source1, destination0, destination1) :
+                findSlot(destination0, destination1, source0, source1);
+        int id = fSlots[slot];
+        if (id == FREE) {
+            id = forward ?
+                    insert(slot, source0, source1, destination0, destination1, false) :
+                    insert(slot, destination0, destination1, source0, source1, true);
+        }
+
+        /* Packets between a same endpoint count as going from A to B */
+        if (forward != fReversed[id]) {
+            fNbPacketsAtoB[id]++;
+            fNbBytesAtoB[id] += nbBytes;
+        } else {
+            fNbPacketsBtoA[id]++;
+            fNbBytesBtoA[id] += nbBytes;
+        }
+        fStartTimes[id] = Math.min(fStartTimes[id], timestamp);
+        fEndTimes[id] = Math.max(fEndTimes[id], timestamp);
+        fVersions[id] = ++fVersion;
+        return id;
+    }
+
+    /**
+     * Get a half of an endpoint of a stream
+     *
+     * @param id
+     *            The stream ID
+     * @param first
+     *            True for the first endpoint (A), false for the second (B)
+     * @param half
+     *            0 or 1
+     * @return The half of the packed endpoint
+     */
+    public long getEndpoint(int id, boolean first, int half) {
+        int offset = (first == fReversed[id]) ? 2 : 0;
+        return fKeys[id * KEY_SIZE + offset + half];
+    }
+
+    /**
+     * @param id
+     *            The stream ID
+     * @return The number of packets from A to B
+     */
+    public long getNbPacketsAtoB(int id) {
+        return fNbPacketsAtoB[id];
+    }
+
+    /**
+     * @param id
+     *            The stream ID
+     * @return The number of packets from B to A
+     */
+    public long getNbPacketsBtoA(int id) {
+        return fNbPacketsBtoA[id];
+    }
+
+    /**
+     * @param id
+     *            The stream ID
+     * @return The number of bytes from A to B
+     */
+    public long getNbBytesAtoB(int id) {
+        return fNbBytesAtoB[id];
+    }
+
+    /**
+     * @param id
+     *            The stream ID
+     * @return The number of bytes from B to A
+     */
+    public long getNbBytesBtoA(int id) {
+        return fNbBytesBtoA[id];
+    }
+
+    /**
+     * @param id
+     *            The stream ID
+     * @return The timestamp of the first packet, in nanoseconds
+     */
+    public long getStartTime(int id) {
+        return fStartTimes[id];
+    }
+
+    /**
+     * @param id
+     *            The stream ID
+     * @return The timestamp of the last packet, in nanoseconds
+     */
+    public long getEndTime(int id) {
+        return fEndTimes[id];
+    }
+
+    /**
+     * @param id
+     *            The stream ID
+     * @return The version of the table when the stream was last modified
+     */
+    public long getVersion(int id) {
+        return fVersions[id];
+    }
+
+    // ------------------------------------------------------------------------
+    // Serialization
+    // ------------------------------------------------------------------------
+
+    /**
+     * Write the streams of the table
+     *
+     * @param out
+     *            The output stream
+     * @throws IOException
+     *             Thrown when the streams cannot be written
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeLong(fVersion);
+        out.writeInt(fSize);
+        for (int id = 0; id < fSize; id++) {
+            for (int i = 0; i < KEY_SIZE; i++) {
+                out.writeLong(fKeys[id * KEY_SIZE + i]);
+            }
+            out.writeBoolean(fReversed[id]);
+            out.writeLong(fNbPacketsAtoB[id]);
+            out.writeLong(fNbPacketsBtoA[id]);
+            out.writeLong(fNbBytesAtoB[id]);
+            out.writeLong(fNbBytesBtoA[id]);
+            out.writeLong(fStartTimes[id]);
+            out.writeLong(fEndTimes[id]);
+            out.writeLong(fVersions[id]);
+        }
+    }
+
+    /**
+     * Replace the streams of the table by streams written by
+     * {@link #write(DataOutputStream)}. The table is left empty if they cannot
+     * be read.
+     *
+     * @param in
+     *            The input stream
+     * @throws IOException
+     *             Thrown when the streams cannot be read
+     */
+    public void read(DataInputStream in) throws IOException {
+        clear();
+        try {
+            long version = in.readLong();
+            int size = in.readInt();
+            if (size < 0) {
+                throw new IOException("Invalid number of streams: " + size); //$NON-NLS-1$
+            }
+            for (int id = 0; id < size; id++) {
+                long a0 = in.readLong();
+                long a1 = in.readLong();
+                long b0 = in.readLong();
+                long b1 = in.readLong();
+                int slot = findSlot(a0, a1, b0, b1);
+                if (fSlots[slot] != FREE) {
+                    throw new IOException("Duplicate stream: " + id); //$NON-NLS-1$
+                }
+                insert(slot, a0, a1, b0, b1, in.readBoolean());
+                fNbPacketsAtoB[id] = in.readLong();
+                fNbPacketsBtoA[id] = in.readLong();
+                fNbBytesAtoB[id] = in.readLong();
+                fNbBytesBtoA[id] = in.readLong();
+                fStartTimes[id] = in.readLong();
+                fEndTimes[id] = in.readLong();
+                fVersions[id] = in.readLong();
+            }
+            fVersion = version;
+        } catch (IOException e) {
+            clear();
+            throw e;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Slots
+    // ------------------------------------------------------------------------
+
+    /*
+     * Get the slot of a key, or the free slot where it would be inserted
+     */
+    private int findSlot(long a0, long a1, long b0, long b1) {
+        int slot = hash(a0, a1, b0, b1) & fMask;
+        while (fSlots[slot] != FREE && !keyEquals(fSlots[slot], a0, a1, b0, b1)) {
+            slot = (slot + 1) & fMask;
+        }
+        return slot;
+    }
+
+    private boolean keyEquals(int id, long a0, long a1, long b0, long b1) {
+        int offset = id * KEY_SIZE;
+        return (fKeys[offset] == a0 &&
+                fKeys[offset + 1] == a1 &&
+                fKeys[offset + 2] == b0 &&
+                fKeys[offset + 3] == b1);
+    }
+
+    /*
+     * Create a stream in a free slot
+     */
+    private int insert(int slot, long a0, long a1, long b0, long b1, boolean reversed) {
+        int id = fSize;
+        if (id == fReversed.length) {
+            growStreams(id * 2);
+        }
+        int offset = id * KEY_SIZE;
+        fKeys[offset] = a0;
+        fKeys[offset + 1] = a1;
+        fKeys[offset + 2] = b0;
+        fKeys[offset + 3] = b1;
+        fReversed[id] = reversed;
+        fStartTimes[id] = Long.MAX_VALUE;
+        fEndTimes[id] = Long.MIN_VALUE;
+        fSlots[slot] = id;
+        fSize++;
+
+        /* Keep the load factor under 1/2 */
+        if (fSize * 2 > fMask + 1) {
+            rehash((fMask + 1) * 2);
+        }
+        return id;
+    }
+
+    private void rehash(int capacity) {
+        allocateSlots(capacity);
+        for (int id = 0; id < fSize; id++) {
+            int offset = id * KEY_SIZE;
+            int slot = hash(fKeys[offset], fKeys[offset + 1], fKeys[offset + 2], fKeys[offset + 3]) & fMask;
+            while (fSlots[slot] != FREE) {
+                slot = (slot + 1) & fMask;
+            }
+            fSlots[slot] = id;
+        }
+    }
+
+    private void allocateSlots(int capacity) {
+        fSlots = new int[capacity];
+        Arrays.fill(fSlots, FREE);
+        fMask = capacity - 1;
+    }
+
+    private void allocateStreams(int capacity) {
+        fKeys = new long[capacity * KEY_SIZE];
+        fReversed = new boolean[capacity];
+        fNbPacketsAtoB = new long[capacity];
+        fNbPacketsBtoA = new long[capacity];
+        fNbBytesAtoB = new long[capacity];
+        fNbBytesBtoA = new long[capacity];
+        fStartTimes = new long[capacity];
+        fEndTimes = new long[capacity];
+        fVersions = new long[capacity];
+    }
+
+    private void growStreams(int capacity) {
+        fKeys = Arrays.copyOf(fKeys, capacity * KEY_SIZE);
+        fReversed = Arrays.copyOf(fReversed, capacity);
+        fNbPacketsAtoB = Arrays.copyOf(fNbPacketsAtoB, capacity);
+        fNbPacketsBtoA = Arrays.copyOf(fNbPacketsBtoA, capacity);
+        fNbBytesAtoB = Arrays.copyOf(fNbBytesAtoB, capacity);
+        fNbBytesBtoA = Arrays.copyOf(fNbBytesBtoA, capacity);
+        fStartTimes = Arrays.copyOf(fStartTimes, capacity);
+        fEndTimes = Arrays.copyOf(fEndTimes, capacity);
+        fVersions = Arrays.copyOf(fVersions, capacity);
+    }
+
+    // ------------------------------------------------------------------------
+    // Keys
+    // ------------------------------------------------------------------------
+
+    private static int compare(long a0, long a1, long b0, long b1) {
+        if (a0 != b0) {
+            return (a0 < b0 ? -1 : 1);
+        }
+        if (a1 != b1) {
+            return (a1 < b1 ? -1 : 1);
+        }
+        return 0;
+    }
+
+    private static int hash(long a0, long a1, long b0, long b1) {
+        long h = a0;
+        h = h * 0x9E3779B97F4A7C15L + a1;
+        h = h * 0x9E3779B97F4A7C15L + b0;
+        h = h * 0x9E3779B97F4A7C15L + b1;
+        h *= 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
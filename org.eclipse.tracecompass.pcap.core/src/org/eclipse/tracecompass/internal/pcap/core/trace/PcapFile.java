@@ -14,14 +14,24 @@ package org.eclipse.tracecompass.internal.pcap.core.trace;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.channels.SeekableByteChannel;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.TreeMap;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.pcap.core.packet.BadPacketException;
@@ -30,18 +40,42 @@ import org.eclipse.tracecompass.internal.pcap.core.util.ConversionHelper;
 import org.eclipse.tracecompass.internal.pcap.core.util.PcapTimestampScale;
 
 /**
- * Class that allows the interaction with a pcap file.
+ * Class that allows the interaction with a pcap file. Files in the pcapng
+ * format are also supported: their packet blocks are read as pcap packets,
+ * with timestamps in nanoseconds.
+ *
+ * The file is read with positional reads through a read-ahead buffer, so the
+ * position of the file channel is never used, or through memory-mapped regions
+ * of the file. The byte offsets of the packets are kept for one rank out of
+ * {@link #INDEX_INTERVAL} only, which is enough to seek to any packet by
+ * skipping a few headers. This index can be saved to a file and read back when
+ * the pcap file is opened again.
  *
  * @author Vincent Perot
  */
 public class PcapFile implements Closeable {
 
-    // TODO add pcapng support.
-    // TODO Make parsing faster by buffering the data.
+    /** Number of packets between two entries of the rank index */
+    public static final int INDEX_INTERVAL = 64;
+
+    /* Size of the read-ahead buffer, in positional mode */
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+    /*
+     * Size of the regions of the file mapped at once, in memory-mapped mode.
+     * Each region also maps the start of the next one, so that the packets
+     * crossing the boundary can be read from it.
+     */
+    private static final int REGION_SIZE = 64 * 1024 * 1024;
+    private static final int REGION_OVERLAP = 1024 * 1024;
+
+    /* Identification of the index files */
+    private static final int INDEX_MAGIC = 0x50434958;
+    private static final int INDEX_VERSION = 1;
 
     private final Path fPcapFilePath;
     private final ByteOrder fByteOrder;
-    private final SeekableByteChannel fFileChannel;
+    private final FileChannel fFileChannel;
     private final PcapTimestampScale fTimestampPrecision;
 
     private final int fMajorVersion;
@@ -51,13 +85,53 @@ public class PcapFile implements Closeable {
     private final long fSnapshotLength;
     private final long fDataLinkType;
 
-    private final TreeMap<Long, Long> fFileIndex;
+    /* The file is not expected to change while it is open */
+    private final long fFileSize;
+    private final boolean fMemoryMapped;
+
+    /* Regions of the file mapped so far, in memory-mapped mode */
+    private final @Nullable MappedByteBuffer[] fRegions;
+    /* Read-ahead buffer, in positional mode */
+    private final ByteBuffer fReadBuffer;
+    /* Buffer holding the last bytes accessed, and its offset in the file */
+    private @Nullable ByteBuffer fBuffer = null;
+    private long fBufferStart = 0;
+
+    /* Byte offset of the packets of rank i * INDEX_INTERVAL */
+    private long[] fIndex = new long[16];
+    /* Timestamp of the packet before each index entry, for pcapng files */
+    private long[] fIndexTimestamps = new long[16];
+    private int fIndexSize = 0;
+    /* Highest rank whose byte offset is known, that offset and timestamp */
+    private long fIndexedRank = 0;
+    private long fIndexedPosition;
+    private long fIndexedTimestamp = 0;
+    /* Index state when the index file was last read or written */
+    private long fSavedIndexedRank = 0;
+    private long fSavedTotalNumberPackets = -1;
+
+    /* Sections of a pcapng file found so far, or null for a pcap file */
+    private final @Nullable List<PcapNgSection> fSections;
+    /* End of the furthest pcapng block that was processed */
+    private long fScannedPosition = 0;
+    /* Type of the last pcapng block whose header was read */
+    private int fBlockType;
+    /*
+     * Timestamp of the packet before the current position, in a pcapng file.
+     * It is given to the simple packet blocks, which have no timestamp.
+     */
+    private long fLastTimestamp = 0;
+
+    /** Buffer of the packet headers, reused for each packet */
+    private final ByteBuffer fPacketHeader = checkNotNull(ByteBuffer.allocate(PcapFileValues.PACKET_HEADER_SIZE));
 
     private long fCurrentRank;
+    private long fPosition;
     private long fTotalNumberPackets;
 
     /**
-     * Constructor of the PcapFile Class.
+     * Constructor of the PcapFile Class. The file is read with positional
+     * reads.
      *
      * @param filePath
      *            The path to the pcap file.
@@ -68,11 +142,32 @@ public class PcapFile implements Closeable {
      *             Thrown if there is an IO error while reading the file.
      */
     public PcapFile(Path filePath) throws BadPcapFileException, IOException {
+        this(filePath, false);
+    }
+
+    /**
+     * Constructor of the PcapFile Class.
+     *
+     * @param filePath
+     *            The path to the pcap file.
+     * @param memoryMapped
+     *            Whether the file is read through memory-mapped regions. The
+     *            payloads of the packets then share the memory of the mapping
+     *            instead of being copied. The mapping cannot be released
+     *            explicitly, so the file can stay locked after it is closed on
+     *            some platforms, until the packets are garbage-collected.
+     *
+     * @throws BadPcapFileException
+     *             Thrown if the Pcap File is not valid.
+     * @throws IOException
+     *             Thrown if there is an IO error while reading the file.
+     */
+    public PcapFile(Path filePath, boolean memoryMapped) throws BadPcapFileException, IOException {
 
-        fFileIndex = new TreeMap<>();
         fCurrentRank = 0;
         fTotalNumberPackets = -1;
         fPcapFilePath = filePath;
+        fMemoryMapped = memoryMapped;
 
         // Check file validity
         if (Files.notExists(fPcapFilePath) || !Files.isRegularFile(fPcapFilePath) ||
@@ -85,17 +180,57 @@ public class PcapFile implements Closeable {
         }
 
         // File is not empty. Try to open.
-        fFileChannel = checkNotNull(Files.newByteChannel(fPcapFilePath));
+        fFileChannel = checkNotNull(FileChannel.open(fPcapFilePath, StandardOpenOption.READ));
+        fFileSize = fFileChannel.size();
+        if (memoryMapped) {
+            fRegions = new MappedByteBuffer[(int) ((fFileSize - 1) / REGION_SIZE + 1)];
+            fReadBuffer = checkNotNull(ByteBuffer.allocate(0));
+        } else {
+            fRegions = new MappedByteBuffer[0];
+            fReadBuffer = checkNotNull(ByteBuffer.allocate(READ_BUFFER_SIZE));
+        }
 
         // Parse the global header.
         // Read the magic number (4 bytes) from the input stream
         // and determine the mode (big endian or little endian)
-        ByteBuffer globalHeader = ByteBuffer.allocate(PcapFileValues.GLOBAL_HEADER_SIZE);
+        ByteBuffer globalHeader = checkNotNull(ByteBuffer.allocate(PcapFileValues.GLOBAL_HEADER_SIZE));
         globalHeader.clear();
-        fFileChannel.read(globalHeader);
+        readFully(globalHeader, 0);
         globalHeader.flip();
         int magicNumber = globalHeader.getInt();
 
+        if (magicNumber == PcapNgFileValues.SECTION_HEADER_BLOCK) {
+            List<PcapNgSection> sections = new ArrayList<>();
+            fSections = sections;
+            try {
+                // Process the blocks before the first packet
+                fPosition = nextPacketBlock(0);
+            } catch (IOException | BadPcapFileException e) {
+                this.close();
+                throw e;
+            }
+
+            PcapNgSection section = sections.get(0);
+            fByteOrder = section.getByteOrder();
+            fTimestampPrecision = PcapTimestampScale.NANOSECOND;
+            fMajorVersion = section.getMajorVersion();
+            fMinorVersion = section.getMinorVersion();
+            fTimeAccuracy = 0;
+            fTimeZoneCorrection = 0;
+            if (section.getNbInterfaces() > 0) {
+                fSnapshotLength = section.getSnapLength(0);
+                fDataLinkType = section.getLinkType(0);
+            } else {
+                fSnapshotLength = 0;
+                fDataLinkType = 0;
+            }
+
+            fIndexedPosition = fPosition;
+            fIndex[fIndexSize++] = fPosition;
+            return;
+        }
+        fSections = null;
+
         switch (magicNumber) {
         case PcapFileValues.MAGIC_BIG_ENDIAN_MICRO: // file is big endian
             fByteOrder = checkNotNull(ByteOrder.BIG_ENDIAN);
@@ -129,7 +264,9 @@ public class PcapFile implements Closeable {
         fSnapshotLength = ConversionHelper.unsignedIntToLong(globalHeader.getInt());
         fDataLinkType = ConversionHelper.unsignedIntToLong(globalHeader.getInt());
 
-        fFileIndex.put(fCurrentRank, fFileChannel.position());
+        fPosition = PcapFileValues.GLOBAL_HEADER_SIZE;
+        fIndexedPosition = fPosition;
+        fIndex[fIndexSize++] = fPosition;
 
     }
 
@@ -146,42 +283,29 @@ public class PcapFile implements Closeable {
      */
     public synchronized @Nullable PcapPacket parseNextPacket() throws IOException, BadPcapFileException, BadPacketException {
 
-        // Parse the packet header
-        if (fFileChannel.size() - fFileChannel.position() == 0) {
+        if (fFileSize - fPosition == 0) {
             return null;
         }
-        if (fFileChannel.size() - fFileChannel.position() < PcapFileValues.PACKET_HEADER_SIZE) {
-            throw new BadPcapFileException("A pcap header is invalid."); //$NON-NLS-1$
-        }
-
-        ByteBuffer pcapPacketHeader = ByteBuffer.allocate(PcapFileValues.PACKET_HEADER_SIZE);
-        pcapPacketHeader.clear();
-        pcapPacketHeader.order(fByteOrder);
 
-        fFileChannel.read(pcapPacketHeader);
-
-        pcapPacketHeader.flip();
-        pcapPacketHeader.position(PcapFileValues.INCLUDED_LENGTH_POSITION);
-        long includedPacketLength = ConversionHelper.unsignedIntToLong(pcapPacketHeader.getInt());
-
-        if (fFileChannel.size() - fFileChannel.position() < includedPacketLength) {
-            throw new BadPcapFileException("A packet header is invalid."); //$NON-NLS-1$
+        List<PcapNgSection> sections = fSections;
+        if (sections != null) {
+            return parseNextPacketBlock(sections);
         }
 
+        // Parse the packet header
+        long includedPacketLength = readPacketHeader(fPosition);
+
         if (includedPacketLength > Integer.MAX_VALUE) {
             throw new BadPacketException("Packets that are bigger than 2^31-1 bytes are not supported."); //$NON-NLS-1$
         }
 
-        ByteBuffer pcapPacketData = ByteBuffer.allocate((int) includedPacketLength);
-        pcapPacketData.clear();
-        pcapPacketHeader.order(ByteOrder.BIG_ENDIAN); // Not really needed.
-        fFileChannel.read(pcapPacketData);
-
-        pcapPacketData.flip();
+        long dataPosition = fPosition + PcapFileValues.PACKET_HEADER_SIZE;
+        ByteBuffer pcapPacketData = readData(dataPosition, (int) includedPacketLength);
 
-        fFileIndex.put(++fCurrentRank, fFileChannel.position());
+        fPosition = dataPosition + includedPacketLength;
+        indexPacket(++fCurrentRank, fPosition, 0);
 
-        return new PcapPacket(this, null, pcapPacketHeader, pcapPacketData, fCurrentRank - 1);
+        return new PcapPacket(this, null, fPacketHeader, pcapPacketData, fCurrentRank - 1);
 
     }
 
@@ -195,31 +319,15 @@ public class PcapFile implements Closeable {
      */
     public synchronized void skipNextPacket() throws IOException, BadPcapFileException {
 
-        // Parse the packet header
-        if (fFileChannel.size() - fFileChannel.position() == 0) {
+        if (fFileSize - fPosition == 0) {
             return;
         }
-        if (fFileChannel.size() - fFileChannel.position() < PcapFileValues.PACKET_HEADER_SIZE) {
-            throw new BadPcapFileException("A pcap header is invalid."); //$NON-NLS-1$
-        }
-
-        ByteBuffer pcapPacketHeader = ByteBuffer.allocate(PcapFileValues.PACKET_HEADER_SIZE);
-        pcapPacketHeader.clear();
-        pcapPacketHeader.order(fByteOrder);
-
-        fFileChannel.read(pcapPacketHeader);
 
-        pcapPacketHeader.flip();
-        pcapPacketHeader.position(PcapFileValues.INCLUDED_LENGTH_POSITION);
-        long includedPacketLength = ConversionHelper.unsignedIntToLong(pcapPacketHeader.getInt());
-
-        if (fFileChannel.size() - fFileChannel.position() < includedPacketLength) {
-            throw new BadPcapFileException("A packet header is invalid."); //$NON-NLS-1$
+        if (fSections != null) {
+            fLastTimestamp = readPacketBlockTimestamp(fPosition, fLastTimestamp);
         }
-
-        fFileChannel.position(fFileChannel.position() + includedPacketLength);
-
-        fFileIndex.put(++fCurrentRank, fFileChannel.position());
+        fPosition = nextPacketPosition(fPosition);
+        indexPacket(++fCurrentRank, fPosition, fLastTimestamp);
 
     }
 
@@ -241,20 +349,28 @@ public class PcapFile implements Closeable {
             throw new IllegalArgumentException();
         }
 
-        Long positionInBytes = fFileIndex.get(rank);
-
-        if (positionInBytes != null) {
-            // Index is known. Move to position.
-            fFileChannel.position(positionInBytes.longValue());
-            fCurrentRank = rank;
+        if (rank >= fIndexedRank) {
+            // Start from the furthest known packet
+            if (fCurrentRank < fIndexedRank || fCurrentRank > rank) {
+                fCurrentRank = fIndexedRank;
+                fPosition = fIndexedPosition;
+                fLastTimestamp = fIndexedTimestamp;
+            }
         } else {
-            // Index is unknown. Find the corresponding position.
-            // Find closest index
-            fCurrentRank = fFileIndex.floorKey(rank);
-            // skip until wanted packet is found
-            do {
-                skipNextPacket();
-            } while (fCurrentRank != rank && hasNextPacket());
+            // Start from the closest index entry, unless the current
+            // position is closer
+            int entry = (int) (rank / INDEX_INTERVAL);
+            long entryRank = (long) entry * INDEX_INTERVAL;
+            if (fCurrentRank < entryRank || fCurrentRank > rank) {
+                fCurrentRank = entryRank;
+                fPosition = fIndex[entry];
+                fLastTimestamp = fIndexTimestamps[entry];
+            }
+        }
+
+        // skip until wanted packet is found
+        while (fCurrentRank != rank && hasNextPacket()) {
+            skipNextPacket();
         }
     }
 
@@ -267,7 +383,7 @@ public class PcapFile implements Closeable {
      *             If some IO error occurs.
      */
     public synchronized boolean hasNextPacket() throws IOException {
-        return ((fFileChannel.size() - fFileChannel.position()) > 0);
+        return ((fFileSize - fPosition) > 0);
     }
 
     /**
@@ -354,16 +470,18 @@ public class PcapFile implements Closeable {
      */
     public synchronized long getTotalNbPackets() throws IOException, BadPcapFileException {
         if (fTotalNumberPackets == -1) {
-            long rank = fCurrentRank;
-            fCurrentRank = fFileIndex.floorKey(rank);
-
-            // skip until end of file.
-            while (hasNextPacket()) {
-                skipNextPacket();
+            // skip until end of file, without moving the current position.
+            long rank = fIndexedRank;
+            long position = fIndexedPosition;
+            long timestamp = fIndexedTimestamp;
+            while (fFileSize - position > 0) {
+                if (fSections != null) {
+                    timestamp = readPacketBlockTimestamp(position, timestamp);
+                }
+                position = nextPacketPosition(position);
+                indexPacket(++rank, position, timestamp);
             }
-            fTotalNumberPackets = fCurrentRank;
-            fCurrentRank = rank;
-            seekPacket(rank);
+            fTotalNumberPackets = rank;
         }
         return fTotalNumberPackets;
     }
@@ -387,9 +505,528 @@ public class PcapFile implements Closeable {
         return fTimestampPrecision;
     }
 
+    /**
+     * Method that indicates if the file is in the pcapng format.
+     *
+     * @return Whether the file is a pcapng file or not.
+     */
+    public boolean isPcapNg() {
+        return (fSections != null);
+    }
+
+    /**
+     * Method that indicates if the file is read through memory-mapped regions.
+     *
+     * @return Whether the file is memory-mapped or not.
+     */
+    public boolean isMemoryMapped() {
+        return fMemoryMapped;
+    }
+
+    /**
+     * Method that indicates if the rank index knows more packets than when the
+     * index file was last read or written.
+     *
+     * @return Whether the index should be saved again.
+     */
+    public synchronized boolean isIndexModified() {
+        return (fSections == null &&
+                (fIndexedRank != fSavedIndexedRank || fTotalNumberPackets != fSavedTotalNumberPackets));
+    }
+
+    /**
+     * Save the rank index of the file, so that it can be read back with
+     * {@link #readIndex(Path)} when the file is opened again. The index of
+     * pcapng files is not saved, since the interfaces described in the file
+     * are needed to read the packets.
+     *
+     * @param indexFile
+     *            The path of the index file to write.
+     * @throws IOException
+     *             Thrown when the index file cannot be written.
+     */
+    public synchronized void writeIndex(Path indexFile) throws IOException {
+        if (fSections != null) {
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)));) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeLong(fFileSize);
+            out.writeLong(Files.getLastModifiedTime(fPcapFilePath).toMillis());
+            out.writeInt(INDEX_INTERVAL);
+            out.writeLong(fIndexedRank);
+            out.writeLong(fIndexedPosition);
+            out.writeLong(fTotalNumberPackets);
+            out.writeInt(fIndexSize);
+            for (int i = 0; i < fIndexSize; i++) {
+                out.writeLong(fIndex[i]);
+            }
+        }
+        fSavedIndexedRank = fIndexedRank;
+        fSavedTotalNumberPackets = fTotalNumberPackets;
+    }
+
+    /**
+     * Read a rank index saved by {@link #writeIndex(Path)}. The index is only
+     * used if it was written for this file, as it is now, and if it knows
+     * more packets than the current index.
+     *
+     * @param indexFile
+     *            The path of the index file to read.
+     * @return Whether the index was used.
+     * @throws IOException
+     *             Thrown when the index file cannot be read.
+     */
+    public synchronized boolean readIndex(Path indexFile) throws IOException {
+        if (fSections != null || !Files.isRegularFile(indexFile)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)));) {
+            if (in.readInt() != INDEX_MAGIC ||
+                    in.readInt() != INDEX_VERSION ||
+                    in.readLong() != fFileSize ||
+                    in.readLong() != Files.getLastModifiedTime(fPcapFilePath).toMillis() ||
+                    in.readInt() != INDEX_INTERVAL) {
+                return false;
+            }
+            long indexedRank = in.readLong();
+            long indexedPosition = in.readLong();
+            long totalNumberPackets = in.readLong();
+            int indexSize = in.readInt();
+            if (indexedRank <= fIndexedRank ||
+                    indexedPosition > fFileSize ||
+                    indexSize != indexedRank / INDEX_INTERVAL + 1) {
+                return false;
+            }
+            long[] index = new long[indexSize];
+            for (int i = 0; i < indexSize; i++) {
+                index[i] = in.readLong();
+            }
+            fIndex = index;
+            fIndexTimestamps = new long[indexSize];
+            fIndexSize = indexSize;
+            fIndexedRank = indexedRank;
+            fIndexedPosition = indexedPosition;
+            fTotalNumberPackets = totalNumberPackets;
+            fSavedIndexedRank = indexedRank;
+            fSavedTotalNumberPackets = totalNumberPackets;
+            return true;
+        } catch (EOFException e) {
+            /* Truncated index file */
+            return false;
+        }
+    }
+
     @Override
     public void close() throws IOException {
+        /*
+         * The mapped regions are released when they are not referenced anymore
+         * by the packets. They are not unmapped explicitly, since the payloads
+         * of the packets still use their memory.
+         */
+        fBuffer = null;
+        Arrays.fill(fRegions, null);
         fFileChannel.close();
     }
 
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    /*
+     * Read the header of the packet at a byte offset in fPacketHeader, and
+     * return its included length, after checking that the packet is in the
+     * file.
+     */
+    private long readPacketHeader(long position) throws IOException, BadPcapFileException {
+        if (fFileSize - position < PcapFileValues.PACKET_HEADER_SIZE) {
+            throw new BadPcapFileException("A pcap header is invalid."); //$NON-NLS-1$
+        }
+
+        ByteBuffer pcapPacketHeader = fPacketHeader;
+        pcapPacketHeader.clear();
+        pcapPacketHeader.order(fByteOrder);
+        int offset = fetch(position, PcapFileValues.PACKET_HEADER_SIZE);
+        ByteBuffer buffer = checkNotNull(fBuffer);
+        for (int i = 0; i < PcapFileValues.PACKET_HEADER_SIZE; i++) {
+            pcapPacketHeader.put(i, buffer.get(offset + i));
+        }
+
+        long includedPacketLength = ConversionHelper.unsignedIntToLong(pcapPacketHeader.getInt(PcapFileValues.INCLUDED_LENGTH_POSITION));
+        if (fFileSize - position - PcapFileValues.PACKET_HEADER_SIZE < includedPacketLength) {
+            throw new BadPcapFileException("A packet header is invalid."); //$NON-NLS-1$
+        }
+        return includedPacketLength;
+    }
+
+    /*
+     * Get the position of the packet following the one at a byte offset
+     */
+    private long nextPacketPosition(long position) throws IOException, BadPcapFileException {
+        if (fSections != null) {
+            return nextPacketBlock(position + readBlockHeader(position));
+        }
+        return position + PcapFileValues.PACKET_HEADER_SIZE + readPacketHeader(position);
+    }
+
+    /*
+     * Get the data of a packet, which shares the memory of the mapped region in
+     * memory-mapped mode
+     */
+    private ByteBuffer readData(long position, int length) throws IOException {
+        if (fMemoryMapped) {
+            int offset = fetch(position, length);
+            ByteBuffer region = checkNotNull(fBuffer).duplicate();
+            region.limit(offset + length);
+            region.position(offset);
+            return checkNotNull(region.slice());
+        }
+        ByteBuffer data = checkNotNull(ByteBuffer.allocate(length));
+        if (length <= READ_BUFFER_SIZE) {
+            int offset = fetch(position, length);
+            System.arraycopy(fReadBuffer.array(), offset, data.array(), 0, length);
+        } else {
+            readFully(data, position);
+            data.flip();
+        }
+        return data;
+    }
+
+    /*
+     * Fill a buffer with the bytes of the file at a byte offset, without
+     * moving the position of the channel.
+     */
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        long offset = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            if (fFileChannel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    /*
+     * Make sure that a range of the file is in fBuffer, and return the offset
+     * of the range in it. In positional mode, the range must fit in the
+     * read-ahead buffer.
+     */
+    private int fetch(long position, int length) throws IOException {
+        ByteBuffer buffer = fBuffer;
+        if (buffer != null && position >= fBufferStart &&
+                position + length <= fBufferStart + buffer.limit()) {
+            return (int) (position - fBufferStart);
+        }
+
+        if (!fMemoryMapped) {
+            buffer = fReadBuffer;
+            buffer.clear();
+            buffer.limit((int) Math.min(READ_BUFFER_SIZE, fFileSize - position));
+            readFully(buffer, position);
+            buffer.flip();
+            fBuffer = buffer;
+            fBufferStart = position;
+            return 0;
+        }
+
+        int regionIndex = (int) Math.min(position / REGION_SIZE, fRegions.length - 1);
+        long regionStart = (long) regionIndex * REGION_SIZE;
+        long regionSize = Math.min(REGION_SIZE + REGION_OVERLAP, fFileSize - regionStart);
+        if (position + length <= regionStart + regionSize) {
+            MappedByteBuffer region = fRegions[regionIndex];
+            if (region == null) {
+                region = checkNotNull(fFileChannel.map(MapMode.READ_ONLY, regionStart, regionSize));
+                fRegions[regionIndex] = region;
+            }
+            fBuffer = region;
+            fBufferStart = regionStart;
+        } else {
+            // A packet bigger than the overlap, map it on its own
+            fBuffer = fFileChannel.map(MapMode.READ_ONLY, position, length);
+            fBufferStart = position;
+        }
+        return (int) (position - fBufferStart);
+    }
+
+    // ------------------------------------------------------------------------
+    // pcapng blocks
+    // ------------------------------------------------------------------------
+
+    /*
+     * Read the packet block at the current position, and move to the next
+     * packet block
+     */
+    private PcapPacket parseNextPacketBlock(List<PcapNgSection> sections) throws IOException, BadPcapFileException, BadPacketException {
+        long blockLength = readBlockHeader(fPosition);
+        long bodyLength = blockLength - PcapNgFileValues.BLOCK_OVERHEAD;
+        long bodyPosition = fPosition + PcapNgFileValues.BLOCK_HEADER_SIZE;
+        PcapNgSection section = getSection(sections, fPosition);
+
+        int interfaceId;
+        long timestamp;
+        long includedPacketLength;
+        long originalPacketLength;
+        long dataPosition;
+        if (fBlockType == PcapNgFileValues.SIMPLE_PACKET_BLOCK) {
+            if (bodyLength < PcapNgFileValues.SIMPLE_PACKET_HEADER_SIZE) {
+                throw new BadPcapFileException("A pcapng block is invalid."); //$NON-NLS-1$
+            }
+            int offset = fetch(bodyPosition, PcapNgFileValues.SIMPLE_PACKET_HEADER_SIZE);
+            ByteBuffer buffer = checkNotNull(fBuffer);
+            buffer.order(section.getByteOrder());
+            interfaceId = 0;
+            // Simple packets have no timestamp, use the one of the previous packet
+            timestamp = fLastTimestamp;
+            originalPacketLength = ConversionHelper.unsignedIntToLong(buffer.getInt(offset));
+            includedPacketLength = Math.min(originalPacketLength, bodyLength - PcapNgFileValues.SIMPLE_PACKET_HEADER_SIZE);
+            dataPosition = bodyPosition + PcapNgFileValues.SIMPLE_PACKET_HEADER_SIZE;
+        } else {
+            if (bodyLength < PcapNgFileValues.ENHANCED_PACKET_HEADER_SIZE) {
+                throw new BadPcapFileException("A pcapng block is invalid."); //$NON-NLS-1$
+            }
+            int offset = fetch(bodyPosition, PcapNgFileValues.ENHANCED_PACKET_HEADER_SIZE);
+            ByteBuffer buffer = checkNotNull(fBuffer);
+            buffer.order(section.getByteOrder());
+            if (fBlockType == PcapNgFileValues.ENHANCED_PACKET_BLOCK) {
+                interfaceId = buffer.getInt(offset);
+            } else {
+                interfaceId = ConversionHelper.unsignedShortToInt(buffer.getShort(offset));
+            }
+            timestamp = (ConversionHelper.unsignedIntToLong(buffer.getInt(offset + 4)) << 32) |
+                    ConversionHelper.unsignedIntToLong(buffer.getInt(offset + 8));
+            includedPacketLength = ConversionHelper.unsignedIntToLong(buffer.getInt(offset + 12));
+            originalPacketLength = ConversionHelper.unsignedIntToLong(buffer.getInt(offset + 16));
+            if (includedPacketLength > bodyLength - PcapNgFileValues.ENHANCED_PACKET_HEADER_SIZE) {
+                throw new BadPcapFileException("A packet header is invalid."); //$NON-NLS-1$
+            }
+            dataPosition = bodyPosition + PcapNgFileValues.ENHANCED_PACKET_HEADER_SIZE;
+        }
+
+        if (interfaceId < 0 || interfaceId >= section.getNbInterfaces()) {
+            throw new BadPacketException("The interface of the packet is not described."); //$NON-NLS-1$
+        }
+        if (includedPacketLength > Integer.MAX_VALUE) {
+            throw new BadPacketException("Packets that are bigger than 2^31-1 bytes are not supported."); //$NON-NLS-1$
+        }
+
+        if (fBlockType == PcapNgFileValues.SIMPLE_PACKET_BLOCK) {
+            long snapLength = section.getSnapLength(0);
+            if (snapLength > 0) {
+                includedPacketLength = Math.min(includedPacketLength, snapLength);
+            }
+        } else {
+            timestamp = section.toNanoseconds(interfaceId, timestamp);
+        }
+        ByteBuffer pcapPacketData = readData(dataPosition, (int) includedPacketLength);
+
+        fLastTimestamp = timestamp;
+        fPosition = nextPacketBlock(fPosition + blockLength);
+        indexPacket(++fCurrentRank, fPosition, timestamp);
+
+        return new PcapPacket(this, null, timestamp, includedPacketLength, originalPacketLength,
+                section.getLinkType(interfaceId), pcapPacketData, fCurrentRank - 1);
+    }
+
+    /*
+     * Get the timestamp of the packet block at a byte offset, in nanoseconds.
+     * The simple packet blocks, and the packets of an interface which is not
+     * described, get the timestamp of the previous packet.
+     */
+    private long readPacketBlockTimestamp(long position, long previousTimestamp) throws IOException, BadPcapFileException {
+        long blockLength = readBlockHeader(position);
+        if (fBlockType == PcapNgFileValues.SIMPLE_PACKET_BLOCK) {
+            return previousTimestamp;
+        }
+        if (blockLength - PcapNgFileValues.BLOCK_OVERHEAD < PcapNgFileValues.ENHANCED_PACKET_HEADER_SIZE) {
+            throw new BadPcapFileException("A pcapng block is invalid."); //$NON-NLS-1$
+        }
+        PcapNgSection section = getSection(checkNotNull(fSections), position);
+        int offset = fetch(position + PcapNgFileValues.BLOCK_HEADER_SIZE, PcapNgFileValues.ENHANCED_PACKET_HEADER_SIZE);
+        ByteBuffer buffer = checkNotNull(fBuffer);
+        buffer.order(section.getByteOrder());
+        int interfaceId;
+        if (fBlockType == PcapNgFileValues.ENHANCED_PACKET_BLOCK) {
+            interfaceId = buffer.getInt(offset);
+        } else {
+            interfaceId = ConversionHelper.unsignedShortToInt(buffer.getShort(offset));
+        }
+        if (interfaceId < 0 || interfaceId >= section.getNbInterfaces()) {
+            return previousTimestamp;
+        }
+        long timestamp = (ConversionHelper.unsignedIntToLong(buffer.getInt(offset + 4)) << 32) |
+                ConversionHelper.unsignedIntToLong(buffer.getInt(offset + 8));
+        return section.toNanoseconds(interfaceId, timestamp);
+    }
+
+    /*
+     * Get the position of the first packet block at or after a byte offset,
+     * processing the section headers and interface descriptions on the way.
+     */
+    private long nextPacketBlock(long start) throws IOException, BadPcapFileException {
+        List<PcapNgSection> sections = checkNotNull(fSections);
+        long position = start;
+        while (fFileSize - position > 0) {
+            long blockLength = readBlockHeader(position);
+            // The blocks read again after a seek were already processed
+            boolean isNew = (position >= fScannedPosition);
+            switch (fBlockType) {
+            case PcapNgFileValues.ENHANCED_PACKET_BLOCK:
+            case PcapNgFileValues.SIMPLE_PACKET_BLOCK:
+            case PcapNgFileValues.PACKET_BLOCK:
+                return position;
+            case PcapNgFileValues.SECTION_HEADER_BLOCK:
+                if (isNew) {
+                    sections.add(readSectionHeader(position, blockLength));
+                }
+                break;
+            case PcapNgFileValues.INTERFACE_DESCRIPTION_BLOCK:
+                if (isNew) {
+                    readInterfaceDescription(getSection(sections, position), position, blockLength);
+                }
+                break;
+            default:
+                // Other blocks are skipped
+                break;
+            }
+            position += blockLength;
+            if (isNew) {
+                fScannedPosition = position;
+            }
+        }
+        return position;
+    }
+
+    /*
+     * Read the type of the block at a byte offset in fBlockType, and return
+     * the length of the block.
+     */
+    private long readBlockHeader(long position) throws IOException, BadPcapFileException {
+        if (fFileSize - position < PcapNgFileValues.BLOCK_OVERHEAD) {
+            throw new BadPcapFileException("A pcapng block is invalid."); //$NON-NLS-1$
+        }
+        int offset = fetch(position, PcapNgFileValues.BLOCK_OVERHEAD);
+        ByteBuffer buffer = checkNotNull(fBuffer);
+        ByteOrder byteOrder;
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        if (buffer.getInt(offset) == PcapNgFileValues.SECTION_HEADER_BLOCK) {
+            byteOrder = readByteOrder(buffer.getInt(offset + PcapNgFileValues.BLOCK_HEADER_SIZE));
+        } else {
+            byteOrder = getSection(checkNotNull(fSections), position).getByteOrder();
+        }
+        buffer.order(byteOrder);
+        fBlockType = buffer.getInt(offset);
+        long blockLength = ConversionHelper.unsignedIntToLong(buffer.getInt(offset + 4));
+        if (blockLength < PcapNgFileValues.BLOCK_OVERHEAD || blockLength % 4 != 0 ||
+                blockLength > fFileSize - position) {
+            throw new BadPcapFileException("A pcapng block is invalid."); //$NON-NLS-1$
+        }
+        return blockLength;
+    }
+
+    private PcapNgSection readSectionHeader(long position, long blockLength) throws IOException, BadPcapFileException {
+        if (blockLength < PcapNgFileValues.BLOCK_OVERHEAD + PcapNgFileValues.SECTION_HEADER_SIZE) {
+            throw new BadPcapFileException("A pcapng section header is invalid."); //$NON-NLS-1$
+        }
+        int offset = fetch(position + PcapNgFileValues.BLOCK_HEADER_SIZE, PcapNgFileValues.SECTION_HEADER_SIZE);
+        ByteBuffer buffer = checkNotNull(fBuffer);
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        ByteOrder byteOrder = readByteOrder(buffer.getInt(offset));
+        buffer.order(byteOrder);
+        int majorVersion = ConversionHelper.unsignedShortToInt(buffer.getShort(offset + 4));
+        int minorVersion = ConversionHelper.unsignedShortToInt(buffer.getShort(offset + 6));
+        return new PcapNgSection(position, byteOrder, majorVersion, minorVersion);
+    }
+
+    private static ByteOrder readByteOrder(int magicNumber) throws BadPcapFileException {
+        if (magicNumber == PcapNgFileValues.BYTE_ORDER_MAGIC) {
+            return checkNotNull(ByteOrder.BIG_ENDIAN);
+        }
+        if (magicNumber == Integer.reverseBytes(PcapNgFileValues.BYTE_ORDER_MAGIC)) {
+            return checkNotNull(ByteOrder.LITTLE_ENDIAN);
+        }
+        throw new BadPcapFileException(String.format("%08x", magicNumber) + " is not a known byte-order magic number."); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    private void readInterfaceDescription(PcapNgSection section, long position, long blockLength) throws IOException, BadPcapFileException {
+        int minLength = PcapNgFileValues.BLOCK_OVERHEAD + PcapNgFileValues.INTERFACE_DESCRIPTION_SIZE;
+        if (blockLength < minLength || blockLength > Integer.MAX_VALUE) {
+            throw new BadPcapFileException("A pcapng interface description is invalid."); //$NON-NLS-1$
+        }
+
+        // These blocks are rare, read them on their own
+        ByteBuffer block = checkNotNull(ByteBuffer.allocate((int) blockLength));
+        readFully(block, position);
+        block.flip();
+        block.order(section.getByteOrder());
+
+        int bodyPosition = PcapNgFileValues.BLOCK_HEADER_SIZE;
+        long linkType = ConversionHelper.unsignedShortToInt(block.getShort(bodyPosition));
+        long snapLength = ConversionHelper.unsignedIntToLong(block.getInt(bodyPosition + 4));
+
+        // Options
+        int tsresol = PcapNgFileValues.DEFAULT_TSRESOL;
+        long tsoffset = 0;
+        int optionPosition = bodyPosition + PcapNgFileValues.INTERFACE_DESCRIPTION_SIZE;
+        int end = (int) blockLength - 4;
+        while (optionPosition + 4 <= end) {
+            int code = ConversionHelper.unsignedShortToInt(block.getShort(optionPosition));
+            int length = ConversionHelper.unsignedShortToInt(block.getShort(optionPosition + 2));
+            int valuePosition = optionPosition + 4;
+            if (code == PcapNgFileValues.OPTION_END || valuePosition + length > end) {
+                break;
+            }
+            if (code == PcapNgFileValues.OPTION_IF_TSRESOL && length >= 1) {
+                tsresol = block.get(valuePosition) & 0xff;
+            } else if (code == PcapNgFileValues.OPTION_IF_TSOFFSET && length >= 8) {
+                tsoffset = block.getLong(valuePosition);
+            }
+            // Option values are padded to 32 bits
+            optionPosition = valuePosition + ((length + 3) & ~3);
+        }
+
+        section.addInterface(linkType, snapLength, tsresol, tsoffset);
+    }
+
+    /*
+     * Get the section containing a byte offset
+     */
+    private static PcapNgSection getSection(List<PcapNgSection> sections, long position) {
+        int low = 0;
+        int high = sections.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (sections.get(middle).getStart() <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return checkNotNull(sections.get(low));
+    }
+
+    // ------------------------------------------------------------------------
+    // Index
+    // ------------------------------------------------------------------------
+
+    /*
+     * Record the byte offset of a packet rank reached while reading, if it is
+     * past the furthest known rank.
+     */
+    private void indexPacket(long rank, long position, long lastTimestamp) {
+        if (rank <= fIndexedRank) {
+            return;
+        }
+        fIndexedRank = rank;
+        fIndexedPosition = position;
+        fIndexedTimestamp = lastTimestamp;
+        if (rank % INDEX_INTERVAL == 0) {
+            if (fIndexSize == fIndex.length) {
+                fIndex = checkNotNull(Arrays.copyOf(fIndex, fIndexSize * 2));
+                fIndexTimestamps = checkNotNull(Arrays.copyOf(fIndexTimestamps, fIndexSize * 2));
+            }
+            fIndexTimestamps[fIndexSize] = lastTimestamp;
+            fIndex[fIndexSize++] = position;
+        }
+    }
+
 }
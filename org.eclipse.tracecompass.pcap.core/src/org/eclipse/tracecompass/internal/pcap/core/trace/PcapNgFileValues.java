@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.pcap.core.trace;
+
+/**
+ * Interface that lists constants related to a pcapng file.
+ *
+ * See https://github.com/pcapng/pcapng.
+ */
+public interface PcapNgFileValues {
+
+    /**
+     * Type of the Section Header Block. It is also the magic number of the
+     * file, and reads the same in both endiannesses.
+     */
+    int SECTION_HEADER_BLOCK = 0x0a0d0d0a;
+
+    /** Type of the Interface Description Block */
+    int INTERFACE_DESCRIPTION_BLOCK = 0x00000001;
+
+    /** Type of the obsolete Packet Block */
+    int PACKET_BLOCK = 0x00000002;
+
+    /** Type of the Simple Packet Block */
+    int SIMPLE_PACKET_BLOCK = 0x00000003;
+
+    /** Type of the Enhanced Packet Block */
+    int ENHANCED_PACKET_BLOCK = 0x00000006;
+
+    /** Number used to determine the endianness of a section */
+    int BYTE_ORDER_MAGIC = 0x1a2b3c4d;
+
+    /** Size in bytes of the block type and the two block lengths */
+    int BLOCK_OVERHEAD = 12;
+
+    /** Size in bytes of the fields of a block before its body */
+    int BLOCK_HEADER_SIZE = 8;
+
+    /** Size in bytes of the fixed fields of a Section Header Block body */
+    int SECTION_HEADER_SIZE = 16;
+
+    /** Size in bytes of the fixed fields of an Interface Description Block body */
+    int INTERFACE_DESCRIPTION_SIZE = 8;
+
+    /** Size in bytes of the fixed fields of an Enhanced Packet Block body */
+    int ENHANCED_PACKET_HEADER_SIZE = 20;
+
+    /** Size in bytes of the fixed fields of a Packet Block body */
+    int PACKET_HEADER_SIZE = 20;
+
+    /** Size in bytes of the fixed fields of a Simple Packet Block body */
+    int SIMPLE_PACKET_HEADER_SIZE = 4;
+
+    /** Code of the option that ends the list of options */
+    int OPTION_END = 0;
+
+    /** Code of the option giving the timestamp resolution of an interface */
+    int OPTION_IF_TSRESOL = 9;
+
+    /** Code of the option giving the timestamp offset of an interface */
+    int OPTION_IF_TSOFFSET = 14;
+
+    /** Default timestamp resolution of the interfaces, as a power of 10 */
+    int DEFAULT_TSRESOL = 6;
+
+}
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.pcap.core.trace;
+
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A section of a pcapng file, with its byte order and the interfaces described
+ * in it. The interfaces are numbered from 0 in the order of their description.
+ */
+final class PcapNgSection {
+
+    private static final long NANOSECONDS_PER_SECOND = 1000000000L;
+    private static final int NANOSECOND_EXPONENT = 9;
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final long fStart;
+    private final ByteOrder fByteOrder;
+    private final int fMajorVersion;
+    private final int fMinorVersion;
+    private final List<Interface> fInterfaces = new ArrayList<>();
+
+    private static final class Interface {
+        private final long fLinkType;
+        private final long fSnapLength;
+        /* Resolution of the timestamps, 10^-exponent or 2^-exponent seconds */
+        private final boolean fBinary;
+        private final int fExponent;
+        private final long fOffset;
+
+        public Interface(long linkType, long snapLength, boolean binary, int exponent, long offset) {
+            fLinkType = linkType;
+            fSnapLength = snapLength;
+            fBinary = binary;
+            fExponent = exponent;
+            fOffset = offset;
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param start
+     *            The byte offset of the Section Header Block in the file
+     * @param byteOrder
+     *            The byte order of the section
+     * @param majorVersion
+     *            The major version of the format
+     * @param minorVersion
+     *            The minor version of the format
+     */
+    public PcapNgSection(long start, ByteOrder byteOrder, int majorVersion, int minorVersion) {
+        fStart = start;
+        fByteOrder = byteOrder;
+        fMajorVersion = majorVersion;
+        fMinorVersion = minorVersion;
+    }
+
+    /**
+     * Add the next interface of the section
+     *
+     * @param linkType
+     *            The link type of the interface
+     * @param snapLength
+     *            The maximum number of bytes captured from each packet, or 0
+     *            if there is no limit
+     * @param tsresol
+     *            The value of the if_tsresol option: the timestamps are in
+     *            units of 10^-value seconds, or of 2^-value seconds if the most
+     *            significant bit is set
+     * @param tsoffset
+     *            The value of the if_tsoffset option, in seconds
+     */
+    public void addInterface(long linkType, long snapLength, int tsresol, long tsoffset) {
+        boolean binary = (tsresol & 0x80) != 0;
+        fInterfaces.add(new Interface(linkType, snapLength, binary, tsresol & 0x7f, tsoffset));
+    }
+
+    /**
+     * @return The byte offset of the Section Header Block in the file
+     */
+    public long getStart() {
+        return fStart;
+    }
+
+    /**
+     * @return The byte order of the section
+     */
+    public ByteOrder getByteOrder() {
+        return fByteOrder;
+    }
+
+    /**
+     * @return The major version of the format
+     */
+    public int getMajorVersion() {
+        return fMajorVersion;
+    }
+
+    /**
+     * @return The minor version of the format
+     */
+    public int getMinorVersion() {
+        return fMinorVersion;
+    }
+
+    /**
+     * @return The number of interfaces described so far
+     */
+    public int getNbInterfaces() {
+        return fInterfaces.size();
+    }
+
+    /**
+     * @param interfaceId
+     *            The number of the interface
+     * @return The link type of the interface
+     */
+    public long getLinkType(int interfaceId) {
+        return fInterfaces.get(interfaceId).fLinkType;
+    }
+
+    /**
+     * @param interfaceId
+     *            The number of the interface
+     * @return The snapshot length of the interface, or 0 if there is no limit
+     */
+    public long getSnapLength(int interfaceId) {
+        return fInterfaces.get(interfaceId).fSnapLength;
+    }
+
+    /**
+     * Convert a timestamp of an interface to nanoseconds since the epoch
+     *
+     * @param interfaceId
+     *            The number of the interface
+     * @param timestamp
+     *            The timestamp, in the resolution of the interface
+     * @return The timestamp in nanoseconds
+     */
+    public long toNanoseconds(int interfaceId, long timestamp) {
+        Interface itf = fInterfaces.get(interfaceId);
+        int exponent = itf.fExponent;
+        long nanoseconds;
+        if (!itf.fBinary) {
+            if (exponent <= NANOSECOND_EXPONENT) {
+                nanoseconds = timestamp * POWERS_OF_TEN[NANOSECOND_EXPONENT - exponent];
+            } else if (exponent - NANOSECOND_EXPONENT < POWERS_OF_TEN.length) {
+                nanoseconds = timestamp / POWERS_OF_TEN[exponent - NANOSECOND_EXPONENT];
+            } else {
+                nanoseconds = 0;
+            }
+        } else if (exponent <= 33) {
+            /* The fraction times 10^9 fits in a long */
+            long fraction = timestamp & ((1L << exponent) - 1);
+            nanoseconds = (timestamp >>> exponent) * NANOSECONDS_PER_SECOND +
+                    ((fraction * NANOSECONDS_PER_SECOND) >>> exponent);
+        } else {
+            nanoseconds = (long) Math.scalb((double) timestamp * NANOSECONDS_PER_SECOND, -exponent);
+        }
+        return nanoseconds + itf.fOffset * NANOSECONDS_PER_SECOND;
+    }
+}
@@ -17,6 +17,8 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
+import java.util.List;
+
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
@@ -25,8 +27,10 @@ import org.eclipse.tracecompass.statesystem.core.StateSystemUtils;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.backend.InMemoryBackend;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.TmfStateIntervalList;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 import org.junit.After;
@@ -117,4 +121,50 @@ public class StateSystemUtilsTest {
 
     }
 
+    /**
+     * Test that the query of the history of several attributes gives the same
+     * intervals as the queries of each attribute
+     */
+    @Test
+    public void testQueryHistoryRangeMultiple() {
+        IStateHistoryBackend backend = new InMemoryBackend(START_TIME);
+        ITmfStateSystemBuilder ss = StateSystemFactory.newStateSystem(DUMMY_STRING, backend);
+        try {
+            int[] quarks = new int[4];
+            for (int i = 0; i < quarks.length; i++) {
+                quarks[i] = ss.getQuarkAbsoluteAndAdd(DUMMY_STRING, Integer.toString(i));
+            }
+            for (long t = START_TIME; t < 2000L; t++) {
+                for (int i = 0; i < quarks.length; i++) {
+                    if (t % ((i + 1) * 13) == 0) {
+                        ss.modifyAttribute(t, TmfStateValue.newValueLong(t * i), quarks[i]);
+                    }
+                }
+            }
+            ss.closeHistory(2000L);
+
+            long[][] ranges = { { START_TIME, 2000L }, { 1100L, 1700L }, { 1500L, 5000L }, { 1234L, 1234L } };
+            for (long[] range : ranges) {
+                for (long resolution : new long[] { 1, 7, 50, 1000 }) {
+                    TmfStateIntervalList[] intervals = StateSystemUtils.queryHistoryRange(ss, quarks, range[0], range[1], resolution, null);
+                    assertEquals(quarks.length, intervals.length);
+                    for (int i = 0; i < quarks.length; i++) {
+                        List<ITmfStateInterval> expected = StateSystemUtils.queryHistoryRange(ss, quarks[i], range[0], range[1], resolution, null);
+                        assertEquals(quarks[i], intervals[i].getAttribute());
+                        assertEquals(expected.size(), intervals[i].size());
+                        for (int j = 0; j < expected.size(); j++) {
+                            assertEquals(expected.get(j).getStartTime(), intervals[i].getStartTime(j));
+                            assertEquals(expected.get(j).getEndTime(), intervals[i].getEndTime(j));
+                            assertEquals(expected.get(j).getStateValue(), intervals[i].getStateValue(j));
+                            assertEquals(quarks[i], intervals[i].get(j).getAttribute());
+                        }
+                    }
+                }
+            }
+        } catch (AttributeNotFoundException | StateSystemDisposedException e) {
+            fail(e.getMessage());
+        } finally {
+            ss.dispose();
+        }
+    }
 }
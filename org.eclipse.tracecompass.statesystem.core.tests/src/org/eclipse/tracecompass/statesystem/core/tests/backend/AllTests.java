@@ -20,6 +20,8 @@ import org.junit.runners.Suite;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+    AttributeIndexedBackendTest.class,
+    HistoryTreeBackendAppendTest.class,
     InMemoryBackendTest.class
 })
 public class AllTests {
@@ -0,0 +1,288 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.tracecompass.internal.statesystem.core.StateSystem;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemUtils;
+import org.eclipse.tracecompass.statesystem.core.backend.AttributeIndexedBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.InMemoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.historytree.HistoryTreeBackend;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.TmfStateIntervalList;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link AttributeIndexedBackend} and the range queries using its
+ * index
+ */
+public class AttributeIndexedBackendTest {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int MAX_CHILDREN = 3;
+    private static final int PROVIDER_VERSION = 0;
+    private static final long START_TIME = 1000;
+    private static final long END_TIME = 11000;
+    private static final int NB_ATTRIBUTES = 10;
+    private static final int SPILL_THRESHOLD = 100;
+
+    private File fHtFile;
+    private File fIndexFile;
+    private ITmfStateSystemBuilder fExpected;
+
+    /**
+     * Create the files and the expected state system
+     *
+     * @throws IOException
+     *             If the temporary file cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        fHtFile = File.createTempFile("test-index", ".ht");
+        fIndexFile = new File(fHtFile.getPath() + ".idx");
+        fExpected = new StateSystem("expected", new InMemoryBackend(START_TIME));
+        insertStates(fExpected);
+        fExpected.closeHistory(END_TIME);
+    }
+
+    /**
+     * Delete the files
+     */
+    @After
+    public void tearDown() {
+        fExpected.dispose();
+        fHtFile.delete();
+        fIndexFile.delete();
+    }
+
+    /**
+     * Build an indexed history, and compare the range queries with the ones
+     * of a history without index, then with the history opened again.
+     *
+     * @throws IOException
+     *             Fails the test
+     * @throws StateSystemDisposedException
+     *             Fails the test
+     */
+    @Test
+    public void testRangeQueries() throws IOException, StateSystemDisposedException {
+        HistoryTreeBackend htBackend = new HistoryTreeBackend(fHtFile, BLOCK_SIZE, MAX_CHILDREN, PROVIDER_VERSION, START_TIME);
+        StateSystem ss = new StateSystem("test", new AttributeIndexedBackend(htBackend, fIndexFile, true));
+        insertStates(ss);
+        ss.closeHistory(END_TIME);
+        assertTrue(fIndexFile.exists());
+        assertFalse(new File(fIndexFile.getPath() + ".tmp").exists());
+        try {
+            checkIndex(ss);
+            compareQueries(ss);
+        } finally {
+            ss.dispose();
+        }
+
+        htBackend = new HistoryTreeBackend(fHtFile, PROVIDER_VERSION);
+        ss = new StateSystem("test", new AttributeIndexedBackend(htBackend, fIndexFile, false), false);
+        try {
+            checkIndex(ss);
+            compareQueries(ss);
+        } finally {
+            ss.dispose();
+        }
+    }
+
+    /**
+     * Build an indexed history with few intervals kept in memory, so they are
+     * spilled to disk many times, and compare its range queries with the ones
+     * of a history without index, then with the history opened again.
+     *
+     * @throws IOException
+     *             Fails the test
+     * @throws StateSystemDisposedException
+     *             Fails the test
+     */
+    @Test
+    public void testSpilledIndex() throws IOException, StateSystemDisposedException {
+        HistoryTreeBackend htBackend = new HistoryTreeBackend(fHtFile, BLOCK_SIZE, MAX_CHILDREN, PROVIDER_VERSION, START_TIME);
+        StateSystem ss = new StateSystem("test", new AttributeIndexedBackend(htBackend, fIndexFile, true, SPILL_THRESHOLD));
+        insertStates(ss);
+        assertTrue(new File(fIndexFile.getPath() + ".tmp").exists());
+        ss.closeHistory(END_TIME);
+        assertTrue(fIndexFile.exists());
+        assertFalse(new File(fIndexFile.getPath() + ".tmp").exists());
+        try {
+            checkIndex(ss);
+            compareQueries(ss);
+        } finally {
+            ss.dispose();
+        }
+
+        htBackend = new HistoryTreeBackend(fHtFile, PROVIDER_VERSION);
+        ss = new StateSystem("test", new AttributeIndexedBackend(htBackend, fIndexFile, false), false);
+        try {
+            checkIndex(ss);
+            compareQueries(ss);
+        } finally {
+            ss.dispose();
+        }
+    }
+
+    /**
+     * An index which does not match the history is not used
+     *
+     * @throws IOException
+     *             Fails the test
+     * @throws StateSystemDisposedException
+     *             Fails the test
+     */
+    @Test
+    public void testStaleIndex() throws IOException, StateSystemDisposedException {
+        HistoryTreeBackend htBackend = new HistoryTreeBackend(fHtFile, BLOCK_SIZE, MAX_CHILDREN, PROVIDER_VERSION, START_TIME);
+        StateSystem ss = new StateSystem("test", new AttributeIndexedBackend(htBackend, fIndexFile, true));
+        insertStates(ss);
+        ss.closeHistory(END_TIME);
+        ss.dispose();
+
+        /* Build the history again without the index */
+        htBackend = new HistoryTreeBackend(fHtFile, BLOCK_SIZE, MAX_CHILDREN, PROVIDER_VERSION, START_TIME);
+        ss = new StateSystem("test", htBackend);
+        insertStates(ss);
+        ss.closeHistory(END_TIME + 1);
+        ss.dispose();
+
+        htBackend = new HistoryTreeBackend(fHtFile, PROVIDER_VERSION);
+        AttributeIndexedBackend backend = new AttributeIndexedBackend(htBackend, fIndexFile, false);
+        ss = new StateSystem("test", backend, false);
+        try {
+            assertEquals(-1, backend.getIndexEndTime());
+            assertNull(ss.queryAttributeHistory(1, START_TIME, END_TIME));
+        } finally {
+            ss.dispose();
+        }
+    }
+
+    private static void checkIndex(StateSystem ss) throws StateSystemDisposedException {
+        for (int i = 0; i < NB_ATTRIBUTES; i++) {
+            int quark = getQuark(ss, i);
+            List<ITmfStateInterval> intervals = ss.queryAttributeHistory(quark, START_TIME, END_TIME);
+            if (i % 5 == 3) {
+                /* String values are not indexed */
+                assertNull(intervals);
+            } else {
+                assertNotNull(intervals);
+            }
+        }
+        /* The index does not go past the end of the history */
+        assertNull(ss.queryAttributeHistory(getQuark(ss, 0), START_TIME, END_TIME + 1));
+    }
+
+    private void compareQueries(ITmfStateSystem ss) throws StateSystemDisposedException {
+        long[][] ranges = { { START_TIME, END_TIME }, { START_TIME, END_TIME * 2 },
+                { 1234, 5678 }, { 4321, 4321 }, { 10000, END_TIME } };
+        try {
+            for (int i = 0; i < NB_ATTRIBUTES; i++) {
+                int quark = getQuark(ss, i);
+                for (long[] range : ranges) {
+                    compareIntervals(StateSystemUtils.queryHistoryRange(fExpected, quark, range[0], range[1]),
+                            StateSystemUtils.queryHistoryRange(ss, quark, range[0], range[1]));
+                    for (long resolution : new long[] { 1, 10, 333 }) {
+                        compareIntervals(StateSystemUtils.queryHistoryRange(fExpected, quark, range[0], range[1], resolution, null),
+                                StateSystemUtils.queryHistoryRange(ss, quark, range[0], range[1], resolution, null));
+                    }
+                }
+            }
+            /* Several attributes at once, some of them not indexed */
+            int[] quarks = new int[NB_ATTRIBUTES];
+            for (int i = 0; i < NB_ATTRIBUTES; i++) {
+                quarks[i] = getQuark(ss, i);
+            }
+            for (long[] range : ranges) {
+                for (long resolution : new long[] { 1, 10, 333 }) {
+                    TmfStateIntervalList[] intervals = StateSystemUtils.queryHistoryRange(ss, quarks, range[0], range[1], resolution, null);
+                    for (int i = 0; i < NB_ATTRIBUTES; i++) {
+                        compareIntervals(StateSystemUtils.queryHistoryRange(fExpected, quarks[i], range[0], range[1], resolution, null),
+                                intervals[i]);
+                    }
+                }
+            }
+        } catch (AttributeNotFoundException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    private static void compareIntervals(List<ITmfStateInterval> expected, List<ITmfStateInterval> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getStartTime(), actual.get(i).getStartTime());
+            assertEquals(expected.get(i).getEndTime(), actual.get(i).getEndTime());
+            assertEquals(expected.get(i).getAttribute(), actual.get(i).getAttribute());
+            assertEquals(expected.get(i).getStateValue(), actual.get(i).getStateValue());
+        }
+    }
+
+    private static int getQuark(ITmfStateSystem ss, int attribute) {
+        try {
+            return ss.getQuarkAbsolute("attrib", Integer.toString(attribute));
+        } catch (AttributeNotFoundException e) {
+            fail(e.getMessage());
+            return -1;
+        }
+    }
+
+    private static void insertStates(ITmfStateSystemBuilder ss) {
+        try {
+            for (int i = 0; i < NB_ATTRIBUTES; i++) {
+                ss.getQuarkAbsoluteAndAdd("attrib", Integer.toString(i));
+            }
+            for (long t = START_TIME; t < END_TIME; t++) {
+                for (int i = 0; i < NB_ATTRIBUTES; i++) {
+                    if (t % ((i + 1) * 7) != 0) {
+                        continue;
+                    }
+                    int quark = ss.getQuarkAbsolute("attrib", Integer.toString(i));
+                    ss.modifyAttribute(t, getValue(i, t), quark);
+                }
+            }
+        } catch (AttributeNotFoundException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    private static ITmfStateValue getValue(int attribute, long t) {
+        switch (attribute % 5) {
+        case 0:
+            return TmfStateValue.newValueInt((int) (t / 3));
+        case 1:
+            return TmfStateValue.newValueLong(t * t);
+        case 2:
+            return TmfStateValue.newValueDouble(t / 7.0);
+        case 3:
+            return TmfStateValue.newValueString("value" + (t % 11));
+        default:
+            return (t % 2 == 0) ? TmfStateValue.nullValue() : TmfStateValue.newValueInt(1);
+        }
+    }
+}
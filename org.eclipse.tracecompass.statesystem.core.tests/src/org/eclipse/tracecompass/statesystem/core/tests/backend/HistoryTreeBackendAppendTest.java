@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.tracecompass.internal.statesystem.core.StateSystem;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.InMemoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.historytree.HistoryTreeBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.historytree.ThreadedHistoryTreeBackend;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suspending the construction of a history tree and appending to it
+ * later, like it is done for traces that are still being written.
+ */
+public class HistoryTreeBackendAppendTest {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int MAX_CHILDREN = 3;
+    private static final int PROVIDER_VERSION = 0;
+    private static final long START_TIME = 1000;
+    private static final long END_TIME = 21000;
+    private static final long SUSPEND_TIME = 12345;
+    private static final int NB_ATTRIBUTES = 20;
+
+    private File fHtFile;
+
+    /**
+     * Create the history file
+     *
+     * @throws IOException
+     *             If the temporary file cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        fHtFile = File.createTempFile("test-append", ".ht");
+    }
+
+    /**
+     * Delete the history file
+     */
+    @After
+    public void tearDown() {
+        fHtFile.delete();
+    }
+
+    /**
+     * Build a history in two parts, suspending it in the middle, and compare
+     * it with the same history built in one go.
+     *
+     * @throws IOException
+     *             Fails the test
+     * @throws StateSystemDisposedException
+     *             Fails the test
+     */
+    @Test
+    public void testSuspendAndAppend() throws IOException, StateSystemDisposedException {
+        IStateHistoryBackend backend = new HistoryTreeBackend(fHtFile, BLOCK_SIZE, MAX_CHILDREN, PROVIDER_VERSION, START_TIME);
+        ITmfStateSystemBuilder ss = new StateSystem("test", backend);
+        insertStates(ss, START_TIME, SUSPEND_TIME);
+        int nbAttributes = ss.getNbAttributes();
+        assertTrue(ss.suspendHistory());
+        ss.dispose();
+        assertTrue(fHtFile.exists());
+
+        /* The history is not complete, it cannot be read */
+        try {
+            new HistoryTreeBackend(fHtFile, PROVIDER_VERSION);
+            fail();
+        } catch (IOException e) {
+            /* Expected */
+        }
+
+        backend = new ThreadedHistoryTreeBackend(fHtFile, PROVIDER_VERSION, 100);
+        ss = new StateSystem("test", backend, false);
+        assertEquals(nbAttributes, ss.getNbAttributes());
+        insertStates(ss, SUSPEND_TIME, END_TIME);
+        ss.closeHistory(END_TIME);
+        ss.dispose();
+
+        /* Once closed, the history can be read but not appended to */
+        try {
+            new HistoryTreeBackend(fHtFile, PROVIDER_VERSION, true);
+            fail();
+        } catch (IOException e) {
+            /* Expected */
+        }
+
+        ITmfStateSystemBuilder expected = new StateSystem("expected", new InMemoryBackend(START_TIME));
+        insertStates(expected, START_TIME, END_TIME);
+        expected.closeHistory(END_TIME);
+
+        backend = new HistoryTreeBackend(fHtFile, PROVIDER_VERSION);
+        ss = new StateSystem("test", backend, false);
+        try {
+            assertEquals(START_TIME, ss.getStartTime());
+            assertEquals(END_TIME, ss.getCurrentEndTime());
+            for (long t = START_TIME; t <= END_TIME; t += 97) {
+                List<ITmfStateInterval> expectedIntervals = expected.queryFullState(t);
+                List<ITmfStateInterval> intervals = ss.queryFullState(t);
+                assertEquals(expectedIntervals.size(), intervals.size());
+                for (int i = 0; i < intervals.size(); i++) {
+                    assertEquals(expectedIntervals.get(i).getStartTime(), intervals.get(i).getStartTime());
+                    assertEquals(expectedIntervals.get(i).getEndTime(), intervals.get(i).getEndTime());
+                    assertEquals(expectedIntervals.get(i).getStateValue(), intervals.get(i).getStateValue());
+                }
+            }
+        } finally {
+            ss.dispose();
+            expected.dispose();
+        }
+    }
+
+    /**
+     * A history that was closed normally cannot be suspended anymore
+     *
+     * @throws IOException
+     *             Fails the test
+     */
+    @Test
+    public void testSuspendClosedHistory() throws IOException {
+        IStateHistoryBackend backend = new HistoryTreeBackend(fHtFile, BLOCK_SIZE, MAX_CHILDREN, PROVIDER_VERSION, START_TIME);
+        ITmfStateSystemBuilder ss = new StateSystem("test", backend);
+        insertStates(ss, START_TIME, SUSPEND_TIME);
+        ss.closeHistory(SUSPEND_TIME);
+        assertFalse(ss.suspendHistory());
+        ss.dispose();
+    }
+
+    /**
+     * Insert state changes of every type, some attributes changing often and
+     * others rarely, so that ongoing states cross the suspension time.
+     */
+    private static void insertStates(ITmfStateSystemBuilder ss, long start, long end) {
+        try {
+            for (int i = 0; i < NB_ATTRIBUTES; i++) {
+                ss.getQuarkAbsoluteAndAdd("attrib", Integer.toString(i));
+            }
+            for (long t = start; t < end; t++) {
+                for (int i = 0; i < NB_ATTRIBUTES; i++) {
+                    if (t % ((i + 1) * 7) != 0) {
+                        continue;
+                    }
+                    int quark = ss.getQuarkAbsolute("attrib", Integer.toString(i));
+                    ss.modifyAttribute(t, getValue(i, t), quark);
+                }
+            }
+        } catch (AttributeNotFoundException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    private static ITmfStateValue getValue(int attribute, long t) {
+        switch (attribute % 5) {
+        case 0:
+            return TmfStateValue.newValueInt((int) (t / 3));
+        case 1:
+            return TmfStateValue.newValueLong(t * t);
+        case 2:
+            return TmfStateValue.newValueDouble(t / 7.0);
+        case 3:
+            return TmfStateValue.newValueString("value" + (t % 11));
+        default:
+            return (t % 2 == 0) ? TmfStateValue.nullValue() : TmfStateValue.newValueInt(1);
+        }
+    }
+}
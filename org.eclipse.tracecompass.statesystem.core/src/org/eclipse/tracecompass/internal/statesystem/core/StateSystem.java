@@ -14,6 +14,7 @@ package org.eclipse.tracecompass.internal.statesystem.core;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -22,7 +23,10 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.backend.AttributeIndexedBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.IAppendableStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
@@ -60,6 +64,7 @@ public class StateSystem implements ITmfStateSystemBuilder {
 
     private boolean buildCancelled = false;
     private boolean isDisposed = false;
+    private boolean isSuspended = false;
 
     /**
      * New-file constructor. For when you build a state system with a new file,
@@ -87,6 +92,9 @@ public class StateSystem implements ITmfStateSystemBuilder {
      * @param newFile
      *            Put true if this is a new history started from scratch. It is
      *            used to tell the state system where to get its attribute tree.
+     *            If false and the back-end is appending to a suspended
+     *            history, the ongoing states are restored too and the history
+     *            can be built further.
      * @throws IOException
      *             If there was a problem creating the new history file
      */
@@ -101,11 +109,30 @@ public class StateSystem implements ITmfStateSystemBuilder {
         } else {
             /* We're opening an existing file */
             this.attributeTree = new AttributeTree(this, backend.supplyAttributeTreeReader());
+            if (backend instanceof IAppendableStateHistoryBackend &&
+                    ((IAppendableStateHistoryBackend) backend).isAppending()) {
+                /* The ongoing states were saved right after the attribute tree */
+                File file = backend.supplyAttributeTreeWriterFile();
+                long attributeTreePos = backend.supplyAttributeTreeWriterFilePosition();
+                if (file == null) {
+                    throw new IOException("No file to restore the ongoing states from"); //$NON-NLS-1$
+                }
+                transState.readSelf(file, attributeTreePos + readAttributeTreeSize(file, attributeTreePos));
+                return;
+            }
             transState.setInactive();
             finishedLatch.countDown(); /* The history is already built */
         }
     }
 
+    private static int readAttributeTreeSize(File file, long attributeTreePos) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");) { //$NON-NLS-1$
+            /* The size of the section follows the magic number */
+            raf.seek(attributeTreePos + 4);
+            return raf.readInt();
+        }
+    }
+
     @Override
     public String getSSID() {
         return ssid;
@@ -201,6 +228,10 @@ public class StateSystem implements ITmfStateSystemBuilder {
 
     @Override
     public void closeHistory(long endTime) throws TimeRangeException {
+        if (isSuspended) {
+            /* The history was saved to be resumed later, keep it as is */
+            return;
+        }
         File attributeTreeFile;
         long attributeTreeFilePos;
         long realEndTime = endTime;
@@ -227,6 +258,37 @@ public class StateSystem implements ITmfStateSystemBuilder {
         finishedLatch.countDown(); /* Mark the history as finished building */
     }
 
+    @Override
+    public synchronized boolean suspendHistory() {
+        if (!(backend instanceof IAppendableStateHistoryBackend) || !transState.isActive()) {
+            return false;
+        }
+        IAppendableStateHistoryBackend appendableBackend = (IAppendableStateHistoryBackend) backend;
+
+        /* The ongoing states are kept as they are, not inserted in the history */
+        appendableBackend.suspendBuilding();
+
+        boolean success = false;
+        File file = backend.supplyAttributeTreeWriterFile();
+        if (file != null) {
+            long pos = backend.supplyAttributeTreeWriterFilePosition();
+            pos += getAttributeTree().writeSelf(file, pos);
+            try {
+                transState.writeSelf(file, pos);
+                success = true;
+            } catch (IOException e) {
+                Activator.getDefault().logError("Error saving the ongoing states of " + ssid, e); //$NON-NLS-1$
+            }
+        }
+
+        /* No more state changes are accepted, the build will resume later */
+        transState.setInactive();
+        isSuspended = true;
+        buildCancelled = true;
+        finishedLatch.countDown();
+        return success;
+    }
+
     //--------------------------------------------------------------------------
     //        Quark-retrieving methods
     //--------------------------------------------------------------------------
@@ -618,6 +680,33 @@ public class StateSystem implements ITmfStateSystemBuilder {
         return ret;
     }
 
+    /**
+     * Get the intervals of an attribute intersecting a time range from the
+     * attribute index of the back-end, if it has one.
+     *
+     * @param attributeQuark
+     *            The attribute
+     * @param t1
+     *            The start of the time range
+     * @param t2
+     *            The end of the time range
+     * @return The intervals in ascending time order, or null if the back-end
+     *         has no index able to answer this query, in which case the
+     *         history must be queried
+     * @throws StateSystemDisposedException
+     *             If the state system was disposed
+     */
+    public @Nullable List<ITmfStateInterval> queryAttributeHistory(int attributeQuark, long t1, long t2)
+            throws StateSystemDisposedException {
+        if (isDisposed) {
+            throw new StateSystemDisposedException();
+        }
+        if (!(backend instanceof AttributeIndexedBackend)) {
+            return null;
+        }
+        return ((AttributeIndexedBackend) backend).queryAttributeHistory(attributeQuark, t1, t2);
+    }
+
     //--------------------------------------------------------------------------
     //        Debug methods
     //--------------------------------------------------------------------------
@@ -12,7 +12,15 @@
 
 package org.eclipse.tracecompass.internal.statesystem.core;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -44,6 +52,8 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 @NonNullByDefault
 public class TransientState {
 
+    private static final int TRANSIENT_STATE_MAGIC_NUMBER = 0x07E5A7E0;
+
     /* Indicates where to insert state changes that we generate */
     private final IStateHistoryBackend fBackend;
 
@@ -420,6 +430,132 @@ public class TransientState {
         }
     }
 
+    /**
+     * Save the ongoing states in a file, so that the construction of the
+     * history can be resumed later from the same point, see
+     * {@link #readSelf}. The transient state is left as is.
+     *
+     * @param file
+     *            The file to write to
+     * @param pos
+     *            The position (in bytes) in the file where to write
+     * @return The total number of bytes written
+     * @throws IOException
+     *             If there is a problem writing to the file
+     */
+    public int writeSelf(File file, long pos) throws IOException {
+        fRWLock.readLock().lock();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");) { //$NON-NLS-1$
+            raf.seek(pos);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(raf.getChannel())));
+
+            out.writeInt(TRANSIENT_STATE_MAGIC_NUMBER);
+            out.writeInt(fOngoingStateInfo.size());
+            out.writeLong(fLatestTime);
+
+            for (int i = 0; i < fOngoingStateInfo.size(); i++) {
+                ITmfStateValue value = fOngoingStateInfo.get(i);
+                out.writeByte(value.getType().ordinal());
+                out.writeByte(fStateValueTypes.get(i).ordinal());
+                out.writeLong(fOngoingStateStartTimes.get(i));
+                switch (value.getType()) {
+                case INTEGER:
+                    out.writeInt(value.unboxInt());
+                    break;
+                case LONG:
+                    out.writeLong(value.unboxLong());
+                    break;
+                case DOUBLE:
+                    out.writeDouble(value.unboxDouble());
+                    break;
+                case STRING:
+                    out.writeUTF(value.unboxStr());
+                    break;
+                case NULL:
+                default:
+                    break;
+                }
+            }
+            out.flush();
+            return out.size();
+        } finally {
+            fRWLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Restore the ongoing states previously saved with {@link #writeSelf}.
+     * There must already be one entry per attribute of the state system.
+     *
+     * @param file
+     *            The file to read from
+     * @param pos
+     *            The position (in bytes) in the file where to read
+     * @throws IOException
+     *             If there is a problem reading from the file, or if the
+     *             saved states do not match the attributes
+     */
+    public void readSelf(File file, long pos) throws IOException {
+        /* Message for exceptions, shouldn't be externalized */
+        final String errorMessage = "The transient state file section is either invalid or corrupted."; //$NON-NLS-1$
+        final Type[] types = Type.values();
+
+        fRWLock.writeLock().lock();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");) { //$NON-NLS-1$
+            raf.seek(pos);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(raf.getChannel())));
+
+            if (in.readInt() != TRANSIENT_STATE_MAGIC_NUMBER) {
+                throw new IOException(errorMessage);
+            }
+            int size = in.readInt();
+            if (size != fOngoingStateInfo.size()) {
+                throw new IOException(errorMessage);
+            }
+            long latestTime = in.readLong();
+
+            List<ITmfStateValue> values = new ArrayList<>(size);
+            List<Long> startTimes = new ArrayList<>(size);
+            List<Type> expectedTypes = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int valueType = in.readByte();
+                int expectedType = in.readByte();
+                if (valueType < 0 || valueType >= types.length ||
+                        expectedType < 0 || expectedType >= types.length) {
+                    throw new IOException(errorMessage);
+                }
+                startTimes.add(in.readLong());
+                expectedTypes.add(types[expectedType]);
+
+                switch (types[valueType]) {
+                case INTEGER:
+                    values.add(TmfStateValue.newValueInt(in.readInt()));
+                    break;
+                case LONG:
+                    values.add(TmfStateValue.newValueLong(in.readLong()));
+                    break;
+                case DOUBLE:
+                    values.add(TmfStateValue.newValueDouble(in.readDouble()));
+                    break;
+                case STRING:
+                    values.add(TmfStateValue.newValueString(in.readUTF()));
+                    break;
+                case NULL:
+                default:
+                    values.add(TmfStateValue.nullValue());
+                    break;
+                }
+            }
+
+            fOngoingStateInfo = values;
+            fOngoingStateStartTimes = startTimes;
+            fStateValueTypes = expectedTypes;
+            fLatestTime = latestTime;
+        } finally {
+            fRWLock.writeLock().unlock();
+        }
+    }
+
     /**
      * Simply returns if this Transient State is currently being used or not
      *
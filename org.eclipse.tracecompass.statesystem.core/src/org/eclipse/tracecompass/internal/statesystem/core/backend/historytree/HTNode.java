@@ -205,7 +205,9 @@ public abstract class HTNode {
          * should only have the intervals left
          */
         for (i = 0; i < intervalCount; i++) {
-            newNode.intervals.add(HTInterval.readFrom(buffer));
+            HTInterval interval = HTInterval.readFrom(buffer);
+            newNode.intervals.add(interval);
+            newNode.sizeOfIntervalSection += interval.getIntervalSize();
         }
 
         /* Assign the node's other information we have read previously */
@@ -415,6 +417,15 @@ public abstract class HTNode {
         }
     }
 
+    /**
+     * Mark a node that was read from disk as not closed yet, so that more
+     * intervals can be added to it. This is used when appending to an history
+     * whose latest branch was written to disk without being closed.
+     */
+    public void reopenNode() {
+        isOnDisk = false;
+    }
+
     /**
      * The method to fill up the stateInfo (passed on from the Current State
      * Tree when it does a query on the SHT). We'll replace the data in that
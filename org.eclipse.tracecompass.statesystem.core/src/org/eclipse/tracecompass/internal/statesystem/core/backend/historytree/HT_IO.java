@@ -14,8 +14,8 @@ package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 
@@ -39,7 +39,7 @@ class HT_IO {
 
     /* Fields related to the file I/O */
     private final FileInputStream fis;
-    private final FileOutputStream fos;
+    private final RandomAccessFile raf;
     private final FileChannel fcIn;
     private final FileChannel fcOut;
 
@@ -74,18 +74,16 @@ class HT_IO {
                 throw new IOException("Cannot create new file at " + //$NON-NLS-1$
                         historyTreeFile.getName());
             }
-            fis = new FileInputStream(historyTreeFile);
-            fos = new FileOutputStream(historyTreeFile, false);
-        } else {
-            /*
-             * We want to open an existing file, make sure we don't squash the
-             * existing content when opening the fos!
-             */
-            this.fis = new FileInputStream(historyTreeFile);
-            this.fos = new FileOutputStream(historyTreeFile, true);
         }
+        /*
+         * The writer is not opened in append mode, so that the nodes and the
+         * header of an existing file can be rewritten in place when more
+         * intervals are appended to it.
+         */
+        this.fis = new FileInputStream(historyTreeFile);
+        this.raf = new RandomAccessFile(historyTreeFile, "rw"); //$NON-NLS-1$
         this.fcIn = fis.getChannel();
-        this.fcOut = fos.getChannel();
+        this.fcOut = raf.getChannel();
     }
 
     /**
@@ -160,7 +158,7 @@ class HT_IO {
     public synchronized void closeFile() {
         try {
             fis.close();
-            fos.close();
+            raf.close();
         } catch (IOException e) {
             Activator.getDefault().logError(e.getMessage(), e);
         }
@@ -49,6 +49,9 @@ public class HistoryTree {
     /** File format version. Increment when breaking compatibility. */
     private static final int FILE_VERSION = 4;
 
+    /** Header flag of a tree whose latest branch is not closed yet */
+    private static final int SUSPENDED_TREE = 1;
+
     // ------------------------------------------------------------------------
     // Tree-specific configuration
     // ------------------------------------------------------------------------
@@ -120,6 +123,28 @@ public class HistoryTree {
      *             If an error happens reading the file
      */
     public HistoryTree(File existingStateFile, int expProviderVersion) throws IOException {
+        this(existingStateFile, expProviderVersion, false);
+    }
+
+    /**
+     * Instantiate a SHTree from an existing tree file on disk, either to read
+     * it or to append intervals to it.
+     *
+     * Only a tree that was suspended with {@link #suspendTree} can be appended
+     * to, and such a tree cannot be opened for reading only, since its latest
+     * branch is not closed.
+     *
+     * @param existingStateFile
+     *            Path/filename of the history-file we are to open
+     * @param expProviderVersion
+     *            The expected version of the state provider
+     * @param append
+     *            True to append intervals to the tree, false to only read it
+     * @throws IOException
+     *             If an error happens reading the file, or if the tree cannot
+     *             be opened in the requested mode
+     */
+    public HistoryTree(File existingStateFile, int expProviderVersion, boolean append) throws IOException {
         /*
          * Open the file ourselves, get the tree header information we need,
          * then pass on the descriptor to the TreeIO object.
@@ -127,6 +152,8 @@ public class HistoryTree {
         int rootNodeSeqNb, res;
         int bs, maxc;
         long startTime;
+        boolean suspended;
+        long suspendedEnd;
 
         /* Java I/O mumbo jumbo... */
         if (!existingStateFile.exists()) {
@@ -180,6 +207,17 @@ public class HistoryTree {
             rootNodeSeqNb = buffer.getInt();
             startTime = buffer.getLong();
 
+            /* Files of closed trees have zeroes here */
+            suspended = (buffer.getInt() == SUSPENDED_TREE);
+            suspendedEnd = buffer.getLong();
+
+            if (suspended && !append) {
+                throw new IOException("The history is not complete"); //$NON-NLS-1$
+            }
+            if (!suspended && append) {
+                throw new IOException("The history is complete, it cannot be appended to"); //$NON-NLS-1$
+            }
+
             this.config = new HTConfig(existingStateFile, bs, maxc, expProviderVersion, startTime);
         }
 
@@ -191,7 +229,15 @@ public class HistoryTree {
         this.treeIO = new HT_IO(config, false);
 
         this.latestBranch = buildLatestBranch(rootNodeSeqNb);
-        this.treeEnd = getRootNode().getNodeEnd();
+        if (suspended) {
+            /* The latest branch will receive the next intervals */
+            for (HTNode node : latestBranch) {
+                node.reopenNode();
+            }
+            this.treeEnd = suspendedEnd;
+        } else {
+            this.treeEnd = getRootNode().getNodeEnd();
+        }
 
         /*
          * Make sure the history start time we read previously is consistent
@@ -256,42 +302,78 @@ public class HistoryTree {
             }
 
             try (FileChannel fc = treeIO.getFcOut();) {
-                ByteBuffer buffer = ByteBuffer.allocate(TREE_HEADER_SIZE);
-                buffer.order(ByteOrder.LITTLE_ENDIAN);
-                buffer.clear();
+                writeHeader(fc, false);
+            } catch (IOException e) {
+                /*
+                 * If we were able to write so far, there should not be any
+                 * problem at this point...
+                 */
+                throw new RuntimeException("State system write error"); //$NON-NLS-1$
+            }
+        }
+    }
 
-                /* Save the config of the tree to the header of the file */
-                fc.position(0);
+    /**
+     * Save the tree to disk without closing it, so that more intervals can be
+     * appended later by opening the file in append mode. The nodes of the
+     * latest branch are written as they are, and stay open.
+     *
+     * @throws IOException
+     *             If an error happens writing the file
+     */
+    public void suspendTree() throws IOException {
+        synchronized (latestBranch) {
+            for (HTNode node : latestBranch) {
+                treeIO.writeNode(node);
+                /* Writing it marked it as closed */
+                node.reopenNode();
+            }
+            writeHeader(treeIO.getFcOut(), true);
+        }
+    }
 
-                buffer.putInt(HISTORY_FILE_MAGIC_NUMBER);
+    /**
+     * Write the configuration of the tree in the header of the file
+     *
+     * @param fc
+     *            The channel to write to
+     * @param suspended
+     *            True if the latest branch is not closed
+     * @throws IOException
+     *             If an error happens writing the file
+     */
+    private void writeHeader(FileChannel fc, boolean suspended) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(TREE_HEADER_SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.clear();
 
-                buffer.putInt(FILE_VERSION);
-                buffer.putInt(config.getProviderVersion());
+        /* Save the config of the tree to the header of the file */
+        fc.position(0);
 
-                buffer.putInt(config.getBlockSize());
-                buffer.putInt(config.getMaxChildren());
+        buffer.putInt(HISTORY_FILE_MAGIC_NUMBER);
 
-                buffer.putInt(nodeCount);
+        buffer.putInt(FILE_VERSION);
+        buffer.putInt(config.getProviderVersion());
 
-                /* root node seq. nb */
-                buffer.putInt(latestBranch.get(0).getSequenceNumber());
+        buffer.putInt(config.getBlockSize());
+        buffer.putInt(config.getMaxChildren());
 
-                /* start time of this history */
-                buffer.putLong(latestBranch.get(0).getNodeStart());
+        buffer.putInt(nodeCount);
 
-                buffer.flip();
-                int res = fc.write(buffer);
-                assert (res <= TREE_HEADER_SIZE);
-                /* done writing the file header */
+        /* root node seq. nb */
+        buffer.putInt(latestBranch.get(0).getSequenceNumber());
 
-            } catch (IOException e) {
-                /*
-                 * If we were able to write so far, there should not be any
-                 * problem at this point...
-                 */
-                throw new RuntimeException("State system write error"); //$NON-NLS-1$
-            }
-        }
+        /* start time of this history */
+        buffer.putLong(latestBranch.get(0).getNodeStart());
+
+        /* state of the latest branch, and end time if it is still open */
+        buffer.putInt(suspended ? SUSPENDED_TREE : 0);
+        buffer.putLong(suspended ? treeEnd : 0);
+
+        buffer.flip();
+        int res = fc.write(buffer);
+        assert (res <= TREE_HEADER_SIZE);
+        /* done writing the file header */
     }
 
     // ------------------------------------------------------------------------
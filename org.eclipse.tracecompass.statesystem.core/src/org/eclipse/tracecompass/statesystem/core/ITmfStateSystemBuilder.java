@@ -233,4 +233,18 @@ public interface ITmfStateSystemBuilder extends ITmfStateSystem {
      *             know how to handle it.
      */
     void closeHistory(long endTime);
+
+    /**
+     * Method to stop building the history without closing it, for example
+     * when a trace that is still being written is closed. The ongoing states
+     * are saved along with the Attribute Tree instead of being committed, so
+     * that the history can be re-opened with an appending back-end and built
+     * further from the point where it was suspended. Once suspended, the
+     * history does not accept state changes, and {@link #closeHistory} does
+     * nothing.
+     *
+     * @return True if the history was saved and can be resumed later, false
+     *         if the back-end does not support it or if an error happened
+     */
+    boolean suspendHistory();
 }
@@ -21,11 +21,13 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.statesystem.core.StateSystem;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.TmfStateIntervalList;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 
 /**
@@ -136,6 +138,12 @@ public final class StateSystemUtils {
             tEnd = t2;
         }
 
+        /* Read the whole range at once if the attribute is indexed */
+        List<ITmfStateInterval> indexed = queryAttributeIndex(ss, attributeQuark, t1, tEnd);
+        if (indexed != null) {
+            return indexed;
+        }
+
         /* Get the initial state at time T1 */
         intervals = new ArrayList<>();
         currentInterval = ss.querySingleState(t1, attributeQuark);
@@ -208,6 +216,16 @@ public final class StateSystemUtils {
             mon = new NullProgressMonitor();
         }
 
+        /*
+         * If the attribute is indexed, the intervals are picked from its whole
+         * history in the range, instead of being queried one by one.
+         */
+        List<ITmfStateInterval> indexed = queryAttributeIndex(ss, attributeQuark, t1, tEnd);
+        if (indexed != null) {
+            sampleIntervals(indexed, t1, tEnd, resolution, mon, intervals);
+            return intervals;
+        }
+
         /*
          * Iterate over the "resolution points". We skip unneeded queries in the
          * case the current interval is longer than the resolution.
@@ -228,6 +246,160 @@ public final class StateSystemUtils {
         return intervals;
     }
 
+    /*
+     * Pick the intervals at the "resolution points" from all the intervals
+     * between t1 and tEnd, like the queries at these points would return.
+     */
+    private static void sampleIntervals(List<ITmfStateInterval> allIntervals, long t1, long tEnd,
+            long resolution, IProgressMonitor monitor, List<ITmfStateInterval> intervals) {
+        ITmfStateInterval currentInterval = null;
+        int index = 0;
+        for (long ts = t1; ts <= tEnd; ts += ((currentInterval.getEndTime() - ts) / resolution + 1) * resolution) {
+            if (monitor.isCanceled()) {
+                return;
+            }
+            while (allIntervals.get(index).getEndTime() < ts) {
+                index++;
+            }
+            currentInterval = allIntervals.get(index);
+            intervals.add(currentInterval);
+        }
+        if (currentInterval != null && currentInterval.getEndTime() < tEnd) {
+            intervals.add(allIntervals.get(allIntervals.size() - 1));
+        }
+    }
+
+    /**
+     * Return the state history of several attributes, with at most one update
+     * per "resolution" for each of them, like
+     * {@link #queryHistoryRange(ITmfStateSystem, int, long, long, long, IProgressMonitor)}
+     * does for one attribute.
+     *
+     * The attributes are sampled at the same times, so each sample is one
+     * full query shared by all the attributes which need it, instead of one
+     * query per attribute. Indexed attributes are read from their index.
+     *
+     * @param ss
+     *            The state system to query
+     * @param attributeQuarks
+     *            The attributes this query is interested in
+     * @param t1
+     *            Start time of the range query
+     * @param t2
+     *            Target end time of the query. If t2 is greater than the end of
+     *            the trace, we will return what we have up to the end of the
+     *            history.
+     * @param resolution
+     *            The "step" of this query
+     * @param monitor
+     *            A progress monitor. If the monitor is canceled during a query,
+     *            we will return what has been found up to that point. You can
+     *            use "null" if you do not want to use one.
+     * @return The lists of states that happened between t1 and t2, in the
+     *         same order as the attributes
+     * @throws TimeRangeException
+     *             If t1 is invalid, if t2 <= t1, or if the resolution isn't
+     *             greater than zero.
+     * @throws AttributeNotFoundException
+     *             If one of the attributes doesn't exist
+     * @throws StateSystemDisposedException
+     *             If the query is sent after the state system has been disposed
+     */
+    public static TmfStateIntervalList[] queryHistoryRange(ITmfStateSystem ss,
+            int[] attributeQuarks, long t1, long t2, long resolution,
+            @Nullable IProgressMonitor monitor)
+            throws AttributeNotFoundException, StateSystemDisposedException {
+
+        /* Make sure the time range makes sense */
+        if (t2 < t1 || resolution <= 0) {
+            throw new TimeRangeException();
+        }
+        IProgressMonitor mon = monitor;
+        if (mon == null) {
+            mon = new NullProgressMonitor();
+        }
+
+        /* Set the actual, valid end time of the range query */
+        long tEnd = Math.min(t2, ss.getCurrentEndTime());
+
+        /* The next time at which each attribute is sampled, -1 when done */
+        TmfStateIntervalList[] intervals = new TmfStateIntervalList[attributeQuarks.length];
+        long[] nextTimes = new long[attributeQuarks.length];
+        for (int i = 0; i < attributeQuarks.length; i++) {
+            int quark = attributeQuarks[i];
+            if (quark < 0 || quark >= ss.getNbAttributes()) {
+                throw new AttributeNotFoundException();
+            }
+            intervals[i] = new TmfStateIntervalList(quark);
+            nextTimes[i] = t1;
+            List<ITmfStateInterval> indexed = queryAttributeIndex(ss, quark, t1, tEnd);
+            if (indexed != null) {
+                sampleIntervals(indexed, t1, tEnd, resolution, mon, intervals[i]);
+                nextTimes[i] = -1;
+            }
+        }
+
+        /*
+         * All the attributes are sampled on the same grid from t1, so each
+         * full query serves every attribute that is due at that time.
+         */
+        while (true) {
+            if (mon.isCanceled()) {
+                return intervals;
+            }
+            long ts = Long.MAX_VALUE;
+            for (long nextTime : nextTimes) {
+                if (nextTime >= 0 && nextTime < ts) {
+                    ts = nextTime;
+                }
+            }
+            if (ts > tEnd) {
+                break;
+            }
+            List<ITmfStateInterval> fullState = ss.queryFullState(ts);
+            for (int i = 0; i < attributeQuarks.length; i++) {
+                if (nextTimes[i] != ts) {
+                    continue;
+                }
+                ITmfStateInterval interval = fullState.get(attributeQuarks[i]);
+                intervals[i].add(interval);
+                nextTimes[i] = ts + ((interval.getEndTime() - ts) / resolution + 1) * resolution;
+            }
+        }
+
+        /* Add the interval at t2, if it wasn't included already. */
+        List<ITmfStateInterval> endState = null;
+        for (int i = 0; i < attributeQuarks.length; i++) {
+            TmfStateIntervalList list = intervals[i];
+            if (nextTimes[i] < 0 || list.isEmpty() || list.getEndTime(list.size() - 1) >= tEnd) {
+                continue;
+            }
+            if (endState == null) {
+                endState = ss.queryFullState(tEnd);
+            }
+            list.add(endState.get(attributeQuarks[i]));
+        }
+        return intervals;
+    }
+
+    /*
+     * Get the intervals of an attribute between t1 and tEnd from the attribute
+     * index of the state system, or null if it cannot be used. The range must
+     * be valid, invalid ranges are left to the history queries which will
+     * report them.
+     */
+    private static @Nullable List<ITmfStateInterval> queryAttributeIndex(ITmfStateSystem ss,
+            int attributeQuark, long t1, long tEnd) throws StateSystemDisposedException {
+        if (!(ss instanceof StateSystem) || t1 < ss.getStartTime() || t1 > tEnd) {
+            return null;
+        }
+        List<ITmfStateInterval> indexed = ((StateSystem) ss).queryAttributeHistory(attributeQuark, t1, tEnd);
+        if (indexed == null || indexed.isEmpty()) {
+            return null;
+        }
+        return indexed;
+    }
+
     /**
      * Queries intervals in the state system for a given attribute, starting at
      * time t1, until we obtain a non-null value.
@@ -0,0 +1,699 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.backend;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.statesystem.core.Activator;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.TmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+
+/**
+ * History back-end decorator which, while the history is being built, also
+ * writes an index of the intervals clustered by attribute.
+ *
+ * A history tree is organized by time, so reading the whole history of one
+ * attribute reads most of the tree. With this index, the intervals of an
+ * attribute are stored contiguously in a companion file, as columns of start
+ * times, end times and values. Reading the history of an attribute is then
+ * one sequential read, which helps views that show one timeline per
+ * attribute, like one per thread.
+ *
+ * Intervals are kept in memory per attribute and spilled to a temporary file
+ * when there are too many of them. The index file is written when the history
+ * is finished. Attributes with string values are not indexed. The index is
+ * only used once it is complete: until then, and for attributes that are not
+ * indexed, {@link #queryAttributeHistory} returns null and the history itself
+ * must be queried.
+ *
+ * All the other operations are delegated to the real back-end.
+ */
+public class AttributeIndexedBackend implements IAppendableStateHistoryBackend {
+
+    private static final int MAGIC_NUMBER = 0x05FFA1DE;
+    private static final int FILE_VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+    private static final int DIRECTORY_ENTRY_SIZE = 8 + 4;
+    /** Size of one interval in the index: start, end, type and value */
+    private static final int INTERVAL_SIZE = 8 + 8 + 1 + 8;
+
+    /** Default number of buffered intervals after which they are written to disk */
+    public static final int DEFAULT_SPILL_THRESHOLD = 1 << 20;
+
+    /** Size of the blocks in which the spilled columns are copied */
+    private static final int COPY_BLOCK_SIZE = 64 * 1024;
+
+    /* Columns of the intervals, in their order in the index */
+    private static final int COLUMN_STARTS = 0;
+    private static final int COLUMN_ENDS = 1;
+    private static final int COLUMN_TYPES = 2;
+    private static final int COLUMN_VALUES = 3;
+    private static final int NB_COLUMNS = 4;
+
+    private static final int NOT_INDEXED = -1;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_INTEGER = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_DOUBLE = 3;
+
+    private final IAppendableStateHistoryBackend fInner;
+    private final File fIndexFile;
+    private final File fSpillFile;
+    private final int fSpillThreshold;
+
+    /* Construction of the index, null when it is not being built */
+    private @Nullable List<AttributeBuffer> fBuffers;
+    private int fNbBuffered = 0;
+    private @Nullable DataOutputStream fSpillOutput = null;
+    private long fSpillPosition = 0;
+
+    /* Reading of the index, set once it is complete */
+    private volatile @Nullable FileChannel fIndexChannel = null;
+    private long fIndexEndTime;
+    private long[] fOffsets = new long[0];
+    private int[] fCounts = new int[0];
+
+    /**
+     * Constructor
+     *
+     * @param inner
+     *            The real history back-end
+     * @param indexFile
+     *            The file of the index
+     * @param build
+     *            True if the history is being built, in which case the index
+     *            is built with it. False if the history already exists: the
+     *            index file is then opened if it is valid for this history.
+     */
+    public AttributeIndexedBackend(IAppendableStateHistoryBackend inner, File indexFile, boolean build) {
+        this(inner, indexFile, build, DEFAULT_SPILL_THRESHOLD);
+    }
+
+    /**
+     * Constructor with the number of intervals kept in memory
+     *
+     * @param inner
+     *            The real history back-end
+     * @param indexFile
+     *            The file of the index
+     * @param build
+     *            True if the history is being built, in which case the index
+     *            is built with it. False if the history already exists: the
+     *            index file is then opened if it is valid for this history.
+     * @param spillThreshold
+     *            The number of intervals buffered in memory while the index
+     *            is built, after which they are written to a temporary file
+     */
+    public AttributeIndexedBackend(IAppendableStateHistoryBackend inner, File indexFile, boolean build, int spillThreshold) {
+        if (spillThreshold <= 0) {
+            throw new IllegalArgumentException("Invalid spill threshold: " + spillThreshold); //$NON-NLS-1$
+        }
+        fInner = inner;
+        fIndexFile = indexFile;
+        fSpillFile = new File(indexFile.getPath() + ".tmp"); //$NON-NLS-1$
+        fSpillThreshold = spillThreshold;
+        if (build && !inner.isAppending()) {
+            fBuffers = new ArrayList<>();
+            if (indexFile.exists() && !indexFile.delete()) {
+                Activator.getDefault().logWarning("Cannot delete " + indexFile); //$NON-NLS-1$
+            }
+        } else if (indexFile.exists()) {
+            openIndex();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Index queries
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the end time of the index
+     *
+     * @return The end time of the history when the index was written, or -1 if
+     *         the index is not available
+     */
+    public long getIndexEndTime() {
+        return (fIndexChannel == null ? -1 : fIndexEndTime);
+    }
+
+    /**
+     * Get the intervals of an attribute intersecting a time range, from the
+     * index
+     *
+     * @param attributeQuark
+     *            The attribute
+     * @param t1
+     *            The start of the time range
+     * @param t2
+     *            The end of the time range, which must not be after the end
+     *            of the index
+     * @return The intervals in ascending time order, from the one containing
+     *         t1 to the one containing t2, or null if the index cannot answer
+     *         this query
+     * @throws StateSystemDisposedException
+     *             If the index was closed
+     */
+    public @Nullable List<ITmfStateInterval> queryAttributeHistory(int attributeQuark, long t1, long t2)
+            throws StateSystemDisposedException {
+        FileChannel channel = fIndexChannel;
+        if (channel == null || attributeQuark < 0 || attributeQuark >= fCounts.length ||
+                fCounts[attributeQuark] == NOT_INDEXED || t2 < t1 || t2 > fIndexEndTime) {
+            return null;
+        }
+        int count = fCounts[attributeQuark];
+        long startsPosition = fOffsets[attributeQuark];
+        long endsPosition = startsPosition + (long) count * 8;
+        long typesPosition = startsPosition + (long) count * 16;
+        long valuesPosition = startsPosition + (long) count * 17;
+        ByteBuffer buffer;
+        int first;
+        int nbIntervals;
+        try {
+            /*
+             * Find the intervals containing t1 and t2 in the end times
+             * column, then only read that slice of the columns
+             */
+            first = searchEndTime(channel, endsPosition, count, t1);
+            if (first == count || readLong(channel, startsPosition + (long) first * 8) > t1) {
+                /* The attribute did not exist yet at t1 */
+                return null;
+            }
+            int last = Math.min(searchEndTime(channel, endsPosition, count, t2), count - 1);
+            nbIntervals = last - first + 1;
+            long size = (long) nbIntervals * INTERVAL_SIZE;
+            if (size > Integer.MAX_VALUE) {
+                /* Too large to be read at once, query the history instead */
+                return null;
+            }
+            buffer = ByteBuffer.allocate((int) size);
+            buffer.limit(nbIntervals * 8);
+            readFully(channel, buffer, startsPosition + (long) first * 8);
+            buffer.limit(nbIntervals * 16);
+            readFully(channel, buffer, endsPosition + (long) first * 8);
+            buffer.limit(nbIntervals * 17);
+            readFully(channel, buffer, typesPosition + first);
+            buffer.limit(buffer.capacity());
+            readFully(channel, buffer, valuesPosition + (long) first * 8);
+        } catch (IOException e) {
+            if (!channel.isOpen()) {
+                throw new StateSystemDisposedException(e);
+            }
+            Activator.getDefault().logError("Error reading the attribute index " + fIndexFile, e); //$NON-NLS-1$
+            return null;
+        }
+
+        List<ITmfStateInterval> intervals = new ArrayList<>(nbIntervals);
+        for (int i = 0; i < nbIntervals; i++) {
+            long start = buffer.getLong(i * 8);
+            if (start > t2) {
+                break;
+            }
+            long end = buffer.getLong(nbIntervals * 8 + i * 8);
+            ITmfStateValue value = decodeValue(buffer.get(nbIntervals * 16 + i), buffer.getLong(nbIntervals * 17 + i * 8));
+            intervals.add(new TmfStateInterval(start, end, attributeQuark, value));
+        }
+        return intervals;
+    }
+
+    /*
+     * Binary search the end times column of an attribute for the first
+     * interval ending at or after t. Returns count if there is none.
+     */
+    private static int searchEndTime(FileChannel channel, long endsPosition, int count, long t) throws IOException {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (readLong(channel, endsPosition + (long) mid * 8) < t) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static long readLong(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        readFully(channel, buffer, position);
+        return buffer.getLong(0);
+    }
+
+    /* Fill the buffer up to its limit, from the given position in the file */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long filePosition = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, filePosition);
+            if (read < 0) {
+                throw new IOException("Truncated attribute index"); //$NON-NLS-1$
+            }
+            filePosition += read;
+        }
+    }
+
+    private static ITmfStateValue decodeValue(byte type, long value) {
+        switch (type) {
+        case TYPE_INTEGER:
+            return TmfStateValue.newValueInt((int) value);
+        case TYPE_LONG:
+            return TmfStateValue.newValueLong(value);
+        case TYPE_DOUBLE:
+            return TmfStateValue.newValueDouble(Double.longBitsToDouble(value));
+        case TYPE_NULL:
+        default:
+            return TmfStateValue.nullValue();
+        }
+    }
+
+    private void openIndex() {
+        try (FileInputStream fis = new FileInputStream(fIndexFile);) {
+            FileChannel fc = fis.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            fc.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC_NUMBER ||
+                    header.getInt() != FILE_VERSION) {
+                return;
+            }
+            long endTime = header.getLong();
+            int nbAttributes = header.getInt();
+            if (endTime != fInner.getEndTime() || nbAttributes < 0) {
+                /* The index is not the one of this history */
+                return;
+            }
+            ByteBuffer directory = ByteBuffer.allocate(nbAttributes * DIRECTORY_ENTRY_SIZE);
+            while (directory.hasRemaining()) {
+                if (fc.read(directory, HEADER_SIZE + directory.position()) < 0) {
+                    return;
+                }
+            }
+            directory.flip();
+            long[] offsets = new long[nbAttributes];
+            int[] counts = new int[nbAttributes];
+            for (int i = 0; i < nbAttributes; i++) {
+                offsets[i] = directory.getLong();
+                counts[i] = directory.getInt();
+            }
+            fOffsets = offsets;
+            fCounts = counts;
+            fIndexEndTime = endTime;
+        } catch (IOException e) {
+            Activator.getDefault().logWarning("Cannot read the attribute index " + fIndexFile); //$NON-NLS-1$
+            return;
+        }
+        try {
+            fIndexChannel = new RandomAccessFile(fIndexFile, "r").getChannel(); //$NON-NLS-1$
+        } catch (IOException e) {
+            Activator.getDefault().logWarning("Cannot open the attribute index " + fIndexFile); //$NON-NLS-1$
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Index construction
+    // ------------------------------------------------------------------------
+
+    /**
+     * Intervals of one attribute, buffered in memory, and the parts of its
+     * history that were already spilled to disk
+     */
+    private static class AttributeBuffer {
+        private long[] fStarts = new long[16];
+        private long[] fEnds = new long[16];
+        private byte[] fTypes = new byte[16];
+        private long[] fValues = new long[16];
+        private int fSize = 0;
+        private int fTotal = 0;
+        private boolean fIndexed = true;
+        /** Position and size of the spilled chunks, in the spill file */
+        private final List<long[]> fChunks = new ArrayList<>();
+
+        public void add(long start, long end, byte type, long value) {
+            if (fSize == fStarts.length) {
+                int newLength = fSize * 2;
+                fStarts = Arrays.copyOf(fStarts, newLength);
+                fEnds = Arrays.copyOf(fEnds, newLength);
+                fTypes = Arrays.copyOf(fTypes, newLength);
+                fValues = Arrays.copyOf(fValues, newLength);
+            }
+            fStarts[fSize] = start;
+            fEnds[fSize] = end;
+            fTypes[fSize] = type;
+            fValues[fSize] = value;
+            fSize++;
+            fTotal++;
+        }
+
+        public void drop() {
+            fIndexed = false;
+            fStarts = new long[0];
+            fEnds = new long[0];
+            fTypes = new byte[0];
+            fValues = new long[0];
+            fSize = 0;
+            fChunks.clear();
+        }
+
+        /* Write the buffered columns, and reset the buffer */
+        public void writeColumns(DataOutputStream out) throws IOException {
+            for (int column = 0; column < NB_COLUMNS; column++) {
+                writeColumn(out, column);
+            }
+            fSize = 0;
+        }
+
+        /* Write one of the buffered columns */
+        public void writeColumn(DataOutputStream out, int column) throws IOException {
+            switch (column) {
+            case COLUMN_STARTS:
+                writeLongs(out, fStarts, fSize);
+                break;
+            case COLUMN_ENDS:
+                writeLongs(out, fEnds, fSize);
+                break;
+            case COLUMN_TYPES:
+                out.write(fTypes, 0, fSize);
+                break;
+            case COLUMN_VALUES:
+            default:
+                writeLongs(out, fValues, fSize);
+                break;
+            }
+        }
+
+        private static void writeLongs(DataOutputStream out, long[] values, int size) throws IOException {
+            for (int i = 0; i < size; i++) {
+                out.writeLong(values[i]);
+            }
+        }
+    }
+
+    @Override
+    public void insertPastState(long stateStartTime, long stateEndTime,
+            int quark, ITmfStateValue value) throws TimeRangeException {
+        fInner.insertPastState(stateStartTime, stateEndTime, quark, value);
+
+        List<AttributeBuffer> buffers = fBuffers;
+        if (buffers == null) {
+            return;
+        }
+        while (buffers.size() <= quark) {
+            buffers.add(new AttributeBuffer());
+        }
+        AttributeBuffer buffer = buffers.get(quark);
+        if (!buffer.fIndexed) {
+            return;
+        }
+        switch (value.getType()) {
+        case NULL:
+            buffer.add(stateStartTime, stateEndTime, TYPE_NULL, 0);
+            break;
+        case INTEGER:
+            buffer.add(stateStartTime, stateEndTime, TYPE_INTEGER, value.unboxInt());
+            break;
+        case LONG:
+            buffer.add(stateStartTime, stateEndTime, TYPE_LONG, value.unboxLong());
+            break;
+        case DOUBLE:
+            buffer.add(stateStartTime, stateEndTime, TYPE_DOUBLE, Double.doubleToRawLongBits(value.unboxDouble()));
+            break;
+        case STRING:
+        default:
+            /* Only fixed-size values are indexed */
+            fNbBuffered -= buffer.fSize;
+            buffer.drop();
+            return;
+        }
+        fNbBuffered++;
+        if (fNbBuffered >= fSpillThreshold) {
+            spill(buffers);
+        }
+    }
+
+    /* Write the buffered intervals of every attribute to the spill file */
+    private void spill(List<AttributeBuffer> buffers) {
+        try {
+            DataOutputStream out = fSpillOutput;
+            if (out == null) {
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fSpillFile)));
+                fSpillOutput = out;
+            }
+            for (AttributeBuffer buffer : buffers) {
+                if (buffer.fSize > 0) {
+                    buffer.fChunks.add(new long[] { fSpillPosition, buffer.fSize });
+                    fSpillPosition += (long) buffer.fSize * INTERVAL_SIZE;
+                    buffer.writeColumns(out);
+                }
+            }
+            fNbBuffered = 0;
+        } catch (IOException e) {
+            Activator.getDefault().logError("Error writing the attribute index " + fSpillFile, e); //$NON-NLS-1$
+            abortIndex();
+        }
+    }
+
+    /* Stop building the index, the history will be queried directly */
+    private void abortIndex() {
+        fBuffers = null;
+        fNbBuffered = 0;
+        closeSpillFile();
+        deleteFile(fIndexFile);
+    }
+
+    private void closeSpillFile() {
+        DataOutputStream out = fSpillOutput;
+        fSpillOutput = null;
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                /* Nothing more to do with it */
+            }
+        }
+        deleteFile(fSpillFile);
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            Activator.getDefault().logWarning("Cannot delete " + file); //$NON-NLS-1$
+        }
+    }
+
+    /*
+     * Write the index file: a header, a directory with the position and
+     * number of intervals of each attribute, then the columns of each
+     * attribute. Each column of an attribute is copied from its spilled
+     * chunks, in blocks, followed by its buffered intervals.
+     */
+    private void writeIndex(List<AttributeBuffer> buffers, long endTime) throws IOException {
+        DataOutputStream spill = fSpillOutput;
+        if (spill != null) {
+            spill.flush();
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fIndexFile)));
+                RandomAccessFile spillFile = (spill == null ? null : new RandomAccessFile(fSpillFile, "r"));) { //$NON-NLS-1$
+            out.writeInt(MAGIC_NUMBER);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(endTime);
+            out.writeInt(buffers.size());
+
+            long offset = HEADER_SIZE + (long) buffers.size() * DIRECTORY_ENTRY_SIZE;
+            for (AttributeBuffer buffer : buffers) {
+                out.writeLong(offset);
+                if (buffer.fIndexed) {
+                    out.writeInt(buffer.fTotal);
+                    offset += (long) buffer.fTotal * INTERVAL_SIZE;
+                } else {
+                    out.writeInt(NOT_INDEXED);
+                }
+            }
+
+            ByteBuffer block = ByteBuffer.allocate(COPY_BLOCK_SIZE);
+            for (AttributeBuffer buffer : buffers) {
+                if (!buffer.fIndexed) {
+                    continue;
+                }
+                for (int column = 0; column < NB_COLUMNS; column++) {
+                    if (spillFile != null) {
+                        for (long[] chunk : buffer.fChunks) {
+                            copyColumn(spillFile.getChannel(), chunk[0], (int) chunk[1], column, block, out);
+                        }
+                    }
+                    buffer.writeColumn(out, column);
+                }
+            }
+        }
+    }
+
+    /*
+     * Copy one column of a spilled chunk, whose columns are laid out like in
+     * the index.
+     */
+    private static void copyColumn(FileChannel fc, long chunkPosition, int size, int column,
+            ByteBuffer block, DataOutputStream out) throws IOException {
+        long position = chunkPosition + (long) size * getColumnOffset(column);
+        long remaining = (long) size * getColumnWidth(column);
+        while (remaining > 0) {
+            block.clear();
+            block.limit((int) Math.min(block.capacity(), remaining));
+            readFully(fc, block, position);
+            out.write(block.array(), 0, block.limit());
+            position += block.limit();
+            remaining -= block.limit();
+        }
+    }
+
+    /* Offset of a column from the start of the columns, per interval */
+    private static int getColumnOffset(int column) {
+        switch (column) {
+        case COLUMN_STARTS:
+            return 0;
+        case COLUMN_ENDS:
+            return 8;
+        case COLUMN_TYPES:
+            return 16;
+        case COLUMN_VALUES:
+        default:
+            return 17;
+        }
+    }
+
+    private static int getColumnWidth(int column) {
+        return (column == COLUMN_TYPES ? 1 : 8);
+    }
+
+    // ------------------------------------------------------------------------
+    // IStateHistoryBackend
+    // ------------------------------------------------------------------------
+
+    @Override
+    public long getStartTime() {
+        return fInner.getStartTime();
+    }
+
+    @Override
+    public long getEndTime() {
+        return fInner.getEndTime();
+    }
+
+    @Override
+    public void finishedBuilding(long endTime) throws TimeRangeException {
+        fInner.finishedBuilding(endTime);
+
+        List<AttributeBuffer> buffers = fBuffers;
+        if (buffers == null) {
+            return;
+        }
+        fBuffers = null;
+        try {
+            writeIndex(buffers, fInner.getEndTime());
+        } catch (IOException e) {
+            Activator.getDefault().logError("Error writing the attribute index " + fIndexFile, e); //$NON-NLS-1$
+            deleteFile(fIndexFile);
+        } finally {
+            closeSpillFile();
+        }
+        openIndex();
+    }
+
+    @Override
+    public void suspendBuilding() {
+        /* The index is only built in one go */
+        abortIndex();
+        fInner.suspendBuilding();
+    }
+
+    @Override
+    public boolean isAppending() {
+        return fInner.isAppending();
+    }
+
+    @Override
+    public FileInputStream supplyAttributeTreeReader() {
+        return fInner.supplyAttributeTreeReader();
+    }
+
+    @Override
+    public File supplyAttributeTreeWriterFile() {
+        return fInner.supplyAttributeTreeWriterFile();
+    }
+
+    @Override
+    public long supplyAttributeTreeWriterFilePosition() {
+        return fInner.supplyAttributeTreeWriterFilePosition();
+    }
+
+    @Override
+    public void removeFiles() {
+        closeIndex();
+        abortIndex();
+        fInner.removeFiles();
+    }
+
+    @Override
+    public void dispose() {
+        closeIndex();
+        if (fBuffers != null) {
+            /* The history was not finished, the index is incomplete */
+            abortIndex();
+        }
+        fInner.dispose();
+    }
+
+    private void closeIndex() {
+        FileChannel channel = fIndexChannel;
+        fIndexChannel = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                /* Nothing more to do with it */
+            }
+        }
+    }
+
+    @Override
+    public void doQuery(@NonNull List<ITmfStateInterval> currentStateInfo, long t)
+            throws TimeRangeException, StateSystemDisposedException {
+        fInner.doQuery(currentStateInfo, t);
+    }
+
+    @Override
+    public ITmfStateInterval doSingularQuery(long t, int attributeQuark)
+            throws TimeRangeException, AttributeNotFoundException,
+            StateSystemDisposedException {
+        return fInner.doSingularQuery(t, attributeQuark);
+    }
+
+    @Override
+    public void debugPrint(PrintWriter writer) {
+        fInner.debugPrint(writer);
+    }
+}
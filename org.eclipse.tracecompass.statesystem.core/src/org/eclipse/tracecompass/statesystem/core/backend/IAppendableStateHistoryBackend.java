@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.backend;
+
+/**
+ * A state history backend whose construction can be suspended and resumed
+ * later, for example when the trace is still being written (live or
+ * streaming traces).
+ *
+ * A suspended backend keeps what was inserted so far on disk. It can then be
+ * re-opened in "append" mode, in which case the intervals of the new part of
+ * the trace are added to the existing history instead of rebuilding it from
+ * scratch.
+ */
+public interface IAppendableStateHistoryBackend extends IStateHistoryBackend {
+
+    /**
+     * Stop the construction of the history without closing it. Everything
+     * inserted so far is committed to disk, and the files are kept so that
+     * more intervals can be appended to them later. Like
+     * {@link #finishedBuilding}, this must be called before the attribute tree
+     * is written.
+     */
+    void suspendBuilding();
+
+    /**
+     * Check if this backend was opened to append intervals to a suspended
+     * history. In this case, the attribute tree and the ongoing states must
+     * be restored from the history files before resuming the construction.
+     *
+     * @return True if the backend is appending to an existing history
+     */
+    boolean isAppending();
+}
@@ -19,12 +19,13 @@ import java.io.PrintWriter;
 import java.nio.channels.ClosedChannelException;
 import java.util.List;
 
+import org.eclipse.tracecompass.internal.statesystem.core.Activator;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.CoreNode;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTInterval;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTNode;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HistoryTree;
-import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.IAppendableStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
@@ -38,7 +39,7 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
  * @author Alexandre Montplaisir
  * @since 3.0
  */
-public class HistoryTreeBackend implements IStateHistoryBackend {
+public class HistoryTreeBackend implements IAppendableStateHistoryBackend {
 
     /**
      * The history tree that sits underneath.
@@ -48,6 +49,9 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
     /** Indicates if the history tree construction is done */
     protected volatile boolean isFinishedBuilding = false;
 
+    /** Indicates if intervals are appended to a suspended history */
+    private final boolean isAppending;
+
     /**
      * Constructor for new history files. Use this when creating a new history
      * from scratch.
@@ -74,6 +78,7 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
         final HTConfig conf = new HTConfig(newStateFile, blockSize, maxChildren,
                 providerVersion, startTime);
         sht = new HistoryTree(conf);
+        isAppending = false;
     }
 
     /**
@@ -112,8 +117,32 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
      */
     public HistoryTreeBackend(File existingStateFile, int providerVersion)
             throws IOException {
-        sht = new HistoryTree(existingStateFile, providerVersion);
-        isFinishedBuilding = true;
+        this(existingStateFile, providerVersion, false);
+    }
+
+    /**
+     * Existing history constructor, which can also re-open a history whose
+     * construction was suspended with {@link #suspendBuilding()} to append
+     * more intervals to it.
+     *
+     * @param existingStateFile
+     *            Filename/location of the history we want to load
+     * @param providerVersion
+     *            Expected version of of the state provider plugin.
+     * @param append
+     *            True to append to a suspended history, false to open a
+     *            complete history for reading only
+     * @throws IOException
+     *             If we can't read the file, if it doesn't exist, is not
+     *             recognized, if the version of the file does not match the
+     *             expected providerVersion, or if the history cannot be
+     *             opened in the requested mode.
+     */
+    public HistoryTreeBackend(File existingStateFile, int providerVersion, boolean append)
+            throws IOException {
+        sht = new HistoryTree(existingStateFile, providerVersion, append);
+        isFinishedBuilding = !append;
+        isAppending = append;
     }
 
     /**
@@ -151,6 +180,22 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
         isFinishedBuilding = true;
     }
 
+    @Override
+    public void suspendBuilding() {
+        try {
+            sht.suspendTree();
+        } catch (IOException e) {
+            Activator.getDefault().logError("Error suspending the state history", e); //$NON-NLS-1$
+        }
+        /* Keep the file, it will be appended to */
+        isFinishedBuilding = true;
+    }
+
+    @Override
+    public boolean isAppending() {
+        return isAppending;
+    }
+
     @Override
     public FileInputStream supplyAttributeTreeReader() {
         return sht.supplyATReader();
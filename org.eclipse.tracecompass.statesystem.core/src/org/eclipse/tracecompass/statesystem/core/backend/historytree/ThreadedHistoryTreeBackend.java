@@ -40,6 +40,9 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
     private final @NonNull BlockingQueue<HTInterval> intervalQueue;
     private final @NonNull Thread shtThread;
 
+    /** Attribute of the "poison pill" asking to suspend the construction */
+    private static final int SUSPEND_ATTRIBUTE = -2;
+
     /**
      * New state history constructor
      *
@@ -103,13 +106,33 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
         shtThread.start();
     }
 
-    /*
-     * The Threaded version does not specify an "existing file" constructor,
-     * since the history is already built (and we only use the other thread
-     * during building). Just use a plain HistoryTreeProvider in this case.
+    /**
+     * Constructor to resume the construction of a suspended history, when
+     * more of the trace becomes available (live or streaming traces). The
+     * intervals are appended to the existing history file.
+     *
+     * To only read an existing history, use a plain {@link HistoryTreeBackend}
+     * instead, since the history is already built.
      *
-     * TODO but what about streaming??
+     * @param existingStateFile
+     *            The history file that was suspended
+     * @param providerVersion
+     *            Expected version of of the state provider plugin.
+     * @param queueSize
+     *            The size of the interval insertion queue. 2000 - 10000 usually
+     *            works well
+     * @throws IOException
+     *             If the file cannot be read, or if it is not a suspended
+     *             history of the expected provider version
      */
+    public ThreadedHistoryTreeBackend(File existingStateFile,
+            int providerVersion, int queueSize) throws IOException {
+        super(existingStateFile, providerVersion, true);
+
+        intervalQueue = new ArrayBlockingQueue<>(queueSize);
+        shtThread = new Thread(this, "History Tree Thread"); //$NON-NLS-1$
+        shtThread.start();
+    }
 
     @Override
     public void insertPastState(long stateStartTime, long stateEndTime,
@@ -142,6 +165,26 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
         return;
     }
 
+    @Override
+    public void suspendBuilding() {
+        /*
+         * Like finishedBuilding(), the thread must be done writing the nodes
+         * before the Attribute Tree is written after them.
+         */
+        if (shtThread.isAlive()) {
+            try {
+                HTInterval pill = new HTInterval(-1, getEndTime(), SUSPEND_ATTRIBUTE, TmfStateValue.nullValue());
+                intervalQueue.put(pill);
+                shtThread.join();
+            } catch (TimeRangeException e) {
+                Activator.getDefault().logError("Error suspending state system", e); //$NON-NLS-1$
+            } catch (InterruptedException e) {
+                Activator.getDefault().logError("State system interrupted", e); //$NON-NLS-1$
+            }
+        }
+        isFinishedBuilding = true;
+    }
+
     @Override
     public void dispose() {
         if (!isFinishedBuilding) {
@@ -184,6 +227,11 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
                 getSHT().insertInterval(currentInterval);
                 currentInterval = intervalQueue.take();
             }
+            if (currentInterval.getAttribute() == SUSPEND_ATTRIBUTE) {
+                /* Write down everything, but keep the tree open */
+                getSHT().suspendTree();
+                return;
+            }
             if (currentInterval.getAttribute() != -1) {
                 /* Make sure this is the "poison pill" we are waiting for */
                 throw new IllegalStateException();
@@ -200,6 +248,8 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
         } catch (TimeRangeException e) {
             /* This also should not happen */
             Activator.getDefault().logError("Error starting the state system", e); //$NON-NLS-1$
+        } catch (IOException e) {
+            Activator.getDefault().logError("Error suspending the state system", e); //$NON-NLS-1$
         }
     }
 
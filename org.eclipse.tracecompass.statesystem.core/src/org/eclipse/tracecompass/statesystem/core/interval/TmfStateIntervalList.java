@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.interval;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+
+/**
+ * List of the intervals of one attribute, in ascending time order. The start
+ * and end times are stored in arrays, and the interval objects are only
+ * created when they are accessed through the {@link java.util.List} methods,
+ * so the times can be read without creating any object.
+ */
+public class TmfStateIntervalList extends AbstractList<ITmfStateInterval> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int fAttribute;
+    private long[] fStarts = new long[INITIAL_CAPACITY];
+    private long[] fEnds = new long[INITIAL_CAPACITY];
+    private ITmfStateValue[] fValues = new ITmfStateValue[INITIAL_CAPACITY];
+    private int fSize = 0;
+
+    /**
+     * Constructor
+     *
+     * @param attribute
+     *            The quark of the attribute of the intervals
+     */
+    public TmfStateIntervalList(int attribute) {
+        fAttribute = attribute;
+    }
+
+    /**
+     * Get the attribute of the intervals
+     *
+     * @return The quark of the attribute
+     */
+    public int getAttribute() {
+        return fAttribute;
+    }
+
+    /**
+     * Add an interval at the end of the list
+     *
+     * @param start
+     *            The start time of the interval
+     * @param end
+     *            The end time of the interval
+     * @param value
+     *            The state value of the interval
+     */
+    public void add(long start, long end, ITmfStateValue value) {
+        if (fSize == fStarts.length) {
+            int newLength = fSize * 2;
+            fStarts = Arrays.copyOf(fStarts, newLength);
+            fEnds = Arrays.copyOf(fEnds, newLength);
+            fValues = Arrays.copyOf(fValues, newLength);
+        }
+        fStarts[fSize] = start;
+        fEnds[fSize] = end;
+        fValues[fSize] = value;
+        fSize++;
+        modCount++;
+    }
+
+    @Override
+    public boolean add(ITmfStateInterval interval) {
+        add(interval.getStartTime(), interval.getEndTime(), interval.getStateValue());
+        return true;
+    }
+
+    /**
+     * Get the start time of an interval
+     *
+     * @param index
+     *            The index of the interval
+     * @return The start time
+     */
+    public long getStartTime(int index) {
+        checkIndex(index);
+        return fStarts[index];
+    }
+
+    /**
+     * Get the end time of an interval
+     *
+     * @param index
+     *            The index of the interval
+     * @return The end time
+     */
+    public long getEndTime(int index) {
+        checkIndex(index);
+        return fEnds[index];
+    }
+
+    /**
+     * Get the state value of an interval
+     *
+     * @param index
+     *            The index of the interval
+     * @return The state value
+     */
+    public ITmfStateValue getStateValue(int index) {
+        checkIndex(index);
+        return fValues[index];
+    }
+
+    @Override
+    public ITmfStateInterval get(int index) {
+        checkIndex(index);
+        return new TmfStateInterval(fStarts[index], fEnds[index], fAttribute, fValues[index]);
+    }
+
+    @Override
+    public int size() {
+        return fSize;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= fSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + fSize); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+}
@@ -22,6 +22,7 @@ import org.junit.runners.Suite;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+        SyncAlgorithmBenchmark.class,
         TimestampTransformBenchmark.class
 })
 public class AllPerfTests {
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.perf.synchronization;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.Random;
+
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.tmf.core.event.matching.TmfEventDependency;
+import org.eclipse.tracecompass.tmf.core.synchronization.SynchronizationAlgorithm;
+import org.eclipse.tracecompass.tmf.core.synchronization.SynchronizationAlgorithm.SyncQuality;
+import org.eclipse.tracecompass.tmf.core.synchronization.SynchronizationAlgorithmFactory;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.tests.stubs.event.TmfSyncEventStub;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.Test;
+
+/**
+ * Test the performance of the fully incremental synchronization algorithm on
+ * generated matches, without reading traces
+ */
+public class SyncAlgorithmBenchmark {
+
+    private static final String TEST_ID = "org.eclipse.linuxtools#Trace synchronization#";
+    private static final String TEST_SUMMARY = "Convex hull: ";
+
+    /** Number of matches added at each run: 1 million */
+    private static final int NB_MATCHES = 1000000;
+
+    /**
+     * Test the performance of the convex hull computation, with timestamps in
+     * the order of 10^18 nanoseconds and a drift between the clocks
+     */
+    @Test
+    public void testFullyIncrementalPerformance() {
+        TmfTraceStub t1 = new TmfTraceStub();
+        t1.init("t1");
+        TmfTraceStub t2 = new TmfTraceStub();
+        t2.init("t2");
+        Collection<ITmfTrace> traces = new LinkedList<>();
+        traces.add(t1);
+        traces.add(t2);
+
+        /* Create the matches beforehand to only measure the algorithm */
+        TmfEventDependency[] matches = new TmfEventDependency[NB_MATCHES];
+        Random random = new Random(0);
+        long time = (long) Math.pow(10, 18);
+        for (int i = 0; i < NB_MATCHES; i++) {
+            time += 1000 + random.nextInt(1000);
+            long latency = 10000 + random.nextInt(50000);
+            /* t2 is ahead by 1 ms and drifts by 10 ppm */
+            long offset = 1000000 + (time - (long) Math.pow(10, 18)) / 100000;
+            if (i % 2 == 0) {
+                matches[i] = createMatch(t1, time, t2, time + latency + offset);
+            } else {
+                matches[i] = createMatch(t2, time + offset, t1, time + latency);
+            }
+        }
+
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + "Fully incremental");
+        perf.tagAsSummary(pm, TEST_SUMMARY + "Fully incremental", Dimension.CPU_TIME);
+
+        for (int x = 0; x < 5; x++) {
+            SynchronizationAlgorithm syncAlgo = SynchronizationAlgorithmFactory.getFullyIncrementalAlgorithm();
+            syncAlgo.init(traces);
+            pm.start();
+            for (TmfEventDependency match : matches) {
+                syncAlgo.addMatch(match);
+            }
+            syncAlgo.getTimestampTransform(t2);
+            pm.stop();
+            assertEquals(SyncQuality.ACCURATE, syncAlgo.getSynchronizationQuality(t1, t2));
+        }
+        pm.commit();
+    }
+
+    private static TmfEventDependency createMatch(ITmfTrace sender, long sendTs, ITmfTrace receiver, long receiveTs) {
+        return new TmfEventDependency(
+                new TmfSyncEventStub(sender, new TmfTimestamp(sendTs)),
+                new TmfSyncEventStub(receiver, new TmfTimestamp(receiveTs)));
+    }
+}
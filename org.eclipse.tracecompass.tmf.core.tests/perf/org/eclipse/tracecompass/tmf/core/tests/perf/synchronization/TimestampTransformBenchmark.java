@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2014 École Polytechnique de Montréal
+ * Copyright (c) 2014, 2015 École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -35,6 +35,9 @@ public class TimestampTransformBenchmark {
     /** Number of transformations done for each transform: 50 millions */
     private static final long NB_TRANSFORMATIONS = 50000000L;
 
+    /** Number of timestamps transformed at once in the batch runs */
+    private static final int BATCH_SIZE = 1024;
+
     /**
      * Test the timestamp transform performances
      */
@@ -53,6 +56,24 @@ public class TimestampTransformBenchmark {
         doTimestampTransformRun("Linear transform with larger slope and negative offset", transform, 5);
     }
 
+    /**
+     * Test the performance of the transform of timestamps by batches
+     */
+    @Test
+    public void testBatchTimestampTransformPerformance() {
+        ITmfTimestampTransform transform = TimestampTransformFactory.getDefaultTransform();
+        doBatchTimestampTransformRun("Identity transform batch", transform, 10);
+
+        transform = TimestampTransformFactory.createWithOffset(123456789);
+        doBatchTimestampTransformRun("Transform with offset batch", transform, 10);
+
+        transform = TimestampTransformFactory.createLinear(Math.PI, 1234);
+        doBatchTimestampTransformRun("Linear transform batch", transform, 5);
+
+        transform = TimestampTransformFactory.createLinear(10000.1234545565635, -4312278758437L);
+        doBatchTimestampTransformRun("Linear transform with larger slope and negative offset batch", transform, 5);
+    }
+
     /**
      * Benchmark to compare the classic and fast timestamp transform.
      *
@@ -96,4 +117,27 @@ public class TimestampTransformBenchmark {
         pm.commit();
     }
 
+    private static void doBatchTimestampTransformRun(String testName, ITmfTimestampTransform xform, long loopCount) {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + testName);
+        perf.tagAsSummary(pm, TEST_SUMMARY + testName, Dimension.CPU_TIME);
+
+        long[] in = new long[BATCH_SIZE];
+        long[] out = new long[BATCH_SIZE];
+        for (int x = 0; x < loopCount; x++) {
+            /* Same timestamps as the single transform runs */
+            long time = (long) Math.pow(10, 18);
+            pm.start();
+            for (long i = 0; i < NB_TRANSFORMATIONS; i += BATCH_SIZE) {
+                for (int j = 0; j < BATCH_SIZE; j++) {
+                    in[j] = time;
+                    time += 200;
+                }
+                xform.transform(in, out, BATCH_SIZE);
+            }
+            pm.stop();
+        }
+        pm.commit();
+    }
+
 }
@@ -23,10 +23,13 @@ import org.junit.runner.RunWith;
 @DebugSuite.SuiteClasses({
     TmfCorePluginTest.class,
     org.eclipse.tracecompass.tmf.core.tests.analysis.AllTests.class,
+    org.eclipse.tracecompass.tmf.core.tests.callstack.AllTests.class,
     org.eclipse.tracecompass.tmf.core.tests.component.AllTests.class,
     org.eclipse.tracecompass.tmf.core.tests.event.AllTests.class,
     org.eclipse.tracecompass.tmf.core.tests.event.lookup.AllTests.class,
+    org.eclipse.tracecompass.tmf.core.tests.event.matching.AllTests.class,
     org.eclipse.tracecompass.tmf.core.tests.filter.AllTests.class,
+    org.eclipse.tracecompass.tmf.core.tests.io.AllTests.class,
     org.eclipse.tracecompass.tmf.core.tests.model.AllTests.class,
     org.eclipse.tracecompass.tmf.core.tests.request.AllTests.class,
     org.eclipse.tracecompass.tmf.core.tests.signal.AllTests.class,
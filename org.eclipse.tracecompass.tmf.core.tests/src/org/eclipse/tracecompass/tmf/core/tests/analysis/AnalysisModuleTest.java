@@ -21,6 +21,7 @@ import static org.junit.Assert.fail;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -338,4 +339,96 @@ public class AnalysisModuleTest {
         trace.dispose();
 
     }
+
+    /**
+     * Test that the dependent analyses all run, but no more of them at the
+     * same time than the parallelism of the analysis
+     */
+    @Test
+    public void testDependentAnalysesParallelism() {
+
+        ITmfTrace trace = TmfTestTrace.A_TEST_10K.getTrace();
+        int paramAndResult = 5;
+        final int parallelism = 2;
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+
+        /* Setup the dependent modules */
+        final Set<IAnalysisModule> depModules = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            TestAnalysis depModule = new TestAnalysis() {
+
+                @Override
+                protected boolean executeAnalysis(IProgressMonitor monitor) {
+                    int nb = running.incrementAndGet();
+                    while (true) {
+                        int max = maxRunning.get();
+                        if (nb <= max || maxRunning.compareAndSet(max, nb)) {
+                            break;
+                        }
+                    }
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        return false;
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                    return super.executeAnalysis(monitor);
+                }
+
+            };
+            depModule.setName(MODULE_GENERIC_NAME + " dep" + i);
+            depModule.setId(MODULE_GENERIC_ID + " dep" + i);
+            depModule.addParameter(TestAnalysis.PARAM_TEST);
+            depModule.setParameter(TestAnalysis.PARAM_TEST, paramAndResult);
+            try {
+                depModule.setTrace(trace);
+            } catch (TmfAnalysisException e) {
+                fail(e.getMessage());
+            }
+            depModules.add(depModule);
+        }
+
+        /* Prepare the main analysis with the dependent analyses */
+        TestAnalysis module = new TestAnalysis() {
+
+            @Override
+            protected Iterable<IAnalysisModule> getDependentAnalyses() {
+                return depModules;
+            }
+
+            @Override
+            protected int getDependentAnalysesParallelism() {
+                return parallelism;
+            }
+
+        };
+
+        module.setName(MODULE_GENERIC_NAME);
+        module.setId(MODULE_GENERIC_ID);
+        module.addParameter(TestAnalysis.PARAM_TEST);
+        module.setParameter(TestAnalysis.PARAM_TEST, paramAndResult);
+
+        try {
+            module.setTrace(trace);
+        } catch (TmfAnalysisException e) {
+            fail(e.getMessage());
+        }
+
+        module.schedule();
+        assertTrue(module.waitForCompletion());
+        assertEquals(paramAndResult, module.getAnalysisOutput());
+
+        /* Make sure the dependent analyses have run, not all at once */
+        for (IAnalysisModule depModule : depModules) {
+            assertEquals(paramAndResult, ((TestAnalysis) depModule).getAnalysisOutput());
+            depModule.dispose();
+        }
+        assertTrue(maxRunning.get() > 0);
+        assertTrue(maxRunning.get() <= parallelism);
+
+        module.dispose();
+        trace.dispose();
+    }
 }
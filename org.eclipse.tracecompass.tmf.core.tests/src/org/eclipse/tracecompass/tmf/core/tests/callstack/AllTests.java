@@ -0,0 +1,26 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.callstack;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+/**
+ * Unit tests for tmf.core.callstack
+ */
+@RunWith(Suite.class)
+@Suite.SuiteClasses({
+    CallGraphTest.class,
+    SymbolResolutionServiceTest.class,
+    SymbolTableTest.class
+})
+public class AllTests {
+
+}
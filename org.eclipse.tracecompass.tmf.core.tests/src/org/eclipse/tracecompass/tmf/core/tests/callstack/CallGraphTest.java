@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.callstack;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.eclipse.tracecompass.tmf.core.callstack.CallGraph;
+import org.junit.Test;
+
+/**
+ * Test the {@link CallGraph} class
+ */
+public class CallGraphTest {
+
+    private static final ITmfStateValue MAIN = TmfStateValue.newValueString("main");
+    private static final ITmfStateValue FOO = TmfStateValue.newValueString("foo");
+    private static final ITmfStateValue BAR = TmfStateValue.newValueLong(0x400700);
+
+    /*
+     * Thread 1: main [0, 100] calls foo [10, 30] and bar [40, 90], which
+     * calls foo [50, 60]. Thread 2: main [5, 25] calls foo [10, 20], and
+     * bar from 30, which has not returned at the end (35).
+     */
+    private static CallGraph buildGraph() {
+        CallGraph.Builder builder = new CallGraph.Builder();
+        builder.enter(1, MAIN, 0);
+        builder.enter(2, MAIN, 5);
+        builder.enter(1, FOO, 10);
+        builder.enter(2, FOO, 10);
+        builder.exit(2, 20);
+        builder.exit(2, 25);
+        builder.exit(1, 30);
+        builder.enter(2, BAR, 30);
+        builder.enter(1, BAR, 40);
+        builder.enter(1, FOO, 50);
+        builder.exit(1, 60);
+        builder.exit(1, 90);
+        builder.exit(1, 100);
+        /* Unmatched exit, ignored */
+        builder.exit(1, 110);
+        return builder.build();
+    }
+
+    private static int getChild(CallGraph graph, int node, ITmfStateValue function) {
+        for (int child : graph.getChildren(node)) {
+            if (graph.getFunction(graph.getFunctionId(child)).equals(function)) {
+                return child;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Test the nodes of the calling-context tree
+     */
+    @Test
+    public void testNodes() {
+        CallGraph graph = buildGraph();
+        assertEquals(3, graph.getNbFunctions());
+        /* root, main, main/foo, main/bar, main/bar/foo, bar */
+        assertEquals(6, graph.getNbNodes());
+
+        int main = getChild(graph, CallGraph.ROOT, MAIN);
+        assertEquals(CallGraph.ROOT, graph.getParent(main));
+        assertEquals(2, graph.getCalls(main));
+        assertEquals(120, graph.getInclusiveTime(main));
+        assertEquals(120 - 20 - 50 - 10, graph.getSelfTime(main));
+
+        int mainFoo = getChild(graph, main, FOO);
+        assertEquals(2, graph.getCalls(mainFoo));
+        assertEquals(30, graph.getInclusiveTime(mainFoo));
+        assertEquals(30, graph.getSelfTime(mainFoo));
+
+        int mainBar = getChild(graph, main, BAR);
+        assertEquals(1, graph.getCalls(mainBar));
+        assertEquals(50, graph.getInclusiveTime(mainBar));
+        assertEquals(40, graph.getSelfTime(mainBar));
+
+        int mainBarFoo = getChild(graph, mainBar, FOO);
+        assertEquals(mainBar, graph.getParent(mainBarFoo));
+        assertEquals(1, graph.getCalls(mainBarFoo));
+        assertEquals(10, graph.getSelfTime(mainBarFoo));
+
+        /* The call still on the stack ends at the last timestamp */
+        int bar = getChild(graph, CallGraph.ROOT, BAR);
+        assertEquals(1, graph.getCalls(bar));
+        assertEquals(110 - 30, graph.getInclusiveTime(bar));
+    }
+
+    /**
+     * Test the statistics per function, with recursion
+     */
+    @Test
+    public void testPerFunction() {
+        CallGraph.Builder builder = new CallGraph.Builder();
+        /* foo [0, 100] calls foo [10, 50], which calls bar [20, 30] */
+        builder.enter(1, FOO, 0);
+        builder.enter(1, FOO, 10);
+        builder.enter(1, BAR, 20);
+        builder.exit(1, 30);
+        builder.exit(1, 50);
+        builder.exit(1, 100);
+        CallGraph graph = builder.build();
+
+        int foo = graph.getFunctionId(getChild(graph, CallGraph.ROOT, FOO));
+        int bar = 1 - foo;
+        long[] calls = graph.getCallsPerFunction();
+        long[] self = graph.getSelfTimePerFunction();
+        long[] inclusive = graph.getInclusiveTimePerFunction();
+        assertEquals(2, calls[foo]);
+        assertEquals(1, calls[bar]);
+        assertEquals(90, self[foo]);
+        assertEquals(10, self[bar]);
+        /* The recursive call is not counted twice */
+        assertEquals(100, inclusive[foo]);
+        assertEquals(10, inclusive[bar]);
+    }
+
+    /**
+     * Test the statistics of time ranges, with many checkpoints merged
+     */
+    @Test
+    public void testRange() {
+        CallGraph.Builder builder = new CallGraph.Builder();
+        int nbCalls = 1000000;
+        for (int i = 0; i < nbCalls; i++) {
+            builder.enter(1, FOO, i * 10L);
+            builder.exit(1, i * 10L + 4);
+        }
+        CallGraph graph = builder.build();
+        int foo = getChild(graph, CallGraph.ROOT, FOO);
+        assertEquals(nbCalls, graph.getCalls(foo));
+
+        long[] times = graph.getCheckpointTimes();
+        assertEquals(nbCalls * 10L - 6, times[times.length - 1]);
+        long total = 0;
+        long previous = Long.MIN_VALUE;
+        for (long time : times) {
+            /* The calls returning in (previous, time] */
+            CallGraph range = graph.getRange(time, time);
+            long expected = (time + 6) / 10 - (previous == Long.MIN_VALUE ? 0 : (previous + 6) / 10);
+            assertEquals(expected, range.getCalls(foo));
+            assertEquals(expected * 4, range.getInclusiveTime(foo));
+            total += range.getCalls(foo);
+            previous = time;
+        }
+        assertEquals(nbCalls, total);
+        assertEquals(nbCalls, graph.getRange(0, Long.MAX_VALUE).getCalls(foo));
+        assertEquals(0, graph.getRange(times[times.length - 1] + 1, Long.MAX_VALUE).getCalls(foo));
+    }
+
+    /**
+     * Test that a higher maximum number of checkpoints gives finer time
+     * ranges
+     */
+    @Test
+    public void testMaxCheckpoints() {
+        int nbCalls = 1000000;
+        CallGraph.Builder defaultBuilder = new CallGraph.Builder();
+        CallGraph.Builder finerBuilder = new CallGraph.Builder(1000);
+        for (int i = 0; i < nbCalls; i++) {
+            defaultBuilder.enter(1, FOO, i * 10L);
+            defaultBuilder.exit(1, i * 10L + 4);
+            finerBuilder.enter(1, FOO, i * 10L);
+            finerBuilder.exit(1, i * 10L + 4);
+        }
+        long[] defaultTimes = defaultBuilder.build().getCheckpointTimes();
+        CallGraph graph = finerBuilder.build();
+        long[] times = graph.getCheckpointTimes();
+        assertTrue(defaultTimes.length <= CallGraph.Builder.DEFAULT_MAX_CHECKPOINTS);
+        assertTrue(times.length <= 1000);
+        assertTrue(times.length > 2 * defaultTimes.length);
+
+        /* The calls of a range are those returning between its checkpoints */
+        int foo = getChild(graph, CallGraph.ROOT, FOO);
+        long start = times[100] + 1;
+        long end = times[101];
+        assertEquals((end + 6) / 10 - (start + 5) / 10, graph.getRange(start, end).getCalls(foo));
+    }
+
+    /**
+     * Test that the maximum number of checkpoints must be positive
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoCheckpoints() {
+        new CallGraph.Builder(0);
+    }
+
+    /**
+     * Test saving and reading a call graph
+     *
+     * @throws IOException
+     *             If the file cannot be written or read
+     */
+    @Test
+    public void testWriteRead() throws IOException {
+        CallGraph graph = buildGraph();
+        File file = File.createTempFile("callgraph", ".cct");
+        try {
+            graph.write(file);
+            CallGraph read = CallGraph.read(file);
+            assertEquals(graph.getNbNodes(), read.getNbNodes());
+            assertEquals(graph.getNbFunctions(), read.getNbFunctions());
+            for (int i = 0; i < graph.getNbFunctions(); i++) {
+                assertEquals(graph.getFunction(i), read.getFunction(i));
+            }
+            for (int i = 0; i < graph.getNbNodes(); i++) {
+                assertEquals(graph.getParent(i), read.getParent(i));
+                assertEquals(graph.getFunctionId(i), read.getFunctionId(i));
+                assertArrayEquals(graph.getChildren(i), read.getChildren(i));
+                assertEquals(graph.getCalls(i), read.getCalls(i));
+                assertEquals(graph.getInclusiveTime(i), read.getInclusiveTime(i));
+                assertEquals(graph.getSelfTime(i), read.getSelfTime(i));
+            }
+            assertArrayEquals(graph.getCheckpointTimes(), read.getCheckpointTimes());
+        } finally {
+            file.delete();
+        }
+    }
+}
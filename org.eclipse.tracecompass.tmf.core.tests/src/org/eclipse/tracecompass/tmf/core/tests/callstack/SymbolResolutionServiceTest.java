@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.callstack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.eclipse.tracecompass.tmf.core.callstack.SymbolResolutionService;
+import org.eclipse.tracecompass.tmf.core.callstack.SymbolTable;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link SymbolResolutionService} class
+ */
+public class SymbolResolutionServiceTest {
+
+    private final SymbolResolutionService fService = SymbolResolutionService.getInstance();
+    private TmfTraceStub fTrace;
+
+    /**
+     * Set the symbols of a trace
+     */
+    @Before
+    public void setUp() {
+        fTrace = new TmfTraceStub();
+        SymbolTable.Builder builder = new SymbolTable.Builder();
+        builder.add(0xabc, 0x10, "main");
+        builder.add(0xcafe, 0, "beef");
+        fService.setSymbolTable(fTrace, builder.build());
+    }
+
+    /**
+     * Remove the symbols of the trace
+     */
+    @After
+    public void tearDown() {
+        fService.setSymbolTable(fTrace, null);
+        fTrace.dispose();
+    }
+
+    /**
+     * Test the resolution of numeric addresses
+     */
+    @Test
+    public void testResolveAddress() {
+        assertEquals("main+0x1", fService.resolve(fTrace, 0xabd));
+        assertEquals("beef", fService.resolve(fTrace, 0xcafe));
+        assertNull(fService.resolve(fTrace, 0xab));
+        assertNull(fService.resolve(new TmfTraceStub(), 0xabc));
+    }
+
+    /**
+     * Test that only the strings with the "0x" prefix are resolved as
+     * addresses, and not the names made of hexadecimal digits
+     */
+    @Test
+    public void testResolveString() {
+        assertEquals("main", fService.resolve(fTrace, "0xabc"));
+        assertEquals("beef+0x1", fService.resolve(fTrace, "0XCAFF"));
+        assertEquals("abc", fService.resolve(fTrace, "abc"));
+        assertEquals("cafe", fService.resolve(fTrace, "cafe"));
+        assertEquals("0x", fService.resolve(fTrace, "0x"));
+        assertEquals("0xmain", fService.resolve(fTrace, "0xmain"));
+        assertEquals("0x1", fService.resolve(fTrace, "0x1"));
+    }
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.callstack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+
+import org.eclipse.tracecompass.tmf.core.callstack.SymbolTable;
+import org.junit.Test;
+
+/**
+ * Test the {@link SymbolTable} class
+ */
+public class SymbolTableTest {
+
+    /**
+     * Test the resolution of addresses inside the symbols
+     */
+    @Test
+    public void testResolve() {
+        SymbolTable.Builder builder = new SymbolTable.Builder();
+        builder.add(0x400600, 0, "foo");
+        builder.add(0x400500, 0x20, "main");
+        builder.add(0x400700, 0, "alias");
+        builder.add(0x400700, 0, "bar");
+        builder.add(0xffffffff81000000L, 0, "kernel");
+        SymbolTable table = builder.build();
+
+        assertEquals(4, table.size());
+        assertNull(table.resolve(0x4004ff));
+        assertEquals("main", table.resolve(0x400500));
+        assertEquals("main+0x1f", table.resolve(0x40051f));
+        /* Past the size of main */
+        assertNull(table.resolve(0x400520));
+        /* Without size, a symbol goes to the next one */
+        assertEquals("foo", table.resolve(0x400600));
+        assertEquals("foo+0xff", table.resolve(0x4006ff));
+        /* The last symbol added at an address is kept */
+        assertEquals("bar+0x10", table.resolve(0x400710));
+        /* Even far from its start */
+        assertEquals("bar+0x100000", table.resolve(0x500700));
+        /* Addresses are unsigned */
+        assertEquals("kernel+0x4", table.resolve(0xffffffff81000004L));
+        /* The last symbol without a size is at most one page long */
+        assertEquals("kernel+0xfff", table.resolve(0xffffffff81000fffL));
+        assertNull(table.resolve(0xffffffff81001000L));
+    }
+
+    /**
+     * Test a table with many symbols added out of order
+     */
+    @Test
+    public void testManySymbols() {
+        SymbolTable.Builder builder = new SymbolTable.Builder();
+        Random random = new Random(42);
+        int nb = 100000;
+        long[] starts = new long[nb];
+        for (int i = 0; i < nb; i++) {
+            starts[i] = 0x1000L + i * 0x100L;
+        }
+        /* Shuffle the symbols */
+        for (int i = nb - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long tmp = starts[i];
+            starts[i] = starts[j];
+            starts[j] = tmp;
+        }
+        for (long start : starts) {
+            builder.add(start, 0x80, "f" + Long.toHexString(start));
+        }
+        SymbolTable table = builder.build();
+        assertEquals(nb, table.size());
+        for (int i = 0; i < 1000; i++) {
+            long start = 0x1000L + random.nextInt(nb) * 0x100L;
+            assertEquals("f" + Long.toHexString(start), table.resolve(start));
+            assertEquals("f" + Long.toHexString(start) + "+0x7f", table.resolve(start + 0x7f));
+            assertNull(table.resolve(start + 0x80));
+        }
+    }
+
+    /**
+     * Test reading the output of nm, with and without the sizes
+     *
+     * @throws IOException
+     *             Fails the test
+     */
+    @Test
+    public void testNmFile() throws IOException {
+        File file = File.createTempFile("symbols", ".nm");
+        try {
+            try (Writer writer = new FileWriter(file)) {
+                writer.write("0000000000400600 T foo\n");
+                writer.write("                 U printf@@GLIBC_2.2.5\n");
+                writer.write("0000000000400500 0000000000000020 T main\n");
+                writer.write("\n");
+                writer.write("0000000000400700 t operator new(unsigned long)\r\n");
+                writer.write("0000000000400800 0000000000000010 b some buffer");
+            }
+            SymbolTable table = SymbolTable.fromNmFile(file);
+            assertEquals(4, table.size());
+            assertEquals("main+0x10", table.resolve(0x400510));
+            assertNull(table.resolve(0x400520));
+            assertEquals("foo", table.resolve(0x400600));
+            assertEquals("operator new(unsigned long)+0x1", table.resolve(0x400701));
+            assertEquals("some buffer", table.resolve(0x400800));
+            assertNull(table.resolve(0x400810));
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -102,12 +102,14 @@ public class TmfEventTest {
         assertNotNull("getTrace", fEvent1.getTrace());
         assertEquals("getRank", 0, fEvent1.getRank());
         assertEquals("getTimestamp", fTimestamp1, fEvent1.getTimestamp());
+        assertEquals("getTimestampNanos", 1234500000000000L, fEvent1.getTimestampNanos());
         assertEquals("getType", fType, fEvent1.getType());
         assertEquals("getContent", fContent1, fEvent1.getContent());
 
         assertNotNull("getTrace", fEvent2.getTrace());
         assertEquals("getRank", 1, fEvent2.getRank());
         assertEquals("getTimestamp", fTimestamp2, fEvent2.getTimestamp());
+        assertEquals("getTimestampNanos", 1235000000000000L, fEvent2.getTimestampNanos());
         assertEquals("getType", fType, fEvent2.getType());
         assertEquals("getContent", fContent2, fEvent2.getContent());
     }
@@ -140,6 +142,7 @@ public class TmfEventTest {
         assertNotNull("getTrace", event.getTrace());
         assertEquals("getRank", 0, event.getRank());
         assertEquals("getTimestamp", fTimestamp1, event.getTimestamp());
+        assertEquals("getTimestampNanos", fEvent1.getTimestampNanos(), event.getTimestampNanos());
         assertEquals("getType", fType, event.getType());
         assertEquals("getContent", fContent1, event.getContent());
     }
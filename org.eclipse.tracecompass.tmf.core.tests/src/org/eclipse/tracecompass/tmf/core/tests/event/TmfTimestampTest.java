@@ -384,6 +384,48 @@ public class TmfTimestampTest {
         assertEquals("getscale", SCALE, ts.getScale());
     }
 
+    // ------------------------------------------------------------------------
+    // toNanos
+    // ------------------------------------------------------------------------
+
+    @Test
+    public void testToNanos() {
+        assertEquals(0, ts0.toNanos());
+        assertEquals(12345000000000L, ts1.toNanos());
+        assertEquals(1234500000000L, ts2.toNanos());
+        assertEquals(1234500000000000L, ts3.toNanos());
+        assertEquals(12345000000L, ts4.toNanos());
+        assertEquals(12345000L, ts5.toNanos());
+        assertEquals(12345L, ts6.toNanos());
+        assertEquals(-12345000000L, ts7.toNanos());
+        assertEquals(-12345000L, ts8.toNanos());
+        assertEquals(-12345L, ts9.toNanos());
+    }
+
+    @Test
+    public void testToNanosSameAsNormalize() {
+        ITmfTimestamp[] timestamps = { ts0, ts1, ts2, ts3, ts4, ts5, ts6, ts7, ts8, ts9 };
+        for (ITmfTimestamp ts : timestamps) {
+            assertEquals(ts.normalize(0, ITmfTimestamp.NANOSECOND_SCALE).getValue(), ts.toNanos());
+        }
+    }
+
+    @Test
+    public void testToNanosLimits() {
+        assertEquals(Long.MIN_VALUE, TmfTimestamp.BIG_BANG.toNanos());
+        assertEquals(Long.MAX_VALUE, TmfTimestamp.BIG_CRUNCH.toNanos());
+
+        /* Finer than nanoseconds */
+        assertEquals(12, new TmfTimestamp(12345, -12).toNanos());
+        assertEquals(0, new TmfTimestamp(12345, -30).toNanos());
+
+        /* Overflows are saturated */
+        assertEquals(Long.MAX_VALUE, new TmfTimestamp(Long.MAX_VALUE / 10, 0).toNanos());
+        assertEquals(Long.MIN_VALUE, new TmfTimestamp(-12345, 10).toNanos());
+        assertEquals(Long.MAX_VALUE, new TmfTimestamp(1, 20).toNanos());
+        assertEquals(0, new TmfTimestamp(0, 20).toNanos());
+    }
+
     // ------------------------------------------------------------------------
     // compareTo
     // ------------------------------------------------------------------------
@@ -0,0 +1,25 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.event.matching;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+/**
+ * Unit tests for tmf.core.event.matching
+ */
+@RunWith(Suite.class)
+@Suite.SuiteClasses({
+    NetworkEventMatchingTest.class,
+    UnmatchedEventTableTest.class
+})
+public class AllTests {
+
+}
@@ -0,0 +1,390 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.event.matching;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventType;
+import org.eclipse.tracecompass.tmf.core.event.matching.IEventMatchingKey;
+import org.eclipse.tracecompass.tmf.core.event.matching.IMatchProcessingUnit;
+import org.eclipse.tracecompass.tmf.core.event.matching.ITmfNetworkMatchDefinition;
+import org.eclipse.tracecompass.tmf.core.event.matching.TcpEventKey;
+import org.eclipse.tracecompass.tmf.core.event.matching.TmfEventDependency;
+import org.eclipse.tracecompass.tmf.core.event.matching.TmfEventMatching;
+import org.eclipse.tracecompass.tmf.core.event.matching.TmfEventMatching.MatchingType;
+import org.eclipse.tracecompass.tmf.core.event.matching.TmfNetworkEventMatching;
+import org.eclipse.tracecompass.tmf.core.event.matching.TmfNetworkEventMatching.Direction;
+import org.eclipse.tracecompass.tmf.core.synchronization.SynchronizationAlgorithm;
+import org.eclipse.tracecompass.tmf.core.synchronization.SynchronizationAlgorithm.SyncQuality;
+import org.eclipse.tracecompass.tmf.core.synchronization.SynchronizationAlgorithmFactory;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfNanoTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.Test;
+
+/**
+ * Test the {@link TmfNetworkEventMatching} class, with events of several
+ * traces matched concurrently
+ */
+public class NetworkEventMatchingTest {
+
+    private static final String SEND = "send";
+    private static final String RECEIVE = "receive";
+    private static final int NB_PACKETS = 100000;
+
+    /**
+     * Match definition of the test events: the rank is the sequence number
+     */
+    private static class MatchDefinitionStub implements ITmfNetworkMatchDefinition {
+        private final Collection<ITmfTrace> fTraces;
+
+        public MatchDefinitionStub(Collection<ITmfTrace> traces) {
+            fTraces = traces;
+        }
+
+        @Override
+        public IEventMatchingKey getEventKey(ITmfEvent event) {
+            return new TcpEventKey(event.getRank(), 0, 0);
+        }
+
+        @Override
+        public boolean canMatchTrace(ITmfTrace trace) {
+            return fTraces.contains(trace);
+        }
+
+        @Override
+        public MatchingType[] getApplicableMatchingTypes() {
+            return new MatchingType[] { MatchingType.NETWORK };
+        }
+
+        @Override
+        public Direction getDirection(ITmfEvent event) {
+            return (event.getType().getName().equals(SEND) ? Direction.OUT : Direction.IN);
+        }
+    }
+
+    /**
+     * Keeps the matches found
+     */
+    private static class MatchesStub implements IMatchProcessingUnit {
+        private final List<TmfEventDependency> fMatches = new ArrayList<>();
+
+        @Override
+        public void init(Collection<ITmfTrace> traces) {
+            fMatches.clear();
+        }
+
+        @Override
+        public void addMatch(TmfEventDependency match) {
+            fMatches.add(match);
+        }
+
+        @Override
+        public void matchingEnded() {
+        }
+
+        @Override
+        public int countMatches() {
+            return fMatches.size();
+        }
+    }
+
+    /**
+     * Gives access to the steps of the matching
+     */
+    private static class NetworkEventMatchingStub extends TmfNetworkEventMatching {
+        public NetworkEventMatchingStub(Collection<ITmfTrace> traces, IMatchProcessingUnit matches) {
+            super(traces, matches);
+        }
+
+        public NetworkEventMatchingStub(Collection<ITmfTrace> traces, IMatchProcessingUnit matches, long expiryWindow) {
+            super(traces, matches, expiryWindow, NB_PACKETS);
+        }
+
+        public void endMatching() {
+            finalizeMatching();
+        }
+    }
+
+    /**
+     * Test the matching of the packets exchanged by two traces, each read by
+     * its own thread
+     *
+     * @throws InterruptedException
+     *             If the test is interrupted
+     */
+    @Test
+    public void testConcurrentMatching() throws InterruptedException {
+        final TmfTraceStub trace1 = new TmfTraceStub();
+        final TmfTraceStub trace2 = new TmfTraceStub();
+        try {
+            List<ITmfTrace> traces = new ArrayList<>();
+            traces.add(trace1);
+            traces.add(trace2);
+            TmfEventMatching.registerMatchObject(new MatchDefinitionStub(traces));
+            MatchesStub matches = new MatchesStub();
+            final NetworkEventMatchingStub matching = new NetworkEventMatchingStub(traces, matches);
+            matching.initMatching();
+
+            /*
+             * Trace 1 sends the even packets and receives the odd ones, 10 ns
+             * after they are sent. Some are never received.
+             */
+            Thread thread1 = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < NB_PACKETS; i++) {
+                        if (i % 2 == 0) {
+                            matching.matchEvent(createEvent(trace1, i, SEND, i * 100L), trace1);
+                        } else if (i % 1000 != 1) {
+                            matching.matchEvent(createEvent(trace1, i, RECEIVE, i * 100L + 10), trace1);
+                        }
+                    }
+                }
+            };
+            Thread thread2 = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < NB_PACKETS; i++) {
+                        if (i % 2 == 1) {
+                            matching.matchEvent(createEvent(trace2, i, SEND, i * 100L), trace2);
+                        } else {
+                            matching.matchEvent(createEvent(trace2, i, RECEIVE, i * 100L + 10), trace2);
+                        }
+                    }
+                }
+            };
+            thread1.start();
+            thread2.start();
+            thread1.join();
+            thread2.join();
+            matching.endMatching();
+
+            assertEquals(NB_PACKETS - NB_PACKETS / 1000, matches.countMatches());
+            for (TmfEventDependency match : matches.fMatches) {
+                ITmfEvent source = match.getSourceEvent();
+                ITmfEvent destination = match.getDestinationEvent();
+                long packet = source.getTimestampNanos() / 100;
+                assertEquals(packet % 2 == 0 ? trace1 : trace2, source.getTrace());
+                assertEquals(packet % 2 == 0 ? trace2 : trace1, destination.getTrace());
+                assertEquals(packet * 100, source.getTimestampNanos());
+                assertEquals(packet * 100 + 10, destination.getTimestampNanos());
+            }
+            String stats = matching.toString();
+            assertTrue(stats, stats.contains(NB_PACKETS / 1000 + " unmatched outgoing events"));
+        } finally {
+            trace1.dispose();
+            trace2.dispose();
+        }
+    }
+
+    /**
+     * Test that the synchronization formula of traces matched concurrently is
+     * the one of their matches processed sequentially, in time order. The
+     * packets overtake each other, so the matches are not found in that order.
+     *
+     * @throws InterruptedException
+     *             If the test is interrupted
+     */
+    @Test
+    public void testSameFormulaAsSequential() throws InterruptedException {
+        TmfTraceStub trace1 = new TmfTraceStub();
+        trace1.init("host1");
+        TmfTraceStub trace2 = new TmfTraceStub();
+        trace2.init("host2");
+        try {
+            List<ITmfTrace> traces = new ArrayList<>();
+            traces.add(trace1);
+            traces.add(trace2);
+            TmfEventMatching.registerMatchObject(new MatchDefinitionStub(traces));
+
+            /*
+             * A packet is sent every microsecond, alternately by each trace,
+             * with a random latency of up to 5 us. The clock of trace 2
+             * drifts and is offset.
+             */
+            Random random = new Random(42);
+            List<TmfEventDependency> expected = new ArrayList<>();
+            final List<ITmfEvent> events1 = new ArrayList<>();
+            final List<ITmfEvent> events2 = new ArrayList<>();
+            for (int i = 0; i < NB_PACKETS; i++) {
+                long sent = i * 1000L;
+                long received = sent + 100 + random.nextInt(5000);
+                TmfEventDependency match = (i % 2 == 0) ?
+                        new TmfEventDependency(createEvent(trace1, i, SEND, sent),
+                                createEvent(trace2, i, RECEIVE, getTrace2Time(received))) :
+                        new TmfEventDependency(createEvent(trace2, i, SEND, getTrace2Time(sent)),
+                                createEvent(trace1, i, RECEIVE, received));
+                expected.add(match);
+                for (ITmfEvent event : new ITmfEvent[] { match.getSourceEvent(), match.getDestinationEvent() }) {
+                    (event.getTrace() == trace1 ? events1 : events2).add(event);
+                }
+            }
+            Collections.sort(events1, EVENT_ORDER);
+            Collections.sort(events2, EVENT_ORDER);
+
+            /* The sequential matches are ordered by the time of trace 1 */
+            Collections.sort(expected, new Comparator<TmfEventDependency>() {
+                @Override
+                public int compare(TmfEventDependency o1, TmfEventDependency o2) {
+                    return Long.compare(getTrace1Time(o1), getTrace1Time(o2));
+                }
+            });
+            SynchronizationAlgorithm sequential = SynchronizationAlgorithmFactory.getFullyIncrementalAlgorithm();
+            sequential.init(traces);
+            for (TmfEventDependency match : expected) {
+                sequential.addMatch(match);
+            }
+            sequential.matchingEnded();
+
+            SynchronizationAlgorithm concurrent = SynchronizationAlgorithmFactory.getFullyIncrementalAlgorithm();
+            final NetworkEventMatchingStub matching = new NetworkEventMatchingStub(traces, concurrent);
+            matching.initMatching();
+            Thread thread1 = new Thread() {
+                @Override
+                public void run() {
+                    for (ITmfEvent event : events1) {
+                        matching.matchEvent(event, event.getTrace());
+                    }
+                }
+            };
+            Thread thread2 = new Thread() {
+                @Override
+                public void run() {
+                    for (ITmfEvent event : events2) {
+                        matching.matchEvent(event, event.getTrace());
+                    }
+                }
+            };
+            thread1.start();
+            thread2.start();
+            thread1.join();
+            thread2.join();
+            matching.endMatching();
+
+            assertEquals(NB_PACKETS, concurrent.countMatches());
+            assertEquals(SyncQuality.ACCURATE, sequential.getSynchronizationQuality(trace1, trace2));
+            assertEquals(SyncQuality.ACCURATE, concurrent.getSynchronizationQuality(trace1, trace2));
+            assertEquals(sequential.getTimestampTransform(trace2), concurrent.getTimestampTransform(trace2));
+            assertEquals(sequential.toString(), concurrent.toString());
+        } finally {
+            trace1.dispose();
+            trace2.dispose();
+        }
+    }
+
+    /**
+     * Test that an unmatched event expires once the other trace is past its
+     * time by more than the expiry window, and that its companion coming
+     * later is then not matched with it
+     */
+    @Test
+    public void testExpiredEvent() {
+        TmfTraceStub trace1 = new TmfTraceStub();
+        trace1.init("host1");
+        TmfTraceStub trace2 = new TmfTraceStub();
+        trace2.init("host2");
+        try {
+            List<ITmfTrace> traces = new ArrayList<>();
+            traces.add(trace1);
+            traces.add(trace2);
+            TmfEventMatching.registerMatchObject(new MatchDefinitionStub(traces));
+
+            /*
+             * Trace 1 sends a packet every 100 ns, received 50 ns later by
+             * trace 2. Packet 0 is received at the end, long after the expiry
+             * window, and the last packet is received 560 ns after it was
+             * sent, within the window.
+             */
+            long end = NB_PACKETS * 100L;
+            List<ITmfEvent> events = new ArrayList<>();
+            events.add(createEvent(trace1, 0, SEND, 0));
+            for (int i = 1; i < NB_PACKETS; i++) {
+                events.add(createEvent(trace1, i, SEND, i * 100L));
+                events.add(createEvent(trace2, i, RECEIVE, i * 100L + 50));
+            }
+            events.add(createEvent(trace1, NB_PACKETS, SEND, end - 500));
+            events.add(createEvent(trace2, 0, RECEIVE, end + 50));
+            events.add(createEvent(trace2, NB_PACKETS, RECEIVE, end + 60));
+            Collections.sort(events, EVENT_ORDER);
+
+            /* Without an expiry window, packet 0 is matched */
+            MatchesStub matches = new MatchesStub();
+            NetworkEventMatchingStub matching = new NetworkEventMatchingStub(traces, matches);
+            matching.initMatching();
+            for (ITmfEvent event : events) {
+                matching.matchEvent(event, event.getTrace());
+            }
+            matching.endMatching();
+            assertEquals(NB_PACKETS + 1, matches.countMatches());
+
+            matches = new MatchesStub();
+            matching = new NetworkEventMatchingStub(traces, matches, 1000);
+            matching.initMatching();
+            for (ITmfEvent event : events) {
+                matching.matchEvent(event, event.getTrace());
+            }
+            matching.endMatching();
+
+            assertEquals(NB_PACKETS, matches.countMatches());
+            /* The packets are identified by their send time */
+            long previous = Long.MIN_VALUE;
+            boolean lastMatched = false;
+            for (TmfEventDependency match : matches.fMatches) {
+                long time = getTrace1Time(match);
+                assertTrue(time != 0);
+                lastMatched |= (time == end - 500);
+                /* The matches are still passed in time order */
+                assertTrue(time >= previous);
+                previous = time;
+            }
+            assertTrue(lastMatched);
+            /* The receive of packet 0 is left unmatched */
+            String cr = System.getProperty("line.separator");
+            String stats = matching.toString();
+            assertTrue(stats, stats.contains(" 1 unmatched incoming events"));
+            assertTrue(stats, stats.contains(cr + "1 expired unmatched events"));
+        } finally {
+            trace1.dispose();
+            trace2.dispose();
+        }
+    }
+
+    private static final Comparator<ITmfEvent> EVENT_ORDER = new Comparator<ITmfEvent>() {
+        @Override
+        public int compare(ITmfEvent o1, ITmfEvent o2) {
+            return Long.compare(o1.getTimestampNanos(), o2.getTimestampNanos());
+        }
+    };
+
+    private static long getTrace1Time(TmfEventDependency match) {
+        ITmfEvent source = match.getSourceEvent();
+        return (source.getTrace().getHostId().equals("host1") ? source : match.getDestinationEvent()).getTimestampNanos();
+    }
+
+    /* The clock of trace 2 drifts by 50 ppm and is 5 us ahead */
+    private static long getTrace2Time(long time) {
+        return time + time / 20000 + 5000;
+    }
+
+    private static ITmfEvent createEvent(ITmfTrace trace, long packet, String type, long timestamp) {
+        return new TmfEvent(trace, packet, new TmfNanoTimestamp(timestamp), new TmfEventType(type, null), null);
+    }
+}
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.event.matching;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.tracecompass.internal.tmf.core.event.matching.UnmatchedEventTable;
+import org.eclipse.tracecompass.tmf.core.event.matching.IEventMatchingKey;
+import org.eclipse.tracecompass.tmf.core.event.matching.TcpEventKey;
+import org.junit.Test;
+
+/**
+ * Test the {@link UnmatchedEventTable} class
+ */
+public class UnmatchedEventTableTest {
+
+    /**
+     * A key which is not a TCP key
+     */
+    private static class OtherKey implements IEventMatchingKey {
+        private final int fId;
+
+        public OtherKey(int id) {
+            fId = id;
+        }
+
+        @Override
+        public int hashCode() {
+            /* Many collisions */
+            return fId % 7;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return (obj instanceof OtherKey && ((OtherKey) obj).fId == fId);
+        }
+    }
+
+    /**
+     * Test adding, finding and removing events against a map
+     */
+    @Test
+    public void testRandom() {
+        UnmatchedEventTable table = new UnmatchedEventTable(Integer.MAX_VALUE);
+        Map<IEventMatchingKey, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            int id = random.nextInt(5000);
+            IEventMatchingKey key = (id % 3 == 0 ? new OtherKey(id) : new TcpEventKey(id, id * 31L, 0x5010));
+            int slot = table.find(key);
+            Long timestamp = expected.get(key);
+            if (timestamp == null) {
+                assertEquals(-1, slot);
+                assertTrue(table.put(key, id % 4, i));
+                expected.put(key, (long) i);
+            } else {
+                assertEquals(timestamp.longValue(), table.getTimestamp(slot));
+                assertEquals(id % 4, table.getTraceIndex(slot));
+                table.remove(slot);
+                expected.remove(key);
+            }
+            assertEquals(expected.size(), table.size());
+        }
+        int total = 0;
+        for (int i = 0; i < 4; i++) {
+            total += table.size(i);
+        }
+        assertEquals(table.size(), total);
+    }
+
+    /**
+     * Test the maximum number of events
+     */
+    @Test
+    public void testMaxSize() {
+        UnmatchedEventTable table = new UnmatchedEventTable(100);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(table.put(new TcpEventKey(i, 0, 0), 0, i));
+        }
+        assertFalse(table.put(new TcpEventKey(100, 0, 0), 0, 100));
+        /* An existing key can still be replaced */
+        assertTrue(table.put(new TcpEventKey(5, 0, 0), 1, 100));
+        assertEquals(100, table.size());
+        assertEquals(99, table.size(0));
+        assertEquals(1, table.size(1));
+        table.remove(table.find(new TcpEventKey(6, 0, 0)));
+        assertTrue(table.put(new TcpEventKey(100, 0, 0), 0, 100));
+    }
+
+    /**
+     * Test removing the events older than a time limit per trace
+     */
+    @Test
+    public void testRemoveOlderThan() {
+        UnmatchedEventTable table = new UnmatchedEventTable(Integer.MAX_VALUE);
+        for (int i = 0; i < 10000; i++) {
+            table.put(new TcpEventKey(i, 0, 0), i % 3, i);
+        }
+        table.put(new OtherKey(-1), 0, 0);
+        table.put(new OtherKey(-2), 0, 9000);
+        /* Trace 2 is past the end of the limits, its events are kept */
+        int removed = table.removeOlderThan(new long[] { 9000, 5000 });
+        assertEquals(3000 + 1667 + 1, removed);
+        assertEquals(10002 - removed, table.size());
+        assertEquals(-1, table.find(new TcpEventKey(0, 0, 0)));
+        assertEquals(-1, table.find(new OtherKey(-1)));
+        assertTrue(table.find(new OtherKey(-2)) >= 0);
+        assertTrue(table.find(new TcpEventKey(9003, 0, 0)) >= 0);
+        assertTrue(table.find(new TcpEventKey(5002, 0, 0)) >= 0);
+        assertEquals(-1, table.find(new TcpEventKey(4999, 0, 0)));
+        assertTrue(table.find(new TcpEventKey(2, 0, 0)) >= 0);
+        assertEquals(334 + 1, table.size(0));
+        assertEquals(1666, table.size(1));
+        assertEquals(3333, table.size(2));
+    }
+}
@@ -166,6 +166,11 @@ public class TmfCollapseFilterTest {
             return new TmfNanoTimestamp(100);
         }
 
+        @Override
+        public long getTimestampNanos() {
+            return 100;
+        }
+
         @Override
         public ITmfEventType getType() {
             return new TmfEventType();
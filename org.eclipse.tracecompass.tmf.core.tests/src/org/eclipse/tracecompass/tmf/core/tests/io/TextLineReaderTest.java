@@ -0,0 +1,256 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.eclipse.tracecompass.internal.tmf.core.io.TextLineReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the TextLineReader class
+ */
+public class TextLineReaderTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int SMALL_BUFFER_SIZE = 16;
+
+    private File fFile;
+    private FileChannel fChannel;
+
+    /**
+     * Create the test file
+     *
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        fFile = File.createTempFile("textLineReader", ".txt");
+    }
+
+    /**
+     * Close and delete the test file
+     *
+     * @throws IOException
+     *             if the file cannot be closed
+     */
+    @After
+    public void tearDown() throws IOException {
+        if (fChannel != null) {
+            fChannel.close();
+        }
+        fFile.delete();
+    }
+
+    private TextLineReader createReader(String content, int bufferSize) throws IOException {
+        return createReader(content.getBytes(UTF8), bufferSize);
+    }
+
+    private TextLineReader createReader(byte[] content, int bufferSize) throws IOException {
+        try (OutputStream out = new FileOutputStream(fFile)) {
+            out.write(content);
+        }
+        fChannel = FileChannel.open(fFile.toPath(), StandardOpenOption.READ);
+        return new TextLineReader(fChannel, bufferSize);
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    /**
+     * Test that "\n" and "\r\n" end the lines, and are not part of them
+     *
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    @Test
+    public void testEndOfLines() throws IOException {
+        TextLineReader reader = createReader("first\nsecond\r\n\r\nfourth\r\n", SMALL_BUFFER_SIZE);
+        assertEquals("first", reader.readLine());
+        assertEquals("second", reader.readLine());
+        assertEquals("", reader.readLine());
+        assertEquals("fourth", reader.readLine());
+        assertNull(reader.readLine());
+        assertEquals(reader.size(), reader.getPosition());
+    }
+
+    /**
+     * Test that the last line is read when the file does not end with an end
+     * of line
+     *
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    @Test
+    public void testNoFinalEndOfLine() throws IOException {
+        TextLineReader reader = createReader("first\nlast", SMALL_BUFFER_SIZE);
+        assertEquals("first", reader.readLine());
+        assertEquals(6, reader.getPosition());
+        assertEquals("last", reader.readLine());
+        assertEquals(10, reader.getPosition());
+        assertNull(reader.readLine());
+        assertNull(reader.readLine());
+    }
+
+    /**
+     * Test an empty file
+     *
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    @Test
+    public void testEmptyFile() throws IOException {
+        TextLineReader reader = createReader("", SMALL_BUFFER_SIZE);
+        assertNull(reader.readLine());
+        assertEquals(0, reader.getPosition());
+    }
+
+    /**
+     * Test that the lines are decoded as UTF-8
+     *
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    @Test
+    public void testDecoding() throws IOException {
+        TextLineReader reader = createReader("été\nà\n", SMALL_BUFFER_SIZE);
+        assertEquals("été", reader.readLine());
+        assertEquals(6, reader.getPosition());
+        assertEquals("à", reader.readLine());
+    }
+
+    /**
+     * Test seeking a line that is still in the buffer
+     *
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    @Test
+    public void testSeekInsideBuffer() throws IOException {
+        TextLineReader reader = createReader("a\nbb\nccc\n", SMALL_BUFFER_SIZE);
+        assertEquals("a", reader.readLine());
+        long position = reader.getPosition();
+        assertEquals("bb", reader.readLine());
+        assertEquals("ccc", reader.readLine());
+        reader.seek(position);
+        assertEquals(position, reader.getPosition());
+        assertEquals("bb", reader.readLine());
+        reader.seek(0);
+        assertEquals("a", reader.readLine());
+        reader.seek(6);
+        assertEquals("cc", reader.readLine());
+    }
+
+    /**
+     * Test seeking lines before and after the buffer
+     *
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    @Test
+    public void testSeekOutsideBuffer() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            content.append(String.format("line%03d\n", i));
+        }
+        TextLineReader reader = createReader(content.toString(), SMALL_BUFFER_SIZE);
+        reader.seek(80 * 8);
+        assertEquals("line080", reader.readLine());
+        assertEquals("line081", reader.readLine());
+        reader.seek(10 * 8);
+        assertEquals("line010", reader.readLine());
+        reader.seek(99 * 8);
+        assertEquals("line099", reader.readLine());
+        assertNull(reader.readLine());
+        reader.seek(reader.size() + 10);
+        assertNull(reader.readLine());
+        reader.seek(0);
+        assertEquals("line000", reader.readLine());
+    }
+
+    /**
+     * Test that a line longer than the buffer is read completely, and that the
+     * following lines are not affected
+     *
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    @Test
+    public void testBufferGrowth() throws IOException {
+        String longLine = repeat('x', SMALL_BUFFER_SIZE * 10 + 3);
+        TextLineReader reader = createReader("short\n" + longLine + "\r\nnext\n" + longLine, SMALL_BUFFER_SIZE);
+        assertEquals("short", reader.readLine());
+        assertEquals(longLine, reader.readLine());
+        assertEquals("next", reader.readLine());
+        assertEquals(longLine, reader.readLine());
+        assertNull(reader.readLine());
+    }
+
+    /**
+     * Test that a line longer than the maximum length is split
+     *
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    @Test
+    public void testLongLineSplit() throws IOException {
+        int max = TextLineReader.MAX_LINE_LENGTH;
+        String longLine = repeat('x', max + 10);
+        TextLineReader reader = createReader(longLine + "\nnext\n", SMALL_BUFFER_SIZE);
+        assertEquals(max, reader.readLine().length());
+        assertEquals(max, reader.getPosition());
+        assertEquals(repeat('x', 10), reader.readLine());
+        assertEquals("next", reader.readLine());
+        assertNull(reader.readLine());
+    }
+
+    /**
+     * Test finding the start of lines, with end of lines around the limits of
+     * the blocks read backwards
+     *
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    @Test
+    public void testFindLineStart() throws IOException {
+        /* End of lines at offsets 1023, 1024 and 3000 */
+        String content = repeat('a', 1023) + '\n' + '\n' + repeat('b', 1975) + '\n' + "end";
+        TextLineReader reader = createReader(content, SMALL_BUFFER_SIZE);
+        assertEquals(0, reader.findLineStart(0));
+        assertEquals(0, reader.findLineStart(1023));
+        assertEquals(1024, reader.findLineStart(1024));
+        assertEquals(1025, reader.findLineStart(1025));
+        assertEquals(1025, reader.findLineStart(1025 + 1024));
+        assertEquals(1025, reader.findLineStart(3000));
+        assertEquals(3001, reader.findLineStart(3001));
+        assertEquals(3001, reader.findLineStart(content.length()));
+        assertEquals(2000, reader.findLineStart(3000, 2000));
+        assertEquals(1024, reader.findLineStart(1024, 1024));
+
+        reader.seek(reader.findLineStart(2500));
+        assertEquals(repeat('b', 1975), reader.readLine());
+    }
+}
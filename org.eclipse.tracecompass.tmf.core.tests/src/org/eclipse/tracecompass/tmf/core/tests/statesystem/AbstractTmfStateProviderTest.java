@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.statesystem;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+import static org.junit.Assert.assertEquals;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.InMemoryBackend;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.signal.TmfSignalManager;
+import org.eclipse.tracecompass.tmf.core.statesystem.AbstractTmfStateProvider;
+import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.Timeout;
+
+/**
+ * Test the {@link AbstractTmfStateProvider} class
+ */
+public class AbstractTmfStateProviderTest {
+
+    /** Time-out tests after 20 seconds */
+    @Rule
+    public TestRule globalTimeout = new Timeout(20000);
+
+    private static final String ATTRIBUTE = "Latest";
+
+    private TmfTraceStub fTrace;
+
+    /**
+     * Setup the test trace
+     */
+    @Before
+    public void setUp() {
+        fTrace = (TmfTraceStub) TmfTestTrace.A_TEST_10K.getTrace();
+        TmfSignalManager.deregister(fTrace);
+        fTrace.indexTrace(true);
+    }
+
+    /**
+     * Dispose the test trace
+     */
+    @After
+    public void tearDown() {
+        TmfTestTrace.A_TEST_10K.dispose();
+    }
+
+    /**
+     * Test that the history ends at the end of the trace when the provider
+     * does not handle the last events
+     *
+     * @throws AttributeNotFoundException
+     *             Fails the test
+     * @throws StateSystemDisposedException
+     *             Fails the test
+     */
+    @Test
+    public void testTrailingEventsNotHandled() throws AttributeNotFoundException, StateSystemDisposedException {
+        TmfTraceStub trace = checkNotNull(fTrace);
+        long startTime = trace.getStartTime().toNanos();
+        long endTime = trace.getEndTime().toNanos();
+        ITmfContext context = trace.seekEvent(trace.getNbEvents() / 2);
+        long lastHandledTime = checkNotNull(trace.getNext(context)).getTimestampNanos();
+        context.dispose();
+
+        ITmfStateSystemBuilder ss = StateSystemFactory.newStateSystem("test", new InMemoryBackend(startTime));
+        ITmfStateProvider provider = new FilteringStateProvider(trace, lastHandledTime);
+        provider.assignTargetStateSystem(ss);
+        trace.sendRequest(new BuildRequest(provider));
+        ss.waitUntilBuilt();
+
+        try {
+            assertEquals(endTime, ss.getCurrentEndTime());
+            int quark = ss.getQuarkAbsolute(ATTRIBUTE);
+            assertEquals(lastHandledTime, ss.querySingleState(endTime, quark).getStateValue().unboxLong());
+        } finally {
+            ss.dispose();
+        }
+    }
+
+    /**
+     * State provider storing the time of the latest event it handles, which
+     * skips the events after a given time
+     */
+    private static class FilteringStateProvider extends AbstractTmfStateProvider {
+
+        private final long fLastHandledTime;
+
+        public FilteringStateProvider(@NonNull ITmfTrace trace, long lastHandledTime) {
+            super(trace, "Filtering State Provider");
+            fLastHandledTime = lastHandledTime;
+        }
+
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+
+        @Override
+        public ITmfStateProvider getNewInstance() {
+            return new FilteringStateProvider(getTrace(), fLastHandledTime);
+        }
+
+        @Override
+        protected boolean isEventHandled(ITmfEvent event) {
+            return event.getTimestampNanos() <= fLastHandledTime;
+        }
+
+        @Override
+        protected void eventHandle(ITmfEvent event) {
+            ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
+            try {
+                int quark = ss.getQuarkAbsoluteAndAdd(ATTRIBUTE);
+                ss.modifyAttribute(event.getTimestampNanos(), TmfStateValue.newValueLong(event.getTimestampNanos()), quark);
+            } catch (TimeRangeException | AttributeNotFoundException | StateValueTypeException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Request sending all the events of the trace to a state provider
+     */
+    private static class BuildRequest extends TmfEventRequest {
+        private final ITmfStateProvider fProvider;
+
+        public BuildRequest(ITmfStateProvider provider) {
+            super(ITmfEvent.class, TmfTimeRange.ETERNITY, 0, ITmfEventRequest.ALL_DATA, ITmfEventRequest.ExecutionType.BACKGROUND);
+            fProvider = provider;
+        }
+
+        @Override
+        public void handleData(ITmfEvent event) {
+            super.handleData(event);
+            fProvider.processEvent(event);
+        }
+
+        @Override
+        public void handleSuccess() {
+            super.handleSuccess();
+            fProvider.dispose();
+        }
+    }
+}
@@ -20,8 +20,11 @@ import org.junit.runners.Suite;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+    AbstractTmfStateProviderTest.class,
     ExperimentStateSystemModuleTest.class,
-    StateSystemAnalysisModuleTest.class
+    PartialHistoryBackendTest.class,
+    StateSystemAnalysisModuleTest.class,
+    StateSystemResumeTest.class
 })
 public class AllTests {
 
@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.statesystem;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.statesystem.core.StateSystem;
+import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partial.PartialHistoryBackend;
+import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partial.PartialStateSystem;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.InMemoryBackend;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.signal.TmfSignalManager;
+import org.eclipse.tracecompass.tmf.core.statesystem.AbstractTmfStateProvider;
+import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.Timeout;
+
+/**
+ * Test the {@link PartialHistoryBackend} class: the placement of the adaptive
+ * checkpoints, and queries sent while the history is being built.
+ *
+ * The state provider stores the time of the latest event in one attribute, so
+ * every event is a state change.
+ */
+@SuppressWarnings("restriction")
+public class PartialHistoryBackendTest {
+
+    /** Time-out tests after 60 seconds */
+    @Rule
+    public TestRule globalTimeout = new Timeout(60000);
+
+    private static final long GRANULARITY = 10000;
+    private static final long MAX_STATE_CHANGES = 100;
+    private static final long CANDIDATES_INTERVAL = GRANULARITY / 10;
+    private static final int NB_EVENTS = 10000;
+    private static final int NB_QUERY_THREADS = 4;
+    private static final int NB_QUERIES = 50;
+    private static final String ATTRIBUTE = "Latest";
+
+    private TmfTraceStub fTrace;
+    private long fStartTime;
+
+    /**
+     * Setup the test trace
+     */
+    @Before
+    public void setUp() {
+        fTrace = (TmfTraceStub) TmfTestTrace.A_TEST_10K.getTrace();
+        TmfSignalManager.deregister(fTrace);
+        fTrace.indexTrace(true);
+        fStartTime = fTrace.getStartTime().toNanos();
+    }
+
+    /**
+     * Dispose the test trace
+     */
+    @After
+    public void tearDown() {
+        TmfTestTrace.A_TEST_10K.dispose();
+    }
+
+    /**
+     * Test that checkpoints are added where a window has too many state
+     * changes, and only there
+     */
+    @Test
+    public void testAdaptiveCheckpoints() {
+        RecordingBackend fixed = new RecordingBackend(fStartTime);
+        ITmfStateSystem ss = buildStateSystem(fixed, Long.MAX_VALUE);
+        ss.waitUntilBuilt();
+        ss.dispose();
+        /* Only the checkpoints at the start and at the granularity */
+        assertTrue(fixed.getStartTimes().size() <= NB_EVENTS / GRANULARITY + 1);
+
+        RecordingBackend adaptive = new RecordingBackend(fStartTime);
+        ss = buildStateSystem(adaptive, MAX_STATE_CHANGES);
+        ss.waitUntilBuilt();
+        ss.dispose();
+        /*
+         * Every interval stored in the inner history crosses a checkpoint.
+         * After the state change budget is reached, the next candidate
+         * becomes a checkpoint, so there is one every candidate interval.
+         */
+        List<Long> startTimes = adaptive.getStartTimes();
+        assertTrue(startTimes.size() >= NB_EVENTS / CANDIDATES_INTERVAL - 1);
+        long previous = startTimes.get(0);
+        for (long startTime : startTimes.subList(1, startTimes.size())) {
+            long nbEvents = getRank(startTime) - getRank(previous);
+            assertTrue(nbEvents > 0);
+            assertTrue(nbEvents <= MAX_STATE_CHANGES + CANDIDATES_INTERVAL);
+            previous = startTime;
+        }
+    }
+
+    /**
+     * Test that queries sent while the history is built and the checkpoints
+     * added return the states of the complete history
+     *
+     * @throws InterruptedException
+     *             If the test is interrupted
+     */
+    @Test
+    public void testQueriesWhileBuilding() throws InterruptedException {
+        final ITmfStateSystem ss = buildStateSystem(new RecordingBackend(fStartTime), MAX_STATE_CHANGES);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < NB_QUERY_THREADS; i++) {
+            final int offset = i;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (ss.getNbAttributes() == 0) {
+                            Thread.sleep(1);
+                        }
+                        for (int j = 0; j < NB_QUERIES; j++) {
+                            long rank = (j * NB_QUERY_THREADS + offset) * (NB_EVENTS / (NB_QUERIES * NB_QUERY_THREADS));
+                            List<ITmfStateInterval> states = ss.queryFullState(getTime(rank));
+                            assertEquals(getTime(rank), states.get(0).getStateValue().unboxLong());
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        ss.dispose();
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    /* The events of the test trace are one millisecond apart */
+    private long getTime(long rank) {
+        return fStartTime + rank * 1000000;
+    }
+
+    private long getRank(long time) {
+        return (time - fStartTime) / 1000000;
+    }
+
+    private ITmfStateSystem buildStateSystem(IStateHistoryBackend realBackend, long maxStateChanges) {
+        TmfTraceStub trace = checkNotNull(fTrace);
+        ITmfStateProvider provider = new LatestEventStateProvider(trace);
+        ITmfStateProvider partialProvider = provider.getNewInstance();
+        PartialStateSystem pss = new PartialStateSystem();
+        partialProvider.assignTargetStateSystem(pss);
+        IStateHistoryBackend partialBackend = new PartialHistoryBackend(partialProvider, pss, realBackend, GRANULARITY, maxStateChanges);
+        StateSystem ss = (StateSystem) StateSystemFactory.newStateSystem("partial-test", partialBackend);
+        pss.assignUpstream(ss);
+        provider.assignTargetStateSystem(ss);
+        trace.sendRequest(new BuildRequest(provider));
+        return ss;
+    }
+
+    /**
+     * State provider storing the time of the latest event
+     */
+    private static class LatestEventStateProvider extends AbstractTmfStateProvider {
+
+        public LatestEventStateProvider(@NonNull ITmfTrace trace) {
+            super(trace, "Latest Event State Provider");
+        }
+
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+
+        @Override
+        public ITmfStateProvider getNewInstance() {
+            return new LatestEventStateProvider(getTrace());
+        }
+
+        @Override
+        protected void eventHandle(ITmfEvent event) {
+            ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
+            try {
+                int quark = ss.getQuarkAbsoluteAndAdd(ATTRIBUTE);
+                ss.modifyAttribute(event.getTimestampNanos(), TmfStateValue.newValueLong(event.getTimestampNanos()), quark);
+            } catch (TimeRangeException | AttributeNotFoundException | StateValueTypeException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Request sending all the events of the trace to a state provider
+     */
+    private static class BuildRequest extends TmfEventRequest {
+        private final ITmfStateProvider fProvider;
+
+        public BuildRequest(ITmfStateProvider provider) {
+            super(ITmfEvent.class, TmfTimeRange.ETERNITY, 0, ITmfEventRequest.ALL_DATA, ITmfEventRequest.ExecutionType.BACKGROUND);
+            fProvider = provider;
+        }
+
+        @Override
+        public void handleData(ITmfEvent event) {
+            super.handleData(event);
+            fProvider.processEvent(event);
+        }
+
+        @Override
+        public void handleSuccess() {
+            super.handleSuccess();
+            fProvider.dispose();
+        }
+    }
+
+    /**
+     * In-memory history recording the start times of the intervals that are
+     * inserted in it by the partial history
+     */
+    private static class RecordingBackend extends InMemoryBackend {
+        private final List<Long> fStartTimes = new ArrayList<>();
+
+        public RecordingBackend(long startTime) {
+            super(startTime);
+        }
+
+        @Override
+        public void insertPastState(long stateStartTime, long stateEndTime, int quark, ITmfStateValue value) throws TimeRangeException {
+            super.insertPastState(stateStartTime, stateEndTime, quark, value);
+            synchronized (fStartTimes) {
+                fStartTimes.add(stateStartTime);
+            }
+        }
+
+        public List<Long> getStartTimes() {
+            synchronized (fStartTimes) {
+                return new ArrayList<>(fStartTimes);
+            }
+        }
+    }
+}
@@ -0,0 +1,316 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.statesystem;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.signal.TmfSignalManager;
+import org.eclipse.tracecompass.tmf.core.statesystem.AbstractTmfStateProvider;
+import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
+import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.Timeout;
+
+/**
+ * Test that the construction of a full history, suspended while its trace is
+ * still being written, gives the same history as a build from scratch once
+ * the trace is complete.
+ *
+ * The counting provider keeps the number of events it handled in a field, like
+ * the accumulators of the CPU and memory usage providers, so its history can
+ * only be built from scratch. The other provider reads that number back from
+ * the state system, so its history can be resumed.
+ */
+public class StateSystemResumeTest {
+
+    /** Time-out tests after 60 seconds */
+    @Rule
+    public TestRule globalTimeout = new Timeout(60000);
+
+    private static final String ATTRIBUTE = "Count";
+    private static final String CLEAN_ID = "org.eclipse.tracecompass.tmf.core.tests.resume.clean";
+    private static final String SUSPENDED_ID = "org.eclipse.tracecompass.tmf.core.tests.resume.suspended";
+    private static final int NB_EVENTS = 10000;
+    private static final int SUSPENDED_RANK = 4000;
+
+    private LiveTraceStub fTrace;
+    private TmfTimeRange fFullRange;
+    private TmfTimeRange fSuspendedRange;
+
+    /**
+     * Setup the test trace
+     *
+     * @throws TmfTraceException
+     *             If the trace cannot be opened
+     */
+    @Before
+    public void setUp() throws TmfTraceException {
+        fTrace = new LiveTraceStub(TmfTestTrace.A_TEST_10K.getFullPath());
+        TmfSignalManager.deregister(fTrace);
+        fFullRange = fTrace.getTimeRange();
+        ITmfContext context = fTrace.seekEvent((long) SUSPENDED_RANK - 1);
+        ITmfEvent event = fTrace.getNext(context);
+        context.dispose();
+        assertNotNull(event);
+        fSuspendedRange = new TmfTimeRange(fFullRange.getStartTime(), event.getTimestamp());
+        deleteFiles();
+    }
+
+    /**
+     * Delete the histories and dispose the test trace
+     */
+    @After
+    public void tearDown() {
+        deleteFiles();
+        fTrace.dispose();
+    }
+
+    private void deleteFiles() {
+        String directory = TmfTraceManager.getSupplementaryFileDir(fTrace);
+        for (String id : new String[] { CLEAN_ID, SUSPENDED_ID }) {
+            new File(directory + id + ".ht").delete();
+            new File(directory + id + ".ht.resume").delete();
+        }
+    }
+
+    /**
+     * Test that the history of a provider which is not resumable is built
+     * from scratch, and does not lose the state the provider kept in memory
+     *
+     * @throws Exception
+     *             Fails the test
+     */
+    @Test
+    public void testNotResumable() throws Exception {
+        List<Long> expected = buildClean(false);
+
+        ResumeTestModule module = buildSuspended(false);
+        assertEquals(NB_EVENTS, module.getNbHandled());
+        assertEquals(expected, getCounts(module));
+        module.dispose();
+    }
+
+    /**
+     * Test that the history of a resumable provider is resumed from the first
+     * event that was not handled
+     *
+     * @throws Exception
+     *             Fails the test
+     */
+    @Test
+    public void testResumable() throws Exception {
+        List<Long> expected = buildClean(true);
+
+        ResumeTestModule module = buildSuspended(true);
+        assertEquals(NB_EVENTS - SUSPENDED_RANK, module.getNbHandled());
+        assertEquals(expected, getCounts(module));
+        module.dispose();
+    }
+
+    private List<Long> buildClean(boolean resumable) throws Exception {
+        ResumeTestModule module = createModule(CLEAN_ID, resumable);
+        assertEquals(NB_EVENTS, module.getNbHandled());
+        List<Long> counts = getCounts(module);
+        assertEquals(Long.valueOf(NB_EVENTS), counts.get(counts.size() - 1));
+        module.dispose();
+        return counts;
+    }
+
+    /*
+     * Build the history while the trace is incomplete and only its first
+     * events are available, then close it and build it again once the trace
+     * is complete.
+     */
+    private ResumeTestModule buildSuspended(boolean resumable) throws TmfAnalysisException {
+        fTrace.setComplete(false);
+        fTrace.setTimeRange(fSuspendedRange);
+        ResumeTestModule module = createModule(SUSPENDED_ID, resumable);
+        /* The history is not complete, the events handled are all kept */
+        module.dispose();
+        assertEquals(SUSPENDED_RANK, module.getNbHandled());
+
+        fTrace.setTimeRange(fFullRange);
+        fTrace.setComplete(true);
+        return createModule(SUSPENDED_ID, resumable);
+    }
+
+    private ResumeTestModule createModule(String id, boolean resumable) throws TmfAnalysisException {
+        ResumeTestModule module = new ResumeTestModule(resumable);
+        module.setId(id);
+        module.setTrace(fTrace);
+        module.schedule();
+        assertTrue(module.waitForCompletion());
+        ITmfStateSystem ss = module.getStateSystem();
+        assertNotNull(ss);
+        if (fTrace.isComplete()) {
+            ss.waitUntilBuilt();
+        }
+        return module;
+    }
+
+    /*
+     * Get the count at every 100th event
+     */
+    private List<Long> getCounts(TmfStateSystemAnalysisModule module) throws AttributeNotFoundException, StateSystemDisposedException {
+        ITmfStateSystem ss = checkNotNull(module.getStateSystem());
+        int quark = ss.getQuarkAbsolute(ATTRIBUTE);
+        List<Long> counts = new ArrayList<>();
+        ITmfContext context = fTrace.seekEvent(0L);
+        ITmfEvent event = fTrace.getNext(context);
+        for (int rank = 0; event != null; rank++) {
+            if (rank % 100 == 0 || rank == NB_EVENTS - 1) {
+                counts.add(ss.querySingleState(event.getTimestamp().toNanos(), quark).getStateValue().unboxLong());
+            }
+            event = fTrace.getNext(context);
+        }
+        context.dispose();
+        return counts;
+    }
+
+    /**
+     * Trace which can be flagged as being still written
+     */
+    private static class LiveTraceStub extends TmfTraceStub {
+
+        private volatile boolean fComplete = true;
+
+        public LiveTraceStub(String path) throws TmfTraceException {
+            super(path, ITmfTrace.DEFAULT_TRACE_CACHE_SIZE, true, null);
+        }
+
+        @Override
+        public boolean isComplete() {
+            return fComplete;
+        }
+
+        @Override
+        public void setComplete(boolean isComplete) {
+            fComplete = isComplete;
+        }
+    }
+
+    private static class ResumeTestModule extends TmfStateSystemAnalysisModule {
+
+        private final boolean fResumable;
+        private volatile CountingProvider fProvider;
+
+        public ResumeTestModule(boolean resumable) {
+            fResumable = resumable;
+        }
+
+        @Override
+        protected @NonNull ITmfStateProvider createStateProvider() {
+            CountingProvider provider = fResumable ?
+                    new ResumableCountingProvider(checkNotNull(getTrace())) :
+                    new CountingProvider(checkNotNull(getTrace()));
+            fProvider = provider;
+            return provider;
+        }
+
+        public int getNbHandled() {
+            return fProvider.fNbHandled;
+        }
+    }
+
+    /**
+     * Provider storing the number of events it handled in a field
+     */
+    private static class CountingProvider extends AbstractTmfStateProvider {
+
+        private long fCount = 0;
+        private volatile int fNbHandled = 0;
+
+        public CountingProvider(@NonNull ITmfTrace trace) {
+            super(trace, "Counting provider");
+        }
+
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+
+        @Override
+        public ITmfStateProvider getNewInstance() {
+            return new CountingProvider(getTrace());
+        }
+
+        @Override
+        protected void eventHandle(ITmfEvent event) {
+            ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
+            try {
+                int quark = ss.getQuarkAbsoluteAndAdd(ATTRIBUTE);
+                fCount = getPreviousCount(ss, quark) + 1;
+                ss.modifyAttribute(event.getTimestamp().toNanos(), TmfStateValue.newValueLong(fCount), quark);
+            } catch (TimeRangeException | AttributeNotFoundException | StateValueTypeException e) {
+                throw new IllegalStateException(e);
+            }
+            fNbHandled++;
+        }
+
+        protected long getPreviousCount(ITmfStateSystemBuilder ss, int quark) throws AttributeNotFoundException {
+            return fCount;
+        }
+    }
+
+    /**
+     * Provider reading the number of events handled from the state system
+     */
+    private static class ResumableCountingProvider extends CountingProvider {
+
+        public ResumableCountingProvider(@NonNull ITmfTrace trace) {
+            super(trace);
+        }
+
+        @Override
+        public ITmfStateProvider getNewInstance() {
+            return new ResumableCountingProvider(getTrace());
+        }
+
+        @Override
+        public boolean isResumable() {
+            return true;
+        }
+
+        @Override
+        protected long getPreviousCount(ITmfStateSystemBuilder ss, int quark) throws AttributeNotFoundException {
+            ITmfStateValue value = ss.queryOngoingState(quark);
+            return value.isNull() ? 0 : value.unboxLong();
+        }
+    }
+}
@@ -190,6 +190,39 @@ public class SyncTest {
         assertEquals("SyncAlgorithmFullyIncremental [Between t1 and t2 [ alpha 1 beta 2.5 ]]", syncAlgo.toString());
     }
 
+    /**
+     * Testing the fully incremental synchronization algorithm with timestamps
+     * far apart, whose cross-products do not fit in a long
+     */
+    @Test
+    public void testLargeTimestamps() {
+
+        SynchronizationAlgorithm syncAlgo = SynchronizationAlgorithmFactory.getFullyIncrementalAlgorithm();
+
+        syncAlgo.init(fTraces);
+
+        long base = 1400000000000000000L;
+        long scale = 10000000000L;
+
+        addSyncMatch(syncAlgo, t2, base + 1 * scale, t1, base + 1 * scale);
+        addSyncMatch(syncAlgo, t1, base + 1 * scale, t2, base + 3 * scale);
+        addSyncMatch(syncAlgo, t2, base + 2 * scale, t1, base + 3 * scale);
+        assertEquals(SyncQuality.APPROXIMATE, syncAlgo.getSynchronizationQuality(t1, t2));
+
+        addSyncMatch(syncAlgo, t1, base + 3 * scale, t2, base + 5 * scale);
+        addSyncMatch(syncAlgo, t1, base + 4 * scale, t2, base + 8 * scale);
+        addSyncMatch(syncAlgo, t2, base + 4 * scale, t1, base + 5 * scale);
+        addSyncMatch(syncAlgo, t2, base + 4 * scale, t1, base + 6 * scale);
+        addSyncMatch(syncAlgo, t1, base + 6 * scale, t2, base + 7 * scale);
+        assertEquals(SyncQuality.ACCURATE, syncAlgo.getSynchronizationQuality(t1, t2));
+        assertTrue(syncAlgo.toString().contains("alpha 0.725 "));
+
+        /* Make the two hulls intersect */
+        addSyncMatch(syncAlgo, t1, base + 7 * scale, t2, base + 4 * scale);
+        addSyncMatch(syncAlgo, t2, base + 7 * scale, t1, base + 3 * scale);
+        assertEquals(SyncQuality.FAIL, syncAlgo.getSynchronizationQuality(t1, t2));
+    }
+
     private static void addSyncMatch(SynchronizationAlgorithm algo, ITmfTrace sender, long sendTs, ITmfTrace receiver, long receiveTs) {
         algo.addMatch(
                 new TmfEventDependency(
@@ -13,10 +13,13 @@
 
 package org.eclipse.tracecompass.tmf.core.tests.synchronization;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+
 import org.eclipse.tracecompass.internal.tmf.core.synchronization.TmfTimestampTransformLinear;
 import org.eclipse.tracecompass.internal.tmf.core.synchronization.TmfTimestampTransformLinearFast;
 import org.eclipse.tracecompass.tmf.core.synchronization.ITmfTimestampTransform;
@@ -143,6 +146,39 @@ public class TsTransformFastTest {
         }
     }
 
+    /**
+     * Test that transforming a batch of timestamps gives the same results and
+     * cache statistics as transforming them one at a time
+     */
+    @Test
+    public void testFastTransformBatch() {
+        TmfTimestampTransformLinearFast single = new TmfTimestampTransformLinearFast(Math.PI, 1234);
+        TmfTimestampTransformLinearFast batch = new TmfTimestampTransformLinearFast(Math.PI, 1234);
+        long deltaMax = batch.getDeltaMax();
+
+        /* Timestamps around range boundaries, going forward and backward */
+        int n = 1000;
+        long[] in = new long[n + 1];
+        long time = ts - (ts % deltaMax) - 100;
+        for (int i = 0; i < n; i++) {
+            in[i] = time;
+            time += (i % 100 == 99 ? -deltaMax : deltaMax / 7);
+        }
+        long[] out = new long[n + 1];
+        batch.transform(in, out, n);
+        for (int i = 0; i < n; i++) {
+            assertEquals(single.transform(in[i]), out[i]);
+        }
+        assertEquals(0, out[n]);
+        assertEquals(single.getCacheMisses(), batch.getCacheMisses());
+        assertEquals(single.getCacheHits(), batch.getCacheHits());
+
+        /* Transform in place */
+        long[] copy = in.clone();
+        batch.transform(copy, copy, n);
+        assertArrayEquals(Arrays.copyOf(out, n), Arrays.copyOf(copy, n));
+    }
+
     private static void checkTime(ITmfTimestampTransform precise, ITmfTimestampTransform fast,
             int samples, long start, long step) {
         long prev = 0;
@@ -20,6 +20,7 @@ import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.eclipse.tracecompass.internal.tmf.core.synchronization.TmfConstantTransform;
 import org.eclipse.tracecompass.internal.tmf.core.synchronization.TmfTimestampTransform;
 import org.eclipse.tracecompass.internal.tmf.core.synchronization.TmfTimestampTransformLinear;
 import org.eclipse.tracecompass.tmf.core.synchronization.ITmfTimestampTransform;
@@ -69,6 +70,26 @@ public class TsTransformTest {
         assertEquals(680828946763187045L, ttl.transform(oTs).getValue());
     }
 
+    /**
+     * Test the transform of a batch of timestamps
+     */
+    @Test
+    public void testBatchTransform() {
+        long[] in = new long[] { ts, ts + 1, ts + 1000, ts - 1000 };
+        ITmfTimestampTransform[] transforms = new ITmfTimestampTransform[] {
+                TmfTimestampTransform.IDENTITY,
+                new TmfConstantTransform(-12345),
+                new TmfTimestampTransformLinear(BigDecimal.valueOf(0.5), BigDecimal.valueOf(3)) };
+        for (ITmfTimestampTransform tt : transforms) {
+            long[] out = new long[in.length];
+            tt.transform(in, out, 3);
+            for (int i = 0; i < 3; i++) {
+                assertEquals(tt.toString(), tt.transform(in[i]), out[i]);
+            }
+            assertEquals(0, out[3]);
+        }
+    }
+
     /**
      * Test for the identity transform
      */
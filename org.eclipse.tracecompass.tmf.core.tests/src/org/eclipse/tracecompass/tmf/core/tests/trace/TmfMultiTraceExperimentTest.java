@@ -31,6 +31,7 @@ import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.tracecompass.internal.tmf.core.trace.experiment.TmfExperimentContext;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
@@ -811,4 +812,61 @@ public class TmfMultiTraceExperimentTest {
         exp.dispose();
     }
 
+    // ------------------------------------------------------------------------
+    // Merge of timestamps finer than nanoseconds
+    // ------------------------------------------------------------------------
+
+    @Test
+    public void testSubNanosecondMerge() throws TmfTraceException, URISyntaxException, IOException {
+        URL location = FileLocator.find(TmfCoreTestPlugin.getDefault().getBundle(), new Path(TmfTestTrace.A_TEST_10K.getFullPath()), null);
+        String path = new File(FileLocator.toFileURL(location).toURI()).getPath();
+        /* The events of both traces are in the same nanoseconds */
+        ITmfTrace[] traces = new ITmfTrace[] {
+                new SubNanosecondTraceStub(path, 700, -12),
+                new SubNanosecondTraceStub(path, 3, -10) };
+        TmfExperimentStub exp = new TmfExperimentStub(EXPERIMENT, traces, BLOCK_SIZE);
+
+        ITmfContext context = exp.seekEvent(0);
+        ITmfEvent previous = null;
+        int nbEvents = 0;
+        for (ITmfEvent event = exp.getNext(context); event != null; event = exp.getNext(context)) {
+            /* The event of the second trace comes first, 400 ps before */
+            assertEquals(traces[nbEvents % 2 == 0 ? 1 : 0], event.getTrace());
+            if (previous != null) {
+                assertTrue(previous.getTimestamp().compareTo(event.getTimestamp()) < 0);
+            }
+            previous = event;
+            nbEvents++;
+        }
+        assertEquals(NB_EVENTS, nbEvents);
+
+        context.dispose();
+        exp.dispose();
+    }
+
+    /**
+     * Trace whose timestamps are those of the test trace, shifted by a
+     * fraction of nanosecond in a finer scale
+     */
+    private static class SubNanosecondTraceStub extends TmfTraceStub {
+
+        private final long fShift;
+        private final int fScale;
+
+        public SubNanosecondTraceStub(String path, long shift, int scale) throws TmfTraceException {
+            super(path, 0, true, null);
+            fShift = shift;
+            fScale = scale;
+        }
+
+        @Override
+        public ITmfEvent parseEvent(ITmfContext context) {
+            ITmfEvent event = super.parseEvent(context);
+            if (event == null) {
+                return null;
+            }
+            long value = event.getTimestamp().normalize(0, fScale).getValue() + fShift;
+            return new TmfEvent(this, event.getRank(), new TmfTimestamp(value, fScale), event.getType(), event.getContent());
+        }
+    }
 }
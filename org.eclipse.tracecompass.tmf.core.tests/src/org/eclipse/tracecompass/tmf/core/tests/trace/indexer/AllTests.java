@@ -23,6 +23,7 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
     BTreeTest.class,
+    BufferedFlatArrayTest.class,
     FlatArrayTest.class,
     TmfMemoryIndexTest.class
 })
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.trace.indexer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.BufferedFlatArray;
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.FlatArray;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfPersistentlyIndexable;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
+import org.junit.Test;
+
+/**
+ * Tests for the BufferedFlatArray class
+ */
+public class BufferedFlatArrayTest extends AbstractCheckpointCollectionTest {
+
+    private FlatArray fFlatArray;
+
+    @Override
+    protected FlatArray createCollection() {
+        fCheckpointCollection = fFlatArray = new BufferedFlatArray(getFile(), (ITmfPersistentlyIndexable) getTrace());
+        return fFlatArray;
+    }
+
+    @Override
+    public boolean isPersistableCollection() {
+        return true;
+    }
+
+    /**
+     * Tests that binarySearch find the correct checkpoint and ends with a
+     * perfect match
+     */
+    @Test
+    public void testBinarySearch() {
+        for (long i = 0; i < CHECKPOINTS_INSERT_NUM; i++) {
+            TmfCheckpoint checkpoint = new TmfCheckpoint(new TmfTimestamp(i), new TmfLongLocation(i), 0);
+            fFlatArray.insert(checkpoint);
+        }
+
+        TmfCheckpoint expectedCheckpoint = new TmfCheckpoint(new TmfTimestamp(122), new TmfLongLocation(122L), 0);
+        int expectedRank = 122;
+
+        long rank = fFlatArray.binarySearch(expectedCheckpoint);
+        ITmfCheckpoint found = fFlatArray.get(rank);
+
+        assertEquals(expectedRank, rank);
+        assertEquals(found, expectedCheckpoint);
+    }
+
+    /**
+     * Test that checkpoints inserted after a read are found, the block read
+     * before them has to be read again
+     */
+    @Test
+    public void testInsertAfterGet() {
+        for (long i = 0; i < CHECKPOINTS_INSERT_NUM; i++) {
+            TmfCheckpoint checkpoint = new TmfCheckpoint(new TmfTimestamp(i), new TmfLongLocation(i), i);
+            fFlatArray.insert(checkpoint);
+            assertEquals(checkpoint, fFlatArray.get(i));
+        }
+        assertEquals(CHECKPOINTS_INSERT_NUM, fFlatArray.size());
+    }
+
+    /**
+     * Test that an index written by a BufferedFlatArray can be read by a
+     * FlatArray
+     */
+    @Test
+    public void testFileCompatibility() {
+        for (long i = 0; i < CHECKPOINTS_INSERT_NUM; i++) {
+            TmfCheckpoint checkpoint = new TmfCheckpoint(new TmfTimestamp(i), new TmfLongLocation(i), i);
+            fFlatArray.insert(checkpoint);
+        }
+        fFlatArray.setIndexComplete();
+        fFlatArray.dispose();
+
+        fCheckpointCollection = fFlatArray = new FlatArray(getFile(), (ITmfPersistentlyIndexable) getTrace());
+        assertEquals(CHECKPOINTS_INSERT_NUM, fFlatArray.size());
+        for (long i = 0; i < CHECKPOINTS_INSERT_NUM; i++) {
+            TmfCheckpoint checkpoint = new TmfCheckpoint(new TmfTimestamp(i), new TmfLongLocation(i), i);
+            assertEquals(checkpoint, fFlatArray.get(i));
+        }
+    }
+
+    /**
+     * Test many checkpoint insertions. Make sure they can be found after
+     * re-opening the file
+     */
+    @Test
+    public void testInsertAlotCheckEquals() {
+        ArrayList<Integer> list = insertAlot();
+
+        fFlatArray = createCollection();
+
+        for (int i = 0; i < CHECKPOINTS_INSERT_NUM; i++) {
+            int checkpointIndex = list.get(i);
+            TmfCheckpoint checkpoint = new TmfCheckpoint(new TmfTimestamp(12345 + checkpointIndex),
+                    new TmfLongLocation(123456L + checkpointIndex), checkpointIndex);
+            ITmfCheckpoint found = fFlatArray.get(checkpointIndex);
+            assertEquals(checkpoint, found);
+        }
+    }
+
+}
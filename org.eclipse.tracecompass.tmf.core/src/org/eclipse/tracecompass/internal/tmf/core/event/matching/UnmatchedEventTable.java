@@ -0,0 +1,368 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.event.matching;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.event.matching.IEventMatchingKey;
+import org.eclipse.tracecompass.tmf.core.event.matching.TcpEventKey;
+
+/**
+ * Table of the events waiting for their match, in one direction. Only the
+ * key, the index of the trace and the timestamp of each event are kept, in
+ * arrays using open addressing with linear probing. The fields of the
+ * {@link TcpEventKey} are stored directly in the arrays, the other types of
+ * keys are kept as objects.
+ *
+ * The table holds at most a given number of events. Its entries are reached
+ * through slot numbers, which are only valid until the next modification.
+ *
+ * This class is not thread-safe.
+ */
+public class UnmatchedEventTable {
+
+    private static final int MIN_CAPACITY = 16;
+    /** Trace index of the free slots */
+    private static final int FREE = -1;
+
+    private final int fMaxSize;
+
+    private int[] fTraceIndexes;
+    private long[] fTimestamps;
+    private long[] fSequences;
+    private long[] fAcks;
+    private long[] fFlags;
+    /* Keys which are not TCP keys, null until there is one */
+    private @Nullable IEventMatchingKey[] fOtherKeys = null;
+    private int fMask;
+    private int fSize = 0;
+
+    /* Number of events of each trace */
+    private int[] fTraceSizes = new int[2];
+
+    /**
+     * Constructor
+     *
+     * @param maxSize
+     *            The maximum number of events in the table
+     */
+    public UnmatchedEventTable(int maxSize) {
+        fMaxSize = maxSize;
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Get the number of events in the table
+     *
+     * @return The number of events
+     */
+    public int size() {
+        return fSize;
+    }
+
+    /**
+     * Get the number of events of a trace in the table
+     *
+     * @param traceIndex
+     *            The index of the trace
+     * @return The number of events
+     */
+    public int size(int traceIndex) {
+        return (traceIndex < fTraceSizes.length ? fTraceSizes[traceIndex] : 0);
+    }
+
+    /**
+     * Remove all the events of the table
+     */
+    public void clear() {
+        allocate(MIN_CAPACITY);
+        fOtherKeys = null;
+        fSize = 0;
+        Arrays.fill(fTraceSizes, 0);
+    }
+
+    /**
+     * Find the event with a key
+     *
+     * @param key
+     *            The key
+     * @return The slot of the event, or -1 if there is no event with this key
+     */
+    public int find(IEventMatchingKey key) {
+        int slot = findSlot(key);
+        return (fTraceIndexes[slot] == FREE ? -1 : slot);
+    }
+
+    /**
+     * Get the index of the trace of an event
+     *
+     * @param slot
+     *            The slot of the event
+     * @return The index of the trace
+     */
+    public int getTraceIndex(int slot) {
+        return fTraceIndexes[slot];
+    }
+
+    /**
+     * Get the timestamp of an event
+     *
+     * @param slot
+     *            The slot of the event
+     * @return The timestamp, in nanoseconds
+     */
+    public long getTimestamp(int slot) {
+        return fTimestamps[slot];
+    }
+
+    /**
+     * Add an event, or replace the event with the same key
+     *
+     * @param key
+     *            The key of the event
+     * @param traceIndex
+     *            The index of the trace of the event
+     * @param timestamp
+     *            The timestamp of the event, in nanoseconds
+     * @return False if the table is full, in which case the event is not added
+     */
+    public boolean put(IEventMatchingKey key, int traceIndex, long timestamp) {
+        int slot = findSlot(key);
+        if (fTraceIndexes[slot] != FREE) {
+            fTraceSizes[fTraceIndexes[slot]]--;
+        } else {
+            if (fSize >= fMaxSize) {
+                return false;
+            }
+            fSize++;
+            setKey(slot, key);
+        }
+        fTraceIndexes[slot] = traceIndex;
+        fTimestamps[slot] = timestamp;
+        if (traceIndex >= fTraceSizes.length) {
+            fTraceSizes = Arrays.copyOf(fTraceSizes, Math.max(traceIndex + 1, fTraceSizes.length * 2));
+        }
+        fTraceSizes[traceIndex]++;
+
+        /* Keep the load factor under 1/2 */
+        if (fSize * 2 > fMask + 1) {
+            rehash((fMask + 1) * 2, null);
+        }
+        return true;
+    }
+
+    /**
+     * Remove an event
+     *
+     * @param slot
+     *            The slot of the event
+     */
+    public void remove(int slot) {
+        fTraceSizes[fTraceIndexes[slot]]--;
+        fSize--;
+
+        /*
+         * Shift back the following entries of the probe sequence which would
+         * not be found anymore, instead of leaving a tombstone.
+         */
+        int free = slot;
+        int current = (slot + 1) & fMask;
+        while (fTraceIndexes[current] != FREE) {
+            int home = slotHash(current) & fMask;
+            boolean movable = (free <= current) ?
+                    (home <= free || home > current) :
+                    (home <= free && home > current);
+            if (movable) {
+                move(current, free);
+                free = current;
+            }
+            current = (current + 1) & fMask;
+        }
+        fTraceIndexes[free] = FREE;
+        IEventMatchingKey[] otherKeys = fOtherKeys;
+        if (otherKeys != null) {
+            otherKeys[free] = null;
+        }
+    }
+
+    /**
+     * Remove the events older than a time limit, which depends on their trace
+     *
+     * @param limits
+     *            The time limit of the events of each trace, indexed by trace
+     *            index. The events of the traces past the end of the array are
+     *            kept.
+     * @return The number of events removed
+     */
+    public int removeOlderThan(long[] limits) {
+        int size = fSize;
+        int capacity = fMask + 1;
+        rehash(capacity, limits);
+        /* Shrink the table if it is mostly empty now */
+        while (capacity > MIN_CAPACITY && fSize * 8 < capacity) {
+            capacity /= 2;
+        }
+        if (capacity < fMask + 1) {
+            rehash(capacity, null);
+        }
+        return size - fSize;
+    }
+
+    // ------------------------------------------------------------------------
+    // Slots
+    // ------------------------------------------------------------------------
+
+    /*
+     * Get the slot of a key, or the free slot where it would be inserted
+     */
+    private int findSlot(IEventMatchingKey key) {
+        int slot = hash(key) & fMask;
+        while (fTraceIndexes[slot] != FREE && !keyEquals(slot, key)) {
+            slot = (slot + 1) & fMask;
+        }
+        return slot;
+    }
+
+    private boolean keyEquals(int slot, IEventMatchingKey key) {
+        IEventMatchingKey[] otherKeys = fOtherKeys;
+        if (otherKeys != null && otherKeys[slot] != null) {
+            return otherKeys[slot].equals(key);
+        }
+        if (!(key instanceof TcpEventKey)) {
+            return false;
+        }
+        TcpEventKey tcpKey = (TcpEventKey) key;
+        return (fSequences[slot] == tcpKey.getSequence() &&
+                fAcks[slot] == tcpKey.getAcknowledgment() &&
+                fFlags[slot] == tcpKey.getFlags());
+    }
+
+    private void setKey(int slot, IEventMatchingKey key) {
+        if (key instanceof TcpEventKey) {
+            TcpEventKey tcpKey = (TcpEventKey) key;
+            fSequences[slot] = tcpKey.getSequence();
+            fAcks[slot] = tcpKey.getAcknowledgment();
+            fFlags[slot] = tcpKey.getFlags();
+            return;
+        }
+        IEventMatchingKey[] otherKeys = fOtherKeys;
+        if (otherKeys == null) {
+            otherKeys = new IEventMatchingKey[fMask + 1];
+            fOtherKeys = otherKeys;
+        }
+        otherKeys[slot] = key;
+    }
+
+    private void move(int from, int to) {
+        fTraceIndexes[to] = fTraceIndexes[from];
+        fTimestamps[to] = fTimestamps[from];
+        fSequences[to] = fSequences[from];
+        fAcks[to] = fAcks[from];
+        fFlags[to] = fFlags[from];
+        IEventMatchingKey[] otherKeys = fOtherKeys;
+        if (otherKeys != null) {
+            otherKeys[to] = otherKeys[from];
+        }
+    }
+
+    /*
+     * Move the entries to new arrays of the given capacity, except those
+     * older than the limits, if any.
+     */
+    private void rehash(int capacity, @Nullable long[] limits) {
+        int[] traceIndexes = fTraceIndexes;
+        long[] timestamps = fTimestamps;
+        long[] sequences = fSequences;
+        long[] acks = fAcks;
+        long[] flags = fFlags;
+        IEventMatchingKey[] otherKeys = fOtherKeys;
+        allocate(capacity);
+        IEventMatchingKey[] newOtherKeys = (otherKeys == null ? null : new IEventMatchingKey[capacity]);
+        fOtherKeys = newOtherKeys;
+        for (int i = 0; i < traceIndexes.length; i++) {
+            int traceIndex = traceIndexes[i];
+            if (traceIndex == FREE) {
+                continue;
+            }
+            if (limits != null && traceIndex < limits.length && timestamps[i] < limits[traceIndex]) {
+                fSize--;
+                fTraceSizes[traceIndex]--;
+                continue;
+            }
+            int slot = (otherKeys != null && otherKeys[i] != null) ?
+                    mix(otherKeys[i].hashCode()) : hash(sequences[i], acks[i], flags[i]);
+            slot &= fMask;
+            while (fTraceIndexes[slot] != FREE) {
+                slot = (slot + 1) & fMask;
+            }
+            fTraceIndexes[slot] = traceIndex;
+            fTimestamps[slot] = timestamps[i];
+            fSequences[slot] = sequences[i];
+            fAcks[slot] = acks[i];
+            fFlags[slot] = flags[i];
+            if (otherKeys != null && newOtherKeys != null) {
+                newOtherKeys[slot] = otherKeys[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        fTraceIndexes = new int[capacity];
+        Arrays.fill(fTraceIndexes, FREE);
+        fTimestamps = new long[capacity];
+        fSequences = new long[capacity];
+        fAcks = new long[capacity];
+        fFlags = new long[capacity];
+        fMask = capacity - 1;
+    }
+
+    // ------------------------------------------------------------------------
+    // Hashing
+    // ------------------------------------------------------------------------
+
+    /*
+     * Hash of the key of an occupied slot
+     */
+    private int slotHash(int slot) {
+        IEventMatchingKey[] otherKeys = fOtherKeys;
+        if (otherKeys != null && otherKeys[slot] != null) {
+            return mix(otherKeys[slot].hashCode());
+        }
+        return hash(fSequences[slot], fAcks[slot], fFlags[slot]);
+    }
+
+    /**
+     * Get the hash of a key, as used by the tables. Its low bits give the
+     * position in the tables, the high bits can be used to split the keys
+     * between several tables.
+     *
+     * @param key
+     *            The key
+     * @return The hash of the key
+     */
+    public static int hash(IEventMatchingKey key) {
+        if (key instanceof TcpEventKey) {
+            TcpEventKey tcpKey = (TcpEventKey) key;
+            return hash(tcpKey.getSequence(), tcpKey.getAcknowledgment(), tcpKey.getFlags());
+        }
+        return mix(key.hashCode());
+    }
+
+    private static int hash(long sequence, long ack, long flags) {
+        long h = (sequence * 0x9E3779B97F4A7C15L + ack) * 0x9E3779B97F4A7C15L + flags;
+        h *= 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int mix(int hashCode) {
+        return hashCode * 0x9E3779B9;
+    }
+}
@@ -0,0 +1,310 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Line reader of a text file. The file is read in blocks through positional
+ * reads of a file channel, so that several readers can share the same channel
+ * from different threads. The buffer only grows when a line does not fit in
+ * it, up to {@link #MAX_LINE_LENGTH} bytes. Longer lines are split in lines of
+ * that length.
+ *
+ * The current line stays in the buffer until the next one is read, so that
+ * subclasses can parse its bytes in place. By default, the lines are decoded
+ * as UTF-8, like
+ * {@link org.eclipse.tracecompass.tmf.core.io.BufferedRandomAccessFile#getNextLine()}.
+ *
+ * This class is not thread-safe.
+ */
+public class TextLineReader {
+
+    /** Default size of the buffer, for random reads */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    /** Size of the buffer for long sequential reads, like indexing */
+    public static final int SEQUENTIAL_BUFFER_SIZE = 1024 * 1024;
+    /** Maximum length of a line in bytes, unless the buffer is larger */
+    public static final int MAX_LINE_LENGTH = 1024 * 1024;
+
+    private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+    private final FileChannel fChannel;
+    private final Charset fCharset;
+    private final int fMaxLineLength;
+
+    private byte[] fBuffer;
+    private ByteBuffer fByteBuffer;
+    /* File offset of the first byte of the buffer */
+    private long fBufferStart = 0;
+    /* Number of bytes read in the buffer */
+    private int fBufferLimit = 0;
+    /* Offset in the buffer of the next line */
+    private int fOffset = 0;
+
+    /* Current line, without its end of line */
+    private int fLineStart = 0;
+    private int fLineEnd = 0;
+
+    /**
+     * Constructor of a reader decoding the lines as UTF-8, with the default
+     * buffer size
+     *
+     * @param channel
+     *            The channel of the file, which is not closed by the reader
+     */
+    public TextLineReader(FileChannel channel) {
+        this(channel, CHARSET_UTF8, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor of a reader decoding the lines as UTF-8
+     *
+     * @param channel
+     *            The channel of the file, which is not closed by the reader
+     * @param bufferSize
+     *            The initial size of the buffer
+     */
+    public TextLineReader(FileChannel channel, int bufferSize) {
+        this(channel, CHARSET_UTF8, bufferSize);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param channel
+     *            The channel of the file, which is not closed by the reader
+     * @param charset
+     *            The charset of the lines
+     * @param bufferSize
+     *            The initial size of the buffer
+     */
+    public TextLineReader(FileChannel channel, Charset charset, int bufferSize) {
+        fChannel = channel;
+        fCharset = charset;
+        fMaxLineLength = Math.max(bufferSize, MAX_LINE_LENGTH);
+        fBuffer = new byte[bufferSize];
+        fByteBuffer = ByteBuffer.wrap(fBuffer);
+    }
+
+    /**
+     * @return The channel of the file
+     */
+    protected FileChannel getChannel() {
+        return fChannel;
+    }
+
+    /**
+     * @return The size of the file in bytes
+     * @throws IOException
+     *             Thrown when the size cannot be read
+     */
+    public long size() throws IOException {
+        return fChannel.size();
+    }
+
+    /**
+     * @return The file offset of the next line
+     */
+    public long getPosition() {
+        return fBufferStart + fOffset;
+    }
+
+    /**
+     * Move to a file offset. The buffer is kept if it holds that offset.
+     *
+     * @param position
+     *            The file offset of the next line
+     */
+    public void seek(long position) {
+        if (position >= fBufferStart && position <= fBufferStart + fBufferLimit) {
+            fOffset = (int) (position - fBufferStart);
+        } else {
+            fBufferStart = position;
+            fBufferLimit = 0;
+            fOffset = 0;
+        }
+    }
+
+    /**
+     * Get the file offset of the start of the line that holds a given offset
+     *
+     * @param position
+     *            A file offset
+     * @return The offset following the last '\n' before the position, or 0 if
+     *         there is none
+     * @throws IOException
+     *             Thrown when the file cannot be read
+     */
+    public long findLineStart(long position) throws IOException {
+        return findLineStart(position, 0);
+    }
+
+    /**
+     * Get the file offset of the start of the line that holds a given offset
+     *
+     * @param position
+     *            A file offset
+     * @param minimum
+     *            The lowest offset to return
+     * @return The offset following the last '\n' before the position, or the
+     *         minimum if there is none after it
+     * @throws IOException
+     *             Thrown when the file cannot be read
+     */
+    public long findLineStart(long position, long minimum) throws IOException {
+        long end = position;
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        while (end > minimum) {
+            long start = Math.max(minimum, end - buffer.capacity());
+            buffer.clear();
+            buffer.limit((int) (end - start));
+            while (buffer.hasRemaining()) {
+                if (fChannel.read(buffer, start + buffer.position()) < 0) {
+                    return minimum;
+                }
+            }
+            for (int i = buffer.limit() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return minimum;
+    }
+
+    /**
+     * Move to the next line, which becomes the current line. Its end of line,
+     * "\n" or "\r\n", is not part of it. A line longer than the maximum length
+     * is split, its remaining bytes are read as the next line.
+     *
+     * @return True if a line was read, false at the end of the file
+     * @throws IOException
+     *             Thrown when the file cannot be read
+     */
+    public boolean nextLine() throws IOException {
+        int end = indexOfNewline(fOffset);
+        while (end < 0) {
+            int scanned = fBufferLimit - fOffset;
+            if (scanned >= fMaxLineLength) {
+                /* Line too long, split it */
+                fLineStart = fOffset;
+                fLineEnd = fOffset + fMaxLineLength;
+                fOffset = fLineEnd;
+                return true;
+            }
+            if (!fill()) {
+                if (fOffset == fBufferLimit) {
+                    return false;
+                }
+                /* Last line, without an end of line */
+                fLineStart = fOffset;
+                fLineEnd = fBufferLimit;
+                fOffset = fBufferLimit;
+                return true;
+            }
+            end = indexOfNewline(fOffset + scanned);
+        }
+        fLineStart = fOffset;
+        fOffset = end + 1;
+        if (end > fLineStart && fBuffer[end - 1] == '\r') {
+            end--;
+        }
+        fLineEnd = end;
+        return true;
+    }
+
+    /**
+     * @return The current line
+     */
+    public String getLine() {
+        return new String(fBuffer, fLineStart, fLineEnd - fLineStart, fCharset);
+    }
+
+    /**
+     * Read the next line. Its end of line, "\n" or "\r\n", is not part of it.
+     *
+     * @return The line, or null at the end of the file
+     * @throws IOException
+     *             Thrown when the file cannot be read
+     */
+    public String readLine() throws IOException {
+        return nextLine() ? getLine() : null;
+    }
+
+    /**
+     * Get the buffer holding the current line. The buffer changes when the
+     * next line is read.
+     *
+     * @return The buffer
+     */
+    protected byte[] getBuffer() {
+        return fBuffer;
+    }
+
+    /**
+     * @return The offset in the buffer of the first byte of the current line
+     */
+    protected int getLineStart() {
+        return fLineStart;
+    }
+
+    /**
+     * @return The offset in the buffer following the last byte of the current
+     *         line
+     */
+    protected int getLineEnd() {
+        return fLineEnd;
+    }
+
+    // ------------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------------
+
+    private int indexOfNewline(int from) {
+        for (int i = from; i < fBufferLimit; i++) {
+            if (fBuffer[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Read more bytes after the ones of the buffer, moving the unread ones to
+     * its start. The buffer grows only when it is full, that is when the line
+     * being read does not fit in it, up to the maximum line length.
+     */
+    private boolean fill() throws IOException {
+        if (fOffset > 0) {
+            System.arraycopy(fBuffer, fOffset, fBuffer, 0, fBufferLimit - fOffset);
+            fBufferStart += fOffset;
+            fBufferLimit -= fOffset;
+            fOffset = 0;
+        }
+        if (fBufferLimit == fBuffer.length) {
+            fBuffer = Arrays.copyOf(fBuffer, (int) Math.min((long) fBuffer.length * 2, fMaxLineLength));
+            fByteBuffer = ByteBuffer.wrap(fBuffer);
+        }
+        fByteBuffer.limit(fBuffer.length);
+        fByteBuffer.position(fBufferLimit);
+        int read = fChannel.read(fByteBuffer, fBufferStart + fBufferLimit);
+        if (read <= 0) {
+            return false;
+        }
+        fBufferLimit += read;
+        return true;
+    }
+}
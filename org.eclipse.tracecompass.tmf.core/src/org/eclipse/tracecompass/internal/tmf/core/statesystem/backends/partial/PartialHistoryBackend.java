@@ -14,10 +14,14 @@ package org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partial;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
@@ -33,10 +37,11 @@ import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.statesystem.AbstractTmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
-import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
-import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfParallelIndexable;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 
 /**
  * Partial state history back-end.
@@ -47,15 +52,33 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
  * intervals that crosses at least one checkpoint. Every other interval will
  * be discarded.
  *
+ * The checkpoints are adaptive: a window between two checkpoints is bounded
+ * both in events (the granularity) and in state changes. When a burst of
+ * state changes exceeds the budget of a window, the next candidate position,
+ * registered every few events, becomes a checkpoint. This way the cost of
+ * replaying a window stays bounded whatever the density of the trace.
+ *
  * This would mean that it can only answer queries exactly at the checkpoints.
  * For any other timestamps (ie, most of the time), it will load the closest
  * earlier checkpoint, and will re-feed the state-change-input with events from
  * the trace, to restore the real state at the time that was requested.
  *
+ * Queries are replayed by a small pool of independent partial state systems,
+ * so that concurrent queries do not wait for each other. The state reached by
+ * the latest replay from each checkpoint is kept in a cache, so that queries
+ * at the same or at a later time in the same checkpoint window continue from
+ * it instead of replaying from the checkpoint again.
+ *
  * @author Alexandre Montplaisir
  */
 public class PartialHistoryBackend implements IStateHistoryBackend {
 
+    /** Maximum number of queries that are replayed at the same time */
+    private static final int MAX_REPLAYERS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /** Number of checkpoint windows whose replayed state is kept */
+    private static final int REPLAYED_STATES_CACHE_SIZE = 16;
+
     /**
      * A partial history needs the state input plugin to re-generate state
      * between checkpoints.
@@ -71,15 +94,50 @@ public class PartialHistoryBackend implements IStateHistoryBackend {
     /** Reference to the "real" state history that is used for storage */
     private final @NonNull IStateHistoryBackend fInnerHistory;
 
-    /** Checkpoints map, <Timestamp, Rank in the trace> */
-    private final @NonNull TreeMap<Long, Long> fCheckpoints = new TreeMap<>();
+    /**
+     * Checkpoints map, <Timestamp, Rank in the trace>. Checkpoints are added
+     * while the history is built and read by the queries, so the map is
+     * concurrent.
+     */
+    private final @NonNull ConcurrentSkipListMap<Long, Long> fCheckpoints = new ConcurrentSkipListMap<>();
 
     /** Latch tracking if the initial checkpoint registration is done */
     private final @NonNull CountDownLatch fCheckpointsReady = new CountDownLatch(1);
 
+    /**
+     * Candidate checkpoints, <Timestamp, Rank in the trace>, that become real
+     * checkpoints when a window has too many state changes
+     */
+    private final @NonNull ConcurrentSkipListMap<Long, Long> fCandidates = new ConcurrentSkipListMap<>();
+
+    /** Number of candidate checkpoints registered per granularity */
+    private static final int CANDIDATES_PER_WINDOW = 10;
+
     private final long fGranularity;
+    private final long fMaxStateChanges;
+
+    private volatile long fLatestTime;
+
+    /** Checkpoint starting the window being built */
+    private long fWindowStart;
+    /** Number of state changes in the window being built */
+    private long fWindowStateChanges = 0;
+
+    /** Replayers that are not used by a query */
+    private final @NonNull BlockingQueue<Replayer> fIdleReplayers = new LinkedBlockingQueue<>();
+
+    /** All the replayers created so far, including the ones in use */
+    private final @NonNull List<Replayer> fReplayers = new ArrayList<>();
 
-    private long fLatestTime;
+    /** Latest replayed state of each checkpoint window, in access order */
+    private final @NonNull Map<Long, ReplayedState> fReplayedStates = new LinkedHashMap<Long, ReplayedState>(REPLAYED_STATES_CACHE_SIZE, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, ReplayedState> eldest) {
+            return size() > REPLAYED_STATES_CACHE_SIZE;
+        }
+    };
 
     /**
      * Constructor
@@ -100,7 +158,33 @@ public class PartialHistoryBackend implements IStateHistoryBackend {
      */
     public PartialHistoryBackend(ITmfStateProvider partialInput, PartialStateSystem pss,
             IStateHistoryBackend realBackend, long granularity) {
-        if (granularity <= 0 || partialInput == null || pss == null ||
+        this(partialInput, pss, realBackend, granularity, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructor for adaptive checkpoints
+     *
+     * @param partialInput
+     *            The state change input object that was used to build the
+     *            upstream state system. This partial history will make its own
+     *            copy (since they have different targets).
+     * @param pss
+     *            The partial history's inner state system. It should already be
+     *            assigned to partialInput.
+     * @param realBackend
+     *            The real state history back-end to use. It's supposed to be
+     *            modular, so it should be able to be of any type.
+     * @param granularity
+     *            Configuration parameter indicating the maximum number of
+     *            trace events between two checkpoints
+     * @param maxStateChanges
+     *            Configuration parameter indicating the number of state
+     *            changes after which a new checkpoint is added, even if there
+     *            were less trace events than the granularity
+     */
+    public PartialHistoryBackend(ITmfStateProvider partialInput, PartialStateSystem pss,
+            IStateHistoryBackend realBackend, long granularity, long maxStateChanges) {
+        if (granularity <= 0 || maxStateChanges <= 0 || partialInput == null || pss == null ||
                 partialInput.getAssignedStateSystem() != pss) {
             throw new IllegalArgumentException();
         }
@@ -112,14 +196,20 @@ public class PartialHistoryBackend implements IStateHistoryBackend {
 
         fInnerHistory = realBackend;
         fGranularity = granularity;
+        fMaxStateChanges = maxStateChanges;
 
         fLatestTime = startTime;
+        fWindowStart = startTime;
+
+        Replayer replayer = new Replayer(partialInput, pss);
+        fReplayers.add(replayer);
+        fIdleReplayers.add(replayer);
 
         registerCheckpoints();
     }
 
     private void registerCheckpoints() {
-        ITmfEventRequest request = new CheckpointsRequest(fPartialInput, fCheckpoints);
+        ITmfEventRequest request = new CheckpointsRequest(fPartialInput, fCheckpoints, fCandidates);
         fPartialInput.getTrace().sendRequest(request);
         /* The request will countDown the checkpoints latch once it's finished */
     }
@@ -155,10 +245,44 @@ public class PartialHistoryBackend implements IStateHistoryBackend {
         if (stateStartTime <= fCheckpoints.floorKey(stateEndTime)) {
             fInnerHistory.insertPastState(stateStartTime, stateEndTime, quark, value);
         }
+
+        updateWindow();
+    }
+
+    /**
+     * Count the state changes of the current window, and add a checkpoint if
+     * there are too many.
+     */
+    private void updateWindow() {
+        long windowStart = fCheckpoints.floorKey(fLatestTime);
+        if (windowStart != fWindowStart) {
+            fWindowStart = windowStart;
+            fWindowStateChanges = 0;
+        }
+        fWindowStateChanges++;
+        if (fWindowStateChanges < fMaxStateChanges) {
+            return;
+        }
+
+        /*
+         * Intervals are inserted in (almost) increasing end time, and none of
+         * the ones inserted so far ends after the latest time. The next
+         * candidate after it can thus become a checkpoint, since all the
+         * intervals crossing it are yet to be inserted.
+         */
+        Map.Entry<Long, Long> candidate = fCandidates.higherEntry(fLatestTime);
+        Long nextCheckpoint = fCheckpoints.higherKey(fLatestTime);
+        if (candidate != null && (nextCheckpoint == null || candidate.getKey() < nextCheckpoint)) {
+            fCheckpoints.put(candidate.getKey(), candidate.getValue());
+        }
+        /* The new window will start at the candidate */
+        fWindowStateChanges = 0;
     }
 
     @Override
     public void finishedBuilding(long endTime) throws TimeRangeException {
+        /* The candidates are only needed while building */
+        fCandidates.clear();
         fInnerHistory.finishedBuilding(endTime);
     }
 
@@ -184,8 +308,15 @@ public class PartialHistoryBackend implements IStateHistoryBackend {
 
     @Override
     public void dispose() {
-        fPartialInput.dispose();
-        fPartialSS.dispose();
+        synchronized (fReplayers) {
+            for (Replayer replayer : fReplayers) {
+                replayer.fInput.dispose();
+                replayer.fSS.dispose();
+            }
+        }
+        synchronized (fReplayedStates) {
+            fReplayedStates.clear();
+        }
         fInnerHistory.dispose();
     }
 
@@ -200,56 +331,103 @@ public class PartialHistoryBackend implements IStateHistoryBackend {
             throw new TimeRangeException();
         }
 
-        /* Reload the previous checkpoint */
-        long checkpointTime = fCheckpoints.floorKey(t);
-        fInnerHistory.doQuery(currentStateInfo, checkpointTime);
+        Map.Entry<Long, Long> checkpoint = fCheckpoints.floorEntry(t);
+        long checkpointTime = checkpoint.getKey();
 
         /*
-         * Set the initial contents of the partial state system (which is the
-         * contents of the query at the checkpoint).
+         * Start from the latest state replayed in this checkpoint window if
+         * it is not after the target time, otherwise reload the checkpoint.
          */
-        fPartialSS.takeQueryLock();
-        fPartialSS.replaceOngoingState(currentStateInfo);
+        long fromTime;
+        long fromRank;
+        ReplayedState replayed;
+        synchronized (fReplayedStates) {
+            replayed = fReplayedStates.get(checkpointTime);
+        }
+        if (replayed != null && replayed.fTime <= t && replayed.fStates.size() == currentStateInfo.size()) {
+            for (int i = 0; i < currentStateInfo.size(); i++) {
+                currentStateInfo.set(i, replayed.fStates.get(i));
+            }
+            if (replayed.fTime == t) {
+                return;
+            }
+            fromTime = replayed.fTime;
+            fromRank = replayed.fNextRank;
+        } else {
+            fInnerHistory.doQuery(currentStateInfo, checkpointTime);
+            fromTime = checkpointTime;
+            fromRank = checkpoint.getValue();
+        }
+
+        Replayer replayer = takeReplayer();
+        long nextRank;
+        try {
+            /*
+             * Set the initial contents of the partial state system (which is
+             * the contents of the query at the starting point).
+             */
+            replayer.fSS.takeQueryLock();
+            try {
+                replayer.fSS.replaceOngoingState(currentStateInfo);
+
+                /* Send the events to update the state system to the target time. */
+                nextRank = replayer.replay(fromRank, fromTime, t);
 
-        /* Send an event request to update the state system to the target time. */
-        TmfTimeRange range = new TmfTimeRange(
                 /*
-                 * The state at the checkpoint already includes any state change
-                 * caused by the event(s) happening exactly at 'checkpointTime',
-                 * if any. We must not include those events in the query.
+                 * Now the partial state system should have the ongoing time we
+                 * are looking for. However, the method expects a List of *state
+                 * intervals*, not state values, so we'll create intervals with a
+                 * dummy end time.
                  */
-                new TmfTimestamp(checkpointTime + 1, ITmfTimestamp.NANOSECOND_SCALE),
-                new TmfTimestamp(t, ITmfTimestamp.NANOSECOND_SCALE));
-        ITmfEventRequest request = new PartialStateSystemRequest(fPartialInput, range);
-        fPartialInput.getTrace().sendRequest(request);
+                for (int i = 0; i < currentStateInfo.size(); i++) {
+                    long start = ((ITmfStateSystem) replayer.fSS).getOngoingStartTime(i);
+                    ITmfStateValue val = ((ITmfStateSystem) replayer.fSS).queryOngoingState(i);
 
-        try {
-            request.waitForCompletion();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+                    ITmfStateInterval interval = new TmfStateInterval(start, t, i, val);
+                    currentStateInfo.set(i, interval);
+                }
+            } catch (AttributeNotFoundException e) {
+                /* Should not happen, we iterate over existing values. */
+                e.printStackTrace();
+                return;
+            } finally {
+                replayer.fSS.releaseQueryLock();
+            }
+        } finally {
+            fIdleReplayers.add(replayer);
         }
 
-        /*
-         * Now the partial state system should have the ongoing time we are
-         * looking for. However, the method expects a List of *state intervals*,
-         * not state values, so we'll create intervals with a dummy end time.
-         */
-        try {
-            for (int i = 0; i < currentStateInfo.size(); i++) {
-                long start = 0;
-                ITmfStateValue val = null;
-                start = ((ITmfStateSystem) fPartialSS).getOngoingStartTime(i);
-                val = ((ITmfStateSystem) fPartialSS).queryOngoingState(i);
+        synchronized (fReplayedStates) {
+            fReplayedStates.put(checkpointTime, new ReplayedState(t, nextRank, new ArrayList<>(currentStateInfo)));
+        }
+    }
 
-                ITmfStateInterval interval = new TmfStateInterval(start, t, i, val);
-                currentStateInfo.set(i, interval);
+    /**
+     * Get a replayer that is not used by another query. A new one is created
+     * if they are all in use and the maximum is not reached, otherwise this
+     * waits for one to be released.
+     */
+    private Replayer takeReplayer() {
+        Replayer replayer = fIdleReplayers.poll();
+        if (replayer != null) {
+            return replayer;
+        }
+        synchronized (fReplayers) {
+            if (fReplayers.size() < MAX_REPLAYERS) {
+                ITmfStateProvider input = fPartialInput.getNewInstance();
+                PartialStateSystem pss = new PartialStateSystem();
+                input.assignTargetStateSystem(pss);
+                pss.assignUpstream(fPartialSS.getUpstreamSS());
+                replayer = new Replayer(input, pss);
+                fReplayers.add(replayer);
+                return replayer;
             }
-        } catch (AttributeNotFoundException e) {
-            /* Should not happen, we iterate over existing values. */
-            e.printStackTrace();
         }
-
-        fPartialSS.releaseQueryLock();
+        try {
+            return fIdleReplayers.take();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     /**
@@ -285,20 +463,27 @@ public class PartialHistoryBackend implements IStateHistoryBackend {
     private class CheckpointsRequest extends TmfEventRequest {
         private final ITmfTrace trace;
         private final Map<Long, Long> checkpts;
+        private final Map<Long, Long> candidates;
+        private final long candidatesInterval;
         private long eventCount;
         private long lastCheckpointAt;
+        private long lastCandidateAt;
 
-        public CheckpointsRequest(ITmfStateProvider input, Map<Long, Long> checkpoints) {
+        public CheckpointsRequest(ITmfStateProvider input, Map<Long, Long> checkpoints, Map<Long, Long> candidates) {
             super(ITmfEvent.class,
                     TmfTimeRange.ETERNITY,
                     0,
                     ITmfEventRequest.ALL_DATA,
                     ITmfEventRequest.ExecutionType.FOREGROUND);
             checkpoints.clear();
+            candidates.clear();
             this.trace = input.getTrace();
             this.checkpts = checkpoints;
+            this.candidates = candidates;
+            candidatesInterval = Math.max(1, fGranularity / CANDIDATES_PER_WINDOW);
             eventCount = 0;
             lastCheckpointAt = 0;
+            lastCandidateAt = 0;
 
             /* Insert a checkpoint at the start of the trace */
             checkpoints.put(input.getStartTime(), 0L);
@@ -312,8 +497,13 @@ public class PartialHistoryBackend implements IStateHistoryBackend {
 
                 /* Check if we need to register a new checkpoint */
                 if (eventCount >= lastCheckpointAt + fGranularity) {
-                    checkpts.put(event.getTimestamp().getValue(), eventCount);
+                    checkpts.put(event.getTimestampNanos(), eventCount);
                     lastCheckpointAt = eventCount;
+                    lastCandidateAt = eventCount;
+                } else if (fMaxStateChanges != Long.MAX_VALUE &&
+                        eventCount >= lastCandidateAt + candidatesInterval) {
+                    candidates.put(event.getTimestampNanos(), eventCount);
+                    lastCandidateAt = eventCount;
                 }
             }
         }
@@ -325,40 +515,94 @@ public class PartialHistoryBackend implements IStateHistoryBackend {
         }
     }
 
-    private class PartialStateSystemRequest extends TmfEventRequest {
-        private final ITmfStateProvider sci;
-        private final ITmfTrace trace;
+    // ------------------------------------------------------------------------
+    // Replay
+    // ------------------------------------------------------------------------
 
-        PartialStateSystemRequest(ITmfStateProvider sci, TmfTimeRange range) {
-            super(ITmfEvent.class,
-                    range,
-                    0,
-                    ITmfEventRequest.ALL_DATA,
-                    ITmfEventRequest.ExecutionType.BACKGROUND);
-            this.sci = sci;
-            this.trace = sci.getTrace();
+    /**
+     * A partial state system and the state provider feeding it, used by one
+     * query at a time.
+     */
+    private static class Replayer {
+        private final ITmfStateProvider fInput;
+        private final PartialStateSystem fSS;
+
+        public Replayer(ITmfStateProvider input, PartialStateSystem ss) {
+            fInput = input;
+            fSS = ss;
         }
 
-        @Override
-        public void handleData(final ITmfEvent event) {
-            super.handleData(event);
-            if (event.getTrace() == trace) {
-                sci.processEvent(event);
+        /**
+         * Send to the state provider the events after 'fromTime', up to
+         * 'toTime' included, reading the trace from the given rank. The trace
+         * is read directly instead of through an event request, so that
+         * replays are not serialized by the request executor. Traces that can
+         * be read concurrently are read through their own contexts.
+         *
+         * @return The rank of the first event that was not read
+         */
+        public long replay(long rank, long fromTime, long toTime) {
+            ITmfTrace trace = fInput.getTrace();
+            long nextRank = rank;
+            ITmfContext context = trace.seekEvent(rank);
+            if (trace instanceof ITmfParallelIndexable) {
+                ITmfLocation location = context.getLocation();
+                context.dispose();
+                context = ((ITmfParallelIndexable) trace).createIndexingContext(location);
+            }
+            try {
+                ITmfEvent event = readEvent(trace, context);
+                while (event != null) {
+                    long timestamp = event.getTimestampNanos();
+                    if (timestamp > toTime) {
+                        break;
+                    }
+                    /*
+                     * The starting state already includes any state change
+                     * caused by the event(s) happening exactly at 'fromTime'.
+                     */
+                    if (timestamp > fromTime && event.getTrace() == trace) {
+                        fInput.processEvent(event);
+                    }
+                    nextRank++;
+                    event = readEvent(trace, context);
+                }
+            } finally {
+                context.dispose();
             }
-        }
 
-        @Override
-        public void handleCompleted() {
             /*
              * If we're using a threaded state provider, we need to make sure
              * all events have been handled by the state system before doing
              * queries on it.
              */
-            if (fPartialInput instanceof AbstractTmfStateProvider) {
-                ((AbstractTmfStateProvider) fPartialInput).waitForEmptyQueue();
+            if (fInput instanceof AbstractTmfStateProvider) {
+                ((AbstractTmfStateProvider) fInput).waitForEmptyQueue();
             }
-            super.handleCompleted();
+            return nextRank;
         }
 
+        private static ITmfEvent readEvent(ITmfTrace trace, ITmfContext context) {
+            if (trace instanceof ITmfParallelIndexable) {
+                return ((ITmfParallelIndexable) trace).readIndexingEvent(context);
+            }
+            return trace.getNext(context);
+        }
+    }
+
+    /**
+     * The full state reached by replaying a checkpoint window up to a given
+     * time
+     */
+    private static class ReplayedState {
+        private final long fTime;
+        private final long fNextRank;
+        private final List<ITmfStateInterval> fStates;
+
+        public ReplayedState(long time, long nextRank, List<ITmfStateInterval> states) {
+            fTime = time;
+            fNextRank = nextRank;
+            fStates = states;
+        }
     }
 }
@@ -18,7 +18,6 @@ import java.util.concurrent.locks.ReentrantLock;
 
 import org.eclipse.tracecompass.internal.statesystem.core.AttributeTree;
 import org.eclipse.tracecompass.internal.statesystem.core.StateSystem;
-import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.backend.NullBackend;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
@@ -68,7 +67,7 @@ public class PartialStateSystem extends StateSystem {
         ssAssignedLatch.countDown();
     }
 
-    ITmfStateSystem getUpstreamSS() {
+    StateSystem getUpstreamSS() {
         return realStateSystem;
     }
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 École Polytechnique de Montréal
+ * Copyright (c) 2013, 2015 École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -15,15 +15,18 @@ package org.eclipse.tracecompass.internal.tmf.core.synchronization;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.MathContext;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.tmf.core.synchronization.graph.SyncSpanningTree;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.matching.TmfEventDependency;
@@ -31,7 +34,6 @@ import org.eclipse.tracecompass.tmf.core.synchronization.ITmfTimestampTransform;
 import org.eclipse.tracecompass.tmf.core.synchronization.Messages;
 import org.eclipse.tracecompass.tmf.core.synchronization.SynchronizationAlgorithm;
 import org.eclipse.tracecompass.tmf.core.synchronization.TimestampTransformFactory;
-import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
 /**
@@ -45,6 +47,10 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
  * private class, while this public class manages the synchronization between
  * all traces.
  *
+ * The hulls are computed on the timestamps as longs, with exact 128-bit
+ * cross-products. The slopes and ordinates are only computed as BigDecimal
+ * when the synchronization formula is needed.
+ *
  * @author Geneviève Bastien
  */
 public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
@@ -216,7 +222,8 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
 
         /**
          * Slopes and ordinate at origin of respectively fLmin, fLmax and the
-         * bisector
+         * bisector. They are computed from fSyncLmax and fSyncLmin when they
+         * are needed.
          */
         private BigDecimal fAlphamin, fBetamax, fAlphamax, fBetamin, fAlpha, fBeta;
         private int fNbMatches, fNbAccurateMatches;
@@ -226,18 +233,26 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
          * The list of meaningful points on the upper hull (received by the
          * reference trace, below in a graph)
          */
-        private transient LinkedList<SyncPoint> fUpperBoundList = new LinkedList<>();
+        private transient Hull fUpperBoundList = new Hull();
         /**
          * The list of meaninful points on the lower hull (sent by the reference
          * trace, above in a graph)
          */
-        private transient LinkedList<SyncPoint> fLowerBoundList = new LinkedList<>();
+        private transient Hull fLowerBoundList = new Hull();
 
         /** Points forming the line with maximum slope */
         private transient SyncPoint[] fLmax = new SyncPoint[2];
         /** Points forming the line with minimum slope */
         private transient SyncPoint[] fLmin = new SyncPoint[2];
 
+        /**
+         * Points of fLmax and fLmin at the last synchronization which did not
+         * fail, from which the slopes and ordinates are computed, or null if
+         * they are up to date
+         */
+        private transient @Nullable SyncPoint[] fSyncLmax = null;
+        private transient @Nullable SyncPoint[] fSyncLmin = null;
+
         private transient Map<String, Object> fStats = new LinkedHashMap<>();
 
         /**
@@ -269,7 +284,7 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
 
         protected void processMatch(TmfEventDependency match) {
 
-            LinkedList<SyncPoint> boundList, otherBoundList;
+            Hull boundList, otherBoundList;
 
             SyncPoint[] line, otherLine;
             SyncPoint p;
@@ -298,7 +313,7 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
              * Does the message qualify for the hull, or is in on the wrong side
              * of the reference line
              */
-            if ((line[0] == null) || (line[1] == null) || (p.crossProduct(line[0], line[1]) * inversionFactor > 0)) {
+            if ((line[0] == null) || (line[1] == null) || (p.crossProductSign(line[0], line[1]) * inversionFactor > 0)) {
                 /*
                  * If message qualifies, verify if points need to be removed
                  * from the hull and add the new point as the maximum reference
@@ -318,7 +333,7 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
              * adjust the other line
              */
             adjustBound(line, otherBoundList, inversionFactor);
-            if ((otherLine[1] != null) && !boundList.contains(otherLine[0])) {
+            if ((otherLine[1] != null) && boundList.indexOf(otherLine[0]) < 0) {
                 adjustBound(otherLine, boundList, inversionFactor * -1);
             }
 
@@ -347,30 +362,25 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
                  * keep the last not failed result.
                  */
                 if (getQuality() != SyncQuality.FAIL) {
-                    BigDecimal alphamax = fLmax[1].getAlpha(fLmax[0]);
-                    BigDecimal alphamin = fLmin[1].getAlpha(fLmin[0]);
                     SyncQuality quality = null;
 
                     if ((fLmax[0] == null) || (fLmin[0] == null)) {
                         quality = SyncQuality.APPROXIMATE;
                     }
-                    else if (alphamax.compareTo(alphamin) > 0) {
+                    else if (compareSlopes(fLmax, fLmin) > 0) {
                         quality = SyncQuality.ACCURATE;
                     } else {
                         /* Lines intersect, not good */
                         quality = SyncQuality.FAIL;
                     }
                     /*
-                     * Only calculate sync if this match does not cause failure
-                     * of synchronization
+                     * Only keep the lines if this match does not cause
+                     * failure of synchronization, the formula is calculated
+                     * from them when needed
                      */
                     if (quality != SyncQuality.FAIL) {
-                        fAlphamax = alphamax;
-                        fBetamin = fLmax[1].getBeta(fAlphamax);
-                        fAlphamin = alphamin;
-                        fBetamax = fLmin[1].getBeta(fAlphamin);
-                        fAlpha = fAlphamax.add(fAlphamin).divide(BigDecimal.valueOf(2), fMc);
-                        fBeta = fBetamin.add(fBetamax).divide(BigDecimal.valueOf(2), fMc);
+                        fSyncLmax = fLmax.clone();
+                        fSyncLmin = fLmin.clone();
                     }
                     setQuality(quality);
                 }
@@ -381,11 +391,31 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
             }
         }
 
+        /*
+         * Calculate the slopes and ordinates of the lines at the last
+         * synchronization which did not fail
+         */
+        private void updateSync() {
+            SyncPoint[] lmax = fSyncLmax;
+            SyncPoint[] lmin = fSyncLmin;
+            if (lmax == null || lmin == null) {
+                return;
+            }
+            fAlphamax = lmax[1].getAlpha(lmax[0]);
+            fBetamin = lmax[1].getBeta(fAlphamax);
+            fAlphamin = lmin[1].getAlpha(lmin[0]);
+            fBetamax = lmin[1].getBeta(fAlphamin);
+            fAlpha = fAlphamax.add(fAlphamin).divide(BigDecimal.valueOf(2), fMc);
+            fBeta = fBetamin.add(fBetamax).divide(BigDecimal.valueOf(2), fMc);
+            fSyncLmax = null;
+            fSyncLmin = null;
+        }
+
         /*
          * Verify if the line should be adjusted to be more accurate give the
          * hull
          */
-        private void adjustBound(SyncPoint[] line, LinkedList<SyncPoint> otherBoundList, int inversionFactor) {
+        private void adjustBound(SyncPoint[] line, Hull otherBoundList, int inversionFactor) {
             SyncPoint minPoint = null, nextPoint;
             boolean finishedSearch = false;
 
@@ -405,7 +435,7 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
                  *
                  * Otherwise, the current minPoint is the minPoint of the line
                  */
-                if (minPoint.crossProduct(nextPoint, line[1]) * inversionFactor > 0) {
+                if (minPoint.crossProductSign(nextPoint, line[1]) * inversionFactor > 0) {
                     if (nextPoint.getTimeX() < line[1].getTimeX()) {
                         i++;
                     } else {
@@ -432,12 +462,12 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
          * When a point qualifies to be in a hull, we verify if any of the
          * existing points need to be removed from the hull
          */
-        private void removeUselessPoints(final SyncPoint p, final LinkedList<SyncPoint> boundList, final int inversionFactor) {
+        private void removeUselessPoints(final SyncPoint p, final Hull boundList, final int inversionFactor) {
 
             boolean checkRemove = true;
 
             while (checkRemove && boundList.size() >= 2) {
-                if (p.crossProduct(boundList.get(boundList.size() - 2), boundList.getLast()) * inversionFactor > 0) {
+                if (p.crossProductSign(boundList.get(boundList.size() - 2), boundList.getLast()) * inversionFactor > 0) {
                     boundList.removeLast();
                 } else {
                     checkRemove = false;
@@ -447,6 +477,7 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
         }
 
         public ITmfTimestampTransform getTimestampTransform(String hostId) {
+            updateSync();
             if (hostId.equals(fOtherHost) && (getQuality() == SyncQuality.ACCURATE || getQuality() == SyncQuality.APPROXIMATE || getQuality() == SyncQuality.FAIL)) {
                 /* alpha: beta => 1 / fAlpha, -1 * fBeta / fAlpha); */
                 return TimestampTransformFactory.createLinear(BigDecimal.ONE.divide(fAlpha, fMc), BigDecimal.valueOf(-1).multiply(fBeta).divide(fAlpha, fMc));
@@ -459,11 +490,13 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
         }
 
         public BigDecimal getAccuracy() {
+            updateSync();
             return fAlphamax.subtract(fAlphamin);
         }
 
         public Map<String, Object> getStats() {
             if (fStats.size() == 0) {
+                updateSync();
                 String syncQuality;
                 switch (getQuality()) {
                 case ABSENT:
@@ -518,16 +551,22 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
             stream.defaultReadObject();
 
             /* Initialize transient fields */
-            fUpperBoundList = new LinkedList<>();
-            fLowerBoundList = new LinkedList<>();
+            fUpperBoundList = new Hull();
+            fLowerBoundList = new Hull();
             fLmax = new SyncPoint[2];
             fLmin = new SyncPoint[2];
             fStats = new LinkedHashMap<>();
         }
 
+        private void writeObject(ObjectOutputStream stream) throws IOException {
+            updateSync();
+            stream.defaultWriteObject();
+        }
+
         @SuppressWarnings("nls")
         @Override
         public String toString() {
+            updateSync();
             StringBuilder b = new StringBuilder();
             b.append("Between " + fReferenceHost + " and " + fOtherHost + " [");
             b.append(" alpha " + fAlpha + " beta " + fBeta + " ]");
@@ -540,25 +579,114 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
 
     }
 
+    /**
+     * Compare the slopes of two lines, given by two points each. The first
+     * point may be null, or at the same time as the second one, in which case
+     * the slope is 1.
+     */
+    private static int compareSlopes(SyncPoint[] line1, SyncPoint[] line2) {
+        long dy1 = 1, dx1 = 1, dy2 = 1, dx2 = 1;
+        if (line1[0] != null && line1[1].x != line1[0].x) {
+            dy1 = line1[1].y - line1[0].y;
+            dx1 = line1[1].x - line1[0].x;
+        }
+        if (line2[0] != null && line2[1].x != line2[0].x) {
+            dy2 = line2[1].y - line2[0].y;
+            dx2 = line2[1].x - line2[0].x;
+        }
+        /* dy1 / dx1 compared to dy2 / dx2, the dx are positive */
+        return compareProducts(dy1, dx2, dy2, dx1);
+    }
+
+    /**
+     * Compare a * b and c * d, computed exactly on 128 bits
+     */
+    static int compareProducts(long a, long b, long c, long d) {
+        long high1 = multiplyHigh(a, b);
+        long high2 = multiplyHigh(c, d);
+        if (high1 != high2) {
+            return (high1 < high2 ? -1 : 1);
+        }
+        /* The low parts are compared as unsigned */
+        long low1 = (a * b) ^ Long.MIN_VALUE;
+        long low2 = (c * d) ^ Long.MIN_VALUE;
+        return (low1 < low2 ? -1 : (low1 == low2 ? 0 : 1));
+    }
+
+    /**
+     * The 64 high bits of the 128-bit product of two longs
+     */
+    private static long multiplyHigh(long a, long b) {
+        long a1 = a >> 32;
+        long a2 = a & 0xFFFFFFFFL;
+        long b1 = b >> 32;
+        long b2 = b & 0xFFFFFFFFL;
+        long z2 = a2 * b2;
+        long t = a1 * b2 + (z2 >>> 32);
+        long z1 = (t & 0xFFFFFFFFL) + a2 * b1;
+        long z0 = t >> 32;
+        return a1 * b1 + z0 + (z1 >> 32);
+    }
+
+    /**
+     * Points of one side of a hull, in time order. The position of each point
+     * is kept in the point, so it is found without going through the list.
+     */
+    private static class Hull {
+        private final ArrayList<SyncPoint> fPoints = new ArrayList<>();
+
+        public int size() {
+            return fPoints.size();
+        }
+
+        public SyncPoint get(int index) {
+            return fPoints.get(index);
+        }
+
+        public SyncPoint getLast() {
+            return fPoints.get(fPoints.size() - 1);
+        }
+
+        public void addLast(SyncPoint p) {
+            p.fIndex = fPoints.size();
+            fPoints.add(p);
+        }
+
+        public void removeLast() {
+            fPoints.remove(fPoints.size() - 1);
+        }
+
+        /* The index of a point in this hull, or -1 if it is not in it */
+        public int indexOf(@Nullable SyncPoint p) {
+            if (p == null || p.fIndex >= fPoints.size() || fPoints.get(p.fIndex) != p) {
+                return -1;
+            }
+            return p.fIndex;
+        }
+    }
+
     /**
      * Private class representing a point to synchronize on a graph. The x axis
      * is the timestamp of the event from the reference trace while the y axis
      * is the timestamp of the event on the other trace
      */
-    private class SyncPoint {
-        private final ITmfTimestamp x, y;
+    private static class SyncPoint {
+        private final long x, y;
+        /* Position of this point in its hull */
+        private int fIndex = -1;
 
         public SyncPoint(ITmfEvent ex, ITmfEvent ey) {
-            x = ex.getTimestamp();
-            y = ey.getTimestamp();
+            x = ex.getTimestamp().getValue();
+            y = ey.getTimestamp().getValue();
         }
 
         public long getTimeX() {
-            return x.getValue();
+            return x;
         }
 
         /**
-         * Calculate a cross product of 3 points:
+         * Calculate the sign of the cross product of 3 points, computed
+         * exactly:
          *
          * If the cross-product < 0, then p, pa, pb are clockwise
          *
@@ -570,11 +698,10 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
          *            First point
          * @param pb
          *            Second point
-         * @return The cross product
+         * @return The sign of the cross product: -1, 0 or 1
          */
-        public long crossProduct(SyncPoint pa, SyncPoint pb) {
-            long cp = ((pa.x.getValue() - x.getValue()) * (pb.y.getValue() - y.getValue()) - (pa.y.getValue() - y.getValue()) * (pb.x.getValue() - x.getValue()));
-            return cp;
+        public int crossProductSign(SyncPoint pa, SyncPoint pb) {
+            return compareProducts(pa.x - x, pb.y - y, pa.y - y, pb.x - x);
         }
 
         /*
@@ -584,8 +711,8 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
             if (p1 == null) {
                 return BigDecimal.ONE;
             }
-            BigDecimal deltay = BigDecimal.valueOf(y.getValue() - p1.y.getValue());
-            BigDecimal deltax = BigDecimal.valueOf(x.getValue() - p1.x.getValue());
+            BigDecimal deltay = BigDecimal.valueOf(y - p1.y);
+            BigDecimal deltax = BigDecimal.valueOf(x - p1.x);
             if (deltax.equals(BigDecimal.ZERO)) {
                 return BigDecimal.ONE;
             }
@@ -596,7 +723,7 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
          * Get the beta value (when x = 0) of the line given alpha
          */
         public BigDecimal getBeta(BigDecimal alpha) {
-            return BigDecimal.valueOf(y.getValue()).subtract(alpha.multiply(BigDecimal.valueOf(x.getValue()), fMc));
+            return BigDecimal.valueOf(y).subtract(alpha.multiply(BigDecimal.valueOf(x), fMc));
         }
 
         @Override
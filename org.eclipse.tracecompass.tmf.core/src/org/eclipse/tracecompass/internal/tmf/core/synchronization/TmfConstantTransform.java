@@ -76,6 +76,14 @@ public class TmfConstantTransform implements ITmfTimestampTransformInvertible {
         return fOffset + timestamp;
     }
 
+    @Override
+    public void transform(long[] in, long[] out, int n) {
+        final long offset = fOffset;
+        for (int i = 0; i < n; i++) {
+            out[i] = offset + in[i];
+        }
+    }
+
     @Override
     public ITmfTimestampTransform composeWith(ITmfTimestampTransform composeWith) {
         if (composeWith.equals(TmfTimestampTransform.IDENTITY)) {
@@ -50,6 +50,13 @@ public final class TmfTimestampTransform implements ITmfTimestampTransformInvert
         return timestamp;
     }
 
+    @Override
+    public void transform(long[] in, long[] out, int n) {
+        if (in != out) {
+            System.arraycopy(in, 0, out, 0, n);
+        }
+    }
+
     @Override
     public ITmfTimestampTransform composeWith(ITmfTimestampTransform composeWith) {
         /* Since this transform will not modify anything, return the other */
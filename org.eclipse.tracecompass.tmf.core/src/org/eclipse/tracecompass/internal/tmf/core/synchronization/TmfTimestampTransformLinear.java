@@ -97,6 +97,13 @@ public class TmfTimestampTransformLinear implements ITmfTimestampTransformInvert
         return t.longValue();
     }
 
+    @Override
+    public void transform(long[] in, long[] out, int n) {
+        for (int i = 0; i < n; i++) {
+            out[i] = transform(in[i]);
+        }
+    }
+
     @Override
     public ITmfTimestampTransform composeWith(ITmfTimestampTransform composeWith) {
         if (composeWith.equals(TmfTimestampTransform.IDENTITY)) {
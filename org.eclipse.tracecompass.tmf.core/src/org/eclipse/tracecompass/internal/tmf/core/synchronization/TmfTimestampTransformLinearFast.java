@@ -186,7 +186,7 @@ public class TmfTimestampTransformLinearFast implements ITmfTimestampTransformIn
              * TODO: use exact math arithmetic to detect overflow when switching to Java 8
              */
             fRangeStart = timestamp - (timestamp % fDeltaMax);
-            fOffset = BigDecimal.valueOf(fRangeStart).multiply(fAlpha, MC).add(fBeta, MC).longValue();
+            fOffset = rangeOffset(fRangeStart);
             delta = Math.abs(timestamp - fRangeStart);
             fScaleMiss++;
         } else {
@@ -195,6 +195,42 @@ public class TmfTimestampTransformLinearFast implements ITmfTimestampTransformIn
         return ((fAlphaLong * delta) >> fDeltaBits) + fOffset;
     }
 
+    @Override
+    public void transform(long[] in, long[] out, int n) {
+        /*
+         * Same computation as transform(long), with the state in locals so
+         * the loop over the timestamps of the same range stays tight.
+         */
+        final long alphaLong = fAlphaLong;
+        final long deltaMax = fDeltaMax;
+        final int deltaBits = fDeltaBits;
+        long rangeStart = fRangeStart;
+        long offset = fOffset;
+        long misses = 0;
+        for (int i = 0; i < n; i++) {
+            long timestamp = in[i];
+            long delta = timestamp - rangeStart;
+            if (delta >= deltaMax || delta < 0) {
+                rangeStart = timestamp - (timestamp % deltaMax);
+                offset = rangeOffset(rangeStart);
+                delta = Math.abs(timestamp - rangeStart);
+                misses++;
+            }
+            out[i] = ((alphaLong * delta) >> deltaBits) + offset;
+        }
+        fRangeStart = rangeStart;
+        fOffset = offset;
+        fScaleMiss += misses;
+        fScaleHit += n - misses;
+    }
+
+    /*
+     * Compute with BigDecimal the transformed value of the start of a range
+     */
+    private long rangeOffset(long rangeStart) {
+        return BigDecimal.valueOf(rangeStart).multiply(fAlpha, MC).add(fBeta, MC).longValue();
+    }
+
     //-------------------------------------------------------------------------
     // Transform composition
     //-------------------------------------------------------------------------
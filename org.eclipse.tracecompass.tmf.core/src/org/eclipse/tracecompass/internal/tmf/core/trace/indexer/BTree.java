@@ -116,6 +116,24 @@ public class BTree extends AbstractFileCheckpointCollection {
      *            the trace
      */
     public BTree(int degree, File file, ITmfPersistentlyIndexable trace) {
+        this(degree, file, trace, BTreeNodeCache.DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructs a BTree for a given trace from scratch or from an existing
+     * file, keeping up to the given number of nodes in memory. A bigger cache
+     * reduces the number of node reads from disk when searching a big index.
+     *
+     * @param degree
+     *            the degree to use in the tree
+     * @param file
+     *            the file to use as the persistent storage
+     * @param trace
+     *            the trace
+     * @param cacheSize
+     *            the maximum number of nodes kept in memory
+     */
+    public BTree(int degree, File file, ITmfPersistentlyIndexable trace, int cacheSize) {
         super(file, trace);
 
         fMaxNumEntries = 2 * degree - 1;
@@ -124,7 +142,7 @@ public class BTree extends AbstractFileCheckpointCollection {
 
         fNodeByteBuffer = ByteBuffer.allocate(getNodeSize());
         fNodeByteBuffer.clear();
-        fNodeCache = new BTreeNodeCache(this);
+        fNodeCache = new BTreeNodeCache(this, cacheSize);
         BTreeNode rootNode = isCreatedFromScratch() ? allocateNode() : fNodeCache.getNode(fBTreeHeader.fRoot);
         setRootNode(rootNode);
     }
@@ -12,37 +12,39 @@
 
 package org.eclipse.tracecompass.internal.tmf.core.trace.indexer;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * A simple LRU node cache. The BTree request a node from the cache and the
  * cache load it from disk if it's not already in memory.
  *
- * This cache could be improved considerably by allowing bigger caches.
+ * Nodes are looked up by file offset in constant time, so the cache can be
+ * made much bigger than the default for traces with a lot of checkpoints.
  *
  * @author Marc-Andre Laperle
  */
 public class BTreeNodeCache {
 
     /**
-     * Cache size obtained by experimentation. An improved cache could set this
-     * dynamically or using a user preference.
+     * Default cache size obtained by experimentation.
      */
-    private static final int CACHE_SIZE = 15;
+    public static final int DEFAULT_CACHE_SIZE = 15;
 
     private final BTree fTree;
+    private final int fCacheSize;
     /**
      * The root node is always kept in memory when {@link
      * BTree#ALWAYS_CACHE_ROOT} is set to true
      */
     private BTreeNode fRootNode = null;
     /**
-     * The collection keeping the nodes in memory. The most recently used is
-     * kept at the front of the double-ended queue and the least recently used
-     * node is kept at the back.
+     * The collection keeping the nodes in memory, indexed by file offset. It
+     * is kept in access order: the least recently used node is the first one
+     * returned by the iterator.
      */
-    private final Deque<BTreeNode> fCachedNodes = new ArrayDeque<>(CACHE_SIZE);
+    private final Map<Long, BTreeNode> fCachedNodes;
 
     private int fCcheMisses = 0;
 
@@ -53,7 +55,25 @@ public class BTreeNodeCache {
      *            the BTree that will use the cache
      */
     BTreeNodeCache(BTree tree) {
+        this(tree, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Construct a new node cache for the given BTree, keeping at most the
+     * given number of nodes in memory
+     *
+     * @param tree
+     *            the BTree that will use the cache
+     * @param cacheSize
+     *            the maximum number of nodes kept in memory, must be positive
+     */
+    BTreeNodeCache(BTree tree, int cacheSize) {
+        if (cacheSize <= 0) {
+            throw new IllegalArgumentException();
+        }
         fTree = tree;
+        fCacheSize = cacheSize;
+        fCachedNodes = new LinkedHashMap<>(16, 0.75f, true);
     }
 
     /**
@@ -68,14 +88,10 @@ public class BTreeNodeCache {
             return fRootNode;
         }
 
-        for (BTreeNode nodeSearch : fCachedNodes) {
-            if (nodeSearch.getOffset() == offset) {
-                // This node is now the most recently used
-                fCachedNodes.remove(nodeSearch);
-                fCachedNodes.push(nodeSearch);
-
-                return nodeSearch;
-            }
+        // The access-ordered map makes this node the most recently used
+        BTreeNode cachedNode = fCachedNodes.get(offset);
+        if (cachedNode != null) {
+            return cachedNode;
         }
 
         ++fCcheMisses;
@@ -94,7 +110,7 @@ public class BTreeNodeCache {
         if (fRootNode != null && fRootNode.isDirty()) {
             fRootNode.serializeOut();
         }
-        for (BTreeNode nodeSearch : fCachedNodes) {
+        for (BTreeNode nodeSearch : fCachedNodes.values()) {
             if (nodeSearch.isDirty()) {
                 nodeSearch.serializeOut();
             }
@@ -102,20 +118,22 @@ public class BTreeNodeCache {
     }
 
     /**
-     * Add a node to the cache. If the cache has reached the size specified with
-     * {@link #CACHE_SIZE}, the least recently used node is removed from memory.
+     * Add a node to the cache. If the cache has reached its maximum size, the
+     * least recently used node is removed from memory.
      *
      * @param node
      *            the node to add to the cache
      */
     void addNode(BTreeNode node) {
-        if (fCachedNodes.size() >= CACHE_SIZE) {
-            BTreeNode removed = fCachedNodes.removeLast();
+        if (fCachedNodes.size() >= fCacheSize) {
+            Iterator<BTreeNode> it = fCachedNodes.values().iterator();
+            BTreeNode removed = it.next();
+            it.remove();
             if (removed.isDirty()) {
                 removed.serializeOut();
             }
         }
-        fCachedNodes.push(node);
+        fCachedNodes.put(node.getOffset(), node);
     }
 
     /**
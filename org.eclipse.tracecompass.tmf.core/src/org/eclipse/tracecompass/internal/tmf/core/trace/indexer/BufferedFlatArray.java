@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.trace.indexer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.text.MessageFormat;
+
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfPersistentlyIndexable;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+
+/**
+ * A {@link FlatArray} that reads the index file in blocks of consecutive
+ * checkpoints instead of one seek and read per checkpoint, which suits the
+ * binary searches and the sequential reads. Inserted checkpoints are
+ * accumulated in a buffer and written to disk in bulk, sequentially.
+ *
+ * The file format is the same as the one of {@link FlatArray}, so an index
+ * written by one can be restored by the other.
+ */
+public class BufferedFlatArray extends FlatArray {
+
+    /** Size in bytes of the buffer accumulating checkpoints before writing */
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    /** Size in bytes of the blocks of checkpoints read at once */
+    private static final int READ_BLOCK_SIZE = 1 << 16;
+
+    private final int fCheckpointSize;
+    private final ByteBuffer fWriteBuffer;
+
+    /** File offset where the next buffered checkpoints will be written */
+    private long fWritePosition;
+
+    /** Last block of checkpoints read from the file */
+    private final byte[] fReadBlock;
+    /** Rank of the first checkpoint of the read block */
+    private long fReadBlockRank = 0;
+    /** Number of checkpoints in the read block */
+    private int fReadBlockCount = 0;
+
+    /**
+     * Constructs a BufferedFlatArray for a given trace from scratch or from an
+     * existing file. When the array is created from scratch, it is populated
+     * by subsequent calls to {@link #insert}.
+     *
+     * @param file
+     *            the file to use as the persistent storage
+     * @param trace
+     *            the trace
+     */
+    public BufferedFlatArray(File file, ITmfPersistentlyIndexable trace) {
+        super(file, trace);
+
+        fCheckpointSize = getTrace().getCheckpointSize();
+        fWriteBuffer = ByteBuffer.allocate(Math.max(WRITE_BUFFER_SIZE - (WRITE_BUFFER_SIZE % fCheckpointSize), fCheckpointSize));
+        fReadBlock = new byte[Math.max(READ_BLOCK_SIZE - (READ_BLOCK_SIZE % fCheckpointSize), fCheckpointSize)];
+        fWritePosition = getHeader().getSize() + (long) fCheckpointSize * size();
+    }
+
+    /**
+     * Insert a checkpoint into the array. The checkpoint is only written to
+     * disk once enough checkpoints are accumulated, when it is read back or
+     * when the index is complete.
+     *
+     * @param checkpoint
+     *            the checkpoint to insert
+     */
+    @Override
+    public void insert(ITmfCheckpoint checkpoint) {
+        if (fWriteBuffer.remaining() < fCheckpointSize) {
+            flush();
+        }
+        int start = fWriteBuffer.position();
+        checkpoint.serialize(fWriteBuffer);
+        fWriteBuffer.position(start + fCheckpointSize);
+        ++getHeader().fSize;
+    }
+
+    /**
+     * Get a checkpoint from a rank
+     *
+     * @param rank
+     *            the rank to search
+     * @return the checkpoint that has been found or null if not found
+     */
+    @Override
+    public ITmfCheckpoint get(long rank) {
+        if (rank < 0 || rank >= size()) {
+            return null;
+        }
+        if (rank < fReadBlockRank || rank >= fReadBlockRank + fReadBlockCount) {
+            flush();
+            if (!readBlock(rank)) {
+                return null;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(fReadBlock, (int) (rank - fReadBlockRank) * fCheckpointSize, fCheckpointSize);
+        ITmfLocation location = getTrace().restoreLocation(buffer);
+        ITmfTimestamp timeStamp = new TmfTimestamp(buffer);
+        return new TmfCheckpoint(timeStamp, location, buffer);
+    }
+
+    /**
+     * Read the block of checkpoints holding a rank. The random access file is
+     * used rather than its channel, so that an interrupted thread does not
+     * close the file.
+     */
+    private boolean readBlock(long rank) {
+        int checkpointsPerBlock = fReadBlock.length / fCheckpointSize;
+        long first = rank - (rank % checkpointsPerBlock);
+        int count = (int) Math.min(checkpointsPerBlock, size() - first);
+        fReadBlockCount = 0;
+        try {
+            RandomAccessFile file = getRandomAccessFile();
+            file.seek(getHeader().getSize() + first * fCheckpointSize);
+            file.readFully(fReadBlock, 0, count * fCheckpointSize);
+        } catch (IOException e) {
+            Activator.logError(MessageFormat.format(Messages.FlatArray_IOErrorReading, getFile()), e);
+            return false;
+        }
+        fReadBlockRank = first;
+        fReadBlockCount = count;
+        return true;
+    }
+
+    /**
+     * Write the buffered checkpoints to disk
+     */
+    private void flush() {
+        if (fWriteBuffer.position() == 0) {
+            return;
+        }
+        try {
+            RandomAccessFile file = getRandomAccessFile();
+            file.seek(fWritePosition);
+            file.write(fWriteBuffer.array(), 0, fWriteBuffer.position());
+            fWritePosition += fWriteBuffer.position();
+        } catch (IOException e) {
+            Activator.logError(MessageFormat.format(Messages.FlatArray_IOErrorWriting, getFile()), e);
+        }
+        fWriteBuffer.clear();
+    }
+
+    @Override
+    public void setIndexComplete() {
+        flush();
+        super.setIndexComplete();
+    }
+
+    @Override
+    public void dispose() {
+        /* This can be called by the super constructor if the restore fails */
+        if (fWriteBuffer != null && getRandomAccessFile() != null) {
+            flush();
+        }
+        fReadBlockCount = 0;
+        super.dispose();
+    }
+}
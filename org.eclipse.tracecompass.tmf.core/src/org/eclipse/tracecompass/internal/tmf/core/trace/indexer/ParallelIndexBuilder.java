@@ -0,0 +1,476 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.trace.indexer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfChunkedIndexable;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfParallelIndexable;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpointIndex;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+
+/**
+ * Builds the checkpoints of a {@link ITmfParallelIndexable} or
+ * {@link ITmfChunkedIndexable} trace by reading its ranges concurrently. The
+ * ranges are delimited by time stamps in the first case, and by locations in
+ * the second.
+ *
+ * The rank of the first event of a range is only known once all the previous
+ * ranges are read, so the build is done in two passes:
+ * <ol>
+ * <li>Every range is read completely and a local checkpoint is recorded
+ * every <i>step</i> events, counting from the start of the range. The step
+ * is a fraction of the interval.</li>
+ * <li>Once the range offsets are known, the checkpoints of a range are
+ * shifted by the same number of events <i>d</i> (less than the interval). Each
+ * one is found by seeking the closest local checkpoint before it and skipping
+ * the remaining events, less than the step. When a checkpoint falls on a
+ * local checkpoint, it is used as is.</li>
+ * </ol>
+ * Checkpoints are then inserted in rank order in the index.
+ *
+ * The workers stop reading once the build is cancelled or failed, without
+ * being interrupted, so that the trace files they share are not closed.
+ */
+public class ParallelIndexBuilder {
+
+    /** Number of ranges per thread, to balance uneven ranges */
+    private static final int RANGES_PER_THREAD = 4;
+
+    /** Number of local checkpoints per interval in the first pass */
+    private static final int STEPS_PER_INTERVAL = 8;
+
+    /** Time to wait for the workers to stop, in seconds */
+    private static final long SHUTDOWN_TIMEOUT = 60;
+
+    private final ITmfParallelIndexable fTimeSplitTrace;
+    private final ITmfChunkedIndexable fChunkedTrace;
+    private final ITmfCheckpointIndex fIndex;
+    private final Object fIndexLock;
+    private final int fInterval;
+    private final int fStep;
+    private final int fNbThreads;
+
+    /** Set when the build ends, to stop the workers still reading */
+    private volatile boolean fStopped = false;
+
+    private long fNbEvents = 0;
+    private ITmfTimestamp fStartTime = null;
+    private ITmfTimestamp fEndTime = null;
+
+    /**
+     * Listener notified as the checkpoints of each range are inserted
+     */
+    public interface IProgressListener {
+        /**
+         * A range was inserted in the index
+         *
+         * @param range
+         *            the time range covered by the inserted events so far
+         * @param nbEvents
+         *            the number of events inserted so far
+         */
+        void rangeIndexed(TmfTimeRange range, long nbEvents);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param trace
+     *            the trace to index
+     * @param index
+     *            the index receiving the checkpoints
+     * @param indexLock
+     *            the lock to hold when inserting checkpoints, shared with
+     *            anyone else inserting checkpoints in the index
+     * @param interval
+     *            the checkpoints interval
+     * @param nbThreads
+     *            the number of threads reading the trace
+     */
+    public ParallelIndexBuilder(ITmfParallelIndexable trace, ITmfCheckpointIndex index, Object indexLock, int interval, int nbThreads) {
+        this(trace, null, index, indexLock, interval, nbThreads);
+    }
+
+    /**
+     * Constructor for a trace split in chunks
+     *
+     * @param trace
+     *            the trace to index
+     * @param index
+     *            the index receiving the checkpoints
+     * @param indexLock
+     *            the lock to hold when inserting checkpoints, shared with
+     *            anyone else inserting checkpoints in the index
+     * @param interval
+     *            the checkpoints interval
+     * @param nbThreads
+     *            the number of threads reading the trace
+     */
+    public ParallelIndexBuilder(ITmfChunkedIndexable trace, ITmfCheckpointIndex index, Object indexLock, int interval, int nbThreads) {
+        this(null, trace, index, indexLock, interval, nbThreads);
+    }
+
+    private ParallelIndexBuilder(ITmfParallelIndexable timeSplitTrace, ITmfChunkedIndexable chunkedTrace,
+            ITmfCheckpointIndex index, Object indexLock, int interval, int nbThreads) {
+        fTimeSplitTrace = timeSplitTrace;
+        fChunkedTrace = chunkedTrace;
+        fIndex = index;
+        fIndexLock = indexLock;
+        fInterval = interval;
+        fStep = Math.max(1, interval / STEPS_PER_INTERVAL);
+        fNbThreads = Math.max(1, nbThreads);
+    }
+
+    /**
+     * Build the checkpoints
+     *
+     * @param monitor
+     *            the progress monitor, used to cancel the build
+     * @param listener
+     *            the listener notified of the progress
+     * @return true if the whole trace was indexed, false if the trace cannot
+     *         be split, the build failed or it was cancelled
+     */
+    public boolean build(IProgressMonitor monitor, IProgressListener listener) {
+        List<Range> ranges = getRanges(fNbThreads * RANGES_PER_THREAD);
+        if (ranges.size() < 2) {
+            return false;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(fNbThreads, ranges.size()));
+        try {
+            /* First pass, all the ranges are read concurrently */
+            List<Future<RangeScan>> scans = new ArrayList<>();
+            for (Range range : ranges) {
+                scans.add(executor.submit(new RangeScanner(range, monitor)));
+            }
+
+            /* Second pass, once the offset of a range is known */
+            List<Future<List<ITmfCheckpoint>>> alignedCheckpoints = new ArrayList<>();
+            long offset = 0;
+            for (int i = 0; i < scans.size(); i++) {
+                RangeScan scan = scans.get(i).get();
+                if (monitor.isCanceled()) {
+                    return false;
+                }
+                int shift = (int) ((fInterval - (offset % fInterval)) % fInterval);
+                alignedCheckpoints.add(executor.submit(new RangeAligner(ranges.get(i), scan, shift, monitor)));
+                offset += scan.fNbEvents;
+                updateTimeRange(scan);
+            }
+
+            /* Insert the checkpoints in rank order */
+            long position = 0;
+            long nbEvents = 0;
+            for (int i = 0; i < alignedCheckpoints.size(); i++) {
+                List<ITmfCheckpoint> checkpoints = alignedCheckpoints.get(i).get();
+                if (monitor.isCanceled()) {
+                    return false;
+                }
+                synchronized (fIndexLock) {
+                    for (ITmfCheckpoint checkpoint : checkpoints) {
+                        if (fIndex.size() == position) {
+                            fIndex.insert(new TmfCheckpoint(checkpoint.getTimestamp(), checkpoint.getLocation(), position));
+                        }
+                        position++;
+                    }
+                }
+                nbEvents += scans.get(i).get().fNbEvents;
+                ITmfTimestamp end = scans.get(i).get().fEndTime;
+                if (fStartTime != null && end != null) {
+                    listener.rangeIndexed(new TmfTimeRange(fStartTime, end), nbEvents);
+                }
+            }
+            fNbEvents = nbEvents;
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        } catch (ExecutionException e) {
+            Activator.logError("Error building the index of " + (fTimeSplitTrace != null ? fTimeSplitTrace : fChunkedTrace), e.getCause()); //$NON-NLS-1$
+            return false;
+        } finally {
+            fStopped = true;
+            executor.shutdown();
+            awaitTermination(executor);
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                Activator.logWarning("Timeout waiting for the index builders to stop"); //$NON-NLS-1$
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean isStopped(IProgressMonitor monitor) {
+        return fStopped || monitor.isCanceled();
+    }
+
+    private List<Range> getRanges(int maxRanges) {
+        List<Range> ranges = new ArrayList<>();
+        if (fTimeSplitTrace != null) {
+            List<ITmfTimestamp> starts = fTimeSplitTrace.getIndexingRangeStarts(maxRanges);
+            for (int i = 0; i < starts.size(); i++) {
+                ITmfTimestamp end = (i + 1 < starts.size()) ? starts.get(i + 1) : null;
+                ranges.add(new TimestampRange(fTimeSplitTrace, starts.get(i), end));
+            }
+        } else if (fChunkedTrace != null) {
+            List<ITmfLocation> starts = fChunkedTrace.getIndexingChunkStarts(maxRanges);
+            for (int i = 0; i < starts.size(); i++) {
+                ITmfLocation end = (i + 1 < starts.size()) ? starts.get(i + 1) : null;
+                ranges.add(new LocationRange(fChunkedTrace, starts.get(i), end));
+            }
+        }
+        return ranges;
+    }
+
+    private void updateTimeRange(RangeScan scan) {
+        if (scan.fStartTime != null && (fStartTime == null || scan.fStartTime.compareTo(fStartTime) < 0)) {
+            fStartTime = scan.fStartTime;
+        }
+        if (scan.fEndTime != null && (fEndTime == null || scan.fEndTime.compareTo(fEndTime) > 0)) {
+            fEndTime = scan.fEndTime;
+        }
+    }
+
+    /**
+     * Get the total number of events of the trace, once it is indexed
+     *
+     * @return the number of events
+     */
+    public long getNbEvents() {
+        return fNbEvents;
+    }
+
+    /**
+     * Get the time range of the trace, once it is indexed
+     *
+     * @return the time range, or null if the trace is empty
+     */
+    public TmfTimeRange getTimeRange() {
+        if (fStartTime == null || fEndTime == null) {
+            return null;
+        }
+        return new TmfTimeRange(fStartTime, fEndTime);
+    }
+
+    // ------------------------------------------------------------------------
+    // Ranges
+    // ------------------------------------------------------------------------
+
+    /**
+     * A range of the trace, read through its own contexts
+     */
+    private abstract static class Range {
+
+        /**
+         * @return a new context at the start of the range
+         */
+        public abstract ITmfContext createContext();
+
+        /**
+         * @param location
+         *            a location obtained from a context of the range
+         * @return a new context at that location
+         */
+        public abstract ITmfContext createContext(ITmfLocation location);
+
+        /**
+         * @param context
+         *            a context of the range
+         * @return the next event of the range, or null at its end
+         */
+        public abstract ITmfEvent readEvent(ITmfContext context);
+    }
+
+    /**
+     * A range of the events with a time stamp in [start, end)
+     */
+    private static class TimestampRange extends Range {
+
+        private final ITmfParallelIndexable fTrace;
+        private final ITmfTimestamp fStart;
+        private final ITmfTimestamp fEnd;
+
+        public TimestampRange(ITmfParallelIndexable trace, ITmfTimestamp start, ITmfTimestamp end) {
+            fTrace = trace;
+            fStart = start;
+            fEnd = end;
+        }
+
+        @Override
+        public ITmfContext createContext() {
+            return fTrace.createIndexingContext(fStart);
+        }
+
+        @Override
+        public ITmfContext createContext(ITmfLocation location) {
+            return fTrace.createIndexingContext(location);
+        }
+
+        @Override
+        public ITmfEvent readEvent(ITmfContext context) {
+            ITmfEvent event = fTrace.readIndexingEvent(context);
+            if (event != null && fEnd != null && event.getTimestamp().compareTo(fEnd) >= 0) {
+                return null;
+            }
+            return event;
+        }
+    }
+
+    /**
+     * A range of the events from the start location of a chunk to the start
+     * location of the next one
+     */
+    private static class LocationRange extends Range {
+
+        private final ITmfChunkedIndexable fTrace;
+        private final ITmfLocation fStart;
+        private final ITmfLocation fEnd;
+
+        public LocationRange(ITmfChunkedIndexable trace, ITmfLocation start, ITmfLocation end) {
+            fTrace = trace;
+            fStart = start;
+            fEnd = end;
+        }
+
+        @Override
+        public ITmfContext createContext() {
+            return fTrace.createIndexingContext(fStart, fEnd);
+        }
+
+        @Override
+        public ITmfContext createContext(ITmfLocation location) {
+            return fTrace.createIndexingContext(location, fEnd);
+        }
+
+        @Override
+        public ITmfEvent readEvent(ITmfContext context) {
+            return fTrace.readIndexingEvent(context);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Range scanning
+    // ------------------------------------------------------------------------
+
+    /**
+     * Result of the first pass on a range
+     */
+    private static class RangeScan {
+        /** Checkpoint every fStep events, from the start of the range */
+        private final List<ITmfCheckpoint> fLocalCheckpoints = new ArrayList<>();
+        private long fNbEvents = 0;
+        private ITmfTimestamp fStartTime = null;
+        private ITmfTimestamp fEndTime = null;
+    }
+
+    private class RangeScanner implements Callable<RangeScan> {
+
+        private final Range fRange;
+        private final IProgressMonitor fMonitor;
+
+        public RangeScanner(Range range, IProgressMonitor monitor) {
+            fRange = range;
+            fMonitor = monitor;
+        }
+
+        @Override
+        public RangeScan call() {
+            RangeScan scan = new RangeScan();
+            ITmfContext context = fRange.createContext();
+            try {
+                while (!isStopped(fMonitor)) {
+                    ITmfLocation location = context.getLocation();
+                    ITmfEvent event = fRange.readEvent(context);
+                    if (event == null) {
+                        break;
+                    }
+                    ITmfTimestamp timestamp = event.getTimestamp();
+                    if (scan.fNbEvents % fStep == 0) {
+                        scan.fLocalCheckpoints.add(new TmfCheckpoint(timestamp, location, 0));
+                    }
+                    if (scan.fStartTime == null || timestamp.compareTo(scan.fStartTime) < 0) {
+                        scan.fStartTime = timestamp;
+                    }
+                    if (scan.fEndTime == null || timestamp.compareTo(scan.fEndTime) > 0) {
+                        scan.fEndTime = timestamp;
+                    }
+                    scan.fNbEvents++;
+                }
+            } finally {
+                context.dispose();
+            }
+            return scan;
+        }
+    }
+
+    private class RangeAligner implements Callable<List<ITmfCheckpoint>> {
+
+        private final Range fRange;
+        private final RangeScan fScan;
+        private final int fShift;
+        private final IProgressMonitor fMonitor;
+
+        public RangeAligner(Range range, RangeScan scan, int shift, IProgressMonitor monitor) {
+            fRange = range;
+            fScan = scan;
+            fShift = shift;
+            fMonitor = monitor;
+        }
+
+        @Override
+        public List<ITmfCheckpoint> call() {
+            List<ITmfCheckpoint> checkpoints = new ArrayList<>();
+            for (long rank = fShift; rank < fScan.fNbEvents && !isStopped(fMonitor); rank += fInterval) {
+                ITmfCheckpoint localCheckpoint = fScan.fLocalCheckpoints.get((int) (rank / fStep));
+                int skip = (int) (rank % fStep);
+                if (skip == 0) {
+                    checkpoints.add(localCheckpoint);
+                    continue;
+                }
+                ITmfContext context = fRange.createContext(localCheckpoint.getLocation());
+                try {
+                    for (int j = 0; j < skip; j++) {
+                        fRange.readEvent(context);
+                    }
+                    ITmfLocation location = context.getLocation();
+                    ITmfEvent event = fRange.readEvent(context);
+                    if (event == null) {
+                        break;
+                    }
+                    checkpoints.add(new TmfCheckpoint(event.getTimestamp(), location, 0));
+                } finally {
+                    context.dispose();
+                }
+            }
+            return checkpoints;
+        }
+    }
+}
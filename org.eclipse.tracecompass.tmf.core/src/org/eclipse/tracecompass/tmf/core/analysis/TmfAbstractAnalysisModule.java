@@ -17,6 +17,7 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -54,6 +55,9 @@ import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 @NonNullByDefault
 public abstract class TmfAbstractAnalysisModule extends TmfComponent implements IAnalysisModule {
 
+    /** Time to wait for a dependent analysis before checking the others, in ms */
+    private static final long DEPENDENT_WAIT_TIMEOUT = 100;
+
     private @Nullable String fId;
     private boolean fAutomatic = false, fStarted = false;
     private volatile @Nullable ITmfTrace fTrace;
@@ -285,6 +289,73 @@ public abstract class TmfAbstractAnalysisModule extends TmfComponent implements
         return checkNotNull(Collections.EMPTY_LIST);
     }
 
+    /**
+     * Get the maximum number of dependent analyses that can run at the same
+     * time. With a limit, the dependent analyses are scheduled from the job of
+     * this analysis, before it executes, as the previous ones complete. The
+     * default is no limit: they are all scheduled with this analysis.
+     *
+     * @return The maximum number of dependent analyses running at the same
+     *         time, or 0 for no limit
+     */
+    protected int getDependentAnalysesParallelism() {
+        return 0;
+    }
+
+    /**
+     * Get the memory the dependent analyses can use when their parallelism is
+     * limited. No more dependent analysis is started while the used memory
+     * is over this budget, unless none is running.
+     *
+     * @return The memory budget in bytes, or 0 for no budget
+     */
+    protected long getDependentAnalysesMemoryBudget() {
+        return 0;
+    }
+
+    /*
+     * Schedule the dependent analyses, keeping at most "parallelism" of them
+     * running at the same time. Returns false if it was cancelled.
+     */
+    private boolean scheduleDependentAnalyses(Iterable<IAnalysisModule> modules, int parallelism, IProgressMonitor monitor) {
+        long memoryBudget = getDependentAnalysesMemoryBudget();
+        List<TmfAbstractAnalysisModule> running = new ArrayList<>();
+        try {
+            for (IAnalysisModule module : modules) {
+                if (!(module instanceof TmfAbstractAnalysisModule)) {
+                    /* We cannot know when it completes */
+                    module.schedule();
+                    continue;
+                }
+                while (!running.isEmpty() && (running.size() >= parallelism || isOverBudget(memoryBudget))) {
+                    if (monitor.isCanceled()) {
+                        return false;
+                    }
+                    running.get(0).fFinishedLatch.await(DEPENDENT_WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+                    Iterator<TmfAbstractAnalysisModule> iterator = running.iterator();
+                    while (iterator.hasNext()) {
+                        if (iterator.next().fFinishedLatch.getCount() == 0) {
+                            iterator.remove();
+                        }
+                    }
+                }
+                module.schedule();
+                running.add((TmfAbstractAnalysisModule) module);
+            }
+        } catch (InterruptedException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isOverBudget(long memoryBudget) {
+        if (memoryBudget <= 0) {
+            return false;
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return (runtime.totalMemory() - runtime.freeMemory() > memoryBudget);
+    }
+
     private void execute(final ITmfTrace trace) {
         /*
          * TODO: The analysis in a job should be done at the analysis manager
@@ -309,8 +380,11 @@ public abstract class TmfAbstractAnalysisModule extends TmfComponent implements
 
         /* Execute dependent analyses before creating the job for this one */
         final Iterable<IAnalysisModule> dependentAnalyses = getDependentAnalyses();
-        for (IAnalysisModule module : dependentAnalyses) {
-            module.schedule();
+        final int parallelism = getDependentAnalysesParallelism();
+        if (parallelism <= 0) {
+            for (IAnalysisModule module : dependentAnalyses) {
+                module.schedule();
+            }
         }
 
         /*
@@ -328,7 +402,11 @@ public abstract class TmfAbstractAnalysisModule extends TmfComponent implements
                     mon.beginTask("", IProgressMonitor.UNKNOWN); //$NON-NLS-1$
                     broadcast(new TmfStartAnalysisSignal(TmfAbstractAnalysisModule.this, TmfAbstractAnalysisModule.this));
                     TmfCoreTracer.traceAnalysis(TmfAbstractAnalysisModule.this.getId(), TmfAbstractAnalysisModule.this.getTrace(), "started"); //$NON-NLS-1$
-                    fAnalysisCancelled = !executeAnalysis(mon);
+                    if (parallelism > 0 && !scheduleDependentAnalyses(dependentAnalyses, parallelism, mon)) {
+                        fAnalysisCancelled = true;
+                    } else {
+                        fAnalysisCancelled = !executeAnalysis(mon);
+                    }
                     for (IAnalysisModule module : dependentAnalyses) {
                         module.waitForCompletion(mon);
                     }
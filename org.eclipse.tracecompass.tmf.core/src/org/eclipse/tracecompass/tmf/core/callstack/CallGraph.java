@@ -0,0 +1,803 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.callstack;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+
+/**
+ * Calling-context tree of the functions of a call stack analysis, with the
+ * number of calls, the inclusive time and the self time of each node. A node
+ * is a function called from a given path of callers, all threads together.
+ * This is the data of flame graphs and of per-function statistics.
+ *
+ * The tree is built in one pass along with the call stack state system, by
+ * {@link CallStackStateProvider}, and saved next to its history. The nodes
+ * are kept in arrays indexed by node number, the root being node 0.
+ *
+ * The statistics of a time range are computed from checkpoints taken while
+ * the tree is built: each checkpoint keeps the changes of the nodes since the
+ * previous one. A call is counted in the checkpoint where it returns, so the
+ * statistics of a range are exact for the calls returning between its first
+ * and last checkpoints. The number of checkpoints is bounded, so the larger
+ * the trace, the coarser the ranges, unless the builder is given a higher
+ * bound.
+ */
+public final class CallGraph {
+
+    /** Extension of the call graph file, next to the history file */
+    private static final String EXTENSION = ".cct"; //$NON-NLS-1$
+
+    private static final int MAGIC = 0x0CC7C0DE;
+    private static final int VERSION = 1;
+
+    /** Node number of the root of the tree */
+    public static final int ROOT = 0;
+
+    private final ITmfStateValue[] fFunctions;
+    private final int[] fParents;
+    private final int[] fFunctionIds;
+    private final long[] fCalls;
+    private final long[] fInclusive;
+    private final long[] fSelf;
+
+    /* Children of each node, node i's are fChildren[fChildStart[i]..fChildStart[i+1]) */
+    private final int[] fChildStart;
+    private final int[] fChildren;
+
+    private final Checkpoint[] fCheckpoints;
+
+    private CallGraph(ITmfStateValue[] functions, int[] parents, int[] functionIds,
+            long[] calls, long[] inclusive, long[] self, Checkpoint[] checkpoints) {
+        fFunctions = functions;
+        fParents = parents;
+        fFunctionIds = functionIds;
+        fCalls = calls;
+        fInclusive = inclusive;
+        fSelf = self;
+        fCheckpoints = checkpoints;
+
+        int nbNodes = parents.length;
+        fChildStart = new int[nbNodes + 1];
+        for (int i = 1; i < nbNodes; i++) {
+            fChildStart[parents[i] + 1]++;
+        }
+        for (int i = 0; i < nbNodes; i++) {
+            fChildStart[i + 1] += fChildStart[i];
+        }
+        fChildren = new int[Math.max(0, nbNodes - 1)];
+        int[] next = Arrays.copyOf(fChildStart, nbNodes);
+        for (int i = 1; i < nbNodes; i++) {
+            fChildren[next[parents[i]]++] = i;
+        }
+    }
+
+    /*
+     * A graph with the same nodes and other values, without checkpoints
+     */
+    private CallGraph(CallGraph graph, long[] calls, long[] inclusive, long[] self) {
+        fFunctions = graph.fFunctions;
+        fParents = graph.fParents;
+        fFunctionIds = graph.fFunctionIds;
+        fChildStart = graph.fChildStart;
+        fChildren = graph.fChildren;
+        fCalls = calls;
+        fInclusive = inclusive;
+        fSelf = self;
+        fCheckpoints = new Checkpoint[0];
+    }
+
+    /**
+     * Get the file where the call graph of a call stack state system is saved
+     *
+     * @param trace
+     *            The trace
+     * @param ssid
+     *            The ID of the call stack state system
+     * @return The call graph file
+     */
+    public static File getFile(ITmfTrace trace, String ssid) {
+        return new File(TmfTraceManager.getSupplementaryFileDir(trace) + ssid + EXTENSION);
+    }
+
+    // ------------------------------------------------------------------------
+    // Nodes
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the number of nodes, including the root
+     *
+     * @return The number of nodes
+     */
+    public int getNbNodes() {
+        return fParents.length;
+    }
+
+    /**
+     * Get the parent of a node
+     *
+     * @param node
+     *            The node
+     * @return The parent node, or -1 for the root
+     */
+    public int getParent(int node) {
+        return fParents[node];
+    }
+
+    /**
+     * Get the children of a node
+     *
+     * @param node
+     *            The node
+     * @return The child nodes
+     */
+    public int[] getChildren(int node) {
+        return Arrays.copyOfRange(fChildren, fChildStart[node], fChildStart[node + 1]);
+    }
+
+    /**
+     * Get the function of a node
+     *
+     * @param node
+     *            The node
+     * @return The function ID, or -1 for the root
+     */
+    public int getFunctionId(int node) {
+        return fFunctionIds[node];
+    }
+
+    /**
+     * Get the number of calls of a node
+     *
+     * @param node
+     *            The node
+     * @return The number of calls
+     */
+    public long getCalls(int node) {
+        return fCalls[node];
+    }
+
+    /**
+     * Get the time spent in the calls of a node, including the functions
+     * they called
+     *
+     * @param node
+     *            The node
+     * @return The inclusive time
+     */
+    public long getInclusiveTime(int node) {
+        return fInclusive[node];
+    }
+
+    /**
+     * Get the time spent in the calls of a node, excluding the functions they
+     * called
+     *
+     * @param node
+     *            The node
+     * @return The self time
+     */
+    public long getSelfTime(int node) {
+        return fSelf[node];
+    }
+
+    // ------------------------------------------------------------------------
+    // Functions
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the number of distinct functions
+     *
+     * @return The number of functions
+     */
+    public int getNbFunctions() {
+        return fFunctions.length;
+    }
+
+    /**
+     * Get a function, as it was pushed on the call stack
+     *
+     * @param functionId
+     *            The function ID
+     * @return The value identifying the function
+     */
+    public ITmfStateValue getFunction(int functionId) {
+        return fFunctions[functionId];
+    }
+
+    /**
+     * Get the number of calls of each function
+     *
+     * @return The number of calls, indexed by function ID
+     */
+    public long[] getCallsPerFunction() {
+        long[] calls = new long[fFunctions.length];
+        for (int i = 1; i < fParents.length; i++) {
+            calls[fFunctionIds[i]] += fCalls[i];
+        }
+        return calls;
+    }
+
+    /**
+     * Get the self time of each function
+     *
+     * @return The self time, indexed by function ID
+     */
+    public long[] getSelfTimePerFunction() {
+        long[] self = new long[fFunctions.length];
+        for (int i = 1; i < fParents.length; i++) {
+            self[fFunctionIds[i]] += fSelf[i];
+        }
+        return self;
+    }
+
+    /**
+     * Get the inclusive time of each function. The time of recursive calls
+     * is only counted once, in the outermost call.
+     *
+     * @return The inclusive time, indexed by function ID
+     */
+    public long[] getInclusiveTimePerFunction() {
+        long[] inclusive = new long[fFunctions.length];
+        for (int i = 1; i < fParents.length; i++) {
+            if (!hasAncestorFunction(i, fFunctionIds[i])) {
+                inclusive[fFunctionIds[i]] += fInclusive[i];
+            }
+        }
+        return inclusive;
+    }
+
+    private boolean hasAncestorFunction(int node, int functionId) {
+        for (int parent = fParents[node]; parent > ROOT; parent = fParents[parent]) {
+            if (fFunctionIds[parent] == functionId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ------------------------------------------------------------------------
+    // Time ranges
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the call graph of the calls returning in a time range. The range is
+     * rounded outwards to the checkpoints taken while building the graph.
+     *
+     * @param start
+     *            The start of the time range
+     * @param end
+     *            The end of the time range
+     * @return A call graph with the same nodes, whose values are those of the
+     *         time range
+     */
+    public CallGraph getRange(long start, long end) {
+        long[] calls = new long[fParents.length];
+        long[] inclusive = new long[fParents.length];
+        long[] self = new long[fParents.length];
+        long previousEnd = Long.MIN_VALUE;
+        for (Checkpoint checkpoint : fCheckpoints) {
+            /* The checkpoint covers the calls returning in (previousEnd, its time] */
+            if (checkpoint.fTime >= start && previousEnd < end) {
+                for (int i = 0; i < checkpoint.fNodes.length; i++) {
+                    int node = checkpoint.fNodes[i];
+                    calls[node] += checkpoint.fCalls[i];
+                    inclusive[node] += checkpoint.fInclusive[i];
+                    self[node] += checkpoint.fSelf[i];
+                }
+            }
+            previousEnd = checkpoint.fTime;
+        }
+        return new CallGraph(this, calls, inclusive, self);
+    }
+
+    /**
+     * Get the times of the checkpoints, to which the time ranges are rounded
+     *
+     * @return The times of the checkpoints, in ascending order
+     */
+    public long[] getCheckpointTimes() {
+        long[] times = new long[fCheckpoints.length];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = fCheckpoints[i].fTime;
+        }
+        return times;
+    }
+
+    /**
+     * Changes of the nodes since the previous checkpoint
+     */
+    private static class Checkpoint {
+        private final long fTime;
+        private final int[] fNodes;
+        private final long[] fCalls;
+        private final long[] fInclusive;
+        private final long[] fSelf;
+
+        public Checkpoint(long time, int[] nodes, long[] calls, long[] inclusive, long[] self) {
+            fTime = time;
+            fNodes = nodes;
+            fCalls = calls;
+            fInclusive = inclusive;
+            fSelf = self;
+        }
+
+        /*
+         * Merge with the next checkpoint
+         */
+        public Checkpoint merge(Checkpoint next, int nbNodes) {
+            long[] calls = new long[nbNodes];
+            long[] inclusive = new long[nbNodes];
+            long[] self = new long[nbNodes];
+            boolean[] changed = new boolean[nbNodes];
+            int count = 0;
+            for (Checkpoint checkpoint : new Checkpoint[] { this, next }) {
+                for (int i = 0; i < checkpoint.fNodes.length; i++) {
+                    int node = checkpoint.fNodes[i];
+                    if (!changed[node]) {
+                        changed[node] = true;
+                        count++;
+                    }
+                    calls[node] += checkpoint.fCalls[i];
+                    inclusive[node] += checkpoint.fInclusive[i];
+                    self[node] += checkpoint.fSelf[i];
+                }
+            }
+            int[] nodes = new int[count];
+            long[] mergedCalls = new long[count];
+            long[] mergedInclusive = new long[count];
+            long[] mergedSelf = new long[count];
+            int j = 0;
+            for (int node = 0; node < nbNodes; node++) {
+                if (changed[node]) {
+                    nodes[j] = node;
+                    mergedCalls[j] = calls[node];
+                    mergedInclusive[j] = inclusive[node];
+                    mergedSelf[j] = self[node];
+                    j++;
+                }
+            }
+            return new Checkpoint(next.fTime, nodes, mergedCalls, mergedInclusive, mergedSelf);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Building
+    // ------------------------------------------------------------------------
+
+    /**
+     * Builds a {@link CallGraph} from the function entries and exits of the
+     * call stacks, in time order.
+     */
+    public static class Builder {
+
+        /** Default maximum number of checkpoints */
+        public static final int DEFAULT_MAX_CHECKPOINTS = 64;
+
+        private static final int INITIAL_EXITS_PER_CHECKPOINT = 4096;
+
+        private final int fMaxCheckpoints;
+
+        private final Map<ITmfStateValue, Integer> fFunctionIdMap = new HashMap<>();
+        private final List<ITmfStateValue> fFunctionList = new ArrayList<>();
+        /* Node of each (parent, function) pair */
+        private final Map<Long, Integer> fChildMap = new HashMap<>();
+        private final Map<Integer, Stack> fStacks = new HashMap<>();
+
+        private int[] fBuilderParents = new int[1024];
+        private int[] fBuilderFunctionIds = new int[1024];
+        private long[] fBuilderCalls = new long[1024];
+        private long[] fBuilderInclusive = new long[1024];
+        private long[] fBuilderSelf = new long[1024];
+        private int fNbNodes;
+
+        /* Values at the last checkpoint, and nodes changed since */
+        private long[] fCheckpointCalls = new long[1024];
+        private long[] fCheckpointInclusive = new long[1024];
+        private long[] fCheckpointSelf = new long[1024];
+        private boolean[] fChanged = new boolean[1024];
+        private int[] fChangedNodes = new int[1024];
+        private int fNbChanged = 0;
+
+        private final List<Checkpoint> fBuilderCheckpoints = new ArrayList<>();
+        private long fExitsPerCheckpoint = INITIAL_EXITS_PER_CHECKPOINT;
+        private long fExitsSinceCheckpoint = 0;
+
+        private long fLastTime = Long.MIN_VALUE;
+
+        /**
+         * Constructor, with the default maximum number of checkpoints
+         */
+        public Builder() {
+            this(DEFAULT_MAX_CHECKPOINTS);
+        }
+
+        /**
+         * Constructor
+         *
+         * @param maxCheckpoints
+         *            The maximum number of checkpoints. When there are more,
+         *            they are merged two by two, so the time ranges are
+         *            rounded to checkpoints twice as far apart.
+         */
+        public Builder(int maxCheckpoints) {
+            if (maxCheckpoints <= 0) {
+                throw new IllegalArgumentException("The maximum number of checkpoints must be positive"); //$NON-NLS-1$
+            }
+            fMaxCheckpoints = maxCheckpoints;
+            fBuilderParents[ROOT] = -1;
+            fBuilderFunctionIds[ROOT] = -1;
+            fNbNodes = 1;
+        }
+
+        /**
+         * A function is entered
+         *
+         * @param stackId
+         *            The ID of the call stack, like its quark
+         * @param function
+         *            The value identifying the function
+         * @param time
+         *            The time of the entry
+         */
+        public void enter(int stackId, ITmfStateValue function, long time) {
+            fLastTime = Math.max(fLastTime, time);
+            Stack stack = fStacks.get(stackId);
+            if (stack == null) {
+                stack = new Stack();
+                fStacks.put(stackId, stack);
+            }
+            int parent = (stack.fDepth == 0 ? ROOT : stack.fNodes[stack.fDepth - 1]);
+            stack.push(getChild(parent, getFunctionId(function)), time);
+        }
+
+        /**
+         * The innermost function of a call stack returns
+         *
+         * @param stackId
+         *            The ID of the call stack
+         * @param time
+         *            The time of the exit
+         */
+        public void exit(int stackId, long time) {
+            fLastTime = Math.max(fLastTime, time);
+            Stack stack = fStacks.get(stackId);
+            if (stack == null || stack.fDepth == 0) {
+                return;
+            }
+            stack.fDepth--;
+            int depth = stack.fDepth;
+            int node = stack.fNodes[depth];
+            long duration = time - stack.fEntryTimes[depth];
+            fBuilderCalls[node]++;
+            fBuilderInclusive[node] += duration;
+            fBuilderSelf[node] += duration - stack.fChildTimes[depth];
+            markChanged(node);
+            if (depth > 0) {
+                stack.fChildTimes[depth - 1] += duration;
+            }
+
+            fExitsSinceCheckpoint++;
+            if (fExitsSinceCheckpoint >= fExitsPerCheckpoint) {
+                checkpoint(time);
+            }
+        }
+
+        /**
+         * Build the call graph. The functions still on the call stacks are
+         * considered to return at the time of the last entry or exit.
+         *
+         * @return The call graph
+         */
+        public CallGraph build() {
+            long endTime = fLastTime;
+            for (Map.Entry<Integer, Stack> entry : fStacks.entrySet()) {
+                while (entry.getValue().fDepth > 0) {
+                    exit(entry.getKey(), endTime);
+                }
+            }
+            checkpoint(endTime);
+            ITmfStateValue[] functions = fFunctionList.toArray(new ITmfStateValue[fFunctionList.size()]);
+            return new CallGraph(functions,
+                    Arrays.copyOf(fBuilderParents, fNbNodes),
+                    Arrays.copyOf(fBuilderFunctionIds, fNbNodes),
+                    Arrays.copyOf(fBuilderCalls, fNbNodes),
+                    Arrays.copyOf(fBuilderInclusive, fNbNodes),
+                    Arrays.copyOf(fBuilderSelf, fNbNodes),
+                    fBuilderCheckpoints.toArray(new Checkpoint[fBuilderCheckpoints.size()]));
+        }
+
+        private int getFunctionId(ITmfStateValue function) {
+            Integer id = fFunctionIdMap.get(function);
+            if (id == null) {
+                id = fFunctionList.size();
+                fFunctionList.add(function);
+                fFunctionIdMap.put(function, id);
+            }
+            return id;
+        }
+
+        private int getChild(int parent, int functionId) {
+            Long key = ((long) parent << 32) | functionId;
+            Integer child = fChildMap.get(key);
+            if (child != null) {
+                return child;
+            }
+            if (fNbNodes == fBuilderParents.length) {
+                int newLength = fNbNodes * 2;
+                fBuilderParents = Arrays.copyOf(fBuilderParents, newLength);
+                fBuilderFunctionIds = Arrays.copyOf(fBuilderFunctionIds, newLength);
+                fBuilderCalls = Arrays.copyOf(fBuilderCalls, newLength);
+                fBuilderInclusive = Arrays.copyOf(fBuilderInclusive, newLength);
+                fBuilderSelf = Arrays.copyOf(fBuilderSelf, newLength);
+                fCheckpointCalls = Arrays.copyOf(fCheckpointCalls, newLength);
+                fCheckpointInclusive = Arrays.copyOf(fCheckpointInclusive, newLength);
+                fCheckpointSelf = Arrays.copyOf(fCheckpointSelf, newLength);
+                fChanged = Arrays.copyOf(fChanged, newLength);
+                fChangedNodes = Arrays.copyOf(fChangedNodes, newLength);
+            }
+            int node = fNbNodes++;
+            fBuilderParents[node] = parent;
+            fBuilderFunctionIds[node] = functionId;
+            fChildMap.put(key, node);
+            return node;
+        }
+
+        private void markChanged(int node) {
+            if (!fChanged[node]) {
+                fChanged[node] = true;
+                fChangedNodes[fNbChanged++] = node;
+            }
+        }
+
+        private void checkpoint(long time) {
+            int count = fNbChanged;
+            int[] nodes = Arrays.copyOf(fChangedNodes, count);
+            Arrays.sort(nodes);
+            long[] calls = new long[count];
+            long[] inclusive = new long[count];
+            long[] self = new long[count];
+            for (int i = 0; i < count; i++) {
+                int node = nodes[i];
+                calls[i] = fBuilderCalls[node] - fCheckpointCalls[node];
+                inclusive[i] = fBuilderInclusive[node] - fCheckpointInclusive[node];
+                self[i] = fBuilderSelf[node] - fCheckpointSelf[node];
+                fCheckpointCalls[node] = fBuilderCalls[node];
+                fCheckpointInclusive[node] = fBuilderInclusive[node];
+                fCheckpointSelf[node] = fBuilderSelf[node];
+                fChanged[node] = false;
+            }
+            fNbChanged = 0;
+            fExitsSinceCheckpoint = 0;
+            fBuilderCheckpoints.add(new Checkpoint(time, nodes, calls, inclusive, self));
+
+            if (fBuilderCheckpoints.size() > fMaxCheckpoints) {
+                /* Merge the checkpoints two by two, and take half as many */
+                List<Checkpoint> merged = new ArrayList<>();
+                for (int i = 0; i < fBuilderCheckpoints.size(); i += 2) {
+                    Checkpoint checkpoint = fBuilderCheckpoints.get(i);
+                    if (i + 1 < fBuilderCheckpoints.size()) {
+                        checkpoint = checkpoint.merge(fBuilderCheckpoints.get(i + 1), fNbNodes);
+                    }
+                    merged.add(checkpoint);
+                }
+                fBuilderCheckpoints.clear();
+                fBuilderCheckpoints.addAll(merged);
+                fExitsPerCheckpoint *= 2;
+            }
+        }
+
+        /**
+         * The nodes of the functions on a call stack, with their entry times
+         * and the time spent in the functions they called
+         */
+        private static class Stack {
+            private int[] fNodes = new int[16];
+            private long[] fEntryTimes = new long[16];
+            private long[] fChildTimes = new long[16];
+            private int fDepth = 0;
+
+            public void push(int node, long time) {
+                if (fDepth == fNodes.length) {
+                    fNodes = Arrays.copyOf(fNodes, fDepth * 2);
+                    fEntryTimes = Arrays.copyOf(fEntryTimes, fDepth * 2);
+                    fChildTimes = Arrays.copyOf(fChildTimes, fDepth * 2);
+                }
+                fNodes[fDepth] = node;
+                fEntryTimes[fDepth] = time;
+                fChildTimes[fDepth] = 0;
+                fDepth++;
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Saving
+    // ------------------------------------------------------------------------
+
+    /**
+     * Save the call graph to a file
+     *
+     * @param file
+     *            The file
+     * @throws IOException
+     *             If the file cannot be written
+     */
+    public void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(fFunctions.length);
+            for (ITmfStateValue function : fFunctions) {
+                writeValue(out, function);
+            }
+            int nbNodes = fParents.length;
+            out.writeInt(nbNodes);
+            for (int i = 0; i < nbNodes; i++) {
+                out.writeInt(fParents[i]);
+                out.writeInt(fFunctionIds[i]);
+                out.writeLong(fCalls[i]);
+                out.writeLong(fInclusive[i]);
+                out.writeLong(fSelf[i]);
+            }
+            out.writeInt(fCheckpoints.length);
+            for (Checkpoint checkpoint : fCheckpoints) {
+                out.writeLong(checkpoint.fTime);
+                out.writeInt(checkpoint.fNodes.length);
+                for (int i = 0; i < checkpoint.fNodes.length; i++) {
+                    out.writeInt(checkpoint.fNodes[i]);
+                    out.writeLong(checkpoint.fCalls[i]);
+                    out.writeLong(checkpoint.fInclusive[i]);
+                    out.writeLong(checkpoint.fSelf[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read a call graph saved with {@link #write(File)}
+     *
+     * @param file
+     *            The file
+     * @return The call graph
+     * @throws IOException
+     *             If the file cannot be read or is not a call graph
+     */
+    public static CallGraph read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a call graph file: " + file); //$NON-NLS-1$
+            }
+            ITmfStateValue[] functions = new ITmfStateValue[in.readInt()];
+            for (int i = 0; i < functions.length; i++) {
+                functions[i] = readValue(in);
+            }
+            int nbNodes = in.readInt();
+            int[] parents = new int[nbNodes];
+            int[] functionIds = new int[nbNodes];
+            long[] calls = new long[nbNodes];
+            long[] inclusive = new long[nbNodes];
+            long[] self = new long[nbNodes];
+            for (int i = 0; i < nbNodes; i++) {
+                parents[i] = in.readInt();
+                functionIds[i] = in.readInt();
+                calls[i] = in.readLong();
+                inclusive[i] = in.readLong();
+                self[i] = in.readLong();
+                if ((i > ROOT && (parents[i] < 0 || parents[i] >= i)) || functionIds[i] >= functions.length) {
+                    throw new IOException("Corrupted call graph file: " + file); //$NON-NLS-1$
+                }
+            }
+            Checkpoint[] checkpoints = new Checkpoint[in.readInt()];
+            for (int i = 0; i < checkpoints.length; i++) {
+                long time = in.readLong();
+                int count = in.readInt();
+                int[] nodes = new int[count];
+                long[] checkpointCalls = new long[count];
+                long[] checkpointInclusive = new long[count];
+                long[] checkpointSelf = new long[count];
+                for (int j = 0; j < count; j++) {
+                    nodes[j] = in.readInt();
+                    checkpointCalls[j] = in.readLong();
+                    checkpointInclusive[j] = in.readLong();
+                    checkpointSelf[j] = in.readLong();
+                    if (nodes[j] < 0 || nodes[j] >= nbNodes) {
+                        throw new IOException("Corrupted call graph file: " + file); //$NON-NLS-1$
+                    }
+                }
+                checkpoints[i] = new Checkpoint(time, nodes, checkpointCalls, checkpointInclusive, checkpointSelf);
+            }
+            return new CallGraph(functions, parents, functionIds, calls, inclusive, self, checkpoints);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, ITmfStateValue value) throws IOException {
+        switch (value.getType()) {
+        case INTEGER:
+            out.writeByte(0);
+            out.writeInt(value.unboxInt());
+            break;
+        case LONG:
+            out.writeByte(1);
+            out.writeLong(value.unboxLong());
+            break;
+        case DOUBLE:
+            out.writeByte(2);
+            out.writeDouble(value.unboxDouble());
+            break;
+        case STRING:
+            out.writeByte(3);
+            out.writeUTF(value.unboxStr());
+            break;
+        case NULL:
+        default:
+            out.writeByte(4);
+            break;
+        }
+    }
+
+    private static ITmfStateValue readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+        case 0:
+            return TmfStateValue.newValueInt(in.readInt());
+        case 1:
+            return TmfStateValue.newValueLong(in.readLong());
+        case 2:
+            return TmfStateValue.newValueDouble(in.readDouble());
+        case 3:
+            return TmfStateValue.newValueString(in.readUTF());
+        case 4:
+            return TmfStateValue.nullValue();
+        default:
+            throw new IOException("Unknown value type: " + type); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Get the call graph of a call stack state system, if it was saved
+     *
+     * @param trace
+     *            The trace
+     * @param ssid
+     *            The ID of the call stack state system
+     * @return The call graph, or null if there is none or it cannot be read
+     */
+    public static @Nullable CallGraph read(ITmfTrace trace, String ssid) {
+        File file = getFile(trace, ssid);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return read(file);
+        } catch (IOException e) {
+            Activator.logWarning("Error reading the call graph " + file, e); //$NON-NLS-1$
+            return null;
+        }
+    }
+}
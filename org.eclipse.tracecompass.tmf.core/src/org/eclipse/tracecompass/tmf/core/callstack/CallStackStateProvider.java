@@ -14,9 +14,14 @@ package org.eclipse.tracecompass.tmf.core.callstack;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.io.File;
+import java.io.IOException;
+
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partial.PartialStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
@@ -25,7 +30,6 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.statesystem.AbstractTmfStateProvider;
-import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
 /**
@@ -63,6 +67,12 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
  * CallStack is a stack-attribute whose pushed values are either a string,
  * int or long representing the function name or address in the call stack.
  * The type of value used must be constant for a particular CallStack.
+ * Integer values are much smaller in the history than strings; they are
+ * resolved to names only when displayed, with the {@link SymbolTable} of the
+ * trace.
+ * <br>
+ * While the state system is built, the provider also aggregates the calls in
+ * a {@link CallGraph}, which is saved next to the history.
  *
  * @author Patrick Tasse
  * @since 2.0
@@ -81,6 +91,9 @@ public abstract class CallStackStateProvider extends AbstractTmfStateProvider {
     /** Dummy function name for when no function is expected */
     private static final String NO_FUNCTION = "no function"; //$NON-NLS-1$
 
+    /** Aggregates the calls, null if the call graph is not built */
+    private @Nullable CallGraph.Builder fCallGraphBuilder = null;
+
     /**
      * Default constructor
      *
@@ -91,6 +104,25 @@ public abstract class CallStackStateProvider extends AbstractTmfStateProvider {
         super(trace, ID);
     }
 
+    @Override
+    public void assignTargetStateSystem(ITmfStateSystemBuilder ssb) {
+        /*
+         * The call graph is only built along with a full history built from
+         * the start. The partial histories replay parts of the trace, and a
+         * resumed history already has the calls before its suspension.
+         */
+        File file = CallGraph.getFile(getTrace(), ssb.getSSID());
+        if (!(ssb instanceof PartialStateSystem)) {
+            if (file.exists() && !file.delete()) {
+                Activator.logWarning("Cannot delete " + file); //$NON-NLS-1$
+            }
+            if (ssb.getNbAttributes() == 0) {
+                fCallGraphBuilder = new CallGraph.Builder(getCallGraphCheckpoints());
+            }
+        }
+        super.assignTargetStateSystem(ssb);
+    }
+
     @Override
     protected void eventHandle(ITmfEvent event) {
         if (!considerEvent(event)) {
@@ -101,9 +133,9 @@ public abstract class CallStackStateProvider extends AbstractTmfStateProvider {
 
         try {
             /* Check if the event is a function entry */
-            String functionEntryName = functionEntry(event);
-            if (functionEntryName != null) {
-                long timestamp = event.getTimestamp().normalize(0, ITmfTimestamp.NANOSECOND_SCALE).getValue();
+            ITmfStateValue functionEntryValue = functionEntryValue(event);
+            if (functionEntryValue != null) {
+                long timestamp = event.getTimestampNanos();
                 String thread = getThreadName(event);
                 int threadQuark = ss.getQuarkAbsoluteAndAdd(THREADS, thread);
                 Long threadId = getThreadId(event);
@@ -111,30 +143,36 @@ public abstract class CallStackStateProvider extends AbstractTmfStateProvider {
                     ss.updateOngoingState(TmfStateValue.newValueLong(threadId), threadQuark);
                 }
                 int callStackQuark = ss.getQuarkRelativeAndAdd(threadQuark, CALL_STACK);
-                ITmfStateValue value = TmfStateValue.newValueString(functionEntryName);
-                ss.pushAttribute(timestamp, value, callStackQuark);
+                ss.pushAttribute(timestamp, functionEntryValue, callStackQuark);
+                CallGraph.Builder callGraphBuilder = fCallGraphBuilder;
+                if (callGraphBuilder != null) {
+                    callGraphBuilder.enter(callStackQuark, functionEntryValue, timestamp);
+                }
                 return;
             }
 
             /* Check if the event is a function exit */
-            String functionExitName = functionExit(event);
-            if (functionExitName != null) {
-                long timestamp = event.getTimestamp().normalize(0, ITmfTimestamp.NANOSECOND_SCALE).getValue();
+            ITmfStateValue functionExitValue = functionExitValue(event);
+            if (functionExitValue != null) {
+                long timestamp = event.getTimestampNanos();
                 String thread = getThreadName(event);
                 int quark = ss.getQuarkAbsoluteAndAdd(THREADS, thread, CALL_STACK);
                 ITmfStateValue poppedValue = ss.popAttribute(timestamp, quark);
-                String poppedName = (poppedValue == null ? NO_FUNCTION : poppedValue.unboxStr());
+                CallGraph.Builder callGraphBuilder = fCallGraphBuilder;
+                if (poppedValue != null && callGraphBuilder != null) {
+                    callGraphBuilder.exit(quark, timestamp);
+                }
 
                 /*
                  * Verify that the value we are popping matches the one in the
                  * event field, unless the latter is undefined.
                  */
-                if (!functionExitName.equals(UNDEFINED) &&
-                        !functionExitName.equals(poppedName)) {
+                if (!functionExitValue.isNull() &&
+                        !functionExitValue.equals(poppedValue)) {
                     Activator.logWarning(NLS.bind(
                             Messages.CallStackStateProvider_UnmatchedPoppedValue,
-                            functionExitName,
-                            poppedName));
+                            functionExitValue,
+                            (poppedValue == null ? NO_FUNCTION : poppedValue)));
                 }
             }
 
@@ -147,6 +185,26 @@ public abstract class CallStackStateProvider extends AbstractTmfStateProvider {
         }
     }
 
+    @Override
+    protected void done() {
+        CallGraph.Builder callGraphBuilder = fCallGraphBuilder;
+        ITmfStateSystemBuilder ss = getStateSystemBuilder();
+        if (callGraphBuilder == null || ss == null || ss.isCancelled()) {
+            /* A suspended history is resumed without its call graph */
+            return;
+        }
+        fCallGraphBuilder = null;
+        File file = CallGraph.getFile(getTrace(), ss.getSSID());
+        try {
+            callGraphBuilder.build().write(file);
+        } catch (IOException e) {
+            Activator.logError("Error saving the call graph " + file, e); //$NON-NLS-1$
+            if (file.exists() && !file.delete()) {
+                Activator.logWarning("Cannot delete " + file); //$NON-NLS-1$
+            }
+        }
+    }
+
     /**
      * Check if this event should be considered at all for function entry/exit
      * analysis. This check is only run once per event, before
@@ -181,6 +239,44 @@ public abstract class CallStackStateProvider extends AbstractTmfStateProvider {
      */
     protected abstract String functionExit(ITmfEvent event);
 
+    /**
+     * Get the value to push on the call stack for a function entry event. By
+     * default, this is the string returned by {@link #functionEntry}.
+     * Providers whose functions are identified by addresses should override
+     * it to push them as long values instead.
+     *
+     * @param event
+     *            An event to check for function entry
+     * @return The value identifying the function, or null if not a function
+     *         entry.
+     */
+    protected @Nullable ITmfStateValue functionEntryValue(ITmfEvent event) {
+        String name = functionEntry(event);
+        return (name == null ? null : TmfStateValue.newValueString(name));
+    }
+
+    /**
+     * Get the value identifying the function of a function exit event, to
+     * check it against the value popped from the call stack. It must be of
+     * the same type as the values returned by {@link #functionEntryValue}. By
+     * default, this is the string returned by {@link #functionExit}.
+     *
+     * @param event
+     *            An event to check for function exit
+     * @return The value identifying the function, a null value if it is
+     *         undefined, or null if not a function exit.
+     */
+    protected @Nullable ITmfStateValue functionExitValue(ITmfEvent event) {
+        String name = functionExit(event);
+        if (name == null) {
+            return null;
+        }
+        if (name.equals(UNDEFINED)) {
+            return TmfStateValue.nullValue();
+        }
+        return TmfStateValue.newValueString(name);
+    }
+
     /**
      * Return the thread name of a function entry or exit event.
      *
@@ -202,4 +298,16 @@ public abstract class CallStackStateProvider extends AbstractTmfStateProvider {
     protected Long getThreadId(ITmfEvent event) {
         return null;
     }
+
+    /**
+     * Get the maximum number of checkpoints of the call graph, which bounds
+     * the precision of its time ranges. Providers of large traces can
+     * override it to keep finer time ranges, at the cost of a larger call
+     * graph file.
+     *
+     * @return The maximum number of checkpoints
+     */
+    protected int getCallGraphCheckpoints() {
+        return CallGraph.Builder.DEFAULT_MAX_CHECKPOINTS;
+    }
 }
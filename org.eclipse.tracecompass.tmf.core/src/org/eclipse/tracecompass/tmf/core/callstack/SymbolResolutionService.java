@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.callstack;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.signal.TmfSignalHandler;
+import org.eclipse.tracecompass.tmf.core.signal.TmfSignalManager;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceClosedSignal;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+/**
+ * Resolves the function addresses of the traces to symbol names, using the
+ * {@link SymbolTable} set for each trace. The resolved names are kept in a
+ * cache of the most recently used addresses, shared by all the views showing
+ * the trace.
+ *
+ * It's a singleton class, so only one instance should exist (available via
+ * {@link #getInstance()}).
+ */
+public final class SymbolResolutionService {
+
+    /** Number of resolved addresses kept per trace */
+    private static final int CACHE_SIZE = 10000;
+
+    private static @Nullable SymbolResolutionService fInstance = null;
+
+    private final Map<ITmfTrace, TraceSymbols> fTraceSymbols = new HashMap<>();
+
+    private SymbolResolutionService() {
+        TmfSignalManager.register(this);
+    }
+
+    /**
+     * Get the instance of the service
+     *
+     * @return The service
+     */
+    public static synchronized SymbolResolutionService getInstance() {
+        SymbolResolutionService instance = fInstance;
+        if (instance == null) {
+            instance = new SymbolResolutionService();
+            fInstance = instance;
+        }
+        return instance;
+    }
+
+    /**
+     * Set the symbols of a trace
+     *
+     * @param trace
+     *            The trace
+     * @param table
+     *            The symbol table, or null to remove the symbols of the trace
+     */
+    public synchronized void setSymbolTable(ITmfTrace trace, @Nullable SymbolTable table) {
+        if (table == null) {
+            fTraceSymbols.remove(trace);
+        } else {
+            fTraceSymbols.put(trace, new TraceSymbols(table));
+        }
+    }
+
+    /**
+     * Get the symbols of a trace
+     *
+     * @param trace
+     *            The trace
+     * @return The symbol table, or null if none was set for this trace
+     */
+    public synchronized @Nullable SymbolTable getSymbolTable(ITmfTrace trace) {
+        TraceSymbols symbols = fTraceSymbols.get(trace);
+        return (symbols == null ? null : symbols.fTable);
+    }
+
+    /**
+     * Get the name of the function at an address
+     *
+     * @param trace
+     *            The trace of the address
+     * @param address
+     *            The address
+     * @return The name of the symbol containing the address, or null if the
+     *         trace has no symbols or none contains this address
+     */
+    public @Nullable String resolve(ITmfTrace trace, long address) {
+        TraceSymbols symbols;
+        synchronized (this) {
+            symbols = fTraceSymbols.get(trace);
+        }
+        if (symbols == null) {
+            return null;
+        }
+        return symbols.resolve(address);
+    }
+
+    /**
+     * Get the name of the function at an address, given as a hexadecimal
+     * string like the ones in the call stack state systems
+     *
+     * @param trace
+     *            The trace of the address
+     * @param address
+     *            The address, in hexadecimal with the "0x" prefix. Other
+     *            strings, like function names made of hexadecimal digits,
+     *            are not resolved.
+     * @return The name of the symbol containing the address, or the address
+     *         itself if it cannot be resolved
+     */
+    public String resolve(ITmfTrace trace, String address) {
+        if (!address.startsWith("0x") && !address.startsWith("0X")) { //$NON-NLS-1$ //$NON-NLS-2$
+            /* Not an address */
+            return address;
+        }
+        String hex = address.substring(2);
+        if (hex.isEmpty() || hex.length() > 16) {
+            return address;
+        }
+        long value = 0;
+        for (int i = 0; i < hex.length(); i++) {
+            int digit = Character.digit(hex.charAt(i), 16);
+            if (digit < 0) {
+                /* Not an address */
+                return address;
+            }
+            value = (value << 4) | digit;
+        }
+        String name = resolve(trace, value);
+        return (name == null ? address : name);
+    }
+
+    /**
+     * Signal handler for the traceClosed signal, to release the symbols of
+     * the trace.
+     *
+     * @param signal
+     *            The incoming signal
+     */
+    @TmfSignalHandler
+    public synchronized void traceClosed(final TmfTraceClosedSignal signal) {
+        fTraceSymbols.remove(signal.getTrace());
+    }
+
+    private static class TraceSymbols {
+
+        private final SymbolTable fTable;
+
+        /* Least recently used first. Absent symbols are cached as "". */
+        private final Map<Long, String> fCache = new LinkedHashMap<Long, String>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(@Nullable Map.Entry<Long, String> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+
+        public TraceSymbols(SymbolTable table) {
+            fTable = table;
+        }
+
+        public @Nullable String resolve(long address) {
+            String name;
+            synchronized (fCache) {
+                name = fCache.get(address);
+            }
+            if (name == null) {
+                name = fTable.resolve(address);
+                if (name == null) {
+                    name = ""; //$NON-NLS-1$
+                }
+                synchronized (fCache) {
+                    fCache.put(address, name);
+                }
+            }
+            return (name.isEmpty() ? null : name);
+        }
+    }
+}
@@ -0,0 +1,401 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.callstack;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Table of the symbols of a binary, to get the name of the function at an
+ * address.
+ *
+ * The start addresses of the symbols are kept sorted in an array, so the
+ * symbol containing an address is found with a binary search. If the size of
+ * a symbol is not known, it goes until the start of the next one. The last
+ * symbol goes no further than {@link #MAX_UNKNOWN_SIZE}, so that the addresses
+ * past the end of the binary are not resolved.
+ *
+ * A table is immutable once built, and can be used from any thread.
+ */
+public final class SymbolTable {
+
+    private static final Charset CHARSET = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+    /** Maximum size of the last symbol if its size is not known, one page */
+    public static final long MAX_UNKNOWN_SIZE = 0x1000;
+
+    /** Size of the parts of an nm file which are read at once */
+    private static final int READ_WINDOW_SIZE = 1024 * 1024;
+
+    /** Start addresses of the symbols, sorted in unsigned order */
+    private final long[] fAddresses;
+    /** Size of each symbol, 0 if unknown */
+    private final long[] fSizes;
+    private final String[] fNames;
+
+    private SymbolTable(long[] addresses, long[] sizes, String[] names) {
+        fAddresses = addresses;
+        fSizes = sizes;
+        fNames = names;
+    }
+
+    /**
+     * Get the number of symbols of this table
+     *
+     * @return The number of symbols
+     */
+    public int size() {
+        return fAddresses.length;
+    }
+
+    /**
+     * Get the symbol containing an address
+     *
+     * @param address
+     *            The address
+     * @return The name of the symbol, followed by the offset of the address
+     *         in the symbol (like "main+0x1c") if it is not its start, or null
+     *         if no symbol contains this address
+     */
+    public @Nullable String resolve(long address) {
+        int index = floorIndex(address);
+        if (index < 0) {
+            return null;
+        }
+        long offset = address - fAddresses[index];
+        long size = fSizes[index];
+        if (size == 0) {
+            if (index + 1 < fAddresses.length) {
+                /* The next symbol starts after the address */
+                size = fAddresses[index + 1] - fAddresses[index];
+            } else {
+                size = MAX_UNKNOWN_SIZE;
+            }
+        }
+        if ((offset ^ Long.MIN_VALUE) >= (size ^ Long.MIN_VALUE)) {
+            /* Past the end of the symbol */
+            return null;
+        }
+        if (offset == 0) {
+            return fNames[index];
+        }
+        return fNames[index] + "+0x" + Long.toHexString(offset); //$NON-NLS-1$
+    }
+
+    /*
+     * Get the index of the last symbol starting at or before an address, or
+     * -1 if there is none.
+     */
+    private int floorIndex(long address) {
+        /* Flip the sign bit to compare the addresses as unsigned */
+        long key = address ^ Long.MIN_VALUE;
+        int low = 0;
+        int high = fAddresses.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = fAddresses[mid] ^ Long.MIN_VALUE;
+            if (midKey <= key) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    // ------------------------------------------------------------------------
+    // Loading
+    // ------------------------------------------------------------------------
+
+    /**
+     * Read the output of the nm command. Each line holds the address of a
+     * symbol, optionally its size (with nm -S), its type and its name, all in
+     * hexadecimal and separated by spaces. Undefined symbols, which have no
+     * address, are skipped.
+     *
+     * The file is read in large blocks and parsed without creating a string
+     * per line, so large outputs can be loaded quickly.
+     *
+     * @param file
+     *            The nm output file
+     * @return The symbol table, which is empty if the file has no symbols
+     * @throws IOException
+     *             If the file cannot be read
+     */
+    public static SymbolTable fromNmFile(File file) throws IOException {
+        Builder builder = new Builder();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+                FileChannel channel = raf.getChannel();) {
+            long fileSize = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_WINDOW_SIZE, fileSize));
+            long position = 0;
+            while (position < fileSize) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), fileSize - position));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) {
+                        /* The file was truncated */
+                        break;
+                    }
+                }
+                int length = buffer.position();
+                if (length == 0) {
+                    break;
+                }
+                boolean last = (position + length >= fileSize || buffer.hasRemaining());
+                int consumed = parseNmLines(buffer, length, last, builder);
+                if (consumed == 0) {
+                    /* A single line longer than the window, skip it */
+                    consumed = length;
+                }
+                position += consumed;
+            }
+        }
+        return builder.build();
+    }
+
+    /*
+     * Parse the complete lines of a buffer, and the last one if it is the end
+     * of the file. Returns the number of bytes consumed.
+     */
+    private static int parseNmLines(ByteBuffer buffer, int length, boolean last, Builder builder) {
+        int lineStart = 0;
+        byte[] nameBytes = new byte[256];
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            if (lineEnd == length && !last) {
+                /* Incomplete line, it will be read with the next window */
+                break;
+            }
+            int end = lineEnd;
+            if (end > lineStart && buffer.get(end - 1) == '\r') {
+                end--;
+            }
+            nameBytes = parseNmLine(buffer, lineStart, end, builder, nameBytes);
+            lineStart = lineEnd + 1;
+        }
+        return Math.min(lineStart, length);
+    }
+
+    private static byte[] parseNmLine(ByteBuffer buffer, int start, int end, Builder builder, byte[] nameBytes) {
+        /* Split the line in up to 4 fields */
+        int[] fieldStarts = new int[4];
+        int[] fieldEnds = new int[4];
+        int nbFields = 0;
+        int pos = start;
+        while (pos < end && nbFields < 4) {
+            while (pos < end && buffer.get(pos) == ' ') {
+                pos++;
+            }
+            if (pos == end) {
+                break;
+            }
+            fieldStarts[nbFields] = pos;
+            if (nbFields == 3) {
+                /* The name goes to the end of the line */
+                pos = end;
+            } else {
+                while (pos < end && buffer.get(pos) != ' ') {
+                    pos++;
+                }
+            }
+            fieldEnds[nbFields] = pos;
+            nbFields++;
+        }
+
+        int nameField;
+        long size = 0;
+        /* The size has as many digits as the address, the type only one */
+        if (nbFields == 4 && fieldEnds[1] - fieldStarts[1] > 1 && isHex(buffer, fieldStarts[1], fieldEnds[1])) {
+            size = parseHex(buffer, fieldStarts[1], fieldEnds[1]);
+            nameField = 3;
+        } else if (nbFields >= 3) {
+            nameField = 2;
+            /* The name may contain spaces */
+            fieldEnds[2] = end;
+        } else {
+            return nameBytes;
+        }
+        if (!isHex(buffer, fieldStarts[0], fieldEnds[0])) {
+            /* Undefined symbol or other line */
+            return nameBytes;
+        }
+        long address = parseHex(buffer, fieldStarts[0], fieldEnds[0]);
+
+        int nameLength = fieldEnds[nameField] - fieldStarts[nameField];
+        byte[] bytes = nameBytes;
+        if (bytes.length < nameLength) {
+            bytes = new byte[nameLength];
+        }
+        for (int i = 0; i < nameLength; i++) {
+            bytes[i] = buffer.get(fieldStarts[nameField] + i);
+        }
+        builder.add(address, size, new String(bytes, 0, nameLength, CHARSET));
+        return bytes;
+    }
+
+    private static boolean isHex(ByteBuffer buffer, int start, int end) {
+        if (end <= start || end - start > 16) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (Character.digit(buffer.get(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseHex(ByteBuffer buffer, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            value = (value << 4) | Character.digit(buffer.get(i), 16);
+        }
+        return value;
+    }
+
+    /**
+     * Builds a {@link SymbolTable} from symbols added in any order. If
+     * several symbols start at the same address, the last one added is kept.
+     */
+    public static class Builder {
+
+        private long[] fBuilderAddresses = new long[1024];
+        private long[] fBuilderSizes = new long[1024];
+        private String[] fBuilderNames = new String[1024];
+        private int fSize = 0;
+
+        /**
+         * Add a symbol
+         *
+         * @param address
+         *            The start address of the symbol
+         * @param size
+         *            The size of the symbol, or 0 if it is unknown
+         * @param name
+         *            The name of the symbol
+         */
+        public void add(long address, long size, String name) {
+            if (fSize == fBuilderAddresses.length) {
+                int newLength = fSize * 2;
+                fBuilderAddresses = Arrays.copyOf(fBuilderAddresses, newLength);
+                fBuilderSizes = Arrays.copyOf(fBuilderSizes, newLength);
+                fBuilderNames = Arrays.copyOf(fBuilderNames, newLength);
+            }
+            fBuilderAddresses[fSize] = address;
+            fBuilderSizes[fSize] = size;
+            fBuilderNames[fSize] = name;
+            fSize++;
+        }
+
+        /**
+         * Build the table
+         *
+         * @return The table of the symbols added so far
+         */
+        public SymbolTable build() {
+            int n = fSize;
+            long[] addresses = Arrays.copyOf(fBuilderAddresses, n);
+            long[] sizes = Arrays.copyOf(fBuilderSizes, n);
+            String[] names = Arrays.copyOf(fBuilderNames, n);
+            /* Keep the order of addition between equal addresses */
+            int[] order = new int[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            sort(addresses, order, 0, n - 1);
+
+            /* Keep the last symbol added at each address */
+            long[] uniqueAddresses = new long[n];
+            long[] uniqueSizes = new long[n];
+            String[] uniqueNames = new String[n];
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                if (i + 1 < n && addresses[i + 1] == addresses[i]) {
+                    continue;
+                }
+                uniqueAddresses[count] = addresses[i];
+                uniqueSizes[count] = sizes[order[i]];
+                uniqueNames[count] = names[order[i]];
+                count++;
+            }
+            return new SymbolTable(Arrays.copyOf(uniqueAddresses, count), Arrays.copyOf(uniqueSizes, count), Arrays.copyOf(uniqueNames, count));
+        }
+
+        /*
+         * Sort the addresses in unsigned order, and the insertion order of
+         * the symbols with them. Ties are sorted by insertion order.
+         */
+        private static void sort(long[] addresses, int[] order, int low, int high) {
+            int lo = low;
+            int hi = high;
+            while (hi - lo > 16) {
+                int mid = (lo + hi) >>> 1;
+                long pivot = addresses[mid] ^ Long.MIN_VALUE;
+                int pivotOrder = order[mid];
+                int i = lo;
+                int j = hi;
+                while (i <= j) {
+                    while (compare(addresses[i] ^ Long.MIN_VALUE, order[i], pivot, pivotOrder) < 0) {
+                        i++;
+                    }
+                    while (compare(addresses[j] ^ Long.MIN_VALUE, order[j], pivot, pivotOrder) > 0) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        swap(addresses, order, i, j);
+                        i++;
+                        j--;
+                    }
+                }
+                /* Recurse on the smaller part to bound the stack depth */
+                if (j - lo < hi - i) {
+                    sort(addresses, order, lo, j);
+                    lo = i;
+                } else {
+                    sort(addresses, order, i, hi);
+                    hi = j;
+                }
+            }
+            /* Insertion sort for the small ranges */
+            for (int i = lo + 1; i <= hi; i++) {
+                for (int j = i; j > lo && compare(addresses[j - 1] ^ Long.MIN_VALUE, order[j - 1], addresses[j] ^ Long.MIN_VALUE, order[j]) > 0; j--) {
+                    swap(addresses, order, j - 1, j);
+                }
+            }
+        }
+
+        private static int compare(long key1, int order1, long key2, int order2) {
+            if (key1 != key2) {
+                return (key1 < key2 ? -1 : 1);
+            }
+            return (order1 < order2 ? -1 : (order1 == order2 ? 0 : 1));
+        }
+
+        private static void swap(long[] addresses, int[] order, int i, int j) {
+            long address = addresses[i];
+            addresses[i] = addresses[j];
+            addresses[j] = address;
+            int o = order[i];
+            order[i] = order[j];
+            order[j] = o;
+        }
+    }
+}
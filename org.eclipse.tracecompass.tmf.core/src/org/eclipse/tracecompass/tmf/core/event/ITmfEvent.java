@@ -57,6 +57,15 @@ public interface ITmfEvent extends IAdaptable {
      */
     ITmfTimestamp getTimestamp();
 
+    /**
+     * Get the event timestamp value in nanoseconds. This is equivalent to
+     * {@link ITmfTimestamp#toNanos()} on {@link #getTimestamp()}, but
+     * implementations can cache it so that it is free to call once per event.
+     *
+     * @return the event timestamp, in nanoseconds
+     */
+    long getTimestampNanos();
+
     /**
      * @return the event type
      */
@@ -39,6 +39,7 @@ public class TmfEvent extends PlatformObject implements ITmfEvent {
     private final ITmfTrace fTrace;
     private final long fRank;
     private final ITmfTimestamp fTimestamp;
+    private final long fTimestampNanos;
     private final ITmfEventType fType;
     private final ITmfEventField fContent;
 
@@ -83,6 +84,7 @@ public class TmfEvent extends PlatformObject implements ITmfEvent {
         fTrace = trace;
         fRank = rank;
         fTimestamp = timestamp;
+        fTimestampNanos = (timestamp == null) ? 0 : timestamp.toNanos();
         fType = type;
         fContent = content;
     }
@@ -96,6 +98,7 @@ public class TmfEvent extends PlatformObject implements ITmfEvent {
         fTrace = event.getTrace();
         fRank = event.getRank();
         fTimestamp = event.getTimestamp();
+        fTimestampNanos = event.getTimestampNanos();
         fType = event.getType();
         fContent = event.getContent();
     }
@@ -126,6 +129,16 @@ public class TmfEvent extends PlatformObject implements ITmfEvent {
         return fTimestamp;
     }
 
+    /**
+     * Get the event timestamp value in nanoseconds, computed when the event
+     * was created. Sub-classes overriding {@link #getTimestamp()} must
+     * override this method too.
+     */
+    @Override
+    public long getTimestampNanos() {
+        return fTimestampNanos;
+    }
+
     @Override
     public ITmfEventType getType() {
         return fType;
@@ -56,6 +56,33 @@ public class TcpEventKey implements IEventMatchingKey {
         fFlags = flags;
     }
 
+    /**
+     * Get the sequence number of the TCP packet
+     *
+     * @return The sequence number
+     */
+    public long getSequence() {
+        return fSeq;
+    }
+
+    /**
+     * Get the acknowledgement number of the TCP packet
+     *
+     * @return The acknowledgement number
+     */
+    public long getAcknowledgment() {
+        return fAckseq;
+    }
+
+    /**
+     * Get the 16 bits following the acknowledgment of the TCP packet
+     *
+     * @return The data offset, reserved and flags bits
+     */
+    public long getFlags() {
+        return fFlags;
+    }
+
     @Override
     public int hashCode() {
         return HF.newHasher()
@@ -12,8 +12,10 @@
 
 package org.eclipse.tracecompass.tmf.core.event.matching;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
@@ -166,7 +168,8 @@ public abstract class TmfEventMatching implements ITmfEventMatching {
     }
 
     /**
-     * Matches one event
+     * Matches one event. The events of different traces can be matched
+     * concurrently, from the threads reading the traces.
      *
      * @param event
      *            The event to match
@@ -200,11 +203,8 @@ public abstract class TmfEventMatching implements ITmfEventMatching {
 
         /**
          * For each trace, get the events and for each event, call the
-         * MatchEvent method
-         *
-         * FIXME This would use a lot of memory if the traces are big, because
-         * all involved events from first trace will have to be kept before a
-         * first match is possible with second trace.
+         * MatchEvent method. The traces are read in parallel, each by its own
+         * request.
          *
          * <pre>
          * Other possible matching strategy:
@@ -217,6 +217,7 @@ public abstract class TmfEventMatching implements ITmfEventMatching {
          * would be preferable to have experiment
          * </pre>
          */
+        List<EventMatchingBuildRequest> requests = new ArrayList<>();
         for (ITmfTrace trace : fTraces) {
             EventMatchingBuildRequest request = new EventMatchingBuildRequest(this, trace);
 
@@ -225,6 +226,9 @@ public abstract class TmfEventMatching implements ITmfEventMatching {
              * experiment.
              */
             trace.sendRequest(request);
+            requests.add(request);
+        }
+        for (EventMatchingBuildRequest request : requests) {
             try {
                 request.waitForCompletion();
             } catch (InterruptedException e) {
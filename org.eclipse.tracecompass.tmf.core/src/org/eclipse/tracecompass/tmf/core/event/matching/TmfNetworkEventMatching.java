@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 École Polytechnique de Montréal
+ * Copyright (c) 2013, 2015 École Polytechnique de Montréal
  *
  * All rights reserved. This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License v1.0 which
@@ -12,32 +12,76 @@
 
 package org.eclipse.tracecompass.tmf.core.event.matching;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.eclipse.tracecompass.internal.tmf.core.event.matching.UnmatchedEventTable;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfNanoTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
-
 /**
  * This class matches events typically network-style, ie. where some events are
  * 'send' events and the other 'receive' events or out/in events
  *
+ * The traces are read in parallel. The key, trace and timestamp of their
+ * events are put in per-trace buffers, then matched by shards, each of them
+ * handling a part of the keys, so the matching of several traces can use as
+ * many processors. The events of the matches are new events with only this
+ * trace and timestamp.
+ *
+ * No thread waits for another: a full buffer is queued to its shard, and
+ * matched by whichever thread is draining the shard's queue. The matches are
+ * passed to the processing unit in the order of the time of their event on
+ * the host whose ID comes first, like the synchronization algorithms expect,
+ * once no earlier match can be found. Without an expiry window, this is only
+ * known when all the traces are read.
+ *
+ * The number of events waiting for their match is bounded, and they can
+ * expire once the other traces have gone past their time by more than an
+ * expiry window.
+ *
  * @author Geneviève Bastien
  * @since 3.0
  */
 public class TmfNetworkEventMatching extends TmfEventMatching {
 
-    /**
-     * Hashtables for unmatches incoming events
-     */
-    private final Table<ITmfTrace, IEventMatchingKey, ITmfEvent> fUnmatchedIn = HashBasedTable.create();
+    /** Default maximum number of unmatched events, in each direction */
+    private static final int DEFAULT_MAX_UNMATCHED = 1 << 22;
 
-    /**
-     * Hashtables for unmatches outgoing events
-     */
-    private final Table<ITmfTrace, IEventMatchingKey, ITmfEvent> fUnmatchedOut = HashBasedTable.create();
+    /** Minimum number of unmatched events added between two expiries */
+    private static final int MIN_EXPIRY_INTERVAL = 1 << 14;
+
+    /** Number of events buffered for a shard before they are matched */
+    private static final int BUFFER_SIZE = 256;
+
+    private final long fExpiryWindow;
+    private final int fMaxUnmatched;
+
+    /* Each shard matches the keys of a range of hashes */
+    private volatile Shard[] fShards;
+
+    /* Index of the traces in the unmatched tables */
+    private final List<ITmfTrace> fTraceList = new CopyOnWriteArrayList<>();
+    private final Map<ITmfTrace, Integer> fTraceIndexes = new ConcurrentHashMap<>();
+
+    /* Events not matched yet, for each trace read */
+    private final Map<ITmfTrace, TraceBuffer> fBuffers = new ConcurrentHashMap<>();
+
+    /* Matches found, waiting to be passed to the processing unit */
+    private volatile MatchQueue fMatches = new MatchQueue();
 
     /**
      * Enum for in and out types
@@ -72,7 +116,33 @@ public class TmfNetworkEventMatching extends TmfEventMatching {
      *            The match processing class
      */
     public TmfNetworkEventMatching(Collection<ITmfTrace> traces, IMatchProcessingUnit tmfEventMatches) {
+        this(traces, tmfEventMatches, Long.MAX_VALUE, DEFAULT_MAX_UNMATCHED);
+    }
+
+    /**
+     * Constructor with limits on the unmatched events
+     *
+     * The traces are not synchronized yet, so the expiry window should be
+     * larger than the offset between their clocks.
+     *
+     * @param traces
+     *            The set of traces for which to match events
+     * @param tmfEventMatches
+     *            The match processing class
+     * @param expiryWindow
+     *            The time, in nanoseconds, after which an unmatched event
+     *            expires, once all the other traces have reached it.
+     *            {@link Long#MAX_VALUE} to never expire them.
+     * @param maxUnmatched
+     *            The maximum number of unmatched events kept in each
+     *            direction. The events beyond are dropped.
+     */
+    public TmfNetworkEventMatching(Collection<ITmfTrace> traces, IMatchProcessingUnit tmfEventMatches,
+            long expiryWindow, int maxUnmatched) {
         super(traces, tmfEventMatches);
+        fExpiryWindow = expiryWindow;
+        fMaxUnmatched = maxUnmatched;
+        fShards = createShards();
     }
 
     /**
@@ -81,18 +151,38 @@ public class TmfNetworkEventMatching extends TmfEventMatching {
     @Override
     public void initMatching() {
         // Initialize the matching infrastructure (unmatched event lists)
-        fUnmatchedIn.clear();
-        fUnmatchedOut.clear();
+        fShards = createShards();
+        fMatches = new MatchQueue();
+        fBuffers.clear();
+        fTraceList.clear();
+        fTraceIndexes.clear();
+        for (ITmfTrace trace : getIndividualTraces()) {
+            getTraceIndex(trace);
+        }
         super.initMatching();
     }
 
+    private Shard[] createShards() {
+        int nbShards = Runtime.getRuntime().availableProcessors();
+        Shard[] shards = new Shard[nbShards];
+        for (int i = 0; i < nbShards; i++) {
+            shards[i] = new Shard(Math.max(1, fMaxUnmatched / nbShards));
+        }
+        return shards;
+    }
+
     @Override
     protected MatchingType getMatchingType() {
         return MatchingType.NETWORK;
     }
 
+    /*
+     * Extract the key of an event and buffer it to be matched. This can be
+     * called concurrently for different traces, but the events of a trace
+     * must come from one thread.
+     */
     @Override
-    public synchronized void matchEvent(ITmfEvent event, ITmfTrace trace) {
+    public void matchEvent(ITmfEvent event, ITmfTrace trace) {
         ITmfNetworkMatchDefinition def = null;
         Direction evType = null;
         for (ITmfMatchEventDefinition oneDef : getEventDefinitions(event.getTrace())) {
@@ -115,56 +205,263 @@ public class TmfNetworkEventMatching extends TmfEventMatching {
         if (eventKey == null) {
             return;
         }
-        Table<ITmfTrace, IEventMatchingKey, ITmfEvent> unmatchedTbl, companionTbl;
-
-        /* Point to the appropriate table */
-        switch (evType) {
-        case IN:
-            unmatchedTbl = fUnmatchedIn;
-            companionTbl = fUnmatchedOut;
-            break;
-        case OUT:
-            unmatchedTbl = fUnmatchedOut;
-            companionTbl = fUnmatchedIn;
-            break;
-        default:
-            return;
-        }
 
-        boolean found = false;
-        TmfEventDependency dep = null;
-        /* Search for the event in the companion table */
-        for (ITmfTrace mTrace : getIndividualTraces()) {
-            if (companionTbl.contains(mTrace, eventKey)) {
-                found = true;
-                ITmfEvent companionEvent = companionTbl.get(mTrace, eventKey);
+        TraceBuffer buffer = fBuffers.get(trace);
+        if (buffer == null) {
+            buffer = new TraceBuffer(fShards.length);
+            fBuffers.put(trace, buffer);
+        }
+        /* The high bits of the hash, the low ones are used by the tables */
+        int hash = UnmatchedEventTable.hash(eventKey);
+        int shard = (int) (((hash >>> 16) * (long) fShards.length) >>> 16);
+        ShardBuffer shardBuffer = buffer.fShardBuffers[shard];
+        shardBuffer.add(evType, eventKey, getTraceIndex(event.getTrace()), event.getTimestampNanos());
+        if (shardBuffer.fCount == BUFFER_SIZE) {
+            buffer.fShardBuffers[shard] = new ShardBuffer();
+            fShards[shard].submit(shardBuffer);
+            fMatches.forward(false);
+        }
+    }
 
-                /* Remove the element from the companion table */
-                companionTbl.remove(mTrace, eventKey);
+    @Override
+    protected void finalizeMatching() {
+        for (TraceBuffer buffer : fBuffers.values()) {
+            for (int i = 0; i < fShards.length; i++) {
+                ShardBuffer shardBuffer = buffer.fShardBuffers[i];
+                buffer.fShardBuffers[i] = new ShardBuffer();
+                if (shardBuffer.fCount > 0) {
+                    fShards[i].submit(shardBuffer);
+                }
+            }
+        }
+        fBuffers.clear();
+        /* All the traces were read, the remaining matches can be passed */
+        fMatches.forward(true);
+        super.finalizeMatching();
+    }
 
-                /* Create the dependency object */
-                switch (evType) {
-                case IN:
-                    dep = new TmfEventDependency(companionEvent, event);
-                    break;
-                case OUT:
-                    dep = new TmfEventDependency(event, companionEvent);
-                    break;
-                default:
-                    break;
+    /*
+     * The time before which no other match can be found by the shards
+     */
+    private long getMatchedUntil() {
+        long time = Long.MAX_VALUE;
+        for (Shard shard : fShards) {
+            time = Math.min(time, shard.fMatchedUntil);
+        }
+        return time;
+    }
 
+    private int getTraceIndex(ITmfTrace trace) {
+        Integer index = fTraceIndexes.get(trace);
+        if (index == null) {
+            synchronized (fTraceList) {
+                index = fTraceIndexes.get(trace);
+                if (index == null) {
+                    index = fTraceList.size();
+                    fTraceList.add(trace);
+                    fTraceIndexes.put(trace, index);
                 }
             }
         }
+        return index;
+    }
 
-        /*
-         * If no companion was found, add the event to the appropriate unMatched
-         * lists
+    private ITmfEvent createEvent(int traceIndex, long timestamp) {
+        return new TmfEvent(fTraceList.get(traceIndex), ITmfContext.UNKNOWN_RANK,
+                new TmfNanoTimestamp(timestamp), null, null);
+    }
+
+    /*
+     * Create a match, ordered by the time of its event on the host whose ID
+     * comes first, then by the time of the other event.
+     */
+    private PendingMatch createMatch(int sourceIndex, long sourceTime, int destIndex, long destTime) {
+        ITmfEvent source = createEvent(sourceIndex, sourceTime);
+        ITmfEvent destination = createEvent(destIndex, destTime);
+        TmfEventDependency match = new TmfEventDependency(source, destination);
+        if (source.getTrace().getHostId().compareTo(destination.getTrace().getHostId()) > 0) {
+            return new PendingMatch(destTime, sourceTime, sourceIndex, match);
+        }
+        return new PendingMatch(sourceTime, destTime, sourceIndex, match);
+    }
+
+    /**
+     * Prints stats from the matching
+     *
+     * @return string of statistics
+     */
+    @SuppressWarnings("nls")
+    @Override
+    public String toString() {
+        final String cr = System.getProperty("line.separator");
+        StringBuilder b = new StringBuilder();
+        b.append(getProcessingUnit());
+        long nbExpired = 0;
+        long nbDropped = 0;
+        for (Shard shard : fShards) {
+            nbExpired += shard.fNbExpired;
+            nbDropped += shard.fNbDropped;
+        }
+        for (int i = 0; i < fTraceList.size(); i++) {
+            int nbIn = 0;
+            int nbOut = 0;
+            for (Shard shard : fShards) {
+                nbIn += shard.fUnmatchedIn.size(i);
+                nbOut += shard.fUnmatchedOut.size(i);
+            }
+            b.append("Trace " + i + ":" + cr +
+                    "  " + nbIn + " unmatched incoming events" + cr +
+                    "  " + nbOut + " unmatched outgoing events" + cr);
+        }
+        b.append(nbExpired + " expired unmatched events" + cr +
+                nbDropped + " unmatched events dropped" + cr);
+
+        return b.toString();
+    }
+
+    // ------------------------------------------------------------------------
+    // Buffers
+    // ------------------------------------------------------------------------
+
+    /**
+     * Events of a trace to be matched, one buffer per shard. A full buffer is
+     * replaced by a new one when it is queued to its shard.
+     */
+    private static class TraceBuffer {
+        private final ShardBuffer[] fShardBuffers;
+
+        public TraceBuffer(int nbShards) {
+            fShardBuffers = new ShardBuffer[nbShards];
+            for (int i = 0; i < nbShards; i++) {
+                fShardBuffers[i] = new ShardBuffer();
+            }
+        }
+    }
+
+    /**
+     * Events of a trace to be matched by a shard
+     */
+    private static class ShardBuffer {
+        private final boolean[] fOut = new boolean[BUFFER_SIZE];
+        private final IEventMatchingKey[] fKeys = new IEventMatchingKey[BUFFER_SIZE];
+        private final int[] fTraceIndexes = new int[BUFFER_SIZE];
+        private final long[] fTimestamps = new long[BUFFER_SIZE];
+        private int fCount = 0;
+
+        public void add(Direction direction, IEventMatchingKey key, int traceIndex, long timestamp) {
+            fOut[fCount] = (direction == Direction.OUT);
+            fKeys[fCount] = key;
+            fTraceIndexes[fCount] = traceIndex;
+            fTimestamps[fCount] = timestamp;
+            fCount++;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Shards
+    // ------------------------------------------------------------------------
+
+    /**
+     * The unmatched events whose keys fall in a range of hashes. The buffers
+     * queued to a shard are matched by one thread at a time, the one which
+     * sets the draining flag. The others only queue their buffers, which keeps
+     * the events of each trace in order.
+     */
+    private class Shard {
+
+        private final Queue<ShardBuffer> fQueue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean fDraining = new AtomicBoolean();
+
+        /* Time before which this shard will not find any other match */
+        private volatile long fMatchedUntil = Long.MIN_VALUE;
+
+        /**
+         * Hashtables for unmatches incoming events
+         */
+        private final UnmatchedEventTable fUnmatchedIn;
+
+        /**
+         * Hashtables for unmatches outgoing events
          */
-        if (found) {
-            getProcessingUnit().addMatch(dep);
-        } else {
+        private final UnmatchedEventTable fUnmatchedOut;
+
+        /* Time of the last event of each trace seen by this shard */
+        private long[] fTraceTimes = new long[0];
+
+        private long fNbAddedSinceExpiry = 0;
+        private long fNbExpired = 0;
+        private long fNbDropped = 0;
+
+        public Shard(int maxUnmatched) {
+            fUnmatchedIn = new UnmatchedEventTable(maxUnmatched);
+            fUnmatchedOut = new UnmatchedEventTable(maxUnmatched);
+        }
+
+        public void submit(ShardBuffer buffer) {
+            fQueue.add(buffer);
+            /* Check the queue again after draining, for buffers added meanwhile */
+            while (!fQueue.isEmpty() && fDraining.compareAndSet(false, true)) {
+                try {
+                    List<PendingMatch> matches = new ArrayList<>();
+                    ShardBuffer next = fQueue.poll();
+                    while (next != null) {
+                        match(next, matches);
+                        next = fQueue.poll();
+                    }
+                    /* The matches are queued before the time is published */
+                    fMatches.add(matches);
+                    fMatchedUntil = computeMatchedUntil();
+                } finally {
+                    fDraining.set(false);
+                }
+            }
+        }
+
+        private void match(ShardBuffer buffer, List<PendingMatch> matches) {
+            for (int i = 0; i < buffer.fCount; i++) {
+                match(buffer.fOut[i], buffer.fKeys[i], buffer.fTraceIndexes[i], buffer.fTimestamps[i], matches);
+            }
+        }
+
+        private void match(boolean out, IEventMatchingKey eventKey, int traceIndex, long timestamp,
+                List<PendingMatch> matches) {
+            if (traceIndex >= fTraceTimes.length) {
+                int length = fTraceTimes.length;
+                fTraceTimes = Arrays.copyOf(fTraceTimes, traceIndex + 1);
+                Arrays.fill(fTraceTimes, length, fTraceTimes.length, Long.MIN_VALUE);
+            }
+            fTraceTimes[traceIndex] = Math.max(fTraceTimes[traceIndex], timestamp);
+
+            /* Point to the appropriate table */
+            UnmatchedEventTable unmatchedTbl = (out ? fUnmatchedOut : fUnmatchedIn);
+            UnmatchedEventTable companionTbl = (out ? fUnmatchedIn : fUnmatchedOut);
+
+            /* Search for the event in the companion table */
+            int slot = companionTbl.find(eventKey);
+            if (slot >= 0 && isExpired(companionTbl, slot)) {
+                companionTbl.remove(slot);
+                fNbExpired++;
+                slot = -1;
+            }
+
+            if (slot >= 0) {
+                int companionIndex = companionTbl.getTraceIndex(slot);
+                long companionTime = companionTbl.getTimestamp(slot);
+
+                /* Remove the element from the companion table */
+                companionTbl.remove(slot);
+
+                /* Create the dependency object */
+                matches.add(out ?
+                        createMatch(traceIndex, timestamp, companionIndex, companionTime) :
+                        createMatch(companionIndex, companionTime, traceIndex, timestamp));
+                return;
+            }
+
             /*
+             * If no companion was found, add the event to the appropriate
+             * unMatched lists
+             *
              * If an event is already associated with this key, do not add it
              * again, we keep the first event chronologically, so if its match
              * is eventually found, it is associated with the first send or
@@ -175,32 +472,168 @@ public class TmfNetworkEventMatching extends TmfEventMatching {
              * events as value for the unmatched table. Not necessary right now
              * though
              */
-            if (!unmatchedTbl.contains(event.getTrace(), eventKey)) {
-                unmatchedTbl.put(event.getTrace(), eventKey, event);
+            slot = unmatchedTbl.find(eventKey);
+            if (slot >= 0) {
+                if (!isExpired(unmatchedTbl, slot)) {
+                    return;
+                }
+                fNbExpired++;
+            }
+            /*
+             * The expiry goes through all the unmatched events, so it is done
+             * after as many events are added, for a constant cost per event.
+             */
+            fNbAddedSinceExpiry++;
+            if (fNbAddedSinceExpiry >= Math.max(MIN_EXPIRY_INTERVAL, fUnmatchedIn.size() + fUnmatchedOut.size())) {
+                expire();
+            }
+            if (!unmatchedTbl.put(eventKey, traceIndex, timestamp)) {
+                fNbDropped++;
+            }
+        }
+
+        /*
+         * An unmatched event expires when all the other traces are past its
+         * time by more than the expiry window, since they are read in time
+         * order.
+         */
+        private boolean isExpired(UnmatchedEventTable table, int slot) {
+            if (fExpiryWindow == Long.MAX_VALUE) {
+                return false;
+            }
+            return table.getTimestamp(slot) < getExpiryLimit(table.getTraceIndex(slot));
+        }
+
+        private long getExpiryLimit(int traceIndex) {
+            if (fTraceTimes.length < fTraceList.size()) {
+                /* A trace has not been seen yet */
+                return Long.MIN_VALUE;
+            }
+            long time = Long.MAX_VALUE;
+            for (int i = 0; i < fTraceTimes.length; i++) {
+                if (i != traceIndex) {
+                    time = Math.min(time, fTraceTimes[i]);
+                }
+            }
+            if (time == Long.MAX_VALUE || time < Long.MIN_VALUE + fExpiryWindow) {
+                /* No other trace, or one has not started yet */
+                return Long.MIN_VALUE;
+            }
+            return time - fExpiryWindow;
+        }
+
+        /*
+         * The events still to come to this shard are after the last event of
+         * their trace it received, and their companion must not be expired,
+         * so the matches to come are all after the expiry limit of all the
+         * traces.
+         */
+        private long computeMatchedUntil() {
+            if (fExpiryWindow == Long.MAX_VALUE || fTraceTimes.length < fTraceList.size()) {
+                return Long.MIN_VALUE;
+            }
+            long time = Long.MAX_VALUE;
+            for (int i = 0; i < fTraceTimes.length; i++) {
+                time = Math.min(time, fTraceTimes[i]);
+            }
+            if (time < Long.MIN_VALUE + fExpiryWindow) {
+                return Long.MIN_VALUE;
             }
+            return time - fExpiryWindow;
         }
 
+        /*
+         * Remove the expired events of both tables
+         */
+        private void expire() {
+            fNbAddedSinceExpiry = 0;
+            if (fExpiryWindow != Long.MAX_VALUE) {
+                long[] limits = new long[fTraceTimes.length];
+                for (int i = 0; i < limits.length; i++) {
+                    limits[i] = getExpiryLimit(i);
+                }
+                fNbExpired += fUnmatchedIn.removeOlderThan(limits);
+                fNbExpired += fUnmatchedOut.removeOlderThan(limits);
+            }
+        }
     }
 
+    // ------------------------------------------------------------------------
+    // Matches
+    // ------------------------------------------------------------------------
+
     /**
-     * Prints stats from the matching
-     *
-     * @return string of statistics
+     * A match waiting to be passed to the processing unit
      */
-    @SuppressWarnings("nls")
-    @Override
-    public String toString() {
-        final String cr = System.getProperty("line.separator");
-        StringBuilder b = new StringBuilder();
-        b.append(getProcessingUnit());
-        int i = 0;
-        for (ITmfTrace trace : getIndividualTraces()) {
-            b.append("Trace " + i++ + ":" + cr +
-                    "  " + fUnmatchedIn.row(trace).size() + " unmatched incoming events" + cr +
-                    "  " + fUnmatchedOut.row(trace).size() + " unmatched outgoing events" + cr);
-        }
+    private static class PendingMatch {
+        private final long fTime;
+        private final long fOtherTime;
+        private final int fSourceIndex;
+        private final TmfEventDependency fMatch;
 
-        return b.toString();
+        public PendingMatch(long time, long otherTime, int sourceIndex, TmfEventDependency match) {
+            fTime = time;
+            fOtherTime = otherTime;
+            fSourceIndex = sourceIndex;
+            fMatch = match;
+        }
     }
 
+    private static final Comparator<PendingMatch> MATCH_ORDER = new Comparator<PendingMatch>() {
+        @Override
+        public int compare(PendingMatch o1, PendingMatch o2) {
+            int cmp = Long.compare(o1.fTime, o2.fTime);
+            if (cmp == 0) {
+                cmp = Long.compare(o1.fOtherTime, o2.fOtherTime);
+            }
+            if (cmp == 0) {
+                cmp = Integer.compare(o1.fSourceIndex, o2.fSourceIndex);
+            }
+            return cmp;
+        }
+    };
+
+    /**
+     * The matches found by the shards, passed to the processing unit in time
+     * order by one thread at a time, the one which sets the forwarding flag.
+     */
+    private class MatchQueue {
+
+        private final Queue<List<PendingMatch>> fIncoming = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean fForwarding = new AtomicBoolean();
+        private final PriorityQueue<PendingMatch> fPending = new PriorityQueue<>(BUFFER_SIZE, MATCH_ORDER);
+
+        public void add(List<PendingMatch> matches) {
+            if (!matches.isEmpty()) {
+                fIncoming.add(matches);
+            }
+        }
+
+        /*
+         * Pass the matches before the time the shards have all reached, or all
+         * of them once the traces are read. Another thread which is already
+         * forwarding will pass the matches added meanwhile.
+         */
+        public void forward(boolean all) {
+            boolean retry = true;
+            while (retry && fForwarding.compareAndSet(false, true)) {
+                try {
+                    /* Read the time first, its matches are queued before it */
+                    long until = (all ? Long.MAX_VALUE : getMatchedUntil());
+                    List<PendingMatch> matches = fIncoming.poll();
+                    while (matches != null) {
+                        fPending.addAll(matches);
+                        matches = fIncoming.poll();
+                    }
+                    IMatchProcessingUnit processingUnit = getProcessingUnit();
+                    while (!fPending.isEmpty() && (all || fPending.peek().fTime < until)) {
+                        processingUnit.addMatch(fPending.poll().fMatch);
+                    }
+                } finally {
+                    fForwarding.set(false);
+                }
+                retry = !fIncoming.isEmpty();
+            }
+        }
+    }
 }
@@ -129,6 +129,12 @@ public class CustomEvent extends TmfEvent {
         return customEventTimestamp;
     }
 
+    @Override
+    public long getTimestampNanos() {
+        ITmfTimestamp timestamp = getTimestamp();
+        return (timestamp == null) ? 0 : timestamp.toNanos();
+    }
+
     @Override
     public ITmfEventField getContent() {
         return customEventContent;
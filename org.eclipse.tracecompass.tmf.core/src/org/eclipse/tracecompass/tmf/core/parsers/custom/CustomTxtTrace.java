@@ -14,12 +14,17 @@
 package org.eclipse.tracecompass.tmf.core.parsers.custom;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.regex.Matcher;
 
@@ -29,6 +34,7 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.internal.tmf.core.io.TextLineReader;
 import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomEventAspects;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
@@ -40,7 +46,7 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TraceValidationStatus;
-import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfPersistentlyIndexable;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfChunkedIndexable;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.TmfBTreeTraceIndexer;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
@@ -54,16 +60,21 @@ import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
  * @author Patrick Tassé
  * @since 3.0
  */
-public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexable {
+public class CustomTxtTrace extends TmfTrace implements ITmfChunkedIndexable {
 
     private static final TmfLongLocation NULL_LOCATION = new TmfLongLocation(-1L);
     private static final int DEFAULT_CACHE_SIZE = 100;
     private static final int MAX_LINES = 100;
     private static final int MAX_CONFIDENCE = 100;
+    /** Minimum size of the chunks read concurrently when indexing */
+    private static final long MIN_CHUNK_SIZE = 256 * 1024;
 
     private final CustomTxtTraceDefinition fDefinition;
     private final CustomTxtEventType fEventType;
-    private BufferedRandomAccessFile fFile;
+    private FileChannel fChannel;
+    private TextLineReader fReader;
+    /* Matchers of the reader, reused under the trace lock */
+    private final Map<InputLine, Matcher> fMatchers = new IdentityHashMap<>();
     private final String fTraceTypeId;
 
     private static final char SEPARATOR = ':';
@@ -110,7 +121,8 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
     public void initTrace(final IResource resource, final String path, final Class<? extends ITmfEvent> eventType) throws TmfTraceException {
         super.initTrace(resource, path, eventType);
         try {
-            fFile = new BufferedRandomAccessFile(getPath(), "r"); //$NON-NLS-1$
+            fChannel = openChannel();
+            fReader = new TextLineReader(fChannel);
         } catch (IOException e) {
             throw new TmfTraceException(e.getMessage(), e);
         }
@@ -119,16 +131,21 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
     @Override
     public synchronized void dispose() {
         super.dispose();
-        if (fFile != null) {
+        if (fChannel != null) {
             try {
-                fFile.close();
+                fChannel.close();
             } catch (IOException e) {
             } finally {
-                fFile = null;
+                fChannel = null;
+                fReader = null;
             }
         }
     }
 
+    private FileChannel openChannel() throws IOException {
+        return FileChannel.open(new File(getPath()).toPath(), StandardOpenOption.READ);
+    }
+
     @Override
     public ITmfTraceIndexer getIndexer() {
         return super.getIndexer();
@@ -142,35 +159,16 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
     @Override
     public synchronized TmfContext seekEvent(final ITmfLocation location) {
         final CustomTxtTraceContext context = new CustomTxtTraceContext(NULL_LOCATION, ITmfContext.UNKNOWN_RANK);
-        if (NULL_LOCATION.equals(location) || fFile == null) {
+        if (NULL_LOCATION.equals(location) || fReader == null) {
             return context;
         }
         try {
             if (location == null) {
-                fFile.seek(0);
+                fReader.seek(0);
             } else if (location.getLocationInfo() instanceof Long) {
-                fFile.seek((Long) location.getLocationInfo());
-            }
-            long rawPos = fFile.getFilePointer();
-            String line = fFile.getNextLine();
-            while (line != null) {
-                for (final InputLine input : getFirstLines()) {
-                    final Matcher matcher = input.getPattern().matcher(line);
-                    if (matcher.matches()) {
-                        context.setLocation(new TmfLongLocation(rawPos));
-                        context.firstLineMatcher = matcher;
-                        context.firstLine = line;
-                        context.nextLineLocation = fFile.getFilePointer();
-                        context.inputLine = input;
-                        return context;
-                    }
-                }
-                rawPos = fFile.getFilePointer();
-                line = fFile.getNextLine();
+                fReader.seek((Long) location.getLocationInfo());
             }
-            return context;
-        } catch (final FileNotFoundException e) {
-            Activator.logError("Error seeking event. File not found: " + getPath(), e); //$NON-NLS-1$
+            seekFirstLine(context, fReader, fMatchers);
             return context;
         } catch (final IOException e) {
             Activator.logError("Error seeking event. File: " + getPath(), e); //$NON-NLS-1$
@@ -181,18 +179,11 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
 
     @Override
     public synchronized TmfContext seekEvent(final double ratio) {
-        if (fFile == null) {
+        if (fReader == null) {
             return new CustomTxtTraceContext(NULL_LOCATION, ITmfContext.UNKNOWN_RANK);
         }
         try {
-            long pos = Math.round(ratio * fFile.length());
-            while (pos > 0) {
-                fFile.seek(pos - 1);
-                if (fFile.read() == '\n') {
-                    break;
-                }
-                pos--;
-            }
+            long pos = fReader.findLineStart(Math.round(ratio * fReader.size()));
             final ITmfLocation location = new TmfLongLocation(pos);
             final TmfContext context = seekEvent(location);
             context.setRank(ITmfContext.UNKNOWN_RANK);
@@ -205,12 +196,12 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
 
     @Override
     public synchronized double getLocationRatio(final ITmfLocation location) {
-        if (fFile == null) {
+        if (fReader == null) {
             return 0;
         }
         try {
             if (location.getLocationInfo() instanceof Long) {
-                return ((Long) location.getLocationInfo()).doubleValue() / fFile.length();
+                return ((Long) location.getLocationInfo()).doubleValue() / fReader.size();
             }
         } catch (final IOException e) {
             Activator.logError("Error seeking event. File: " + getPath(), e); //$NON-NLS-1$
@@ -227,13 +218,13 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
     @Override
     public synchronized CustomTxtEvent parseEvent(final ITmfContext tmfContext) {
         ITmfContext context = seekEvent(tmfContext.getLocation());
-        return parse(context);
+        return parse(context, fReader, fMatchers);
     }
 
     @Override
     public synchronized CustomTxtEvent getNext(final ITmfContext context) {
         final ITmfContext savedContext = new TmfContext(context.getLocation(), context.getRank());
-        final CustomTxtEvent event = parse(context);
+        final CustomTxtEvent event = parse(context, fReader, fMatchers);
         if (event != null) {
             updateAttributes(savedContext, event.getTimestamp());
             context.increaseRank();
@@ -241,8 +232,61 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
         return event;
     }
 
-    private synchronized CustomTxtEvent parse(final ITmfContext tmfContext) {
-        if (fFile == null) {
+    /**
+     * Position a context on the first event at or after the current line of a
+     * reader
+     */
+    private void seekFirstLine(final CustomTxtTraceContext context, final TextLineReader reader,
+            final Map<InputLine, Matcher> matchers) throws IOException {
+        long rawPos = reader.getPosition();
+        String line = reader.readLine();
+        while (line != null) {
+            if (matchFirstLine(context, reader, matchers, rawPos, line)) {
+                return;
+            }
+            rawPos = reader.getPosition();
+            line = reader.readLine();
+        }
+    }
+
+    /**
+     * Position a context on a line if it matches one of the first line
+     * patterns. The context then owns the matcher.
+     */
+    private boolean matchFirstLine(final CustomTxtTraceContext context, final TextLineReader reader,
+            final Map<InputLine, Matcher> matchers, final long rawPos, final String line) {
+        for (final InputLine input : getFirstLines()) {
+            final Matcher matcher = getMatcher(matchers, input, line);
+            if (matcher.matches()) {
+                matchers.remove(input);
+                context.setLocation(new TmfLongLocation(rawPos));
+                context.firstLineMatcher = matcher;
+                context.firstLine = line;
+                context.nextLineLocation = reader.getPosition();
+                context.inputLine = input;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get a matcher of an input line pattern, reset on a line. The matchers
+     * are reused from line to line.
+     */
+    private static Matcher getMatcher(final Map<InputLine, Matcher> matchers, final InputLine input, final String line) {
+        Matcher matcher = matchers.get(input);
+        if (matcher == null) {
+            matcher = input.getPattern().matcher(line);
+            matchers.put(input, matcher);
+        } else {
+            matcher.reset(line);
+        }
+        return matcher;
+    }
+
+    private CustomTxtEvent parse(final ITmfContext tmfContext, final TextLineReader reader, final Map<InputLine, Matcher> matchers) {
+        if (reader == null) {
             return null;
         }
         if (!(tmfContext instanceof CustomTxtTraceContext)) {
@@ -264,43 +308,25 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
         }
 
         try {
-            if (fFile.getFilePointer() != context.nextLineLocation) {
-                fFile.seek(context.nextLineLocation);
-            }
-            long rawPos = fFile.getFilePointer();
-            String line = fFile.getNextLine();
+            reader.seek(context.nextLineLocation);
+            long rawPos = reader.getPosition();
+            String line = reader.readLine();
             while (line != null) {
                 boolean processed = false;
                 if (currentInput == null) {
-                    for (final InputLine input : getFirstLines()) {
-                        final Matcher matcher = input.getPattern().matcher(line);
-                        if (matcher.matches()) {
-                            context.setLocation(new TmfLongLocation(rawPos));
-                            context.firstLineMatcher = matcher;
-                            context.firstLine = line;
-                            context.nextLineLocation = fFile.getFilePointer();
-                            context.inputLine = input;
-                            return event;
-                        }
+                    if (matchFirstLine(context, reader, matchers, rawPos, line)) {
+                        return event;
                     }
                 } else {
                     if (countMap.get(currentInput) >= currentInput.getMinCount()) {
                         final List<InputLine> nextInputs = currentInput.getNextInputs(countMap);
                         if (nextInputs.size() == 0 || nextInputs.get(nextInputs.size() - 1).getMinCount() == 0) {
-                            for (final InputLine input : getFirstLines()) {
-                                final Matcher matcher = input.getPattern().matcher(line);
-                                if (matcher.matches()) {
-                                    context.setLocation(new TmfLongLocation(rawPos));
-                                    context.firstLineMatcher = matcher;
-                                    context.firstLine = line;
-                                    context.nextLineLocation = fFile.getFilePointer();
-                                    context.inputLine = input;
-                                    return event;
-                                }
+                            if (matchFirstLine(context, reader, matchers, rawPos, line)) {
+                                return event;
                             }
                         }
                         for (final InputLine input : nextInputs) {
-                            final Matcher matcher = input.getPattern().matcher(line);
+                            final Matcher matcher = getMatcher(matchers, input, line);
                             if (matcher.matches()) {
                                 event.processGroups(input, matcher);
                                 currentInput = input;
@@ -342,7 +368,7 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
                         }
                     }
                     if (!processed && currentInput != null) {
-                        final Matcher matcher = currentInput.getPattern().matcher(line);
+                        final Matcher matcher = getMatcher(matchers, currentInput, line);
                         if (matcher.matches()) {
                             event.processGroups(currentInput, matcher);
                             countMap.put(currentInput, countMap.get(currentInput) + 1);
@@ -370,8 +396,8 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
                         ((StringBuffer) event.getContent().getValue()).append("\n").append(line); //$NON-NLS-1$
                     }
                 }
-                rawPos = fFile.getFilePointer();
-                line = fFile.getNextLine();
+                rawPos = reader.getPosition();
+                line = reader.readLine();
             }
         } catch (final IOException e) {
             Activator.logError("Error seeking event. File: " + getPath(), e); //$NON-NLS-1$
@@ -476,6 +502,135 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
         return new TmfBTreeTraceIndexer(this, interval);
     }
 
+    // ------------------------------------------------------------------------
+    // ITmfChunkedIndexable
+    // ------------------------------------------------------------------------
+
+    /**
+     * A context reading a chunk of the trace with its own channel, reader and
+     * matchers. It returns no events at or after the end of the chunk.
+     * Interrupting the thread reading the chunk closes its channel, but not
+     * the one of the trace.
+     */
+    private static class IndexingContext extends CustomTxtTraceContext {
+
+        private final FileChannel fIndexingChannel;
+        private final TextLineReader fIndexingReader;
+        private final Map<InputLine, Matcher> fIndexingMatchers = new IdentityHashMap<>();
+        private final long fEnd;
+
+        public IndexingContext(FileChannel channel, long end) {
+            super(NULL_LOCATION, ITmfContext.UNKNOWN_RANK);
+            fIndexingChannel = channel;
+            /* The indexing reader goes through its whole chunk, use a large buffer */
+            fIndexingReader = (channel == null) ? null : new TextLineReader(channel, TextLineReader.SEQUENTIAL_BUFFER_SIZE);
+            fEnd = end;
+        }
+
+        @Override
+        public void dispose() {
+            if (fIndexingChannel != null) {
+                try {
+                    fIndexingChannel.close();
+                } catch (IOException e) {
+                }
+            }
+            super.dispose();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The file is split at lines matching one of the first line patterns. A
+     * line matching them is not the first line of an event when it is read
+     * while the children lines of an event are expected, so only the traces
+     * whose definition has no children lines can be split.
+     */
+    @Override
+    public List<ITmfLocation> getIndexingChunkStarts(int maxChunks) {
+        if (fChannel == null) {
+            return Collections.emptyList();
+        }
+        for (InputLine input : getFirstLines()) {
+            if (input.childrenInputs != null && input.childrenInputs.size() > 0) {
+                return Collections.emptyList();
+            }
+        }
+        try (FileChannel channel = openChannel()) {
+            long size = channel.size();
+            int nbChunks = (int) Math.min(maxChunks, size / MIN_CHUNK_SIZE);
+            List<ITmfLocation> starts = new ArrayList<>(nbChunks);
+            TextLineReader reader = new TextLineReader(channel);
+            Map<InputLine, Matcher> matchers = new IdentityHashMap<>();
+            long previousStart = -1;
+            for (int i = 0; i < nbChunks; i++) {
+                /* Skip to the line following the chunk offset */
+                long offset = size * i / nbChunks;
+                reader.seek(Math.max(0, offset - 1));
+                if (offset > 0) {
+                    reader.readLine();
+                }
+                CustomTxtTraceContext context = new CustomTxtTraceContext(NULL_LOCATION, ITmfContext.UNKNOWN_RANK);
+                seekFirstLine(context, reader, matchers);
+                if (NULL_LOCATION.equals(context.getLocation())) {
+                    break;
+                }
+                long start = (Long) context.getLocation().getLocationInfo();
+                if (start > previousStart) {
+                    starts.add(context.getLocation());
+                    previousStart = start;
+                }
+            }
+            return starts;
+        } catch (IOException e) {
+            Activator.logError("Error splitting file: " + getPath(), e); //$NON-NLS-1$
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public ITmfContext createIndexingContext(ITmfLocation location, ITmfLocation end) {
+        long endPos = Long.MAX_VALUE;
+        if (end != null && end.getLocationInfo() instanceof Long) {
+            endPos = (Long) end.getLocationInfo();
+        }
+        if (fChannel == null) {
+            return new IndexingContext(null, endPos);
+        }
+        FileChannel channel;
+        try {
+            channel = openChannel();
+        } catch (IOException e) {
+            Activator.logError("Error opening file: " + getPath(), e); //$NON-NLS-1$
+            return new IndexingContext(null, endPos);
+        }
+        IndexingContext context = new IndexingContext(channel, endPos);
+        if (location != null && location.getLocationInfo() instanceof Long) {
+            try {
+                context.fIndexingReader.seek((Long) location.getLocationInfo());
+                seekFirstLine(context, context.fIndexingReader, context.fIndexingMatchers);
+            } catch (IOException e) {
+                Activator.logError("Error seeking event. File: " + getPath(), e); //$NON-NLS-1$
+            }
+        }
+        return context;
+    }
+
+    @Override
+    public ITmfEvent readIndexingEvent(ITmfContext context) {
+        if (!(context instanceof IndexingContext)) {
+            return null;
+        }
+        IndexingContext indexingContext = (IndexingContext) context;
+        ITmfLocation location = indexingContext.getLocation();
+        if (location == null || !(location.getLocationInfo() instanceof Long) ||
+                (Long) location.getLocationInfo() >= indexingContext.fEnd) {
+            return null;
+        }
+        return parse(indexingContext, indexingContext.fIndexingReader, indexingContext.fIndexingMatchers);
+    }
+
     @Override
     public String getTraceTypeId() {
         return fTraceTypeId;
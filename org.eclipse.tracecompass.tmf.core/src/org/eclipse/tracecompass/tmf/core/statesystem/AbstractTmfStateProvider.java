@@ -23,7 +23,6 @@ import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
-import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
@@ -50,6 +49,12 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
 
     private boolean fStateSystemAssigned;
 
+    /**
+     * Time of the latest event received, including the ones that are not
+     * handled, at which the state system is closed
+     */
+    private volatile long fLastSeenTime = 0;
+
     /** State system in which to insert the state changes */
     private @Nullable ITmfStateSystemBuilder fSS = null;
 
@@ -88,7 +93,7 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
      */
     @Override
     public long getStartTime() {
-        return fTrace.getStartTime().normalize(0, ITmfTimestamp.NANOSECOND_SCALE).getValue();
+        return fTrace.getStartTime().toNanos();
     }
 
     /**
@@ -130,6 +135,13 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
             return;
         }
 
+        fLastSeenTime = event.getTimestampNanos();
+
+        /* Skip the events this provider does not use before queuing them */
+        if (!isEventHandled(event)) {
+            return;
+        }
+
         /* Insert the event we're received into the events queue */
         ITmfEvent curEvent = event;
         try {
@@ -139,6 +151,34 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
         }
     }
 
+    /**
+     * Check whether an event can change the state. Only those events are
+     * passed to {@link #eventHandle(ITmfEvent)}. This is called from the
+     * thread reading the trace, so it should be fast and thread-safe. The
+     * default is to handle all the events.
+     *
+     * @param event
+     *            The event
+     * @return True if the event is handled by this state provider
+     */
+    protected boolean isEventHandled(ITmfEvent event) {
+        return true;
+    }
+
+    /**
+     * Check whether a history built by this state provider can be suspended
+     * when its trace is closed while still being written, and resumed by a
+     * new instance of the provider. This is only possible if all the state of
+     * the provider is in the state system: fields kept from one event to the
+     * next, like accumulated values or state changes held back, would be lost.
+     * The default is false, the history is then built from scratch again.
+     *
+     * @return True if the construction of the history can be resumed
+     */
+    public boolean isResumable() {
+        return false;
+    }
+
     /**
      * Block the caller until the events queue is empty.
      */
@@ -189,8 +229,6 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
      */
     private class EventProcessor implements Runnable {
 
-        private @Nullable ITmfEvent currentEvent;
-
         @Override
         public void run() {
             if (!fStateSystemAssigned) {
@@ -212,7 +250,6 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
                         event = checkNotNull(fEventsQueue.take());
                         continue;
                     }
-                    currentEvent = event;
                     eventHandle(event);
                     event = checkNotNull(fEventsQueue.take());
                 }
@@ -227,11 +264,14 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
         }
 
         private void closeStateSystem() {
-            ITmfEvent event = currentEvent;
-            final long endTime = (event == null) ? 0 :
-                    event.getTimestamp().normalize(0, ITmfTimestamp.NANOSECOND_SCALE).getValue();
+            /*
+             * Close at the latest event read, not the latest one handled, so
+             * that the history covers the events skipped at the end
+             */
+            final long endTime = fLastSeenTime;
 
             if (fSS != null) {
+                done();
                 fSS.closeHistory(endTime);
             }
         }
@@ -256,4 +296,13 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
      */
     protected abstract void eventHandle(ITmfEvent event);
 
+    /**
+     * Called from the event handler thread after the last event was handled,
+     * before the state system is closed. State providers which hold back some
+     * state changes can insert them here. The default does nothing.
+     */
+    protected void done() {
+        /* Nothing to do by default */
+    }
+
 }
@@ -15,7 +15,11 @@ package org.eclipse.tracecompass.tmf.core.statesystem;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.concurrent.CountDownLatch;
@@ -24,11 +28,14 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partial.PartialHistoryBackend;
 import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partial.PartialStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.AttributeIndexedBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.IAppendableStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.backend.InMemoryBackend;
 import org.eclipse.tracecompass.statesystem.core.backend.NullBackend;
@@ -65,6 +72,16 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
 
     private static final String EXTENSION = ".ht"; //$NON-NLS-1$
 
+    /** Extension of the file saving where to resume a suspended history */
+    private static final String RESUME_EXTENSION = ".resume"; //$NON-NLS-1$
+    private static final int RESUME_MAGIC_NUMBER = 0x05FFA9E5;
+
+    /** Extension of the file of the attribute index of a full history */
+    private static final String INDEX_EXTENSION = ".idx"; //$NON-NLS-1$
+
+    /** Size of the blocking queue to use when building a state history */
+    private static final int QUEUE_SIZE = 10000;
+
     private final CountDownLatch fInitialized = new CountDownLatch(1);
     private final Object fRequestSyncObj = new Object();
 
@@ -136,6 +153,18 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         return StateSystemBackendType.FULL;
     }
 
+    /**
+     * Whether the full history of this module should also be indexed by
+     * attribute, see {@link AttributeIndexedBackend}. This makes reading the
+     * whole history of an attribute faster, at the cost of an additional file
+     * as big as the history. The default is false, sub-classes can override.
+     *
+     * @return True if an attribute index is built along with the history
+     */
+    protected boolean useAttributeIndex() {
+        return false;
+    }
+
     /**
      * Get the supplementary file name where to save this state system. The
      * default is the ID of the analysis followed by the extension.
@@ -230,11 +259,61 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
     @Override
     public void dispose() {
         super.dispose();
-        if (fStateSystem != null) {
-            fStateSystem.dispose();
+        ITmfStateSystemBuilder ss = fStateSystem;
+        if (ss != null) {
+            suspendHistory(ss);
+            ss.dispose();
         }
     }
 
+    /*
+     * If the trace is still being written, save the history built so far
+     * instead of deleting it, so that its construction resumes from the same
+     * event the next time the trace is opened. Only the histories of the
+     * state providers which keep all their state in the state system can be
+     * resumed.
+     */
+    private void suspendHistory(ITmfStateSystemBuilder ss) {
+        ITmfStateProvider provider = fStateProvider;
+        IStateHistoryBackend backend = fHtBackend;
+        if (!(provider instanceof AbstractTmfStateProvider) ||
+                !((AbstractTmfStateProvider) provider).isResumable() ||
+                !(backend instanceof IAppendableStateHistoryBackend) ||
+                provider.getAssignedStateSystem() == null ||
+                isCompleteTrace(provider.getTrace())) {
+            return;
+        }
+        File htFile = backend.supplyAttributeTreeWriterFile();
+        if (htFile == null) {
+            return;
+        }
+
+        /* Wait for the requests, a new one could be started by the last one */
+        ITmfEventRequest request = fRequest;
+        try {
+            while (request != null) {
+                if (!request.isCompleted()) {
+                    request.cancel();
+                }
+                request.waitForCompletion();
+                if (request == fRequest) {
+                    break;
+                }
+                request = fRequest;
+            }
+        } catch (InterruptedException e) {
+            return;
+        }
+
+        /* The events read so far must all be in the state system */
+        ((AbstractTmfStateProvider) provider).waitForEmptyQueue();
+        if (ss.suspendHistory()) {
+            writeResumeRank(getResumeFile(htFile), fNbRead);
+        }
+        /* Stop the event handler, the history is not closed */
+        provider.dispose();
+    }
+
     // ------------------------------------------------------------------------
     // History creation methods
     // ------------------------------------------------------------------------
@@ -254,7 +333,9 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
            /* Load an existing history */
             final int version = provider.getVersion();
             try {
-                IStateHistoryBackend backend = new HistoryTreeBackend(htFile, version);
+                HistoryTreeBackend htBackend = new HistoryTreeBackend(htFile, version);
+                IStateHistoryBackend backend = (useAttributeIndex() ?
+                        new AttributeIndexedBackend(htBackend, getIndexFile(htFile), false) : htBackend);
                 fHtBackend = backend;
                 fStateSystem = StateSystemFactory.newStateSystem(id, backend, false);
                 fInitialized.countDown();
@@ -262,18 +343,25 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
             } catch (IOException e) {
                 /*
                  * There was an error opening the existing file. Perhaps it was
-                 * corrupted, perhaps it's an old version? We'll just
-                 * fall-through and try to build a new one from scratch instead.
+                 * corrupted, perhaps it's an old version, or its construction
+                 * was suspended? Try to resume it, or fall-through and build
+                 * a new one from scratch instead.
                  */
             }
+            if (isResumable(provider) && resumeFullHistory(id, provider, htFile)) {
+                return;
+            }
+        }
+        File resumeFile = getResumeFile(htFile);
+        if (resumeFile.exists() && !resumeFile.delete()) {
+            Activator.logWarning("Cannot delete " + resumeFile); //$NON-NLS-1$
         }
-
-        /* Size of the blocking queue to use when building a state history */
-        final int QUEUE_SIZE = 10000;
 
         try {
-            IStateHistoryBackend backend = new ThreadedHistoryTreeBackend(htFile,
+            ThreadedHistoryTreeBackend htBackend = new ThreadedHistoryTreeBackend(htFile,
                     provider.getStartTime(), provider.getVersion(), QUEUE_SIZE);
+            IStateHistoryBackend backend = (useAttributeIndex() ?
+                    new AttributeIndexedBackend(htBackend, getIndexFile(htFile), true) : htBackend);
             fHtBackend = backend;
             fStateSystem = StateSystemFactory.newStateSystem(id, backend);
             provider.assignTargetStateSystem(fStateSystem);
@@ -287,6 +375,81 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         }
     }
 
+    /*
+     * Resume the construction of a history that was suspended when the trace
+     * was closed, from the rank of the first event it has not seen. Returns
+     * false if there is no suspended history to resume.
+     */
+    private boolean resumeFullHistory(String id, ITmfStateProvider provider, File htFile) {
+        File resumeFile = getResumeFile(htFile);
+        long nbRead = readResumeRank(resumeFile);
+        /*
+         * Whatever happens, the rank is only valid for the file as it is now,
+         * until intervals are appended to it.
+         */
+        if (resumeFile.exists() && !resumeFile.delete()) {
+            return false;
+        }
+        if (nbRead < 0 || nbRead > Integer.MAX_VALUE) {
+            return false;
+        }
+        /* The index is only built with a complete history */
+        File indexFile = getIndexFile(htFile);
+        if (indexFile.exists() && !indexFile.delete()) {
+            Activator.logWarning("Cannot delete " + indexFile); //$NON-NLS-1$
+        }
+
+        IStateHistoryBackend backend;
+        try {
+            backend = new ThreadedHistoryTreeBackend(htFile, provider.getVersion(), QUEUE_SIZE);
+        } catch (IOException e) {
+            return false;
+        }
+        try {
+            fStateSystem = StateSystemFactory.newStateSystem(id, backend, false);
+        } catch (IOException e) {
+            /* Deletes the file, it will be built from scratch */
+            backend.dispose();
+            return false;
+        }
+        fHtBackend = backend;
+        fNbRead = (int) nbRead;
+        provider.assignTargetStateSystem(fStateSystem);
+        build(provider);
+        return true;
+    }
+
+    private static File getResumeFile(File htFile) {
+        return new File(htFile.getPath() + RESUME_EXTENSION);
+    }
+
+    private static File getIndexFile(File htFile) {
+        return new File(htFile.getPath() + INDEX_EXTENSION);
+    }
+
+    private static long readResumeRank(File resumeFile) {
+        if (!resumeFile.exists()) {
+            return -1;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(resumeFile));) {
+            if (in.readInt() != RESUME_MAGIC_NUMBER) {
+                return -1;
+            }
+            return in.readLong();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static void writeResumeRank(File resumeFile, long nbRead) {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(resumeFile));) {
+            out.writeInt(RESUME_MAGIC_NUMBER);
+            out.writeLong(nbRead);
+        } catch (IOException e) {
+            Activator.logError("Error saving the state of " + resumeFile, e); //$NON-NLS-1$
+        }
+    }
+
     /*
      * Create a new state system backed with a partial history. A partial
      * history is similar to a "full" one (which you get with
@@ -317,10 +480,9 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
          * 7- Call HistoryBuilder(realProvider, realSS, partialBackend) to build the thing.
          */
 
-        /* Size of the blocking queue to use when building a state history */
-        final int QUEUE_SIZE = 10000;
-
+        /* Maximum number of events and of state changes between checkpoints */
         final long granularity = 50000;
+        final long maxStateChanges = 20000;
 
         /* 2 */
         IStateHistoryBackend realBackend = null;
@@ -342,7 +504,7 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
 
         /* 3 */
         IStateHistoryBackend partialBackend =
-                new PartialHistoryBackend(partialProvider, pss, realBackend, granularity);
+                new PartialHistoryBackend(partialProvider, pss, realBackend, granularity, maxStateChanges);
 
         /* 4 */
         @SuppressWarnings("restriction")
@@ -499,6 +661,9 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
             super.handleCancel();
             if (isCompleteTrace(trace)) {
                 disposeProvider(true);
+            } else {
+                /* The events read so far were sent to the state provider */
+                fNbRead += getNbRead();
             }
         }
 
@@ -557,6 +722,10 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         fRequest = request;
     }
 
+    private static boolean isResumable(ITmfStateProvider provider) {
+        return (provider instanceof AbstractTmfStateProvider) && ((AbstractTmfStateProvider) provider).isResumable();
+    }
+
     private static boolean isCompleteTrace(ITmfTrace trace) {
         return !(trace instanceof ITmfTraceCompleteness) || ((ITmfTraceCompleteness) trace).isComplete();
     }
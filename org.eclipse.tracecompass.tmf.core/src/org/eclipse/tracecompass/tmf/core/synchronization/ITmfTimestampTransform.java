@@ -43,6 +43,21 @@ public interface ITmfTimestampTransform extends Serializable {
      */
     long transform(long timestamp);
 
+    /**
+     * Transforms a batch of timestamp values, with the same results as
+     * transforming them one at a time with {@link #transform(long)}. The input
+     * and output arrays may be the same array.
+     *
+     * @param in
+     *            The timestamps to transform, in nanoseconds
+     * @param out
+     *            The array where to write the transformed values
+     * @param n
+     *            The number of timestamps to transform, from the start of the
+     *            arrays
+     */
+    void transform(long[] in, long[] out, int n);
+
     /**
      * Returns a timestamp transform that is the composition of two timestamp
      * transforms. Composed objects must be the same type.
@@ -78,6 +78,15 @@ public interface ITmfTimestamp extends Comparable<ITmfTimestamp> {
      */
     int getScale();
 
+    /**
+     * Get the value of this timestamp in nanoseconds, without creating an
+     * intermediate timestamp. Values that do not fit in a long are saturated
+     * to {@link Long#MIN_VALUE} or {@link Long#MAX_VALUE}.
+     *
+     * @return the timestamp value, in nanoseconds
+     */
+    long toNanos();
+
     // ------------------------------------------------------------------------
     // Operations
     // ------------------------------------------------------------------------
@@ -50,7 +50,7 @@ public class TmfNanoTimestamp extends TmfTimestamp {
      *            The timestamp to copy
      */
     public TmfNanoTimestamp(final ITmfTimestamp timestamp) {
-        super(timestamp.normalize(0, ITmfTimestamp.NANOSECOND_SCALE).getValue(), ITmfTimestamp.NANOSECOND_SCALE);
+        super(timestamp.toNanos(), ITmfTimestamp.NANOSECOND_SCALE);
     }
 
     // ------------------------------------------------------------------------
@@ -60,6 +60,9 @@ public class TmfNanoTimestamp extends TmfTimestamp {
     @Override
     public ITmfTimestamp normalize(final long offset, final int scale) {
         if (scale == ITmfTimestamp.NANOSECOND_SCALE) {
+            if (offset == 0) {
+                return this;
+            }
             return new TmfNanoTimestamp(getValue() + offset);
         }
         return super.normalize(offset, scale);
@@ -186,6 +186,29 @@ public class TmfTimestamp implements ITmfTimestamp {
         1000000000000000000L,
     };
 
+    @Override
+    public long toNanos() {
+        if (fScale == ITmfTimestamp.NANOSECOND_SCALE || isBigBangOrBigCrunch()) {
+            return fValue;
+        }
+        final int scaleDiff = fScale - ITmfTimestamp.NANOSECOND_SCALE;
+        if (scaleDiff < 0) {
+            /* Finer than nanoseconds, the value is simply divided */
+            return (-scaleDiff >= scalingFactors.length) ? 0 : fValue / scalingFactors[-scaleDiff];
+        }
+        /* Coarser than nanoseconds, the value is multiplied and saturates */
+        if (fValue == 0) {
+            return 0;
+        }
+        if (scaleDiff < scalingFactors.length) {
+            final long scalingFactor = scalingFactors[scaleDiff];
+            if (Math.abs(fValue) <= Long.MAX_VALUE / scalingFactor) {
+                return fValue * scalingFactor;
+            }
+        }
+        return (fValue > 0) ? Long.MAX_VALUE : Long.MIN_VALUE;
+    }
+
     @Override
     public ITmfTimestamp normalize(final long offset, final int scale) {
 
@@ -197,7 +220,7 @@ public class TmfTimestamp implements ITmfTimestamp {
         }
 
         // In case of big bang and big crunch just return this (no need to normalize)
-        if (this.equals(BIG_BANG) || this.equals(BIG_CRUNCH)) {
+        if (isBigBangOrBigCrunch()) {
             return this;
         }
 
@@ -226,6 +249,11 @@ public class TmfTimestamp implements ITmfTimestamp {
         return new TmfTimestamp(value, scale);
     }
 
+    private boolean isBigBangOrBigCrunch() {
+        return (fScale == BIG_BANG.getScale() && fValue == BIG_BANG.getValue()) ||
+                (fScale == BIG_CRUNCH.getScale() && fValue == BIG_CRUNCH.getValue());
+    }
+
     @Override
     public ITmfTimestamp getDelta(final ITmfTimestamp ts) {
         final ITmfTimestamp nts = ts.normalize(0, fScale);
@@ -255,6 +283,10 @@ public class TmfTimestamp implements ITmfTimestamp {
         if (this == ts || (fValue == ts.getValue() && fScale == ts.getScale())) {
             return 0;
         }
+        if (fScale == ts.getScale()) {
+            /* Same scale, including the big bang and big crunch */
+            return Long.compare(fValue, ts.getValue());
+        }
         if ((fValue == BIG_BANG.getValue() && fScale == BIG_BANG.getScale()) || (ts.getValue() == BIG_CRUNCH.getValue() && ts.getScale() == BIG_CRUNCH.getScale())) {
             return -1;
         }
@@ -413,17 +413,25 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
             expContext.setLastTrace(TmfExperimentContext.NO_TRACE);
         }
 
-        // Scan the candidate events and identify the "next" trace to read from
+        // Scan the candidate events and identify the "next" trace to read from.
+        // The cached nanosecond values are compared, to avoid normalizing the
+        // timestamps of the traces for every event. They are rounded, so the
+        // timestamps themselves are compared when they are equal, unless both
+        // are in nanoseconds.
         int trace = TmfExperimentContext.NO_TRACE;
-        ITmfTimestamp timestamp = TmfTimestamp.BIG_CRUNCH;
+        ITmfTimestamp timestamp = null;
+        long timestampNanos = Long.MAX_VALUE;
         for (int i = 0; i < length; i++) {
             final ITmfEvent event = expContext.getEvent(i);
 
             if (event != null && event.getTimestamp() != null) {
                 final ITmfTimestamp otherTS = event.getTimestamp();
-                if (otherTS.compareTo(timestamp) < 0) {
+                final long otherNanos = event.getTimestampNanos();
+                if (timestamp == null || otherNanos < timestampNanos ||
+                        (otherNanos == timestampNanos && isSubNanosecondEarlier(otherTS, timestamp))) {
                     trace = i;
                     timestamp = otherTS;
+                    timestampNanos = otherNanos;
                 }
             }
         }
@@ -451,6 +459,18 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
         return event;
     }
 
+    /*
+     * Check if a timestamp is before another one with the same nanosecond
+     * value. They can only differ if one of them is finer than nanoseconds,
+     * or if their scales differ.
+     */
+    private static boolean isSubNanosecondEarlier(ITmfTimestamp ts, ITmfTimestamp other) {
+        if (ts.getScale() == other.getScale() && ts.getScale() >= ITmfTimestamp.NANOSECOND_SCALE) {
+            return false;
+        }
+        return ts.compareTo(other) < 0;
+    }
+
     /**
      * @since 2.0
      */
@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.trace.indexer;
+
+import java.util.List;
+
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+
+/**
+ * A trace implementing this interface can be split into chunks of consecutive
+ * events that are read concurrently when its checkpoint index is built from
+ * scratch. Unlike {@link ITmfParallelIndexable}, the chunks are delimited by
+ * locations, so the events do not need to be sorted by time stamp.
+ *
+ * The contexts returned by this interface are private to the indexer: reading
+ * through them must neither update the trace attributes (number of events,
+ * time range) nor call the trace indexer, and they must be usable from
+ * several threads at the same time.
+ */
+public interface ITmfChunkedIndexable extends ITmfPersistentlyIndexable {
+
+    /**
+     * Get the locations of the first events of the chunks the trace can be
+     * split into. The first location is the one of the first event of the
+     * trace, and the events of a chunk all come before the ones of the next
+     * chunk. A chunk ends where the next one starts, the last one ends with
+     * the trace.
+     *
+     * @param maxChunks
+     *            the maximum number of chunks to return
+     * @return the start locations of the chunks. A list with less than two
+     *         elements means the trace cannot be split.
+     */
+    List<ITmfLocation> getIndexingChunkStarts(int maxChunks);
+
+    /**
+     * Create an indexing context pointing to the given location of a chunk,
+     * either its start or one obtained from another indexing context
+     *
+     * @param location
+     *            the location to seek
+     * @param end
+     *            the start location of the next chunk, where the context stops
+     *            returning events, or null to read until the end of the trace
+     * @return the new context, to be disposed by the caller
+     */
+    ITmfContext createIndexingContext(ITmfLocation location, ITmfLocation end);
+
+    /**
+     * Read the event at the current location of an indexing context, then
+     * advance the context to the next event.
+     *
+     * @param context
+     *            an indexing context
+     * @return the event, or null if there are no more events in the chunk
+     */
+    ITmfEvent readIndexingEvent(ITmfContext context);
+}
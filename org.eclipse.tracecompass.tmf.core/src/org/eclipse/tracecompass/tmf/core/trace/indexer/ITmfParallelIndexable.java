@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.trace.indexer;
+
+import java.util.List;
+
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+
+/**
+ * A trace implementing this interface can be split into independent time
+ * ranges that are read concurrently when its checkpoint index is built from
+ * scratch.
+ *
+ * The contexts returned by this interface are private to the indexer: reading
+ * through them must neither update the trace attributes (number of events,
+ * time range) nor call the trace indexer, and they must be usable from
+ * several threads at the same time.
+ */
+public interface ITmfParallelIndexable extends ITmfPersistentlyIndexable {
+
+    /**
+     * Get the start time stamps of the ranges the trace can be split into.
+     * The time stamps are in increasing order and the first one must be at or
+     * before the first event of the trace. A range ends where the next one
+     * starts, the last one ends with the trace.
+     *
+     * @param maxRanges
+     *            the maximum number of ranges to return
+     * @return the start time stamps of the ranges. A list with less than two
+     *         elements means the trace cannot be split.
+     */
+    List<ITmfTimestamp> getIndexingRangeStarts(int maxRanges);
+
+    /**
+     * Create an indexing context pointing to the first event with a time
+     * stamp greater or equal to the given one
+     *
+     * @param timestamp
+     *            the time stamp to seek
+     * @return the new context, to be disposed by the caller
+     */
+    ITmfContext createIndexingContext(ITmfTimestamp timestamp);
+
+    /**
+     * Create an indexing context pointing to the given location, typically
+     * one obtained from another indexing context
+     *
+     * @param location
+     *            the location to seek
+     * @return the new context, to be disposed by the caller
+     */
+    ITmfContext createIndexingContext(ITmfLocation location);
+
+    /**
+     * Read the event at the current location of an indexing context, then
+     * advance the context to the next event.
+     *
+     * @param context
+     *            an indexing context
+     * @return the event, or null if there are no more events
+     */
+    ITmfEvent readIndexingEvent(ITmfContext context);
+}
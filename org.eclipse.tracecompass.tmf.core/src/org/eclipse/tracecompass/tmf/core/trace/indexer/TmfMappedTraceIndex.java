@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.trace.indexer;
+
+import java.io.File;
+
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.BTree;
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.BufferedFlatArray;
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.FlatArray;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpointIndex;
+
+/**
+ * A checkpoint index for traces with a lot of checkpoints. Like
+ * {@link TmfBTreeTraceIndex}, checkpoints are searched by time stamp in a
+ * BTree and by rank in a flat array, but the flat array is read in blocks and
+ * written in bulk, and the number of BTree nodes kept in memory can be
+ * configured.
+ *
+ * The files are compatible with the ones of {@link TmfBTreeTraceIndex}.
+ */
+public class TmfMappedTraceIndex implements ITmfCheckpointIndex {
+
+    /**
+     * Default number of BTree nodes kept in memory
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private static final int BTREE_DEGREE = 15;
+
+    private final BTree fCheckpoints;
+    private final BufferedFlatArray fCheckpointRanks;
+
+    /**
+     * Creates an index for the given trace, using the default cache size
+     *
+     * @param trace
+     *            the trace
+     */
+    public TmfMappedTraceIndex(ITmfTrace trace) {
+        this(trace, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates an index for the given trace
+     *
+     * @param trace
+     *            the trace
+     * @param cacheSize
+     *            the number of BTree nodes to keep in memory
+     */
+    public TmfMappedTraceIndex(ITmfTrace trace, int cacheSize) {
+        BTree bTree = createBTree(trace, cacheSize);
+        BufferedFlatArray flatArray = createFlatArray(trace);
+
+        // If one of the files is created from scratch, make sure we rebuild the other one too
+        if (bTree.isCreatedFromScratch() != flatArray.isCreatedFromScratch()) {
+            bTree.delete();
+            flatArray.delete();
+            bTree = createBTree(trace, cacheSize);
+            flatArray = createFlatArray(trace);
+        }
+
+        fCheckpoints = bTree;
+        fCheckpointRanks = flatArray;
+    }
+
+    private static BufferedFlatArray createFlatArray(ITmfTrace trace) {
+        return new BufferedFlatArray(getIndexFile(trace, FlatArray.INDEX_FILE_NAME), (ITmfPersistentlyIndexable) trace);
+    }
+
+    private static BTree createBTree(ITmfTrace trace, int cacheSize) {
+        return new BTree(BTREE_DEGREE, getIndexFile(trace, BTree.INDEX_FILE_NAME), (ITmfPersistentlyIndexable) trace, cacheSize);
+    }
+
+    private static File getIndexFile(ITmfTrace trace, String fileName) {
+        String directory = TmfTraceManager.getSupplementaryFileDir(trace);
+        return new File(directory + fileName);
+    }
+
+    @Override
+    public void dispose() {
+        fCheckpoints.dispose();
+        fCheckpointRanks.dispose();
+    }
+
+    @Override
+    public void insert(ITmfCheckpoint checkpoint) {
+        fCheckpoints.insert(checkpoint);
+        fCheckpointRanks.insert(checkpoint);
+        fCheckpoints.setSize(fCheckpoints.size() + 1);
+    }
+
+    @Override
+    public ITmfCheckpoint get(long checkpoint) {
+        return fCheckpointRanks.get(checkpoint);
+    }
+
+    @Override
+    public long binarySearch(ITmfCheckpoint checkpoint) {
+        return fCheckpoints.binarySearch(checkpoint);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public int size() {
+        return fCheckpoints.size();
+    }
+
+    @Override
+    public boolean isCreatedFromScratch() {
+        return fCheckpoints.isCreatedFromScratch();
+    }
+
+    @Override
+    public void setTimeRange(TmfTimeRange timeRange) {
+        fCheckpoints.setTimeRange(timeRange);
+    }
+
+    @Override
+    public void setNbEvents(long nbEvents) {
+        fCheckpoints.setNbEvents(nbEvents);
+    }
+
+    @Override
+    public TmfTimeRange getTimeRange() {
+        return fCheckpoints.getTimeRange();
+    }
+
+    @Override
+    public long getNbEvents() {
+        return fCheckpoints.getNbEvents();
+    }
+
+    @Override
+    public void setIndexComplete() {
+        fCheckpoints.setIndexComplete();
+        fCheckpointRanks.setIndexComplete();
+    }
+
+}
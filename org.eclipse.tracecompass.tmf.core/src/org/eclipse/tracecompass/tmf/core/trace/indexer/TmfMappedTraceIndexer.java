@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.trace.indexer;
+
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpointIndex;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpointIndexer;
+
+/**
+ * An indexer that uses a {@link TmfMappedTraceIndex} to store checkpoints.
+ * Sub-classes can override {@link #createIndex} to use a different cache size.
+ */
+public class TmfMappedTraceIndexer extends TmfCheckpointIndexer {
+
+    /**
+     * Full trace indexer
+     *
+     * @param trace
+     *            the trace to index
+     * @param interval
+     *            the checkpoints interval
+     */
+    public TmfMappedTraceIndexer(ITmfTrace trace, int interval) {
+        super(trace, interval);
+    }
+
+    @Override
+    protected ITmfCheckpointIndex createIndex(ITmfTrace trace) {
+        return new TmfMappedTraceIndex(trace);
+    }
+}
@@ -13,11 +13,16 @@
 
 package org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
 import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
 import org.eclipse.tracecompass.internal.tmf.core.Messages;
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.ParallelIndexBuilder;
 import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.TmfMemoryIndex;
 import org.eclipse.tracecompass.tmf.core.component.TmfEventProvider;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
@@ -29,6 +34,8 @@ import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceCompleteness;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfChunkedIndexable;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfParallelIndexable;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 
@@ -44,6 +51,10 @@ import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
  * <p>
  * Locating a specific checkpoint is trivial for both rank (rank % interval) and
  * timestamp (bsearch in the array).
+ * <p>
+ * Traces implementing {@link ITmfParallelIndexable} or
+ * {@link ITmfChunkedIndexable} are indexed from scratch by reading several
+ * ranges of the trace concurrently.
  * *
  * @see ITmfTrace
  * @see ITmfEvent
@@ -77,6 +88,11 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
      */
     private ITmfEventRequest fIndexingRequest = null;
 
+    /**
+     * The parallel indexing job, for traces that support it
+     */
+    private Job fParallelIndexingJob = null;
+
     // ------------------------------------------------------------------------
     // Construction
     // ------------------------------------------------------------------------
@@ -121,6 +137,9 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
         if ((fIndexingRequest != null) && !fIndexingRequest.isCompleted()) {
             fIndexingRequest.cancel();
         }
+        if (fParallelIndexingJob != null) {
+            fParallelIndexingJob.cancel();
+        }
 
         fTraceIndex.dispose();
     }
@@ -165,6 +184,28 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
             return;
         }
 
+        // Read independent ranges of the trace concurrently if possible
+        if (offset == 0 && TmfTimeRange.ETERNITY.equals(range) && isCompleteTrace(fTrace)) {
+            int nbThreads = Runtime.getRuntime().availableProcessors();
+            if (fTrace instanceof ITmfParallelIndexable) {
+                buildIndexInParallel(new ParallelIndexBuilder((ITmfParallelIndexable) fTrace, fTraceIndex,
+                        this, fCheckpointInterval, nbThreads), waitForCompletion);
+                return;
+            }
+            if (fTrace instanceof ITmfChunkedIndexable) {
+                buildIndexInParallel(new ParallelIndexBuilder((ITmfChunkedIndexable) fTrace, fTraceIndex,
+                        this, fCheckpointInterval, nbThreads), waitForCompletion);
+                return;
+            }
+        }
+
+        buildIndexSequentially(offset, range, waitForCompletion);
+    }
+
+    /**
+     * Build the index with one request reading the whole trace
+     */
+    private void buildIndexSequentially(final long offset, final TmfTimeRange range, final boolean waitForCompletion) {
         // The monitoring job
         final Job job = new Job("Indexing " + fTrace.getName() + "...") { //$NON-NLS-1$ //$NON-NLS-2$
             @Override
@@ -238,6 +279,67 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
         }
     }
 
+    /**
+     * Build the index with a job reading ranges of the trace concurrently. If
+     * the trace cannot be split or if the parallel build fails, the index is
+     * completed with the sequential request, sent once the job is done.
+     */
+    private void buildIndexInParallel(final ParallelIndexBuilder builder, final boolean waitForCompletion) {
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        final Job job = new Job(Messages.TmfCheckpointIndexer_Indexing + ' ' + fTrace.getName()) {
+            @Override
+            protected IStatus run(final IProgressMonitor monitor) {
+                monitor.beginTask("", IProgressMonitor.UNKNOWN); //$NON-NLS-1$
+                boolean success = builder.build(monitor, new ParallelIndexBuilder.IProgressListener() {
+                    @Override
+                    public void rangeIndexed(TmfTimeRange range, long nbEvents) {
+                        setName(Messages.TmfCheckpointIndexer_Indexing + ' ' + fTrace.getName() + " (" + nbEvents + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+                        fTrace.broadcast(new TmfTraceUpdatedSignal(TmfCheckpointIndexer.this, fTrace, range, nbEvents));
+                    }
+                });
+                monitor.done();
+                if (monitor.isCanceled()) {
+                    fIsIndexing = false;
+                    return Status.CANCEL_STATUS;
+                }
+                TmfTimeRange timeRange = builder.getTimeRange();
+                if (!success || timeRange == null) {
+                    failed.set(true);
+                    return Status.OK_STATUS;
+                }
+                fTraceIndex.setTimeRange(timeRange);
+                fTraceIndex.setNbEvents(builder.getNbEvents());
+                fTraceIndex.setIndexComplete();
+                fTrace.broadcast(new TmfTraceUpdatedSignal(TmfCheckpointIndexer.this, fTrace, timeRange, builder.getNbEvents()));
+                fIsIndexing = false;
+                return Status.OK_STATUS;
+            }
+        };
+        job.setSystem(true);
+        fParallelIndexingJob = job;
+        /* Checkpoints inserted so far are kept, the request completes the index */
+        if (waitForCompletion) {
+            job.schedule();
+            try {
+                job.join();
+            } catch (final InterruptedException e) {
+            }
+            if (failed.get()) {
+                buildIndexSequentially(0, TmfTimeRange.ETERNITY, true);
+            }
+        } else {
+            job.addJobChangeListener(new JobChangeAdapter() {
+                @Override
+                public void done(IJobChangeEvent event) {
+                    if (failed.get()) {
+                        buildIndexSequentially(0, TmfTimeRange.ETERNITY, false);
+                    }
+                }
+            });
+            job.schedule();
+        }
+    }
+
     /**
      * Notify the interested parties that the trace time range has changed
      *
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.ctf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.tracecompass.ctf.core.tests.synthetictraces.LttngKernelTraceGenerator;
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.ParallelIndexBuilder;
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.TmfMemoryIndex;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+import org.eclipse.tracecompass.tmf.ctf.core.event.CtfTmfEvent;
+import org.eclipse.tracecompass.tmf.ctf.core.trace.CtfTmfTrace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test that indexing a multi-stream CTF trace in parallel gives the same
+ * checkpoints as reading it sequentially.
+ *
+ * The trace is generated, with a duration short enough for the time stamps of
+ * the generator to fit in an int.
+ */
+public class CtfTmfParallelIndexTest {
+
+    private static final String TRACE_DIRECTORY = TmfTraceManager.getTemporaryDirPath() + File.separator + "parallelIndexTrace";
+    private static final String TRACE_PATH = TRACE_DIRECTORY + File.separator + "kernel";
+    private static final long DURATION = 1000000000L;
+    private static final long NB_EVENTS = 100000;
+    private static final int NB_STREAMS = 8;
+    private static final int INTERVAL = 1000;
+    private static final int NB_THREADS = 4;
+
+    private CtfTmfTrace fTrace;
+
+    /**
+     * Perform pre-test initialization.
+     *
+     * @throws TmfTraceException
+     *             If the generated trace cannot be opened
+     */
+    @Before
+    public void setUp() throws TmfTraceException {
+        new File(TRACE_DIRECTORY).mkdir();
+        new LttngKernelTraceGenerator(DURATION, NB_EVENTS, NB_STREAMS).writeTrace(new File(TRACE_PATH));
+        fTrace = new CtfTmfTrace();
+        fTrace.initTrace((IResource) null, TRACE_PATH, CtfTmfEvent.class);
+    }
+
+    /**
+     * Perform post-test clean-up.
+     */
+    @After
+    public void tearDown() {
+        if (fTrace != null) {
+            String supplementaryDirectory = TmfTraceManager.getSupplementaryFileDir(fTrace);
+            fTrace.dispose();
+            deleteDirectory(new File(supplementaryDirectory));
+        }
+        deleteDirectory(new File(TRACE_PATH));
+        deleteDirectory(new File(TRACE_DIRECTORY));
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Compare the checkpoints of the parallel build with the ones of a
+     * sequential read of the trace
+     */
+    @Test
+    public void testSameCheckpoints() {
+        List<ITmfCheckpoint> expected = new ArrayList<>();
+        long nbEvents = 0;
+        ITmfContext context = fTrace.seekEvent(0L);
+        ITmfLocation location = context.getLocation();
+        ITmfEvent event = fTrace.getNext(context);
+        while (event != null) {
+            if (nbEvents % INTERVAL == 0) {
+                expected.add(new TmfCheckpoint(event.getTimestamp(), location, nbEvents / INTERVAL));
+            }
+            nbEvents++;
+            location = context.getLocation();
+            event = fTrace.getNext(context);
+        }
+        context.dispose();
+
+        TmfMemoryIndex index = new TmfMemoryIndex(fTrace);
+        ParallelIndexBuilder builder = new ParallelIndexBuilder(fTrace, index, this, INTERVAL, NB_THREADS);
+        boolean built = builder.build(new NullProgressMonitor(), new ParallelIndexBuilder.IProgressListener() {
+            @Override
+            public void rangeIndexed(TmfTimeRange range, long nb) {
+                /* Nothing to do */
+            }
+        });
+        assertTrue("Trace not split", built);
+        assertEquals("Number of events", nbEvents, builder.getNbEvents());
+        assertEquals("Number of checkpoints", expected.size(), index.size());
+        for (int i = 0; i < expected.size(); i++) {
+            ITmfCheckpoint checkpoint = index.get(i);
+            assertEquals("Rank of " + i, expected.get(i).getCheckpointRank(), checkpoint.getCheckpointRank());
+            assertEquals("Timestamp of " + i, expected.get(i).getTimestamp(), checkpoint.getTimestamp());
+            /*
+             * The sequential read starts from the location of the beginning
+             * of the trace, the parallel build from the one of its first event
+             */
+            if (i > 0) {
+                assertEquals("Location of " + i, expected.get(i).getLocation(), checkpoint.getLocation());
+            }
+        }
+
+        ITmfContext first = fTrace.seekEvent(index.get(0).getLocation());
+        ITmfEvent firstEvent = fTrace.getNext(first);
+        first.dispose();
+        assertEquals("First event", expected.get(0).getTimestamp(), firstEvent.getTimestamp());
+        index.dispose();
+    }
+}
@@ -47,16 +47,18 @@ import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.synchronization.TimestampTransformFactory;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceProperties;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceWithPreDefinedEvents;
+import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TraceValidationStatus;
-import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfPersistentlyIndexable;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfParallelIndexable;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
-import org.eclipse.tracecompass.tmf.core.trace.indexer.TmfBTreeTraceIndexer;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.TmfMappedTraceIndexer;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
@@ -81,7 +83,7 @@ import com.google.common.collect.ImmutableSet;
  * @author Matthew khouzam
  */
 public class CtfTmfTrace extends TmfTrace
-        implements ITmfTraceProperties, ITmfPersistentlyIndexable,
+        implements ITmfTraceProperties, ITmfParallelIndexable,
         ITmfTraceWithPreDefinedEvents, AutoCloseable {
 
     // -------------------------------------------
@@ -605,7 +607,7 @@ public class CtfTmfTrace extends TmfTrace
 
     @Override
     protected ITmfTraceIndexer createIndexer(int interval) {
-        return new TmfBTreeTraceIndexer(this, interval);
+        return new TmfMappedTraceIndexer(this, interval);
     }
 
     /**
@@ -616,6 +618,80 @@ public class CtfTmfTrace extends TmfTrace
         return new CtfLocation(bufferIn);
     }
 
+    // ------------------------------------------------------------------------
+    // ITmfParallelIndexable
+    // ------------------------------------------------------------------------
+
+    /**
+     * The ranges are delimited by packet begin times, chosen so that every
+     * range holds about the same number of packets.
+     */
+    @Override
+    public List<ITmfTimestamp> getIndexingRangeStarts(int maxRanges) {
+        /*
+         * Locations are not transformed, so the range boundaries can only be
+         * compared with the event time stamps without a transform.
+         */
+        if (fTrace == null || !TimestampTransformFactory.getDefaultTransform().equals(getTimestampTransform())) {
+            return Collections.emptyList();
+        }
+        long[] packetBeginTimes;
+        try {
+            packetBeginTimes = fTrace.getPacketBeginTimes();
+        } catch (CTFReaderException e) {
+            Activator.getDefault().logError(e.getMessage(), e);
+            return Collections.emptyList();
+        }
+        int nbRanges = Math.min(maxRanges, packetBeginTimes.length);
+        List<ITmfTimestamp> starts = new ArrayList<>(nbRanges);
+        long previousStart = Long.MIN_VALUE;
+        for (int i = 0; i < nbRanges; i++) {
+            long start = packetBeginTimes[(int) ((long) i * packetBeginTimes.length / nbRanges)];
+            if (start > previousStart) {
+                starts.add(new CtfTmfTimestamp(start));
+                previousStart = start;
+            }
+        }
+        return starts;
+    }
+
+    @Override
+    public ITmfContext createIndexingContext(ITmfTimestamp timestamp) {
+        long value = timestamp.toNanos();
+        return createIndexingContext(new CtfLocation(new CtfLocationInfo(value, 0L)));
+    }
+
+    /**
+     * The indexing contexts are iterators that are not managed by the
+     * iterator manager, so they can be used concurrently.
+     */
+    @Override
+    public ITmfContext createIndexingContext(ITmfLocation location) {
+        if (fTrace != null && location instanceof CtfLocation) {
+            try {
+                CtfIterator iterator = new CtfIterator(fTrace, this);
+                iterator.seek(((CtfLocation) location).getLocationInfo());
+                return iterator;
+            } catch (CTFReaderException e) {
+                Activator.getDefault().logError(e.getMessage(), e);
+            }
+        }
+        return new TmfContext();
+    }
+
+    @Override
+    public ITmfEvent readIndexingEvent(ITmfContext context) {
+        if (!(context instanceof CtfIterator)) {
+            return null;
+        }
+        CtfIterator iterator = (CtfIterator) context;
+        CtfTmfEvent event = iterator.getCurrentEvent();
+        if (event != null) {
+            iterator.advance();
+        }
+        return event;
+    }
+
     @Override
     public boolean isComplete() {
         if (getResource() == null) {
@@ -12,13 +12,20 @@
 
 package org.eclipse.tracecompass.internal.tmf.pcap.core.analysis;
 
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.tmf.pcap.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.pcap.core.event.PcapEvent;
 import org.eclipse.tracecompass.internal.tmf.pcap.core.event.TmfPacketStreamBuilder;
 import org.eclipse.tracecompass.internal.tmf.pcap.core.protocol.TmfPcapProtocol;
@@ -30,6 +37,7 @@ import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
 
 /**
@@ -44,7 +52,12 @@ public class StreamListAnalysis extends TmfAbstractAnalysisModule {
      */
     public static final String ID = "org.eclipse.linuxtools.tmf.pcap.core.analysis.stream"; //$NON-NLS-1$
 
+    private static final String EMPTY_STRING = ""; //$NON-NLS-1$
+    private static final String INDEX_FILE_PREFIX = "streams."; //$NON-NLS-1$
+    private static final String INDEX_FILE_SUFFIX = ".idx"; //$NON-NLS-1$
+
     private @Nullable ITmfEventRequest fRequest;
+    private volatile boolean fIndexRead;
     private final Map<TmfPcapProtocol, TmfPacketStreamBuilder> fBuilders;
 
     /**
@@ -100,6 +113,12 @@ public class StreamListAnalysis extends TmfAbstractAnalysisModule {
             request.cancel();
         }
 
+        /* Reuse the streams of a previous opening of the trace */
+        if (readIndexes(trace)) {
+            fIndexRead = true;
+            return true;
+        }
+
         request = new TmfEventRequest(PcapEvent.class,
                 TmfTimeRange.ETERNITY, 0L, ITmfEventRequest.ALL_DATA,
                 ITmfEventRequest.ExecutionType.BACKGROUND) {
@@ -127,8 +146,11 @@ public class StreamListAnalysis extends TmfAbstractAnalysisModule {
             return false;
         }
 
-        return !mon.isCanceled() && !request.isCancelled() && !request.isFailed();
-
+        if (mon.isCanceled() || request.isCancelled() || request.isFailed()) {
+            return false;
+        }
+        writeIndexes(trace);
+        return true;
     }
 
     @Override
@@ -157,6 +179,9 @@ public class StreamListAnalysis extends TmfAbstractAnalysisModule {
      * @return Whether the analysis is finished or not.
      */
     public boolean isFinished() {
+        if (fIndexRead) {
+            return true;
+        }
         ITmfEventRequest req = fRequest;
         if (req == null) {
             return false;
@@ -164,4 +189,68 @@ public class StreamListAnalysis extends TmfAbstractAnalysisModule {
         return req.isCompleted();
     }
 
+    // ------------------------------------------------------------------------
+    // Stream index files
+    // ------------------------------------------------------------------------
+
+    /*
+     * Read the streams of all the protocols from the index files of a pcap
+     * trace. The builders are left empty unless all the index files are valid.
+     */
+    private boolean readIndexes(ITmfTrace trace) {
+        if (!(trace instanceof PcapTrace)) {
+            return false;
+        }
+        Path pcapFile = checkNotNull(Paths.get(trace.getPath()));
+        try {
+            for (Entry<TmfPcapProtocol, TmfPacketStreamBuilder> entry : fBuilders.entrySet()) {
+                if (!entry.getValue().readIndex(getIndexFile(trace, entry.getKey()), pcapFile)) {
+                    clearBuilders();
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            logError(e);
+            clearBuilders();
+            return false;
+        }
+    }
+
+    /*
+     * Save the streams of all the protocols built from a pcap trace.
+     */
+    private void writeIndexes(ITmfTrace trace) {
+        if (!(trace instanceof PcapTrace)) {
+            return;
+        }
+        Path pcapFile = checkNotNull(Paths.get(trace.getPath()));
+        try {
+            for (Entry<TmfPcapProtocol, TmfPacketStreamBuilder> entry : fBuilders.entrySet()) {
+                entry.getValue().writeIndex(getIndexFile(trace, entry.getKey()), pcapFile);
+            }
+        } catch (IOException e) {
+            logError(e);
+        }
+    }
+
+    private void clearBuilders() {
+        for (TmfPacketStreamBuilder builder : fBuilders.values()) {
+            builder.clear();
+        }
+    }
+
+    private static Path getIndexFile(ITmfTrace trace, TmfPcapProtocol protocol) {
+        return checkNotNull(Paths.get(TmfTraceManager.getSupplementaryFileDir(trace),
+                INDEX_FILE_PREFIX + protocol.getShortName() + INDEX_FILE_SUFFIX));
+    }
+
+    private static void logError(IOException e) {
+        String message = e.getMessage();
+        if (message == null) {
+            message = EMPTY_STRING;
+        }
+        Activator.logError(message, e);
+    }
+
 }
@@ -43,7 +43,7 @@ public class TmfPacketStream {
      * @return The first endpoint.
      */
     public String getFirstEndpoint() {
-        return fPacketStream.getEndpointPair().getFirstEndpoint().toString();
+        return fPacketStream.getFirstEndpoint();
     }
 
     /**
@@ -52,7 +52,7 @@ public class TmfPacketStream {
      * @return The second endpoint.
      */
     public String getSecondEndpoint() {
-        return fPacketStream.getEndpointPair().getSecondEndpoint().toString();
+        return fPacketStream.getSecondEndpoint();
     }
 
     /**
@@ -64,6 +64,16 @@ public class TmfPacketStream {
         return fPacketStream.getID();
     }
 
+    /**
+     * Method that returns the version of the builder when the last packet of
+     * the packet stream was added.
+     *
+     * @return The version of the packet stream.
+     */
+    public long getVersion() {
+        return fPacketStream.getVersion();
+    }
+
     /**
      * Method that returns the TmfProtocol of the packet stream.
      *
@@ -78,7 +88,7 @@ public class TmfPacketStream {
      *
      * @return The number of packets from A to B.
      */
-    public synchronized long getNbPacketsAtoB() {
+    public long getNbPacketsAtoB() {
         return fPacketStream.getNbPacketsAtoB();
     }
 
@@ -87,7 +97,7 @@ public class TmfPacketStream {
      *
      * @return The number of packets from B to A.
      */
-    public synchronized long getNbPacketsBtoA() {
+    public long getNbPacketsBtoA() {
         return fPacketStream.getNbPacketsBtoA();
     }
 
@@ -96,7 +106,7 @@ public class TmfPacketStream {
      *
      * @return The total number of packets.
      */
-    public synchronized long getNbPackets() {
+    public long getNbPackets() {
         return fPacketStream.getNbPackets();
     }
 
@@ -105,7 +115,7 @@ public class TmfPacketStream {
      *
      * @return The number of bytes from A to B.
      */
-    public synchronized long getNbBytesAtoB() {
+    public long getNbBytesAtoB() {
         return fPacketStream.getNbBytesAtoB();
     }
 
@@ -114,7 +124,7 @@ public class TmfPacketStream {
      *
      * @return The number of bytes from B to A.
      */
-    public synchronized long getNbBytesBtoA() {
+    public long getNbBytesBtoA() {
         return fPacketStream.getNbBytesBtoA();
     }
 
@@ -123,7 +133,7 @@ public class TmfPacketStream {
      *
      * @return The total number of bytes.
      */
-    public synchronized long getNbBytes() {
+    public long getNbBytes() {
         return fPacketStream.getNbBytes();
     }
 
@@ -132,7 +142,7 @@ public class TmfPacketStream {
      *
      * @return The start time.
      */
-    public synchronized ITmfTimestamp getStartTime() {
+    public ITmfTimestamp getStartTime() {
         return new TmfTimestamp(fPacketStream.getStartTime(), ITmfTimestamp.NANOSECOND_SCALE);
     }
 
@@ -141,7 +151,7 @@ public class TmfPacketStream {
      *
      * @return The stop time.
      */
-    public synchronized ITmfTimestamp getStopTime() {
+    public ITmfTimestamp getStopTime() {
         return new TmfTimestamp(fPacketStream.getStopTime(), ITmfTimestamp.NANOSECOND_SCALE);
     }
 
@@ -150,7 +160,7 @@ public class TmfPacketStream {
      *
      * @return The duration of this stream.
      */
-    public synchronized double getDuration() {
+    public double getDuration() {
         return fPacketStream.getDuration();
     }
 
@@ -159,7 +169,7 @@ public class TmfPacketStream {
      *
      * @return the average byte per second from A to B.
      */
-    public synchronized double getBPSAtoB() {
+    public double getBPSAtoB() {
         return fPacketStream.getBPSAtoB();
     }
 
@@ -168,7 +178,7 @@ public class TmfPacketStream {
      *
      * @return the average byte per second from B to A.
      */
-    public synchronized double getBPSBtoA() {
+    public double getBPSBtoA() {
         return fPacketStream.getBPSBtoA();
     }
 
@@ -12,6 +12,8 @@
 
 package org.eclipse.tracecompass.internal.tmf.pcap.core.event;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -48,7 +50,7 @@ public class TmfPacketStreamBuilder {
      * @param event
      *            The event to add.
      */
-    public synchronized void addEventToStream(PcapEvent event) {
+    public void addEventToStream(PcapEvent event) {
         Packet packet = event.getPacket().getPacket(PcapProtocol.PCAP);
         if (packet == null || !(packet instanceof PcapPacket)) {
             return;
@@ -62,7 +64,7 @@ public class TmfPacketStreamBuilder {
      *
      * @return The number of streams built.
      */
-    public synchronized int getNbStreams() {
+    public int getNbStreams() {
         return fBuilder.getNbStreams();
     }
 
@@ -71,11 +73,24 @@ public class TmfPacketStreamBuilder {
      *
      * @return An iterable on the streams.
      */
-    public synchronized Iterable<TmfPacketStream> getStreams() {
+    public Iterable<TmfPacketStream> getStreams() {
+        return getStreams(0);
+    }
+
+    /**
+     * Method that returns an iterable on the streams modified since a version
+     * of the builder, ordered by ID.
+     *
+     * @param version
+     *            The version of the builder, usually the highest version of
+     *            the streams previously returned, or 0 to get all the streams.
+     * @return An iterable on the streams.
+     */
+    public Iterable<TmfPacketStream> getStreams(long version) {
         // We can't store in immutable list since the stream number/content can
         // change dynamically.
         List<TmfPacketStream> list = new ArrayList<>();
-        for (PacketStream stream : fBuilder.getStreams()) {
+        for (PacketStream stream : fBuilder.getStreams(version)) {
             if (stream != null) {
                 list.add(new TmfPacketStream(stream));
             }
@@ -83,4 +98,42 @@ public class TmfPacketStreamBuilder {
         return list;
     }
 
+    /**
+     * Method that saves the streams built from a pcap file.
+     *
+     * @param indexFile
+     *            The path of the index file to write.
+     * @param pcapFile
+     *            The path of the pcap file the streams were built from.
+     * @throws IOException
+     *             Thrown when the index file cannot be written.
+     */
+    public void writeIndex(Path indexFile, Path pcapFile) throws IOException {
+        fBuilder.writeIndex(indexFile, pcapFile);
+    }
+
+    /**
+     * Method that reads the streams saved by
+     * {@link #writeIndex(Path, Path)}, if they were built from the pcap file
+     * as it is now.
+     *
+     * @param indexFile
+     *            The path of the index file to read.
+     * @param pcapFile
+     *            The path of the pcap file the streams are built from.
+     * @return Whether the streams were read.
+     * @throws IOException
+     *             Thrown when the index file cannot be read.
+     */
+    public boolean readIndex(Path indexFile, Path pcapFile) throws IOException {
+        return fBuilder.readIndex(indexFile, pcapFile);
+    }
+
+    /**
+     * Method that clears the builder.
+     */
+    public void clear() {
+        fBuilder.clear();
+    }
+
 }
@@ -48,6 +48,7 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceProperties;
 import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.TraceValidationStatus;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
@@ -80,6 +81,8 @@ public class PcapTrace extends TmfTrace implements ITmfTraceProperties, AutoClos
 
     private static final String EMPTY_STRING = ""; //$NON-NLS-1$
     private static final int CONFIDENCE = 50;
+    /** Name of the supplementary file of the packet index */
+    private static final String INDEX_FILE_NAME = "pcap.idx"; //$NON-NLS-1$
     private @Nullable PcapFile fPcapFile;
     private @Nullable Map<String, String> fTraceProperties = null;
 
@@ -119,11 +122,28 @@ public class PcapTrace extends TmfTrace implements ITmfTraceProperties, AutoClos
             throw new TmfTraceException("No path has been specified."); //$NON-NLS-1$
         }
         Path filePath = checkNotNull(Paths.get(path));
+        PcapFile pcap;
         try {
-            fPcapFile = new PcapFile(filePath);
+            pcap = new PcapFile(filePath);
         } catch (IOException | BadPcapFileException e) {
             throw new TmfTraceException(e.getMessage(), e);
         }
+        fPcapFile = pcap;
+
+        /* Reuse the packet index of a previous opening of the trace */
+        try {
+            pcap.readIndex(getIndexFile());
+        } catch (IOException e) {
+            String message = e.getMessage();
+            if (message == null) {
+                message = EMPTY_STRING;
+            }
+            Activator.logError(message, e);
+        }
+    }
+
+    private Path getIndexFile() {
+        return checkNotNull(Paths.get(TmfTraceManager.getSupplementaryFileDir(this), INDEX_FILE_NAME));
     }
 
     @Override
@@ -229,6 +249,18 @@ public class PcapTrace extends TmfTrace implements ITmfTraceProperties, AutoClos
         if (pcap == null) {
             return;
         }
+        try {
+            /* Only save the packet index if it knows more packets now */
+            if (pcap.isIndexModified()) {
+                pcap.writeIndex(getIndexFile());
+            }
+        } catch (IOException e) {
+            String message = e.getMessage();
+            if (message == null) {
+                message = EMPTY_STRING;
+            }
+            Activator.logError(message, e);
+        }
         try {
             pcap.close();
             fPcapFile = null;
@@ -85,7 +85,7 @@ public class PcapEventFactory {
         Path filePath = pcap.getPath().getFileName();
         @NonNull String fileName = (filePath == null ? EMPTY_STRING : checkNotNull(filePath.toString()));
 
-        String dataLink = Messages.PcapEventFactory_LinkType + ':' + LinkTypeHelper.toString((int) pcapPacket.getPcapFile().getDataLinkType());
+        String dataLink = Messages.PcapEventFactory_LinkType + ':' + LinkTypeHelper.toString((int) pcapPacket.getDataLinkType());
 
         ITmfEventField[] fields = generatePacketFields(pcapPacket);
         ITmfEventField field = new PcapRootEventField(fields, pcapPacket);
@@ -128,6 +128,8 @@ public class StreamListView extends TmfView {
 
     private @Nullable CTabFolder fTabFolder;
     private @Nullable Map<TmfPcapProtocol, Table> fTableMap;
+    /* Highest version of the streams shown in each table */
+    private final Map<TmfPcapProtocol, Long> fVersions = new HashMap<>();
 
     private @Nullable TmfPacketStream fCurrentStream;
     private @Nullable ITmfTrace fCurrentTrace;
@@ -249,6 +251,7 @@ public class StreamListView extends TmfView {
                         tableMap.get(protocol).removeAll();
                     }
                 }
+                fVersions.clear();
             }
         });
     }
@@ -285,7 +288,11 @@ public class StreamListView extends TmfView {
                     }
                     TmfPacketStreamBuilder builder = analysis.getBuilder(protocol);
                     if (builder != null && !(tables.get(protocol).isDisposed())) {
-                        for (TmfPacketStream stream : builder.getStreams()) {
+                        /* Only update the streams modified since the last update */
+                        Long version = fVersions.get(protocol);
+                        long lastVersion = (version == null ? 0 : version);
+                        for (TmfPacketStream stream : builder.getStreams(lastVersion)) {
+                            lastVersion = Math.max(lastVersion, stream.getVersion());
 
                             TableItem item;
                             if (stream.getID() < tables.get(protocol).getItemCount()) {
@@ -309,6 +316,7 @@ public class StreamListView extends TmfView {
                             item.setText(13, String.format("%.3f", stream.getBPSBtoA())); //$NON-NLS-1$
                             item.setData(KEY_STREAM, stream);
                         }
+                        fVersions.put(protocol, lastVersion);
                     }
                 }
             }
@@ -26,7 +26,8 @@ import org.junit.runners.Suite;
         CustomXmlTraceBadlyFormedTest.class,
         CustomXmlTraceValidTest.class,
         CustomXmlIndexTest.class,
-        CustomTxtIndexTest.class
+        CustomTxtIndexTest.class,
+        CustomTxtParallelIndexTest.class
 })
 public class AllTests {
 }
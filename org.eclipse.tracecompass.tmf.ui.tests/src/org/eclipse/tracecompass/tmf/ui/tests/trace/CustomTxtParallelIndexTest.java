@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.ui.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTxtTrace;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTxtTraceDefinition;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+import org.junit.Test;
+
+/**
+ * Test suite for indexing a CustomTxtTrace large enough to be split in
+ * chunks that are indexed in parallel.
+ */
+public class CustomTxtParallelIndexTest extends AbstractCustomTraceIndexTest {
+
+    private static final String TRACE_DIRECTORY = TmfTraceManager.getTemporaryDirPath() + File.separator + "dummyTxtParallelTrace";
+    private static final String TRACE_PATH = TRACE_DIRECTORY + File.separator + "test.txt";
+    private static final String DEFINITION_PATH = "tracesets" + File.separator + "txt" + File.separator + "testTxtDefinition.xml";
+    private static final String MESSAGE = " hello world, this line is long enough for the trace to span several indexing chunks\n";
+    private static final int NB_CHUNKS = 4;
+
+    private static CustomTxtTraceDefinition createDefinition() {
+        CustomTxtTraceDefinition[] definitions = CustomTxtTraceDefinition.loadAll(new File(DEFINITION_PATH).toString());
+        return definitions[0];
+    }
+
+    @Override
+    protected String getTraceDirectory() {
+        return TRACE_DIRECTORY;
+    }
+
+    @Override
+    protected TestTrace createTrace() throws Exception {
+        CustomTxtTraceDefinition definition = createDefinition();
+        final File file = new File(TRACE_PATH);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file));) {
+            SimpleDateFormat f = new SimpleDateFormat(TIMESTAMP_FORMAT);
+            for (int i = 0; i < NB_EVENTS; ++i) {
+                writer.write(f.format(new Date(i)) + MESSAGE);
+            }
+        }
+
+        return new TestTxtTrace(file.toString(), definition, BLOCK_SIZE);
+    }
+
+    /**
+     * Test that reading the chunks one after the other returns all the events
+     * of the trace, in order
+     */
+    @Test
+    public void testIndexingChunks() {
+        TestTxtTrace trace = (TestTxtTrace) createTraceUnchecked();
+        try {
+            List<ITmfLocation> starts = trace.getIndexingChunkStarts(NB_CHUNKS);
+            assertEquals("Number of chunks", NB_CHUNKS, starts.size());
+
+            ITmfContext sequential = trace.seekEvent(0L);
+            long nbEvents = 0;
+            for (int i = 0; i < starts.size(); i++) {
+                ITmfLocation end = (i + 1 < starts.size()) ? starts.get(i + 1) : null;
+                ITmfContext context = trace.createIndexingContext(starts.get(i), end);
+                try {
+                    ITmfEvent event = trace.readIndexingEvent(context);
+                    assertNotNull("Empty chunk " + i, event);
+                    while (event != null) {
+                        ITmfEvent expected = trace.getNext(sequential);
+                        assertNotNull(expected);
+                        assertEquals("Timestamp", expected.getTimestamp(), event.getTimestamp());
+                        assertEquals("Content", expected.getContent().toString(), event.getContent().toString());
+                        nbEvents++;
+                        event = trace.readIndexingEvent(context);
+                    }
+                    assertNull(trace.readIndexingEvent(context));
+                } finally {
+                    context.dispose();
+                }
+            }
+            assertEquals("Number of events", NB_EVENTS, nbEvents);
+            assertNull(trace.getNext(sequential));
+            sequential.dispose();
+        } finally {
+            trace.dispose();
+        }
+    }
+
+    /**
+     * Test that a chunk context created from the location of another one
+     * resumes at the same event
+     */
+    @Test
+    public void testIndexingContextLocation() {
+        TestTxtTrace trace = (TestTxtTrace) createTraceUnchecked();
+        try {
+            List<ITmfLocation> starts = trace.getIndexingChunkStarts(NB_CHUNKS);
+            assertTrue(starts.size() > 1);
+            ITmfContext context = trace.createIndexingContext(starts.get(0), starts.get(1));
+            ITmfEvent event;
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                event = trace.readIndexingEvent(context);
+                assertNotNull(event);
+            }
+            ITmfContext resumed = trace.createIndexingContext(context.getLocation(), starts.get(1));
+            try {
+                event = trace.readIndexingEvent(context);
+                ITmfEvent other = trace.readIndexingEvent(resumed);
+                assertNotNull(other);
+                assertEquals(trace.getNext(trace.seekEvent((long) BLOCK_SIZE)).getTimestamp(), other.getTimestamp());
+                assertEquals(event.getTimestamp(), other.getTimestamp());
+            } finally {
+                context.dispose();
+                resumed.dispose();
+            }
+        } finally {
+            trace.dispose();
+        }
+    }
+
+    /**
+     * Test that interrupting the thread reading a chunk does not close the
+     * file of the trace, which can still be read completely
+     */
+    @Test
+    public void testInterruptedChunk() {
+        TestTxtTrace trace = (TestTxtTrace) createTraceUnchecked();
+        try {
+            List<ITmfLocation> starts = trace.getIndexingChunkStarts(NB_CHUNKS);
+            assertTrue(starts.size() > 1);
+            Thread.currentThread().interrupt();
+            ITmfContext context;
+            try {
+                context = trace.createIndexingContext(starts.get(1), null);
+            } finally {
+                Thread.interrupted();
+            }
+            assertNull(trace.readIndexingEvent(context));
+            context.dispose();
+
+            ITmfContext sequential = trace.seekEvent(0L);
+            long nbEvents = 0;
+            while (trace.getNext(sequential) != null) {
+                nbEvents++;
+            }
+            sequential.dispose();
+            assertEquals("Number of events", NB_EVENTS, nbEvents);
+
+            context = trace.createIndexingContext(starts.get(1), null);
+            try {
+                assertNotNull(trace.readIndexingEvent(context));
+            } finally {
+                context.dispose();
+            }
+        } finally {
+            trace.dispose();
+        }
+    }
+
+    private TestTrace createTraceUnchecked() {
+        try {
+            return new TestTxtTrace(TRACE_PATH, createDefinition(), BLOCK_SIZE);
+        } catch (TmfTraceException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private class TestTxtTrace extends CustomTxtTrace implements TestTrace {
+        public TestTxtTrace(String path, CustomTxtTraceDefinition createDefinition, int blockSize) throws TmfTraceException {
+            super(null, createDefinition, path, blockSize);
+        }
+
+        @Override
+        protected ITmfTraceIndexer createIndexer(int interval) {
+            return new TestIndexer(this, interval);
+        }
+
+        @Override
+        public TestIndexer getIndexer() {
+            return (TestIndexer) super.getIndexer();
+        }
+    }
+}
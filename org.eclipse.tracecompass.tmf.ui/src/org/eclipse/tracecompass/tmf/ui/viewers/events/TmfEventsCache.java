@@ -109,6 +109,10 @@ public class TmfEventsCache {
         public ITmfTimestamp getTimestamp() {
             return event.getTimestamp();
         }
+        @Override
+        public long getTimestampNanos() {
+            return event.getTimestampNanos();
+        }
         /**
          * @since 3.2
          */
@@ -13,8 +13,12 @@
 
 package org.eclipse.tracecompass.tmf.ui.views.callstack;
 
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.tmf.core.callstack.CallGraph;
 import org.eclipse.tracecompass.tmf.core.callstack.CallStackStateProvider;
 import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.ui.analysis.TmfAnalysisViewOutput;
 
 /**
@@ -31,6 +35,8 @@ public abstract class AbstractCallStackAnalysis extends TmfStateSystemAnalysisMo
     private static final String[] DEFAULT_CALL_STACK_PATH =
             new String[] { CallStackStateProvider.CALL_STACK };
 
+    private @Nullable CallGraph fCallGraph = null;
+
     /**
      * Abstract constructor (should only be called via the sub-classes'
      * constructors.
@@ -64,4 +70,26 @@ public abstract class AbstractCallStackAnalysis extends TmfStateSystemAnalysisMo
     public String[] getCallStackPath() {
         return DEFAULT_CALL_STACK_PATH;
     }
+
+    /**
+     * Get the call graph aggregated while the call stack state system was
+     * built.
+     *
+     * @return The call graph, or null if the state system is not built yet,
+     *         or was built without one
+     */
+    public synchronized @Nullable CallGraph getCallGraph() {
+        CallGraph callGraph = fCallGraph;
+        if (callGraph != null) {
+            return callGraph;
+        }
+        ITmfTrace trace = getTrace();
+        ITmfStateSystem ss = getStateSystem();
+        if (trace == null || ss == null || ss.isCancelled() || !ss.waitUntilBuilt(0)) {
+            return null;
+        }
+        callGraph = CallGraph.read(trace, ss.getSSID());
+        fCallGraph = callGraph;
+        return callGraph;
+    }
 }
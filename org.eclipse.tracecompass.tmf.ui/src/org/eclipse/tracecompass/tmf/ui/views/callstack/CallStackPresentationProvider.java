@@ -105,8 +105,7 @@ public class CallStackPresentationProvider extends TimeGraphPresentationProvider
             try {
                 ITmfStateValue value = ss.querySingleState(event.getTime(), entry.getQuark()).getStateValue();
                 if (!value.isNull()) {
-                    String address = value.toString();
-                    return fView.getFunctionName(address);
+                    return fView.getFunctionName(value);
                 }
             } catch (AttributeNotFoundException e) {
                 Activator.getDefault().logError("Error querying state system", e); //$NON-NLS-1$
@@ -136,8 +135,7 @@ public class CallStackPresentationProvider extends TimeGraphPresentationProvider
         try {
             ITmfStateValue value = ss.querySingleState(event.getTime(), entry.getQuark()).getStateValue();
             if (!value.isNull()) {
-                String address = value.toString();
-                String name = fView.getFunctionName(address);
+                String name = fView.getFunctionName(value);
                 gc.setForeground(gc.getDevice().getSystemColor(SWT.COLOR_WHITE));
                 Utils.drawText(gc, name, bounds.x, bounds.y - 2, bounds.width, true, true);
             }
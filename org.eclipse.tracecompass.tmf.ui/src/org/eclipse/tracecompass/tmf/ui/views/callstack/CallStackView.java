@@ -71,6 +71,8 @@ import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue.Type;
+import org.eclipse.tracecompass.tmf.core.callstack.SymbolResolutionService;
+import org.eclipse.tracecompass.tmf.core.callstack.SymbolTable;
 import org.eclipse.tracecompass.tmf.core.signal.TmfRangeSynchSignal;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSignalHandler;
 import org.eclipse.tracecompass.tmf.core.signal.TmfTimeSynchSignal;
@@ -195,9 +197,6 @@ public class CallStackView extends TmfView {
     // The trace to build thread hash map
     private final Map<ITmfTrace, BuildThread> fBuildThreadMap = new HashMap<>();
 
-    /** The map to map function addresses to function names */
-    private Map<String, String> fNameMapping;
-
     // The start time
     private long fStartTime;
 
@@ -1060,18 +1059,7 @@ public class CallStackView extends TmfView {
                     try {
                         ITmfStateInterval stackLevelInterval = ss.querySingleState(time, callStackEntry.getQuark());
                         ITmfStateValue nameValue = stackLevelInterval.getStateValue();
-                        String name = ""; //$NON-NLS-1$
-                        try {
-                            if (nameValue.getType() == Type.STRING) {
-                                String address = nameValue.unboxStr();
-                                name = getFunctionName(address);
-                            } else if (nameValue.getType() == Type.INTEGER) {
-                                name = "0x" + Integer.toHexString(nameValue.unboxInt()); //$NON-NLS-1$
-                            } else if (nameValue.getType() == Type.LONG) {
-                                name = "0x" + Long.toHexString(nameValue.unboxLong()); //$NON-NLS-1$
-                            }
-                        } catch (StateValueTypeException e) {
-                        }
+                        String name = getFunctionName(nameValue);
                         callStackEntry.setFunctionName(name);
                         if (name.length() > 0) {
                             callStackEntry.setFunctionEntryTime(stackLevelInterval.getStartTime());
@@ -1367,10 +1355,15 @@ public class CallStackView extends TmfView {
              * Start the mapping import in a separate thread (we do not want to
              * UI thread to do this).
              */
+            final ITmfTrace trace = fTrace;
+            if (trace == null) {
+                return;
+            }
             Job job = new Job(Messages.CallStackView_ImportMappingJobName) {
                 @Override
                 public IStatus run(IProgressMonitor monitor) {
-                    fNameMapping = doMapping(new File(filePath));
+                    /* The symbols are shared with the other views of the trace */
+                    SymbolResolutionService.getInstance().setSymbolTable(trace, doMapping(new File(filePath)));
 
                     /* Refresh call stack entries and event labels */
                     Display.getDefault().asyncExec(new Runnable() {
@@ -1385,7 +1378,7 @@ public class CallStackView extends TmfView {
             job.schedule();
         }
 
-        abstract Map<String, String> doMapping(File file);
+        abstract SymbolTable doMapping(File file);
     }
 
     /**
@@ -1397,7 +1390,7 @@ public class CallStackView extends TmfView {
         }
         fImportMappingAction = new AbstractImportFileMappingAction(Messages.CallStackView_ImportMappingDialogTitle) {
             @Override
-            Map<String, String> doMapping(File file) {
+            SymbolTable doMapping(File file) {
                 return FunctionNameMapper.mapFromNmTextFile(file);
             }
         };
@@ -1539,7 +1532,7 @@ public class CallStackView extends TmfView {
 
         fImportBinaryFileMappingAction = new AbstractImportFileMappingAction(Messages.CallStackView_ImportBinaryFileDialogTitle) {
             @Override
-            Map<String, String> doMapping(File file) {
+            SymbolTable doMapping(File file) {
                 return FunctionNameMapper.mapFromBinaryFile(file);
             }
         };
@@ -1551,20 +1544,41 @@ public class CallStackView extends TmfView {
         return fImportBinaryFileMappingAction;
     }
 
+    /**
+     * Get the name of the function of a call stack value. Integer values are
+     * addresses, resolved lazily with the symbols of the trace.
+     */
+    String getFunctionName(ITmfStateValue value) {
+        try {
+            if (value.getType() == Type.STRING) {
+                return getFunctionName(value.unboxStr());
+            } else if (value.getType() == Type.INTEGER) {
+                return getFunctionName(value.unboxInt() & 0xFFFFFFFFL);
+            } else if (value.getType() == Type.LONG) {
+                return getFunctionName(value.unboxLong());
+            }
+        } catch (StateValueTypeException e) {
+        }
+        return ""; //$NON-NLS-1$
+    }
+
+    private String getFunctionName(long address) {
+        ITmfTrace trace = fTrace;
+        String name = (trace == null ? null : SymbolResolutionService.getInstance().resolve(trace, address));
+        if (name == null) {
+            return "0x" + Long.toHexString(address); //$NON-NLS-1$
+        }
+        return name;
+    }
+
     String getFunctionName(String address) {
-        if (fNameMapping == null) {
+        ITmfTrace trace = fTrace;
+        if (trace == null) {
             /* No mapping available, just print the addresses */
             return address;
         }
-        String ret = fNameMapping.get(address);
-        if (ret == null) {
-            /*
-             * We didn't find this address in the mapping file, just use the
-             * address
-             */
-            return address;
-        }
-        return ret;
+        /* The address itself is returned if it is not in the mapping */
+        return SymbolResolutionService.getInstance().resolve(trace, address);
     }
 
 }
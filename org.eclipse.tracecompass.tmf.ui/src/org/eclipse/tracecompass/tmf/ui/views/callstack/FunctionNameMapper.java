@@ -13,18 +13,13 @@
 
 package org.eclipse.tracecompass.tmf.ui.views.callstack;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.eclipse.cdt.core.CCorePlugin;
 import org.eclipse.cdt.core.IBinaryParser;
@@ -38,6 +33,7 @@ import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.SafeRunner;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.tmf.ui.Activator;
+import org.eclipse.tracecompass.tmf.core.callstack.SymbolTable;
 
 /**
  * Class containing the different methods to import an address->name mapping.
@@ -46,56 +42,35 @@ import org.eclipse.tracecompass.internal.tmf.ui.Activator;
  */
 class FunctionNameMapper {
 
-    public static @Nullable Map<String, String> mapFromNmTextFile(File mappingFile) {
-        Map<String, String> map = new HashMap<>();
-
-        try (FileReader fr = new FileReader(mappingFile);
-                BufferedReader reader = new BufferedReader(fr);) {
-            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-                /* Only lines with 3 elements contain addresses */
-                String[] elems = line.split(" ", 3); //$NON-NLS-1$
-                if (elems.length == 3) {
-                    /* Strip the leading zeroes from the address */
-                    String address = elems[0].replaceFirst("^0+(?!$)", ""); //$NON-NLS-1$ //$NON-NLS-2$;
-                    String name = elems[elems.length - 1];
-                    map.put(address, name);
-                }
-            }
+    public static @Nullable SymbolTable mapFromNmTextFile(File mappingFile) {
+        SymbolTable table;
+        try {
+            table = SymbolTable.fromNmFile(mappingFile);
         } catch (FileNotFoundException e) {
             return null;
         } catch (IOException e) {
-            /* Stop reading the file at this point */
+            Activator.getDefault().logError("Error reading the mapping file", e); //$NON-NLS-1$
+            return null;
         }
 
-        if (map.isEmpty()) {
+        if (table.size() == 0) {
             return null;
         }
-        return Collections.unmodifiableMap(map);
-    }
-
-    /**
-     * Strip the leading zeroes from the address
-     * */
-    private static String stripLeadingZeros(String address) {
-        return address.replaceFirst("^0+(?!$)", "");  //$NON-NLS-1$ //$NON-NLS-2$;
+        return table;
     }
 
-    public static @Nullable Map<String, String> mapFromBinaryFile(File file) {
-        Map<String, String> map = new HashMap<>();
+    public static @Nullable SymbolTable mapFromBinaryFile(File file) {
+        SymbolTable.Builder builder = new SymbolTable.Builder();
         IBinaryParser.IBinaryObject binaryObject = getBinaryObject(file);
         if (binaryObject != null) {
             ISymbol[] symbols = binaryObject.getSymbols();
             for (ISymbol symbol : symbols) {
-                String address = symbol.getAddress().toHexAddressString();
-                /* Remove "0x" */
-                address = address.substring(2);
-                /* Strip the leading zeroes from the address */
-                address = stripLeadingZeros(address);
-                map.put(address, symbol.getName());
+                long address = symbol.getAddress().getValue().longValue();
+                builder.add(address, symbol.getSize(), symbol.getName());
             }
         }
 
-        return map;
+        return builder.build();
     }
 
     private static @Nullable IBinaryParser.IBinaryObject getBinaryObject(File file) {